@@ -0,0 +1,698 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Embedded HTTP/JSON front end for BikeRentalSystem, so kiosks and apps can
+ * drive the system concurrently instead of going through the console menu.
+ *
+ * Parameters are read from the query string or a form-encoded POST body.
+ * Mutating endpoints answer only once their journal record is durable.
+ *
+ *   GET  /bikes/available
+ *   GET  /bikes/search          [status, model, minRate, maxRate, sort=id|rate, limit, cursor]
+ *   GET  /bikes/free            from, to (epoch millis), [model, minRate, maxRate, sort=id|rate, limit, cursor]
+ *   GET  /bikes/service-due
+ *   POST /bikes                 id, model, rate
+ *   POST /bikes/repair          bikeId
+ *   POST /bikes/repair/return   bikeId
+ *   GET  /customers/search      q, [limit]
+ *   GET  /estimate              bikeId, hours
+ *   GET  /fleet                 counts from one consistent snapshot
+ *   GET  /quotes                bikeIds, hours (comma-separated), [start (epoch millis)]
+ *   POST /rentals               bikeId and customerId or customerName, [hours expected]
+ *   POST /rentals/return        hours and rentalId or bikeId
+ *   GET  /rentals/active        [sort=id|start, limit, cursor]
+ *   GET  /rentals/overdue
+ *   GET  /reservations          [bikeId]
+ *   POST /reservations          bikeId, start, end (epoch millis) and customerId or customerName
+ *   POST /reservations/pickup   reservationId
+ *   POST /reservations/cancel   reservationId
+ *   GET  /replication           (with addPrimaryEndpoints or addReplicaEndpoints)
+ *   POST /replication/promote   (replica only)
+ *
+ * A read-only replica answers mutating endpoints with 503.
+ */
+public class ApiServer {
+
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_QUOTES = 10_000;
+    private static final String HOURS_RANGE = "hours must be between 1 and " + PricingEngine.MAX_HOURS;
+
+    private volatile BikeRentalSystem system; // Replaced when a replica reseeds
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Listens on the loopback interface only, for kiosks on this host.
+     */
+    public ApiServer(BikeRentalSystem system, int port) throws IOException {
+        this(system, InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Listens on bindAddress. Requests are not authenticated and can rent,
+     * repair and add bikes or promote a replica, so bind only to an interface
+     * that trusted clients alone can reach.
+     */
+    public ApiServer(BikeRentalSystem system, InetAddress bindAddress, int port) throws IOException {
+        this.system = system;
+        this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        this.executor = newPerRequestExecutor();
+
+        server.createContext("/bikes/available", exchange -> handle(exchange, "GET", this::listAvailableBikes));
+        server.createContext("/bikes/search", exchange -> handle(exchange, "GET", this::searchBikes));
+        server.createContext("/bikes/free", exchange -> handle(exchange, "GET", this::listFreeBikes));
+        server.createContext("/bikes/service-due", exchange -> handle(exchange, "GET", this::listBikesDueForService));
+        server.createContext("/bikes/repair/return", exchange -> handle(exchange, "POST", this::returnFromRepair));
+        server.createContext("/bikes/repair", exchange -> handle(exchange, "POST", this::sendToRepair));
+        server.createContext("/bikes", exchange -> handle(exchange, "POST", this::addBike));
+        server.createContext("/customers/search", exchange -> handle(exchange, "GET", this::searchCustomers));
+        server.createContext("/estimate", exchange -> handle(exchange, "GET", this::estimate));
+        server.createContext("/fleet", exchange -> handle(exchange, "GET", this::fleetSummary));
+        server.createContext("/quotes", exchange -> handle(exchange, "GET", this::quotes));
+        server.createContext("/rentals/return", exchange -> handle(exchange, "POST", this::returnBike));
+        server.createContext("/rentals/active", exchange -> handle(exchange, "GET", this::listActiveRentals));
+        server.createContext("/rentals/overdue", exchange -> handle(exchange, "GET", this::listOverdueRentals));
+        server.createContext("/rentals", exchange -> handle(exchange, "POST", this::rentBike));
+        server.createContext("/reservations/pickup", exchange -> handle(exchange, "POST", this::pickUpReservation));
+        server.createContext("/reservations/cancel", exchange -> handle(exchange, "POST", this::cancelReservation));
+        server.createContext("/reservations", exchange -> handle(exchange,
+            "GET".equals(exchange.getRequestMethod()) ? "GET" : "POST",
+            "GET".equals(exchange.getRequestMethod()) ? this::listReservations : this::reserveBike));
+        server.setExecutor(executor);
+    }
+
+    /**
+     * One virtual thread per request when the JDK provides them (21+), otherwise
+     * a cached platform-thread pool.
+     */
+    private static ExecutorService newPerRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Reports the followers this server's system ships its journal to.
+     */
+    public void addPrimaryEndpoints(ReplicationPrimary primary) {
+        server.createContext("/replication", exchange -> handle(exchange, "GET", params -> {
+            StringBuilder followers = new StringBuilder("[");
+            for (ReplicationPrimary.Follower follower : primary.getFollowers()) {
+                if (followers.length() > 1) {
+                    followers.append(',');
+                }
+                followers.append("{\"address\":").append(quote(follower.getAddress()))
+                    .append(",\"connected\":").append(follower.isConnected())
+                    .append(",\"shippedSequence\":").append(follower.getShippedSequence())
+                    .append(",\"lagWrites\":").append(follower.getLag()).append('}');
+            }
+            return Response.ok("{\"role\":\"primary\",\"followers\":" + followers.append(']') + "}");
+        }));
+    }
+
+    /**
+     * Reports replication lag and allows promoting this server's replica.
+     * Requests are served from the fresh replica after each reseed.
+     */
+    public void addReplicaEndpoints(ReplicaFollower follower) {
+        follower.onReseed(reseeded -> system = reseeded);
+        server.createContext("/replication/promote", exchange -> handle(exchange, "POST", params ->
+            follower.promote() != null ? Response.ok(replicaJson(follower))
+                : Response.error(500, "Could not write the promoted replica's snapshot")));
+        server.createContext("/replication", exchange -> handle(exchange, "GET", params -> Response.ok(replicaJson(follower))));
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("✅ API server listening on " + server.getAddress().getAddress().getHostAddress() + " port " + server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // --- Endpoints ---
+
+    private Response listAvailableBikes(Map<String, String> params) {
+        return Response.ok(bikesJson(system.getBikesByStatus(BikeStatus.AVAILABLE)));
+    }
+
+    // Every figure comes from the same snapshot, so they always add up
+    private Response fleetSummary(Map<String, String> params) {
+        return Response.ok(fleetJson(system.snapshot(), System.currentTimeMillis()));
+    }
+
+    private Response listBikesDueForService(Map<String, String> params) {
+        return Response.ok(bikesJson(system.getBikesDueForService()));
+    }
+
+    private Response searchBikes(Map<String, String> params) {
+        BikeQuery query = bikeQuery(params);
+        Page<Bike> page = readPage(() -> system.queryBikes(query, params.get("cursor")));
+        return Response.ok(pageJson(bikesPageJson(page), page));
+    }
+
+    private Response listFreeBikes(Map<String, String> params) {
+        long from = parseLong(params, "from");
+        long to = parseLong(params, "to");
+        if (to <= from) {
+            return Response.error(400, "to must be after from");
+        }
+        BikeQuery query = bikeQuery(params);
+        Page<Bike> page = readPage(() -> system.queryFreeBikes(query, from, to, params.get("cursor")));
+        return Response.ok(pageJson(bikesPageJson(page), page));
+    }
+
+    private static BikeQuery bikeQuery(Map<String, String> params) {
+        BikeQuery query = new BikeQuery().pageSize(pageSize(params));
+        if (params.containsKey("status")) {
+            try {
+                query.status(BikeStatus.valueOf(params.get("status").toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Unknown status " + params.get("status"));
+            }
+        }
+        query.modelContains(params.get("model"));
+        query.rateBetween(params.containsKey("minRate") ? parseDouble(params, "minRate") : 0,
+            params.containsKey("maxRate") ? parseDouble(params, "maxRate") : Double.MAX_VALUE);
+        if ("rate".equals(params.get("sort"))) {
+            query.sortBy(BikeQuery.Sort.RATE);
+        }
+        return query;
+    }
+
+    private static String bikesPageJson(Page<Bike> page) {
+        StringBuilder json = new StringBuilder("[");
+        for (Bike bike : page.getItems()) {
+            json.append(json.length() > 1 ? "," : "").append(bikeJson(bike));
+        }
+        return json.append(']').toString();
+    }
+
+    private Response listActiveRentals(Map<String, String> params) {
+        RentalQuery query = new RentalQuery().pageSize(pageSize(params));
+        if ("start".equals(params.get("sort"))) {
+            query.sortBy(RentalQuery.Sort.START_TIME);
+        }
+
+        Page<Rental> page = readPage(() -> system.queryActiveRentals(query, params.get("cursor")));
+        StringBuilder json = new StringBuilder("[");
+        for (Rental rental : page.getItems()) {
+            json.append(json.length() > 1 ? "," : "").append(rentalJson(rental));
+        }
+        return Response.ok(pageJson(json.append(']').toString(), page));
+    }
+
+    private Response listOverdueRentals(Map<String, String> params) {
+        StringBuilder json = new StringBuilder("[");
+        for (Rental rental : system.getOverdueRentals()) {
+            json.append(json.length() > 1 ? "," : "").append(rentalJson(rental));
+        }
+        return Response.ok(json.append(']').toString());
+    }
+
+    private Response searchCustomers(Map<String, String> params) {
+        String text = required(params, "q");
+        StringBuilder json = new StringBuilder("[");
+        for (CustomerMatch match : system.searchCustomers(text, pageSize(params))) {
+            json.append(json.length() > 1 ? "," : "")
+                .append("{\"customerId\":").append(match.getCustomer().getCustomerId())
+                .append(",\"name\":").append(quote(match.getCustomer().getName()))
+                .append(",\"distance\":").append(match.getDistance()).append('}');
+        }
+        return Response.ok(json.append(']').toString());
+    }
+
+    private Response addBike(Map<String, String> params) {
+        String id = required(params, "id");
+        String model = required(params, "model");
+        double rate = parseDouble(params, "rate");
+        if (!(Double.isFinite(rate) && rate > 0)) {
+            return Response.error(400, "rate must be a number greater than zero");
+        }
+        Bike bike = new Bike(id, model, rate);
+        if (!system.addBike(bike)) {
+            return Response.error(409, "Bike ID " + id + " already exists");
+        }
+        return new Response(201, bikeJson(bike));
+    }
+
+    private Response sendToRepair(Map<String, String> params) {
+        return repairTransition(required(params, "bikeId"), true);
+    }
+
+    private Response returnFromRepair(Map<String, String> params) {
+        return repairTransition(required(params, "bikeId"), false);
+    }
+
+    private Response repairTransition(String bikeId, boolean toRepair) {
+        Optional<Bike> bikeOpt = system.findBike(bikeId);
+        if (bikeOpt.isEmpty()) {
+            return Response.error(404, "Bike ID " + bikeId + " not found");
+        }
+        boolean moved = toRepair ? system.sendBikeToRepair(bikeId) : system.returnBikeFromRepair(bikeId);
+        if (!moved) {
+            return Response.error(409, "Bike ID " + bikeId + " is " + bikeOpt.get().getStatus());
+        }
+        return Response.ok(bikeJson(bikeOpt.get()));
+    }
+
+    private Response estimate(Map<String, String> params) {
+        String bikeId = required(params, "bikeId");
+        int hours = parseInt(params, "hours");
+        if (!PricingEngine.isValidDuration(hours)) {
+            return Response.error(400, HOURS_RANGE);
+        }
+        Optional<Double> cost = system.calculateCostEstimate(bikeId, hours);
+        if (cost.isEmpty()) {
+            return system.findBike(bikeId).isEmpty()
+                ? Response.error(404, "Bike ID " + bikeId + " not found")
+                : Response.error(400, "The charge for " + hours + " hours is too large to quote");
+        }
+        return Response.ok("{\"bikeId\":" + quote(bikeId) + ",\"hours\":" + hours
+            + ",\"estimate\":" + money(cost.get()) + "}");
+    }
+
+    // Every listed bike for every listed duration, priced in one batch
+    private Response quotes(Map<String, String> params) {
+        String[] bikeIds = required(params, "bikeIds").split(",");
+        String[] hourTexts = required(params, "hours").split(",");
+        long start = params.containsKey("start") ? parseLong(params, "start") : System.currentTimeMillis();
+        if ((long) bikeIds.length * hourTexts.length > MAX_QUOTES) {
+            return Response.error(400, "At most " + MAX_QUOTES + " quotes per request");
+        }
+        int[] durations = new int[hourTexts.length];
+        for (int i = 0; i < hourTexts.length; i++) {
+            try {
+                durations[i] = Integer.parseInt(hourTexts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Parameter hours must be whole numbers");
+            }
+            if (!PricingEngine.isValidDuration(durations[i])) {
+                return Response.error(400, HOURS_RANGE);
+            }
+        }
+
+        Bike[] bikes = new Bike[bikeIds.length];
+        for (int i = 0; i < bikeIds.length; i++) {
+            Optional<Bike> bike = system.findBike(bikeIds[i].trim());
+            if (bike.isEmpty()) {
+                return Response.error(404, "Bike ID " + bikeIds[i].trim() + " not found");
+            }
+            bikes[i] = bike.get();
+        }
+        int count = bikes.length * durations.length;
+        Bike[] pairBikes = new Bike[count];
+        int[] pairHours = new int[count];
+        for (int i = 0; i < count; i++) {
+            pairBikes[i] = bikes[i / durations.length];
+            pairHours[i] = durations[i % durations.length];
+        }
+        long[] charges = new long[count];
+        try {
+            system.getPricing().quote(start, pairBikes, pairHours, charges, count);
+        } catch (ArithmeticException e) {
+            return Response.error(400, "A charge is too large to quote");
+        }
+
+        StringBuilder json = new StringBuilder("{\"start\":").append(start).append(",\"quotes\":[");
+        for (int i = 0; i < count; i++) {
+            json.append(i > 0 ? "," : "")
+                .append("{\"bikeId\":").append(quote(pairBikes[i].getBikeId()))
+                .append(",\"hours\":").append(pairHours[i])
+                .append(",\"charge\":").append(PricingEngine.formatRupees(charges[i])).append('}');
+        }
+        return Response.ok(json.append("]}").toString());
+    }
+
+    private Response rentBike(Map<String, String> params) {
+        String bikeId = required(params, "bikeId");
+        if (system.findBike(bikeId).isEmpty()) {
+            return Response.error(404, "Bike ID " + bikeId + " not found");
+        }
+        Optional<Customer> customerOpt = customer(params);
+        if (customerOpt.isEmpty()) {
+            return Response.error(404, "Customer ID " + params.get("customerId") + " not found");
+        }
+        Customer customer = customerOpt.get();
+
+        int hours = params.containsKey("hours") ? parseInt(params, "hours") : 0;
+        if (params.containsKey("hours") && !PricingEngine.isValidDuration(hours)) {
+            return Response.error(400, HOURS_RANGE);
+        }
+
+        Rental rental = hours > 0
+            ? system.rentBike(customer.getCustomerId(), bikeId, hours)
+            : system.rentBike(customer.getCustomerId(), bikeId);
+        if (rental == null) {
+            return Response.error(409, "Bike ID " + bikeId + " is not available");
+        }
+        return new Response(201, rentalJson(rental));
+    }
+
+    // By customerId when given, otherwise find-or-create by customerName
+    private Optional<Customer> customer(Map<String, String> params) {
+        if (params.containsKey("customerId")) {
+            return system.findCustomer(parseInt(params, "customerId"));
+        }
+        return Optional.of(system.findOrCreateCustomer(required(params, "customerName")));
+    }
+
+    private Response listReservations(Map<String, String> params) {
+        List<Reservation> reservations = params.containsKey("bikeId")
+            ? system.getReservationsForBike(params.get("bikeId")) : system.getReservations();
+        StringBuilder json = new StringBuilder("[");
+        for (Reservation reservation : reservations) {
+            json.append(json.length() > 1 ? "," : "").append(reservationJson(reservation));
+        }
+        return Response.ok(json.append(']').toString());
+    }
+
+    private Response reserveBike(Map<String, String> params) {
+        String bikeId = required(params, "bikeId");
+        long start = parseLong(params, "start");
+        long end = parseLong(params, "end");
+        if (end <= start || end <= System.currentTimeMillis()) {
+            return Response.error(400, "end must be after start and in the future");
+        }
+        if (system.findBike(bikeId).isEmpty()) {
+            return Response.error(404, "Bike ID " + bikeId + " not found");
+        }
+        Optional<Customer> customer = customer(params);
+        if (customer.isEmpty()) {
+            return Response.error(404, "Customer ID " + params.get("customerId") + " not found");
+        }
+
+        Reservation reservation = system.reserveBike(customer.get().getCustomerId(), bikeId, start, end);
+        if (reservation == null) {
+            return Response.error(409, "Bike ID " + bikeId + " is not free for that window");
+        }
+        return new Response(201, reservationJson(reservation));
+    }
+
+    private Response pickUpReservation(Map<String, String> params) {
+        int reservationId = parseInt(params, "reservationId");
+        Optional<Reservation> reservation = system.findReservation(reservationId);
+        if (reservation.isEmpty()) {
+            return Response.error(404, "Reservation ID " + reservationId + " not found");
+        }
+        Rental rental = system.pickUpReservation(reservationId);
+        if (rental == null) {
+            return Response.error(409, "Bike ID " + reservation.get().getBike().getBikeId() + " cannot be picked up now");
+        }
+        return new Response(201, rentalJson(rental));
+    }
+
+    private Response cancelReservation(Map<String, String> params) {
+        int reservationId = parseInt(params, "reservationId");
+        if (!system.cancelReservation(reservationId)) {
+            return Response.error(404, "Reservation ID " + reservationId + " not found");
+        }
+        return Response.ok("{\"reservationId\":" + reservationId + ",\"cancelled\":true}");
+    }
+
+    private Response returnBike(Map<String, String> params) {
+        int hours = parseInt(params, "hours");
+        if (!PricingEngine.isValidDuration(hours)) {
+            return Response.error(400, HOURS_RANGE);
+        }
+
+        Optional<Rental> rentalOpt = params.containsKey("rentalId")
+            ? system.findActiveRentalById(parseInt(params, "rentalId"))
+            : system.findActiveRentalByBikeId(required(params, "bikeId"));
+        if (rentalOpt.isEmpty()) {
+            return Response.error(404, "No active rental found");
+        }
+
+        Receipt receipt = system.checkoutAndReturnBike(rentalOpt.get().getRentalId(), hours);
+        if (receipt == null) {
+            int rentalId = rentalOpt.get().getRentalId();
+            return system.findActiveRentalById(rentalId).isPresent()
+                ? Response.error(400, "The charge for " + hours + " hours is too large to settle")
+                : Response.error(409, "Rental ID " + rentalId + " is no longer active");
+        }
+        return Response.ok("{\"rentalId\":" + receipt.getRentalId()
+            + ",\"bikeId\":" + quote(receipt.getBikeId())
+            + ",\"customerName\":" + quote(receipt.getCustomerName())
+            + ",\"hours\":" + hours
+            + ",\"charge\":" + PricingEngine.formatRupees(receipt.getTotalChargePaise()) + "}");
+    }
+
+    // --- Request Plumbing ---
+
+    @FunctionalInterface
+    private interface Endpoint {
+        Response handle(Map<String, String> params);
+    }
+
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        static Response ok(String body) {
+            return new Response(200, body);
+        }
+
+        static Response error(int status, String message) {
+            return new Response(status, "{\"error\":" + quote(message) + "}");
+        }
+    }
+
+    private static final class BadRequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        Response response;
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (!path.equals(exchange.getHttpContext().getPath())) {
+                response = Response.error(404, "Unknown endpoint " + path);
+            } else if (!method.equals(exchange.getRequestMethod())) {
+                response = Response.error(405, "Use " + method + " for " + path);
+            } else {
+                response = endpoint.handle(readParams(exchange));
+                if ("POST".equals(method) && response.status < 300 && !system.awaitDurable()) {
+                    response = Response.error(503, "Change applied but could not be made durable");
+                }
+            }
+        } catch (BadRequestException e) {
+            response = Response.error(400, e.getMessage());
+        } catch (BikeRentalSystem.ReadOnlyException e) {
+            response = Response.error(503, e.getMessage()); // A replica refusing writes until promoted
+        } catch (RuntimeException e) {
+            // Details stay in the server log; they can name files and internals
+            System.err.println("Error handling " + exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + ": " + e);
+            response = Response.error(500, "Internal error");
+        }
+
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> readParams(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        if ("POST".equals(exchange.getRequestMethod())) {
+            try (InputStream in = exchange.getRequestBody()) {
+                parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8), params);
+            }
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8).trim());
+        }
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new BadRequestException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static int parseInt(Map<String, String> params, String name) {
+        try {
+            return Integer.parseInt(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Parameter " + name + " must be a whole number");
+        }
+    }
+
+    private static int pageSize(Map<String, String> params) {
+        int limit = params.containsKey("limit") ? parseInt(params, "limit") : BikeQuery.DEFAULT_PAGE_SIZE;
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    // Bad cursors are the client's fault, so report them as 400 rather than 500
+    private static <T> Page<T> readPage(Supplier<Page<T>> query) {
+        try {
+            return query.get();
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    private static long parseLong(Map<String, String> params, String name) {
+        try {
+            return Long.parseLong(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Parameter " + name + " must be a whole number");
+        }
+    }
+
+    private static double parseDouble(Map<String, String> params, String name) {
+        try {
+            return Double.parseDouble(required(params, name));
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Parameter " + name + " must be a number");
+        }
+    }
+
+    // --- JSON Rendering ---
+
+    private static String bikesJson(Collection<Bike> bikes) {
+        StringBuilder json = new StringBuilder("[");
+        for (Bike bike : bikes) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append(bikeJson(bike));
+        }
+        return json.append(']').toString();
+    }
+
+    private static String pageJson(String itemsJson, Page<?> page) {
+        return "{\"items\":" + itemsJson
+            + ",\"next\":" + (page.hasNext() ? quote(page.getNextCursor()) : "null")
+            + ",\"previous\":" + (page.hasPrevious() ? quote(page.getPreviousCursor()) : "null") + "}";
+    }
+
+    private static String bikeJson(Bike bike) {
+        return "{\"bikeId\":" + quote(bike.getBikeId())
+            + ",\"model\":" + quote(bike.getModel())
+            + ",\"hourlyRate\":" + money(bike.getHourlyRate())
+            + ",\"status\":\"" + bike.getStatus() + "\"}";
+    }
+
+    private static String rentalJson(Rental rental) {
+        return "{\"rentalId\":" + rental.getRentalId()
+            + ",\"customerId\":" + rental.getCustomer().getCustomerId()
+            + ",\"customerName\":" + quote(rental.getCustomer().getName())
+            + ",\"bikeId\":" + quote(rental.getBike().getBikeId())
+            + ",\"startTimeMillis\":" + rental.getStartTimeMillis()
+            + ",\"expectedReturnMillis\":" + rental.getExpectedReturnMillis() + "}";
+    }
+
+    private static String reservationJson(Reservation reservation) {
+        return "{\"reservationId\":" + reservation.getReservationId()
+            + ",\"customerId\":" + reservation.getCustomer().getCustomerId()
+            + ",\"customerName\":" + quote(reservation.getCustomer().getName())
+            + ",\"bikeId\":" + quote(reservation.getBike().getBikeId())
+            + ",\"startMillis\":" + reservation.getStartMillis()
+            + ",\"endMillis\":" + reservation.getEndMillis() + "}";
+    }
+
+    private static String fleetJson(FleetSnapshot snapshot, long nowMillis) {
+        StringBuilder byStatus = new StringBuilder("{");
+        for (BikeStatus status : BikeStatus.values()) {
+            if (byStatus.length() > 1) {
+                byStatus.append(',');
+            }
+            byStatus.append('"').append(status).append("\":").append(snapshot.countBikes(status));
+        }
+        long overdue = snapshot.getActiveRentals().stream().filter(rental -> rental.isOverdue(nowMillis)).count();
+        return "{\"version\":" + snapshot.getVersion()
+            + ",\"bikes\":" + snapshot.countBikes()
+            + ",\"bikesByStatus\":" + byStatus.append('}')
+            + ",\"customers\":" + snapshot.getCustomers().size()
+            + ",\"activeRentals\":" + snapshot.countActiveRentals()
+            + ",\"overdueRentals\":" + overdue + "}";
+    }
+
+    private static String replicaJson(ReplicaFollower follower) {
+        return "{\"role\":\"" + (follower.isPromoted() ? "primary" : "replica") + "\""
+            + ",\"connected\":" + follower.isConnected()
+            + ",\"appliedSequence\":" + follower.getAppliedSequence()
+            + ",\"lagWrites\":" + follower.getLagWrites()
+            + ",\"lagMillis\":" + follower.getLagMillis() + "}";
+    }
+
+    private static String money(double amount) {
+        return String.format(Locale.ROOT, "%.2f", amount);
+    }
+
+    private static String quote(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"').toString();
+    }
+}
@@ -0,0 +1,97 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Hands receipts and notices to a background thread that renders them into
+ * another sink, so callers only pay for an enqueue. The delegate is flushed
+ * whenever the queue runs dry. If the renderer falls a full queue behind,
+ * callers block until it catches up rather than losing receipts.
+ */
+public class AsyncNoticeSink implements NoticeSink {
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final Object STOP = new Object();
+
+    private final NoticeSink delegate;
+    private final BlockingQueue<Object> queue;
+    private final Thread renderThread;
+
+    public AsyncNoticeSink(NoticeSink delegate) {
+        this(delegate, DEFAULT_CAPACITY);
+    }
+
+    public AsyncNoticeSink(NoticeSink delegate, int capacity) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.renderThread = new Thread(this::runRenderer, "notice-renderer");
+        this.renderThread.setDaemon(true);
+        this.renderThread.start();
+    }
+
+    @Override
+    public void receipt(Receipt receipt) {
+        enqueue(receipt);
+    }
+
+    @Override
+    public void notice(OperationNotice notice) {
+        enqueue(notice);
+    }
+
+    /**
+     * Renders everything queued so far, then stops the renderer and closes the delegate.
+     */
+    @Override
+    public void close() {
+        enqueue(STOP);
+        try {
+            renderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    private void enqueue(Object item) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(item);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runRenderer() {
+        List<Object> drained = new ArrayList<>();
+        while (true) {
+            try {
+                drained.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(drained);
+            for (Object item : drained) {
+                if (item == STOP) {
+                    delegate.flush();
+                    return;
+                } else if (item instanceof Receipt) {
+                    delegate.receipt((Receipt) item);
+                } else {
+                    delegate.notice((OperationNotice) item);
+                }
+            }
+            drained.clear();
+            if (queue.isEmpty()) {
+                delegate.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,394 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Non-interactive bulk loader behind Main --import. Reads a command stream,
+ * one CSV row per operation:
+ *
+ *   bike,<id>,<model>,<hourly rate>
+ *   customer,<name>
+ *   rent,<bike id>,<customer name>[,<expected hours>]
+ *   return,<bike id>,<hours>
+ *   repair,<bike id>
+ *   repaired,<bike id>
+ *
+ * Fields may be double-quoted; blank lines and lines starting with # are
+ * skipped. The input is memory-mapped and split at line boundaries into
+ * chunks that are parsed in parallel. Rows are then applied through the
+ * domain API: all bikes first as one batch, then customers, then the
+ * remaining operations in file order, BATCH_ROWS at a time in batches that
+ * write the journal once each. Per-row receipts and notices are counted
+ * instead of printed.
+ */
+public class BatchImporter {
+
+    private enum Command {
+        BIKE(4, 4),
+        CUSTOMER(2, 2),
+        RENT(3, 4),
+        RETURN(3, 3),
+        REPAIR(2, 2),
+        REPAIRED(2, 2);
+
+        final int minFields;
+        final int maxFields;
+
+        Command(int minFields, int maxFields) {
+            this.minFields = minFields;
+            this.maxFields = maxFields;
+        }
+    }
+
+    private static final Command[] COMMANDS = Command.values();
+    private static final int MIN_CHUNK_BYTES = 1 << 20;
+    private static final int MAX_FIELDS = 4;
+    private static final int ERRORS_SHOWN = 5;
+    private static final int BATCH_ROWS = 4096;
+
+    private static final class Row {
+        final Command command;
+        final String[] fields;
+
+        Row(Command command, String[] fields) {
+            this.command = command;
+            this.fields = fields;
+        }
+    }
+
+    // Rows of one chunk in file order; line numbers are relative to the chunk until offset
+    private static final class Chunk {
+        final boolean startsFile; // Only the file's first row may be a header
+        final List<Row> rows = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        final List<Integer> errorLines = new ArrayList<>();
+        int lines;
+        int malformed;
+
+        Chunk(boolean startsFile) {
+            this.startsFile = startsFile;
+        }
+    }
+
+    private final BikeRentalSystem system;
+    private final int parallelism;
+    private final Map<Command, LongAdder> succeeded = new EnumMap<>(Command.class);
+    private final Map<Command, LongAdder> failed = new EnumMap<>(Command.class);
+    private final Map<FailureReason, LongAdder> failureReasons = new EnumMap<>(FailureReason.class);
+
+    public BatchImporter(BikeRentalSystem system) {
+        this.system = system;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        for (Command command : COMMANDS) {
+            succeeded.put(command, new LongAdder());
+            failed.put(command, new LongAdder());
+        }
+        for (FailureReason reason : FailureReason.values()) {
+            failureReasons.put(reason, new LongAdder());
+        }
+    }
+
+    // --- Entry Points ---
+
+    /**
+     * Imports a file of up to 2 GB and returns the summary to print.
+     */
+    public String importFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is larger than 2 GB; split it into several imports");
+            }
+            return importBuffer(path.toString(), channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Imports rows already in memory, e.g. read from standard input.
+     */
+    public String importBuffer(String source, ByteBuffer input) {
+        long start = System.nanoTime();
+        List<Chunk> chunks = parse(input);
+        long parsed = System.nanoTime();
+
+        NoticeSink previousSink = system.getNoticeSink();
+        system.setNoticeSink(new CountingSink());
+        try {
+            system.bulkLoad(() -> {
+                apply(chunks);
+                return null;
+            });
+        } finally {
+            system.setNoticeSink(previousSink);
+        }
+        return summarize(source, chunks, parsed - start, System.nanoTime() - parsed);
+    }
+
+    // --- Parsing ---
+
+    private List<Chunk> parse(ByteBuffer input) {
+        int size = input.limit();
+        int chunkCount = Math.max(1, Math.min(size / MIN_CHUNK_BYTES, parallelism * 4));
+        int[] bounds = new int[chunkCount + 1];
+        bounds[chunkCount] = size;
+        for (int i = 1; i < chunkCount; i++) {
+            int position = Math.max(bounds[i - 1], (int) ((long) size * i / chunkCount));
+            while (position < size && input.get(position) != '\n') {
+                position++;
+            }
+            bounds[i] = Math.min(size, position + 1);
+        }
+
+        Chunk[] chunks = new Chunk[chunkCount];
+        IntStream.range(0, chunkCount).parallel()
+            .forEach(i -> chunks[i] = parseChunk(input, bounds[i], bounds[i + 1]));
+        return Arrays.asList(chunks);
+    }
+
+    private static Chunk parseChunk(ByteBuffer input, int from, int to) {
+        Chunk chunk = new Chunk(from == 0);
+        byte[] field = new byte[256];
+        String[] fields = new String[MAX_FIELDS + 1];
+        int lineStart = from;
+        while (lineStart < to) {
+            int lineEnd = lineStart;
+            while (lineEnd < to && input.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            chunk.lines++;
+            int end = lineEnd > lineStart && input.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (end > lineStart && input.get(lineStart) != '#') {
+                parseLine(input, lineStart, end, field, fields, chunk);
+            }
+            lineStart = lineEnd + 1;
+        }
+        return chunk;
+    }
+
+    private static void parseLine(ByteBuffer input, int from, int to, byte[] field, String[] fields, Chunk chunk) {
+        int count = 0;
+        int position = from;
+        while (position <= to && count <= MAX_FIELDS) {
+            int length = 0;
+            if (position < to && input.get(position) == '"') {
+                // Quoted field; a doubled quote stands for one quote
+                position++;
+                while (position < to) {
+                    byte b = input.get(position++);
+                    if (b == '"') {
+                        if (position < to && input.get(position) == '"') {
+                            position++;
+                        } else {
+                            break;
+                        }
+                    }
+                    if (length == field.length) {
+                        field = Arrays.copyOf(field, length * 2);
+                    }
+                    field[length++] = b;
+                }
+                while (position < to && input.get(position) != ',') {
+                    position++;
+                }
+            } else {
+                while (position < to && input.get(position) != ',') {
+                    if (length == field.length) {
+                        field = Arrays.copyOf(field, length * 2);
+                    }
+                    field[length++] = input.get(position++);
+                }
+            }
+            fields[count++] = new String(field, 0, length, StandardCharsets.UTF_8).trim();
+            position++; // Past the comma, or past the end after the last field
+        }
+
+        Command command = command(fields[0]);
+        if (command == null) {
+            if (chunk.startsFile && chunk.rows.isEmpty() && chunk.errors.isEmpty() && fields[0].equalsIgnoreCase("command")) {
+                return; // Header row
+            }
+            reject(chunk, "unknown command \"" + fields[0] + "\"");
+            return;
+        }
+        if (count < command.minFields || count > command.maxFields) {
+            reject(chunk, command.name().toLowerCase(Locale.ROOT) + " takes "
+                + (command.minFields - 1) + (command.maxFields > command.minFields ? " or " + (command.maxFields - 1) : "")
+                + " fields");
+            return;
+        }
+        for (int i = 1; i < count; i++) {
+            if (fields[i].isEmpty()) {
+                reject(chunk, "field " + (i + 1) + " is empty");
+                return;
+            }
+        }
+        String error = validateNumbers(command, fields, count);
+        if (error != null) {
+            reject(chunk, error);
+            return;
+        }
+        chunk.rows.add(new Row(command, Arrays.copyOf(fields, count)));
+    }
+
+    private static Command command(String name) {
+        for (Command command : COMMANDS) {
+            if (command.name().equalsIgnoreCase(name)) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    private static String validateNumbers(Command command, String[] fields, int count) {
+        try {
+            if (command == Command.BIKE) {
+                double rate = Double.parseDouble(fields[3]);
+                if (!(Double.isFinite(rate) && rate > 0)) {
+                    return "hourly rate must be a number greater than zero";
+                }
+            }
+            if ((command == Command.RETURN || command == Command.RENT && count == 4)
+                && !PricingEngine.isValidDuration(Integer.parseInt(fields[count - 1]))) {
+                return "hours must be between 1 and " + PricingEngine.MAX_HOURS;
+            }
+        } catch (NumberFormatException e) {
+            return "not a number: " + fields[count - 1];
+        }
+        return null;
+    }
+
+    private static void reject(Chunk chunk, String message) {
+        chunk.malformed++;
+        if (chunk.errors.size() < ERRORS_SHOWN) {
+            chunk.errors.add(message);
+            chunk.errorLines.add(chunk.lines);
+        }
+    }
+
+    // --- Applying ---
+
+    private void apply(List<Chunk> chunks) {
+        List<Bike> bikes = new ArrayList<>();
+        List<Row> customers = new ArrayList<>();
+        List<Row> operations = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            for (Row row : chunk.rows) {
+                if (row.command == Command.BIKE) {
+                    bikes.add(new Bike(row.fields[1], row.fields[2], Double.parseDouble(row.fields[3])));
+                } else if (row.command == Command.CUSTOMER) {
+                    customers.add(row);
+                } else {
+                    operations.add(row);
+                }
+            }
+        }
+
+        for (BatchResult result : system.addBikes(bikes)) {
+            (result.isSuccess() ? succeeded : failed).get(Command.BIKE).increment();
+        }
+        inBatches(customers, row -> {
+            system.findOrCreateCustomer(row.fields[1]);
+            succeeded.get(Command.CUSTOMER).increment();
+        });
+        inBatches(operations, this::applyOperation);
+    }
+
+    // One journal write and one snapshot version per batch instead of per row
+    private void inBatches(List<Row> rows, Consumer<Row> action) {
+        for (int from = 0; from < rows.size(); from += BATCH_ROWS) {
+            List<Row> batch = rows.subList(from, Math.min(rows.size(), from + BATCH_ROWS));
+            system.batch(() -> {
+                batch.forEach(action);
+                return null;
+            });
+        }
+    }
+
+    private void applyOperation(Row row) {
+        boolean ok;
+        switch (row.command) {
+            case RENT:
+                int customerId = system.findOrCreateCustomer(row.fields[2]).getCustomerId();
+                ok = (row.fields.length == 4
+                    ? system.rentBike(customerId, row.fields[1], Integer.parseInt(row.fields[3]))
+                    : system.rentBike(customerId, row.fields[1])) != null;
+                break;
+            case RETURN:
+                ok = system.checkoutAndReturnBike(row.fields[1], Integer.parseInt(row.fields[2])) != null;
+                break;
+            case REPAIR:
+                ok = system.sendBikeToRepair(row.fields[1]);
+                break;
+            default:
+                ok = system.returnBikeFromRepair(row.fields[1]);
+                break;
+        }
+        (ok ? succeeded : failed).get(row.command).increment();
+    }
+
+    // Counts outcomes so a million-row import prints a summary, not a million lines
+    private final class CountingSink implements NoticeSink {
+        @Override
+        public void receipt(Receipt receipt) {
+        }
+
+        @Override
+        public void notice(OperationNotice notice) {
+            if (!notice.isSuccess()) {
+                failureReasons.get(notice.getReason()).increment();
+            }
+        }
+    }
+
+    // --- Summary ---
+
+    private String summarize(String source, List<Chunk> chunks, long parseNanos, long applyNanos) {
+        long lines = 0;
+        long malformed = 0;
+        long rows = 0;
+        List<String> errors = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.errors.size() && errors.size() < ERRORS_SHOWN; i++) {
+                errors.add("line " + (lines + chunk.errorLines.get(i)) + ": " + chunk.errors.get(i));
+            }
+            lines += chunk.lines;
+            malformed += chunk.malformed;
+            rows += chunk.rows.size();
+        }
+
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format(Locale.ROOT, "%n--- Import Summary: %s ---%n", source));
+        summary.append(String.format(Locale.ROOT, "Lines: %,d in %d chunks, parsed in %.0f ms (%,d rows, %,d malformed)%n",
+            lines, chunks.size(), parseNanos / 1e6, rows, malformed));
+        for (Command command : COMMANDS) {
+            long ok = succeeded.get(command).sum();
+            long rejected = failed.get(command).sum();
+            if (ok + rejected > 0) {
+                summary.append(String.format(Locale.ROOT, "  %-9s %,10d ok %,10d failed%n",
+                    command.name().toLowerCase(Locale.ROOT), ok, rejected));
+            }
+        }
+        for (Map.Entry<FailureReason, LongAdder> entry : failureReasons.entrySet()) {
+            if (entry.getValue().sum() > 0) {
+                summary.append(String.format(Locale.ROOT, "  failed: %-20s %,d%n", entry.getKey(), entry.getValue().sum()));
+            }
+        }
+        for (String error : errors) {
+            summary.append("  malformed ").append(error).append(System.lineSeparator());
+        }
+        double seconds = applyNanos / 1e9;
+        summary.append(String.format(Locale.ROOT, "Applied in %.2f s (%,.0f rows/s)%n", seconds, rows / Math.max(seconds, 1e-9)));
+        return summary.toString();
+    }
+}
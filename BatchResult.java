@@ -0,0 +1,69 @@
+import java.io.IOException;
+
+/**
+ * Outcome of one item in a batch operation, keyed by the bike (or rental) it targeted.
+ */
+public class BatchResult {
+
+    private final String key;
+    private final boolean success;
+    private final String message;
+    private final IOException journalFailure;
+
+    public BatchResult(String key, boolean success, String message) {
+        this(key, success, message, null);
+    }
+
+    private BatchResult(String key, boolean success, String message, IOException journalFailure) {
+        this.key = key;
+        this.success = success;
+        this.message = message;
+        this.journalFailure = journalFailure;
+    }
+
+    public static BatchResult ok(String key, String message) {
+        return new BatchResult(key, true, message);
+    }
+
+    public static BatchResult failed(String key, String message) {
+        return new BatchResult(key, false, message);
+    }
+
+    /**
+     * The same outcome for an item that was applied but whose journal record
+     * could not be written, so it is lost on restart unless data is saved.
+     */
+    BatchResult notJournaled(IOException failure) {
+        return new BatchResult(key, success, message, failure);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Whether a successful item survives a restart; false once the batch's
+     * journal write failed.
+     */
+    public boolean isDurable() {
+        return journalFailure == null;
+    }
+
+    public IOException getJournalFailure() {
+        return journalFailure;
+    }
+
+    @Override
+    public String toString() {
+        return (success ? "OK " : "FAILED ") + key + ": " + message
+            + (journalFailure == null ? "" : " (not journaled: " + journalFailure.getMessage() + ")");
+    }
+}
@@ -3,13 +3,21 @@ import java.io.Serializable;
 
 public class Bike implements Serializable {
     private static final long serialVersionUID = 1L; 
+
+    /**
+     * Callback fired whenever a bike moves from one status to another.
+     */
+    public interface StatusListener {
+        void onStatusChange(Bike bike, BikeStatus oldStatus, BikeStatus newStatus);
+    }
     
     private String bikeId;
     private String model; 
     private double hourlyRate;
-    private BikeStatus status;
+    private volatile BikeStatus status;
     private Date lastMaintenanceDate;
     private String notes;
+    private transient StatusListener statusListener; // Re-attached by the owning system after loading
 
     // Minimal Constructor
     public Bike(String bikeId, String model, double hourlyRate) {
@@ -30,7 +38,15 @@ public class Bike implements Serializable {
     public String getNotes() { return notes; }
 
     // Setters
-    public void setStatus(BikeStatus status) { this.status = status; }
+    public synchronized void setStatus(BikeStatus status) {
+        BikeStatus oldStatus = this.status;
+        this.status = status;
+        if (statusListener != null && oldStatus != status) {
+            statusListener.onStatusChange(this, oldStatus, status);
+        }
+    }
+
+    public void setStatusListener(StatusListener statusListener) { this.statusListener = statusListener; }
     public void setLastMaintenanceDate(Date lastMaintenanceDate) { this.lastMaintenanceDate = lastMaintenanceDate; }
     public void setNotes(String notes) { this.notes = notes; }
 
@@ -0,0 +1,74 @@
+import java.util.Locale;
+
+/**
+ * Filters, sort order and page size for BikeRentalSystem.queryBikes.
+ * Unset filters match every bike.
+ */
+public class BikeQuery {
+
+    public enum Sort {
+        ID,
+        RATE
+    }
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    private BikeStatus status;
+    private String modelContains;
+    private double minRate = 0;
+    private double maxRate = Double.MAX_VALUE;
+    private Sort sort = Sort.ID;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+
+    public BikeQuery status(BikeStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public BikeQuery modelContains(String text) {
+        this.modelContains = text == null || text.isEmpty() ? null : text.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    public BikeQuery rateBetween(double minRate, double maxRate) {
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        return this;
+    }
+
+    public BikeQuery sortBy(Sort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    public BikeQuery pageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public BikeStatus getStatus() {
+        return status;
+    }
+
+    public double getMinRate() {
+        return minRate;
+    }
+
+    public double getMaxRate() {
+        return maxRate;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public boolean matches(Bike bike) {
+        return (status == null || bike.getStatus() == status)
+            && bike.getHourlyRate() >= minRate && bike.getHourlyRate() <= maxRate
+            && (modelContains == null || bike.getModel().toLowerCase(Locale.ROOT).contains(modelContains));
+    }
+}
@@ -1,64 +1,760 @@
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 import java.io.*; 
+import java.time.ZoneId;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Manages the inventory of bikes, customers, and rental transactions, 
- * persisted using Java Serialization.
+ * persisted as a binary snapshot (see RentalSnapshot) plus an append-only
+ * journal of the operations applied since that snapshot.
+ *
+ * Safe for concurrent use by many terminals. Lookups are lock-free; each
+ * status transition runs under its own bike's monitor, so operations on
+ * different bikes do not wait on each other's state changes. They do meet
+ * in the journal: every append is serialized on the journal's monitor and,
+ * with inline writes (the default), the write itself runs there while the
+ * caller still holds its bike's monitor. enableGroupCommit moves the write
+ * and force onto a background thread, leaving only the encoding serialized.
+ * The only exclusive lock is taken while a snapshot or batch is written.
+ * Reports that must see the whole fleet at one moment read an immutable
+ * FleetSnapshot instead of the live collections.
  */
 public class BikeRentalSystem {
     
-    private static final String DATA_FILE = "bikerental_data.ser"; 
+    private static final String DATA_FILE = "bikerental_data.snap"; 
+    private static final String LEGACY_DATA_FILE = "bikerental_data.ser";
+    private static final String JOURNAL_FILE = "bikerental_data.journal";
+    private static final String HISTORY_DIRECTORY = "history";
+    private static final long SNAPSHOT_INTERVAL = 10_000; // Journal entries between automatic snapshots
+    private static final long DEADLINE_TICK_MILLIS = 1000;
+    private static final long DEFAULT_SERVICE_INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(30);
+    private static final int EVENT_RING_CAPACITY = 1 << 14;
     
-    private List<Bike> inventory = new ArrayList<>();
-    private List<Customer> customers = new ArrayList<>();
-    private List<Rental> rentals = new ArrayList<>();
+    private final Queue<Bike> inventory = new ConcurrentLinkedQueue<>();
+    private final Queue<Customer> customers = new ConcurrentLinkedQueue<>();
+    // Returned rentals: those since the last snapshot in memory, older ones archived in monthly segments
+    private volatile RentalHistory recentHistory = new RentalHistory();
+    private final HistoryArchive historyArchive;
+
+    // Lookup indexes kept in sync with the collections above (rebuilt after loadData)
+    private final Map<String, Bike> bikesById = new ConcurrentHashMap<>();
+    private final Map<Integer, Customer> customersById = new ConcurrentHashMap<>();
+    private final Map<String, Customer> customersByName = new ConcurrentHashMap<>();
+    private final CustomerSearchIndex customerSearch = new CustomerSearchIndex();
+
+    // Registry of rentals that have not been returned yet, in rental order
+    private final NavigableMap<Integer, Rental> activeRentalsById = new ConcurrentSkipListMap<>();
+    private final Map<String, Rental> activeRentalsByBikeId = new ConcurrentHashMap<>();
+    private final Collection<Rental> activeRentalsView = Collections.unmodifiableCollection(activeRentalsById.values());
+
+    // Inventory partitioned by status and sorted by ID; bikes move between buckets via Bike.setStatus
+    private final Map<BikeStatus, NavigableMap<String, Bike>> bikesByStatus = new EnumMap<>(BikeStatus.class);
+    private final Map<BikeStatus, AtomicInteger> statusCounts = new EnumMap<>(BikeStatus.class); // Skip-list size() is a scan
+    private final Bike.StatusListener statusListener = this::moveBetweenStatusBuckets;
+
+    // Sorted indexes behind the paged queries
+    private final NavigableMap<String, Bike> bikesInIdOrder = new ConcurrentSkipListMap<>();
+    private final NavigableMap<SortKey, Bike> bikesByRate = new ConcurrentSkipListMap<>();
+    private final NavigableMap<SortKey, Rental> activeRentalsByStart = new ConcurrentSkipListMap<>();
+
+    // Immutable view for long reports; each committed change swaps in a successor sharing the unchanged parts
+    private final AtomicReference<FleetSnapshot> fleetSnapshot = new AtomicReference<>(FleetSnapshot.EMPTY);
+    private final ThreadLocal<SnapshotChanges> snapshotChanges = ThreadLocal.withInitial(SnapshotChanges::new);
+    private volatile boolean indexesDeferred; // During bulkLoad: status, start-time and snapshot indexes rebuilt at the end
+
+    // Future bookings, one sorted window set per bike
+    private final ReservationBook reservations = new ReservationBook();
+
+    // Return and service deadlines; fired ones stay listed until the rental ends or the bike is serviced
+    private final DeadlineWheel<Rental> returnDeadlines = new DeadlineWheel<>(DEADLINE_TICK_MILLIS, System.currentTimeMillis());
+    private final DeadlineWheel<Bike> serviceDeadlines = new DeadlineWheel<>(DEADLINE_TICK_MILLIS, System.currentTimeMillis());
+    private final Map<Integer, DeadlineWheel.Timer<Rental>> returnTimers = new ConcurrentHashMap<>();
+    private final Map<Bike, DeadlineWheel.Timer<Bike>> serviceTimers = new ConcurrentHashMap<>();
+    private final NavigableMap<Integer, Rental> overdueRentals = new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, Bike> bikesDueForService = new ConcurrentSkipListMap<>();
+    private volatile long serviceIntervalMillis = DEFAULT_SERVICE_INTERVAL_MILLIS;
+    private volatile boolean repairWhenServiceDue;
+    private volatile PricingEngine pricing = PricingEngine.flat(ZoneId.systemDefault());
+    private final ScheduledExecutorService deadlineTicker;
     
-    private int nextCustomerId = 1;
-    private int nextRentalId = 1;
+    private final AtomicInteger nextCustomerId = new AtomicInteger(1);
+    private final AtomicInteger nextRentalId = new AtomicInteger(1);
+    private final AtomicInteger nextReservationId = new AtomicInteger(1);
+    // Stations sharing one ID space hand out interleaved rental and reservation IDs (see StationRouter)
+    private final int idOffset;
+    private final int idStride;
+
+    // Mutations share the read side; writing a snapshot takes the write side
+    private final ReentrantReadWriteLock persistenceLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private volatile RentalJournal journal; // Null until replay finishes, so replayed operations are not re-journaled
+    private long journalGeneration;
+    private volatile boolean replica; // Applies records shipped from a primary and refuses mutations of its own
+    private volatile IOException journalFailure; // Set by the first failed journal write; cleared by the next snapshot
+    private final RentalJournal.Handler replicaHandler = new JournalReplayHandler();
+
+    private final File dataDirectory;
+    private final RentalMetrics metrics = new RentalMetrics(this);
+    private volatile NoticeSink noticeSink = new ConsoleNoticeSink();
+    private final RentalAggregates aggregates = new RentalAggregates();
+    private final RentalEventRing events = new RentalEventRing(EVENT_RING_CAPACITY);
 
     public BikeRentalSystem() {
-        loadData();
+        this(new File("."));
+    }
+
+    /**
+     * Creates a system whose snapshot and journal live in the given directory.
+     */
+    public BikeRentalSystem(File dataDirectory) {
+        this(dataDirectory, 0, 1);
+    }
+
+    /**
+     * Creates one of idStride systems that share a rental and reservation ID
+     * space: this one only issues IDs n with (n - 1) % idStride == idOffset,
+     * so the ID alone tells which system owns the rental or reservation.
+     *
+     * @throws UncheckedIOException if the snapshot or journal exists but
+     *         cannot be read; carrying on would overwrite them with partial data
+     */
+    public BikeRentalSystem(File dataDirectory, int idOffset, int idStride) {
+        if (idStride <= 0 || idOffset < 0 || idOffset >= idStride) {
+            throw new IllegalArgumentException("idOffset must be in [0, idStride)");
+        }
+        this.dataDirectory = dataDirectory;
+        this.idOffset = idOffset;
+        this.idStride = idStride;
+        this.historyArchive = new HistoryArchive(new File(dataDirectory, HISTORY_DIRECTORY), ZoneId.systemDefault(), this::lookupBike);
+        for (BikeStatus status : BikeStatus.values()) {
+            bikesByStatus.put(status, new ConcurrentSkipListMap<>());
+            statusCounts.put(status, new AtomicInteger());
+        }
+        try {
+            loadData();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open data in " + dataDirectory + ": " + e.getMessage(), e);
+        }
+        alignId(nextRentalId);
+        alignId(nextReservationId);
+
+        deadlineTicker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "deadline-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        deadlineTicker.scheduleWithFixedDelay(this::checkDeadlines, DEADLINE_TICK_MILLIS, DEADLINE_TICK_MILLIS, TimeUnit.MILLISECONDS);
     }
     
     // --- Persistence Methods ---
 
-    private void loadData() {
-        File file = new File(DATA_FILE);
+    private void loadData() throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(dataDirectory.toPath()); // A new system starts empty; only unreadable data is fatal
+        File file = new File(dataDirectory, DATA_FILE);
+        File legacyFile = new File(dataDirectory, LEGACY_DATA_FILE);
+        boolean migrating = false;
+        List<Rental> loadedRentals = new ArrayList<>();
+        List<Reservation> loadedReservations = new ArrayList<>();
+
         if (file.exists() && file.length() > 0) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(DATA_FILE))) {
-                
-                inventory = (List<Bike>) ois.readObject();
-                customers = (List<Customer>) ois.readObject();
-                rentals = (List<Rental>) ois.readObject();
-                
-                nextCustomerId = ois.readInt();
-                nextRentalId = ois.readInt();
-                
-                System.out.println("✅ Loaded data successfully from " + DATA_FILE);
+            RentalSnapshot.Contents contents = RentalSnapshot.read(file.toPath(), aggregates);
+            inventory.addAll(contents.inventory);
+            customers.addAll(contents.customers);
+            loadedRentals.addAll(contents.rentals);
+            nextCustomerId.set(contents.nextCustomerId);
+            nextRentalId.set(contents.nextRentalId);
+            journalGeneration = contents.journalGeneration;
+            historyArchive.restore(contents.archivedSegments);
+            loadedReservations.addAll(contents.reservations);
+            nextReservationId.set(contents.nextReservationId);
 
-            } catch (IOException | ClassNotFoundException e) {
-                System.err.println("Error loading data: " + e.getMessage());
-            }
+            System.out.println("✅ Loaded data successfully from " + DATA_FILE);
+        } else if (legacyFile.exists() && legacyFile.length() > 0) {
+            loadLegacyData(legacyFile, loadedRentals);
+            migrating = true;
         }
+        rebuildIndexes(loadedRentals);
+        reservations.clear();
+        loadedReservations.forEach(reservations::add);
+        if (migrating) {
+            // The serialized format kept returned rentals instead of totals
+            aggregates.clear();
+            aggregates.recordAll(recentHistory);
+        }
+        replayJournal();
+
+        if (migrating && writeSnapshot()) {
+            System.out.println("✅ Migrated " + LEGACY_DATA_FILE + " to " + DATA_FILE);
+        }
+        metrics.recordSuccess(RentalMetrics.Operation.LOAD, System.nanoTime() - start);
     }
-    
-    public void saveData() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(DATA_FILE))) { 
+
+    /**
+     * Reads the Java Serialization format used before RentalSnapshot existed.
+     * Only needed once: the next snapshot is written in the binary format.
+     */
+    @SuppressWarnings("unchecked")
+    private void loadLegacyData(File legacyFile, List<Rental> loadedRentals) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(legacyFile)))) {
             
-            oos.writeObject(inventory);
-            oos.writeObject(customers);
-            oos.writeObject(rentals);
+            inventory.addAll((List<Bike>) ois.readObject());
+            customers.addAll((List<Customer>) ois.readObject());
+            loadedRentals.addAll((List<Rental>) ois.readObject());
             
-            oos.writeInt(nextCustomerId);
-            oos.writeInt(nextRentalId);
+            nextCustomerId.set(ois.readInt());
+            nextRentalId.set(ois.readInt());
+
+            try {
+                journalGeneration = ois.readLong();
+            } catch (EOFException e) {
+                journalGeneration = 0; // Snapshot written before journaling existed
+            }
             
+            System.out.println("✅ Loaded data successfully from " + LEGACY_DATA_FILE);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unrecognized data in " + LEGACY_DATA_FILE, e);
+        }
+    }
+
+    /**
+     * Opens the journal and replays it. Never leaves the system without a
+     * journal: a failure here must stop the caller, or later operations would
+     * go unrecorded.
+     */
+    private void replayJournal() throws IOException {
+        RentalJournal opened = new RentalJournal(new File(dataDirectory, JOURNAL_FILE).toPath());
+        beginSnapshotChange();
+        try {
+            opened.openAndReplay(journalGeneration, new JournalReplayHandler());
+            if (opened.getEntryCount() > 0) {
+                System.out.println("✅ Replayed " + opened.getEntryCount() + " journal entries from " + JOURNAL_FILE);
+            }
+            journal = opened;
+        } catch (IOException e) {
+            try {
+                opened.close();
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+            throw new IOException("Cannot replay " + JOURNAL_FILE + ": " + e.getMessage(), e);
+        } finally {
+            commitSnapshotChange();
+        }
+    }
+    
+    public void saveData() {
+        long start = System.nanoTime();
+        if (writeSnapshot()) {
+            metrics.recordSuccess(RentalMetrics.Operation.SAVE, System.nanoTime() - start);
             System.out.println("✅ Data saved successfully to " + DATA_FILE);
+        } else {
+            metrics.recordFailure(RentalMetrics.Operation.SAVE, FailureReason.IO_ERROR, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes a full snapshot and then truncates the journal it supersedes. The
+     * snapshot carries the next journal generation, so a crash between the two
+     * steps leaves a stale journal that loadData knows to ignore. Mutations are
+     * held off for the duration so the snapshot and journal stay consistent.
+     */
+    private boolean writeSnapshot() {
+        Lock lock = persistenceLock.writeLock();
+        lock.lock();
+        try {
+            long nextGeneration = journalGeneration + 1;
+            File tempFile = new File(dataDirectory, DATA_FILE + ".tmp");
+            Map<String, Long> segmentLengths;
+            try {
+                // Archive returns first; the snapshot then commits the segment lengths that include them
+                segmentLengths = historyArchive.append(recentHistory);
+                reservations.removeEndedBy(System.currentTimeMillis());
+                RentalSnapshot.write(tempFile.toPath(), nextGeneration, nextCustomerId.get(), nextRentalId.get(),
+                    inventory, customers, activeRentalsById.values(), segmentLengths, aggregates,
+                    nextReservationId.get(), reservations.all());
+            } catch (IOException e) {
+                System.err.println("Error saving data: " + e.getMessage());
+                return false;
+            }
+
+            try {
+                Files.move(tempFile.toPath(), new File(dataDirectory, DATA_FILE).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                journalGeneration = nextGeneration;
+                historyArchive.commit(segmentLengths);
+                recentHistory = new RentalHistory();
+                if (journal != null) {
+                    try {
+                        journal.reset(journalGeneration);
+                    } catch (IOException e) {
+                        // The journal still carries the old generation, so nothing appended to it would be replayed
+                        throw journalFailed(e);
+                    }
+                }
+                if (journalFailure != null) {
+                    journalFailure = null; // The snapshot holds every change the journal missed
+                    System.out.println("✅ Journal restarted; changes are accepted again");
+                }
+                return true;
+            } catch (IOException | ReadOnlyException e) {
+                System.err.println("Error saving data: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs a mutation under the shared side of the persistence lock, so it never
+     * interleaves with a snapshot while mutations still run in parallel, then
+     * compacts the journal once it has grown past SNAPSHOT_INTERVAL entries.
+     */
+    private <T> T mutate(Supplier<T> operation) {
+        checkWritable();
+        T result;
+        Lock lock = persistenceLock.readLock();
+        lock.lock();
+        try {
+            result = operation.get();
+        } finally {
+            lock.unlock();
+        }
+        if (!persistenceLock.isWriteLockedByCurrentThread()) {
+            compactIfNeeded(); // Inside a batch, the batch compacts once it completes
+        }
+        return result;
+    }
+
+    private void checkWritable() {
+        if (replica) {
+            throw new ReadOnlyException();
+        }
+        IOException failure = journalFailure;
+        if (failure != null) {
+            throw new ReadOnlyException(journalFailureMessage(failure), failure);
+        }
+        RentalJournal current = journal;
+        failure = current != null ? current.getWriteFailure() : null;
+        if (failure != null) {
+            throw journalFailed(failure); // The group-commit writer stopped since the last append
+        }
+    }
+
+    /**
+     * Records the first journal write failure and returns the exception that
+     * refuses the operation. Until a snapshot is saved, every later change is
+     * refused too, rather than acknowledged and then lost on restart.
+     */
+    private ReadOnlyException journalFailed(IOException e) {
+        if (journalFailure == null) {
+            journalFailure = e;
+            System.err.println("Error writing journal, refusing changes until data is saved: " + e);
+        }
+        return new ReadOnlyException(journalFailureMessage(e), e);
+    }
+
+    private static String journalFailureMessage(IOException failure) {
+        return "The journal could not be written (" + failure + "); changes are refused until data is saved";
+    }
+
+    /**
+     * Thrown by every change made to a replica before it is promoted, and by
+     * every change made after a journal write failed until data is saved.
+     */
+    public static final class ReadOnlyException extends IllegalStateException {
+        private static final long serialVersionUID = 1L;
+
+        ReadOnlyException() {
+            super("This system is a read-only replica");
+        }
+
+        ReadOnlyException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private void compactIfNeeded() {
+        RentalJournal current = journal;
+        if (current != null && current.getEntryCount() >= SNAPSHOT_INTERVAL && compacting.compareAndSet(false, true)) {
+            try {
+                writeSnapshot();
+            } finally {
+                compacting.set(false);
+            }
+        }
+    }
+
+    /**
+     * Runs a bulk load with automatic snapshots held back, so a large import
+     * does not rewrite the snapshot every SNAPSHOT_INTERVAL entries on the
+     * way. The journal grows meanwhile; call saveData afterwards.
+     *
+     * The sorted indexes each operation would otherwise update one row at a
+     * time (bikes by status, active rentals by start, return deadlines and
+     * the fleet snapshot) are rebuilt once when the load finishes. Until
+     * then, listings by status or start time and snapshot() lag behind;
+     * lookups by ID and every rule the operations enforce stay current.
+     */
+    public <T> T bulkLoad(Supplier<T> load) {
+        while (!compacting.compareAndSet(false, true)) {
+            Thread.yield(); // An automatic snapshot is already being written
+        }
+        indexesDeferred = true;
+        try {
+            return load.get();
+        } finally {
+            Lock lock = persistenceLock.writeLock();
+            lock.lock();
+            try {
+                indexesDeferred = false;
+                rebuildDeferredIndexes();
+            } finally {
+                lock.unlock();
+                compacting.set(false);
+            }
+        }
+    }
+
+    /**
+     * Flushes and closes the journal. The system must not be mutated afterwards.
+     */
+    public void close() {
+        deadlineTicker.shutdownNow();
+        events.close();
+        RentalJournal current = journal;
+        journal = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                System.err.println("Error closing journal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Moves journal writes onto a background group-commit writer. Mutations then
+     * return as soon as their record is queued (fire-and-forget); callers that
+     * need crash safety follow up with awaitDurable.
+     */
+    public void enableGroupCommit(long maxLatencyMillis, int maxBatchRecords) {
+        RentalJournal current = journal;
+        if (current != null) {
+            current.enableGroupCommit(maxLatencyMillis, TimeUnit.MILLISECONDS, maxBatchRecords);
+        }
+    }
+
+    /**
+     * Blocks until every operation journaled by the calling thread is on disk.
+     * Returns false if the journal could not be written; changes are then
+     * refused until data is saved.
+     */
+    public boolean awaitDurable() {
+        RentalJournal current = journal;
+        if (current == null) {
+            return true;
+        }
+        try {
+            current.awaitDurable();
+            return true;
         } catch (IOException e) {
-            System.err.println("Error saving data: " + e.getMessage());
+            journalFailed(e);
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface JournalWrite {
+        void writeTo(RentalJournal journal) throws IOException;
+    }
+
+    /**
+     * Appends one operation to the journal. A no-op while the journal is being
+     * replayed. Callers record before they change any state, so a failed write
+     * (thrown as ReadOnlyException) leaves memory matching the journal.
+     */
+    private void recordOperation(JournalWrite write) {
+        RentalJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        try {
+            write.writeTo(current);
+        } catch (IOException e) {
+            throw journalFailed(e);
+        }
+    }
+
+    /**
+     * Re-applies journaled operations on top of the loaded snapshot without
+     * journaling them again or printing receipts.
+     */
+    private class JournalReplayHandler implements RentalJournal.Handler {
+        @Override
+        public void onAddBike(String bikeId, String model, double hourlyRate) {
+            publishBike(new Bike(bikeId, model, hourlyRate));
+        }
+
+        @Override
+        public void onAddCustomer(int customerId, String name) {
+            Customer customer = new Customer(customerId, name);
+            if (publishCustomer(customer)) {
+                customersByName.putIfAbsent(normalizeKey(name), customer);
+            }
+        }
+
+        @Override
+        public void onRentBike(int rentalId, int customerId, String bikeId, long startTimeMillis, long expectedReturnMillis) {
+            Customer customer = customersById.get(customerId);
+            Bike bike = bikesById.get(normalizeKey(bikeId));
+            if (customer != null && bike != null) {
+                applyRentBike(new Rental(rentalId, customer, bike, startTimeMillis, expectedReturnMillis, false));
+            }
+        }
+
+        @Override
+        public void onReturnBike(int rentalId, int durationHours, long finalChargePaise, long returnTimeMillis) {
+            Rental rental = activeRentalsById.get(rentalId);
+            if (rental != null) {
+                rental.markReturned(durationHours, finalChargePaise, returnTimeMillis);
+                unregisterActiveRental(rental);
+                archiveReturnedRental(rental);
+            }
+        }
+
+        @Override
+        public void onSendToRepair(String bikeId) {
+            updateBikeStatus(bikeId, BikeStatus.IN_REPAIR);
+        }
+
+        @Override
+        public void onReturnFromRepair(String bikeId, long servicedMillis) {
+            updateBikeStatus(bikeId, BikeStatus.AVAILABLE);
+            Bike bike = lookupBike(bikeId);
+            if (bike != null) {
+                bike.setLastMaintenanceDate(new Date(servicedMillis));
+                scheduleService(bike);
+                stageBike(bike);
+            }
+        }
+
+        @Override
+        public void onReserveBike(int reservationId, int customerId, String bikeId, long startMillis, long endMillis) {
+            Customer customer = customersById.get(customerId);
+            Bike bike = bikesById.get(normalizeKey(bikeId));
+            if (customer != null && bike != null) {
+                reservations.add(new Reservation(reservationId, customer, bike, startMillis, endMillis));
+                advancePast(nextReservationId, reservationId);
+            }
+        }
+
+        @Override
+        public void onReleaseReservation(int reservationId) {
+            reservations.remove(reservationId);
+        }
+    }
+
+    // --- Index Maintenance ---
+
+    private static String normalizeKey(String key) {
+        return key.toLowerCase(Locale.ROOT);
+    }
+
+    private void rebuildIndexes(Collection<Rental> loadedRentals) {
+        bikesById.clear();
+        customersById.clear();
+        customersByName.clear();
+        customerSearch.clear();
+        activeRentalsById.clear();
+        activeRentalsByBikeId.clear();
+        activeRentalsByStart.clear();
+        bikesByStatus.values().forEach(Map::clear);
+        statusCounts.values().forEach(count -> count.set(0));
+        bikesInIdOrder.clear();
+        bikesByRate.clear();
+        returnTimers.values().forEach(returnDeadlines::cancel);
+        returnTimers.clear();
+        overdueRentals.clear();
+        serviceTimers.values().forEach(serviceDeadlines::cancel);
+        serviceTimers.clear();
+        bikesDueForService.clear();
+        for (Bike bike : inventory) {
+            // First entry wins, matching the old first-match stream lookup
+            if (bikesById.putIfAbsent(normalizeKey(bike.getBikeId()), bike) == null) {
+                indexBike(bike);
+            }
+        }
+        for (Customer customer : customers) {
+            if (customersById.putIfAbsent(customer.getCustomerId(), customer) == null) {
+                customerSearch.add(customer);
+            }
+            customersByName.putIfAbsent(normalizeKey(customer.getName()), customer);
+        }
+        // Returned rentals in the serialized format arrive as objects; fold them into the history
+        for (Rental rental : loadedRentals) {
+            if (!rental.isReturned()) {
+                registerActiveRental(rental);
+            } else {
+                recentHistory.append(rental);
+            }
+        }
+        rebuildFleetSnapshot(0);
+    }
+
+    // Catches up on what bulkLoad skipped, from the bikes' statuses and the rentals still active
+    private void rebuildDeferredIndexes() {
+        bikesByStatus.values().forEach(Map::clear);
+        statusCounts.values().forEach(count -> count.set(0));
+        for (Bike bike : bikesInIdOrder.values()) {
+            bikesByStatus.get(bike.getStatus()).put(normalizeKey(bike.getBikeId()), bike);
+            statusCounts.get(bike.getStatus()).incrementAndGet();
+        }
+        activeRentalsByStart.clear();
+        for (Rental rental : activeRentalsById.values()) {
+            activeRentalsByStart.put(startKey(rental), rental);
+            if (!returnTimers.containsKey(rental.getRentalId()) && !overdueRentals.containsKey(rental.getRentalId())) {
+                returnTimers.put(rental.getRentalId(), returnDeadlines.schedule(rental, rental.getExpectedReturnMillis()));
+            }
+        }
+        rebuildFleetSnapshot(fleetSnapshot.get().getVersion() + 1);
+    }
+
+    private void rebuildFleetSnapshot(long version) {
+        List<Customer> customersInIdOrder = new ArrayList<>(customersById.values());
+        customersInIdOrder.sort(Comparator.comparingInt(Customer::getCustomerId));
+        fleetSnapshot.set(FleetSnapshot.of(version, bikesInIdOrder.values(), customersInIdOrder, activeRentalsById.values()));
+    }
+
+    private void indexBike(Bike bike) {
+        String key = normalizeKey(bike.getBikeId());
+        bikesInIdOrder.put(key, bike);
+        bikesByRate.put(new SortKey(bike.getHourlyRate(), key), bike);
+        bikesByStatus.get(bike.getStatus()).put(key, bike);
+        statusCounts.get(bike.getStatus()).incrementAndGet();
+        bike.setStatusListener(statusListener);
+        scheduleService(bike);
+    }
+
+    // Runs under the bike's monitor, so moves for one bike never interleave
+    private void moveBetweenStatusBuckets(Bike bike, BikeStatus oldStatus, BikeStatus newStatus) {
+        if (indexesDeferred) {
+            return;
+        }
+        String key = normalizeKey(bike.getBikeId());
+        if (bikesByStatus.get(oldStatus).remove(key, bike)) {
+            statusCounts.get(oldStatus).decrementAndGet();
+            bikesByStatus.get(newStatus).put(key, bike);
+            statusCounts.get(newStatus).incrementAndGet();
+            stageBike(bike);
+        }
+    }
+
+    // Moves a just-returned rental into the columnar history and the running totals
+    private void archiveReturnedRental(Rental rental) {
+        recentHistory.append(rental);
+        aggregates.record(rental.getBike(), rental.getCustomer().getCustomerId(), rental.getDurationHours(),
+            rental.getFinalChargePaise(), rental.getReturnTimeMillis());
+    }
+
+    private void registerActiveRental(Rental rental) {
+        activeRentalsById.put(rental.getRentalId(), rental);
+        activeRentalsByBikeId.put(normalizeKey(rental.getBike().getBikeId()), rental);
+        if (indexesDeferred) {
+            return;
+        }
+        activeRentalsByStart.put(startKey(rental), rental);
+        returnTimers.put(rental.getRentalId(), returnDeadlines.schedule(rental, rental.getExpectedReturnMillis()));
+    }
+
+    private void unregisterActiveRental(Rental rental) {
+        activeRentalsById.remove(rental.getRentalId(), rental);
+        activeRentalsByBikeId.remove(normalizeKey(rental.getBike().getBikeId()), rental);
+        if (!indexesDeferred) {
+            activeRentalsByStart.remove(startKey(rental), rental);
+        }
+        DeadlineWheel.Timer<Rental> timer = returnTimers.remove(rental.getRentalId());
+        if (timer != null) {
+            returnDeadlines.cancel(timer);
+        }
+        overdueRentals.remove(rental.getRentalId(), rental);
+        stageSnapshotChange(snapshot -> snapshot.withoutRental(rental.getRentalId()));
+    }
+
+    // (Re)starts the bike's service countdown from its last maintenance
+    private void scheduleService(Bike bike) {
+        long dueMillis = bike.getLastMaintenanceDate().getTime() + serviceIntervalMillis;
+        DeadlineWheel.Timer<Bike> previous = serviceTimers.put(bike, serviceDeadlines.schedule(bike, dueMillis));
+        if (previous != null) {
+            serviceDeadlines.cancel(previous);
+        }
+        if (dueMillis > System.currentTimeMillis()) {
+            bikesDueForService.remove(normalizeKey(bike.getBikeId()), bike);
+        }
+    }
+
+    private static SortKey startKey(Rental rental) {
+        return new SortKey(rental.getStartTimeMillis(), Integer.toString(rental.getRentalId()));
+    }
+
+    /**
+     * Index key ordered by a numeric value, then by an ID that breaks ties.
+     */
+    private static final class SortKey implements Comparable<SortKey> {
+        final double value;
+        final String tieBreak;
+
+        SortKey(double value, String tieBreak) {
+            this.value = value;
+            this.tieBreak = tieBreak;
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            int byValue = Double.compare(value, other.value);
+            return byValue != 0 ? byValue : tieBreak.compareTo(other.tieBreak);
+        }
+
+        String toText() {
+            return value + "|" + tieBreak;
+        }
+
+        static SortKey parse(String text) {
+            int bar = text.indexOf('|');
+            if (bar < 0) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new SortKey(Double.parseDouble(text.substring(0, bar)), text.substring(bar + 1));
         }
     }
 
@@ -69,51 +765,265 @@ public class BikeRentalSystem {
     }
     
     public int getNextCustomerId() {
-        return nextCustomerId++;
+        return nextCustomerId.getAndIncrement();
     }
     
     public int getNextRentalId() {
-        return nextRentalId++;
+        return claimId(nextRentalId);
+    }
+
+    private int claimId(AtomicInteger counter) {
+        return counter.getAndAdd(idStride);
+    }
+
+    private void advancePast(AtomicInteger counter, int id) {
+        counter.accumulateAndGet(id + idStride, Math::max);
+    }
+
+    // Moves the counter up to this system's next ID, e.g. after data written with another stride
+    private void alignId(AtomicInteger counter) {
+        counter.updateAndGet(next -> next + Math.floorMod(idOffset - (next - 1), idStride));
     }
 
     // --- Customer Management (In-Memory) ---
 
-    public void addCustomer(Customer customer) {
-        customers.add(customer);
+    /**
+     * Adds a customer unless one with the same ID already exists.
+     */
+    public boolean addCustomer(Customer customer) {
+        return mutate(() -> {
+            if (!publishCustomer(customer)) {
+                return false;
+            }
+            customersByName.putIfAbsent(normalizeKey(customer.getName()), customer);
+            return true;
+        });
+    }
+
+    /**
+     * Returns the customer with this name (ignoring case), creating and
+     * journaling a new one atomically if there is none yet.
+     */
+    public Customer findOrCreateCustomer(String name) {
+        Customer existing = customersByName.get(normalizeKey(name));
+        if (existing != null) {
+            return existing;
+        }
+        return mutate(() -> customersByName.computeIfAbsent(normalizeKey(name), key -> {
+            Customer customer = new Customer(getNextCustomerId(), name);
+            publishCustomer(customer);
+            return customer;
+        }));
+    }
+
+    /**
+     * Claims the customer's ID slot and journals the customer before it becomes
+     * visible to findCustomer, so no rental of it can be journaled first.
+     */
+    private boolean publishCustomer(Customer customer) {
+        Customer winner = customersById.computeIfAbsent(customer.getCustomerId(), id -> {
+            recordOperation(j -> j.appendAddCustomer(customer.getCustomerId(), customer.getName()));
+            customers.add(customer);
+            customerSearch.add(customer);
+            nextCustomerId.accumulateAndGet(id + 1, Math::max);
+            stageSnapshotChange(snapshot -> snapshot.withCustomer(customer));
+            return customer;
+        });
+        return winner == customer;
     }
 
-    public List<Customer> getCustomers() {
-        return customers;
+    /**
+     * Returns a read-only view of all customers.
+     */
+    public Collection<Customer> getCustomers() {
+        return Collections.unmodifiableCollection(customers);
     }
     
     public Optional<Customer> findCustomer(int customerId) {
-        return customers.stream()
-            .filter(c -> c.getCustomerId() == customerId)
-            .findFirst();
+        long start = System.nanoTime();
+        Customer customer = customersById.get(customerId);
+        metrics.recordSuccess(RentalMetrics.Operation.LOOKUP, System.nanoTime() - start);
+        return Optional.ofNullable(customer);
     }
     
     public Optional<Customer> findCustomerByName(String name) {
-        return customers.stream()
-            .filter(c -> c.getName().equalsIgnoreCase(name))
-            .findFirst();
+        if (name == null) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        Customer customer = customersByName.get(normalizeKey(name));
+        metrics.recordSuccess(RentalMetrics.Operation.LOOKUP, System.nanoTime() - start);
+        return Optional.ofNullable(customer);
+    }
+
+    /**
+     * Returns up to limit existing customers whose name starts with, or is a
+     * few typos away from, the given text, best match first. Lets callers
+     * offer a pick list before findOrCreateCustomer adds a near-duplicate.
+     */
+    public List<CustomerMatch> searchCustomers(String text, int limit) {
+        long start = System.nanoTime();
+        List<CustomerMatch> matches = customerSearch.search(text, limit);
+        metrics.recordSuccess(RentalMetrics.Operation.LOOKUP, System.nanoTime() - start);
+        return matches;
     }
 
     // --- Bike Inventory Management (In-Memory) ---
 
-    public void addBike(Bike bike) {
-        inventory.add(bike);
+    /**
+     * Adds a bike unless one with the same ID (ignoring case) already exists.
+     */
+    public boolean addBike(Bike bike) {
+        return mutate(() -> publishBike(bike));
+    }
+
+    /**
+     * Claims the bike's ID slot and journals the bike before it becomes visible
+     * to findBike, so no rental or repair of it can be journaled first.
+     */
+    private boolean publishBike(Bike bike) {
+        Bike winner = bikesById.computeIfAbsent(normalizeKey(bike.getBikeId()), key -> {
+            recordOperation(j -> j.appendAddBike(bike.getBikeId(), bike.getModel(), bike.getHourlyRate()));
+            inventory.add(bike);
+            indexBike(bike);
+            stageBike(bike);
+            events.publish(RentalEvent.Type.BIKE_ADDED, bike.getBikeId(), 0, 0, 0, 0);
+            return bike;
+        });
+        return winner == bike;
     }
 
     public Optional<Bike> findBike(String bikeId) {
-        return inventory.stream()
-            .filter(b -> b.getBikeId().equalsIgnoreCase(bikeId))
-            .findFirst();
+        long start = System.nanoTime();
+        Bike bike = lookupBike(bikeId);
+        metrics.recordSuccess(RentalMetrics.Operation.LOOKUP, System.nanoTime() - start);
+        return Optional.ofNullable(bike);
+    }
+
+    // Index lookup for internal callers, which record their own operation metrics
+    private Bike lookupBike(String bikeId) {
+        return bikeId == null ? null : bikesById.get(normalizeKey(bikeId));
+    }
+
+    /**
+     * Returns a read-only live view of the bikes currently in the given status, in ID order.
+     */
+    public Collection<Bike> getBikesByStatus(BikeStatus status) {
+        return Collections.unmodifiableCollection(bikesByStatus.get(status).values());
+    }
+
+    public int countBikes(BikeStatus status) {
+        return statusCounts.get(status).get();
+    }
+
+    /**
+     * Returns one page of bikes matching the query. Pass null for the first
+     * page, then a cursor from the previous result to move forward or back.
+     * ID order with a status filter and rate order with a rate range seek
+     * straight into their index; other filters skip non-matching bikes.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or from another sort order
+     */
+    public Page<Bike> queryBikes(BikeQuery query, String cursor) {
+        return queryBikes(query, cursor, query::matches);
+    }
+
+    private Page<Bike> queryBikes(BikeQuery query, String cursor, Predicate<Bike> filter) {
+        if (query.getSort() == BikeQuery.Sort.RATE) {
+            NavigableMap<SortKey, Bike> range = bikesByRate.subMap(
+                new SortKey(query.getMinRate(), ""), true, new SortKey(Math.nextUp(query.getMaxRate()), ""), false);
+            return Page.read(range, "rate", cursor, filter, query.getPageSize(), SortKey::toText, SortKey::parse);
+        }
+        NavigableMap<String, Bike> index = query.getStatus() != null ? bikesByStatus.get(query.getStatus()) : bikesInIdOrder;
+        return Page.read(index, "id", cursor, filter, query.getPageSize(), key -> key, text -> text);
+    }
+
+    public int countActiveRentals() {
+        return activeRentalsByBikeId.size();
+    }
+
+    public RentalMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Streams returned rentals matching the query, oldest month first. Archived
+     * months outside the query's return-time range are never read, and the
+     * ones inside are read lazily as the stream advances.
+     */
+    public Stream<HistoryRecord> queryHistory(HistoryQuery query) {
+        Lock lock = persistenceLock.readLock();
+        lock.lock();
+        try {
+            // Capture both halves together so a concurrent snapshot cannot move rows between them
+            Stream<HistoryRecord> archived = historyArchive.records(query.getFromMillis(), query.getToMillis());
+            Stream<HistoryRecord> recent = recentHistory.records();
+            return Stream.concat(archived, recent).filter(query::matches);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Running revenue and rented-hours totals, updated on every return.
+     */
+    public RentalAggregates getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * Recomputes the aggregates from the full rental history in parallel and
+     * lists any disagreement with the running totals. Mutations are held off
+     * only while the totals are copied and the history is pinned (committed
+     * segment lengths and the recent rows present); the archive is then read
+     * without any lock, so returns carry on while it is scanned.
+     */
+    public List<String> verifyAggregates() {
+        RentalAggregates running;
+        Stream<HistoryRecord> history;
+        Lock lock = persistenceLock.writeLock();
+        lock.lock();
+        try {
+            running = aggregates.copy();
+            // Both streams fix their extent here and read lazily; committed rows are never rewritten
+            history = Stream.concat(historyArchive.records(), recentHistory.records());
+        } finally {
+            lock.unlock();
+        }
+        return running.verify(history);
+    }
+
+    /**
+     * Delivers every later bike addition, rental, return and repair transition
+     * to the handler on its own thread. Publishing is lock-free, so a slow
+     * subscriber costs the operations nothing unless it chose BLOCK and fell
+     * a full ring behind. Events are published while the operation still
+     * holds the bike's monitor and the persistence lock, so a BLOCK
+     * subscriber that stalls stalls rentals and snapshots with it; anything
+     * that waits on I/O should choose DROP_OLDEST.
+     */
+    public RentalEventRing.Subscription subscribe(String name, RentalEventRing.Backpressure backpressure,
+                                                  RentalEventRing.Handler handler) {
+        return events.subscribe(name, backpressure, handler);
+    }
+
+    public RentalEventRing getEventRing() {
+        return events;
+    }
+
+    /**
+     * Routes receipts and operation notices to the given sink instead of the console.
+     */
+    public void setNoticeSink(NoticeSink noticeSink) {
+        this.noticeSink = noticeSink;
+    }
+
+    public NoticeSink getNoticeSink() {
+        return noticeSink;
     }
 
     public void listAvailableBikes() {
-        List<Bike> available = inventory.stream()
-                                        .filter(b -> b.getStatus() == BikeStatus.AVAILABLE)
-                                        .collect(Collectors.toList());
+        Collection<Bike> available = bikesByStatus.get(BikeStatus.AVAILABLE).values();
         
         if (available.isEmpty()) {
             System.out.println("  (No bikes currently available for rent.)");
@@ -128,160 +1038,997 @@ public class BikeRentalSystem {
         }
     }
 
+    /**
+     * Prints every bike in ID order, with statuses as of one moment even while
+     * rentals continue.
+     */
     public void listAllBikes() {
-        if (inventory.isEmpty()) {
+        FleetSnapshot snapshot = snapshot();
+        if (snapshot.countBikes() == 0) {
             System.out.println("  (No bikes in the inventory.)");
         } else {
             System.out.println("----------------------------------------------------------");
             System.out.printf("| %-8s | %-25s | %-12s | %-10s |\n", "ID", "Bike Model", "Rent", "Status");
             System.out.println("----------------------------------------------------------");
-            for (Bike bike : inventory) {
-                bike.displayInfoWithStatus();
+            for (FleetSnapshot.BikeState bike : snapshot.getBikes()) {
+                System.out.printf("| %-8s | %-25s | %-12.2f rs / hr | %-10s |\n",
+                    bike.getBikeId(), bike.getModel(), bike.getHourlyRate(), bike.getStatus());
             }
             System.out.println("----------------------------------------------------------");
         }
     }
 
     private void updateBikeStatus(String bikeId, BikeStatus status) {
-        findBike(bikeId).ifPresent(b -> b.setStatus(status));
+        Bike bike = lookupBike(bikeId);
+        if (bike != null) {
+            bike.setStatus(status);
+        }
     }
 
-    public void sendBikeToRepair(String bikeId) {
-        Optional<Bike> bikeOpt = findBike(bikeId);
-        if (bikeOpt.isPresent()) {
-            Bike bike = bikeOpt.get();
-            if (bike.getStatus() == BikeStatus.AVAILABLE) {
-                updateBikeStatus(bikeId, BikeStatus.IN_REPAIR);
-                System.out.println("✅ Bike " + bikeId + " sent to repair.");
-            } else {
-                System.out.println("❌ Bike " + bikeId + " cannot be sent to repair. Status: " + bike.getStatus());
-            }
+    public boolean sendBikeToRepair(String bikeId) {
+        return transitionForRepair(bikeId, BikeStatus.AVAILABLE, BikeStatus.IN_REPAIR);
+    }
+
+    public boolean returnBikeFromRepair(String bikeId) {
+        return transitionForRepair(bikeId, BikeStatus.IN_REPAIR, BikeStatus.AVAILABLE);
+    }
+
+    private boolean transitionForRepair(String bikeId, BikeStatus expected, BikeStatus next) {
+        long start = System.nanoTime();
+        RentalMetrics.Operation operation = next == BikeStatus.IN_REPAIR
+            ? RentalMetrics.Operation.SEND_TO_REPAIR : RentalMetrics.Operation.RETURN_FROM_REPAIR;
+        Bike bike = lookupBike(bikeId);
+        if (bike == null) {
+            metrics.recordFailure(operation, FailureReason.BIKE_NOT_FOUND, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.bikeFailed(operation, FailureReason.BIKE_NOT_FOUND, bikeId, null));
+            return false;
+        }
+
+        boolean moved = mutate(() -> applyRepairTransition(bike, expected, next));
+        if (moved) {
+            metrics.recordSuccess(operation, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.succeeded(operation, bikeId));
         } else {
-            System.out.println("❌ Bike " + bikeId + " not found.");
+            FailureReason reason = next == BikeStatus.IN_REPAIR ? FailureReason.BIKE_NOT_AVAILABLE : FailureReason.BIKE_NOT_IN_REPAIR;
+            metrics.recordFailure(operation, reason, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.bikeFailed(operation, reason, bikeId, bike.getStatus()));
         }
+        return moved;
     }
 
-    public void returnBikeFromRepair(String bikeId) {
-        Optional<Bike> bikeOpt = findBike(bikeId);
-        if (bikeOpt.isPresent()) {
-            Bike bike = bikeOpt.get();
-            if (bike.getStatus() == BikeStatus.IN_REPAIR) {
-                updateBikeStatus(bikeId, BikeStatus.AVAILABLE);
-                System.out.println("✅ Bike " + bikeId + " returned from repair.");
-            } else {
-                System.out.println("❌ Bike " + bikeId + " is not in repair. Status: " + bike.getStatus());
+    private boolean applyRepairTransition(Bike bike, BikeStatus expected, BikeStatus next) {
+        // Journal under the bike's monitor so records for one bike keep their order
+        synchronized (bike) {
+            beginSnapshotChange();
+            try {
+                // Status changes also lock the bike, so it cannot move between this check and setStatus
+                if (bike.getStatus() != expected) {
+                    return false;
+                }
+                if (next == BikeStatus.IN_REPAIR) {
+                    recordOperation(j -> j.appendSendToRepair(bike.getBikeId()));
+                    bike.setStatus(next);
+                    events.publish(RentalEvent.Type.SENT_TO_REPAIR, bike.getBikeId(), 0, 0, 0, 0);
+                } else {
+                    // Coming back from repair counts as a service and restarts the interval
+                    long servicedMillis = System.currentTimeMillis();
+                    recordOperation(j -> j.appendReturnFromRepair(bike.getBikeId(), servicedMillis));
+                    bike.setStatus(next);
+                    bike.setLastMaintenanceDate(new Date(servicedMillis));
+                    scheduleService(bike);
+                    stageBike(bike);
+                    events.publish(RentalEvent.Type.BACK_FROM_REPAIR, bike.getBikeId(), 0, 0, 0, 0);
+                }
+                return true;
+            } finally {
+                commitSnapshotChange();
             }
-        } else {
-            System.out.println("❌ Bike " + bikeId + " not found.");
         }
     }
     
     // --- Cost Estimation ---
     
+    /**
+     * Prices renting the bike from now for the given hours under the current
+     * pricing rules, in rupees. Empty if the bike does not exist, or, with a
+     * BAD_DURATION notice, if the duration cannot be priced.
+     */
     public Optional<Double> calculateCostEstimate(String bikeId, int durationHours) {
-        Optional<Bike> bikeOpt = findBike(bikeId);
+        long start = System.nanoTime();
+        Bike bike = lookupBike(bikeId);
         
-        if (bikeOpt.isPresent()) {
-            double rate = bikeOpt.get().getHourlyRate();
-            double estimate = rate * durationHours;
-            return Optional.of(estimate);
+        if (bike == null) {
+            metrics.recordFailure(RentalMetrics.Operation.ESTIMATE, FailureReason.BIKE_NOT_FOUND, System.nanoTime() - start);
+            return Optional.empty();
+        }
+        long chargePaise = PricingEngine.isValidDuration(durationHours)
+            ? quoteOrFail(pricing, bike, System.currentTimeMillis(), durationHours) : -1;
+        if (chargePaise < 0) {
+            metrics.recordFailure(RentalMetrics.Operation.ESTIMATE, FailureReason.BAD_DURATION, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.bikeFailed(RentalMetrics.Operation.ESTIMATE, FailureReason.BAD_DURATION, bikeId, null));
+            return Optional.empty();
         }
-        return Optional.empty();
+        metrics.recordSuccess(RentalMetrics.Operation.ESTIMATE, System.nanoTime() - start);
+        return Optional.of(PricingEngine.toRupees(chargePaise));
+    }
+
+    // The charge in paise, or -1 if it is too large to represent
+    private static long quoteOrFail(PricingEngine engine, Bike bike, long startMillis, int durationHours) {
+        try {
+            return engine.quote(bike, startMillis, durationHours);
+        } catch (ArithmeticException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Replaces the rules that price estimates and returns. Charges already
+     * settled keep their amounts.
+     */
+    public void setPricing(PricingEngine pricing) {
+        this.pricing = pricing;
+    }
+
+    public PricingEngine getPricing() {
+        return pricing;
     }
 
     // --- Rental Management (In-Memory) ---
 
     public Rental rentBike(int customerId, String bikeId) {
-        Optional<Customer> customerOpt = findCustomer(customerId);
-        Optional<Bike> bikeOpt = findBike(bikeId).filter(b -> b.getStatus() == BikeStatus.AVAILABLE);
+        return rentBike(customerId, bikeId, null, 0L);
+    }
 
-        if (customerOpt.isEmpty()) {
-            System.out.println("  ❌ ERROR: Customer ID " + customerId + " not found. This should not happen if called correctly.");
+    /**
+     * Rents the bike for an expected number of hours, after which the rental
+     * is reported overdue. The plain overload allows Rental.DEFAULT_RENTAL_MILLIS,
+     * or until the end of the reservation being picked up.
+     */
+    public Rental rentBike(int customerId, String bikeId, int expectedHours) {
+        long start = System.nanoTime();
+        if (!PricingEngine.isValidDuration(expectedHours)) {
+            metrics.recordFailure(RentalMetrics.Operation.RENT, FailureReason.BAD_DURATION, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.bikeFailed(RentalMetrics.Operation.RENT, FailureReason.BAD_DURATION, bikeId, null));
             return null;
         }
+        return rentBike(customerId, bikeId, null, TimeUnit.HOURS.toMillis(expectedHours));
+    }
+
+    /**
+     * Rents the bike, honouring reservations: while a reservation's window is
+     * open the bike goes only to its customer, and renting it then picks the
+     * reservation up. A pickup may also happen early if the bike is free.
+     */
+    private Rental rentBike(int customerId, String bikeId, Reservation pickup, long rentalMillis) {
+        long start = System.nanoTime();
+        RentalMetrics.Operation operation = pickup == null ? RentalMetrics.Operation.RENT : RentalMetrics.Operation.PICK_UP;
+        Customer customer = customersById.get(customerId);
+        Bike bike = lookupBike(bikeId);
 
-        if (bikeOpt.isEmpty()) {
-            System.out.println("  ❌ ERROR: Bike ID " + bikeId + " is not available or does not exist.");
+        if (customer == null) {
+            metrics.recordFailure(operation, FailureReason.CUSTOMER_NOT_FOUND, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.idFailed(operation, FailureReason.CUSTOMER_NOT_FOUND, customerId));
             return null;
         }
 
-        Rental newRental = new Rental(
-            getNextRentalId(),
-            customerOpt.get(),
-            bikeOpt.get(),
-            System.currentTimeMillis(),
-            false
-        );
+        FailureReason[] refusal = {bike == null ? FailureReason.BIKE_NOT_FOUND : FailureReason.BIKE_NOT_AVAILABLE};
+        Rental newRental = bike == null ? null : mutate(() -> {
+            // Journal under the bike's monitor so records for one bike keep their order
+            synchronized (bike) {
+                beginSnapshotChange();
+                try {
+                    long now = System.currentTimeMillis();
+                    Reservation held = reservations.heldAt(bike, now);
+                    Reservation claimed = pickup != null ? pickup
+                        : held != null && held.getCustomer() == customer ? held : null;
+                    if (claimed != null && (reservations.get(claimed.getReservationId()) != claimed || now >= claimed.getEndMillis())) {
+                        refusal[0] = FailureReason.RESERVATION_NOT_FOUND;
+                        return null;
+                    }
+                    if (held != null && held != claimed) {
+                        refusal[0] = FailureReason.BIKE_RESERVED;
+                        return null;
+                    }
+                    // Status changes also lock the bike, so it stays AVAILABLE until the Rental below
+                    if (bike.getStatus() != BikeStatus.AVAILABLE) {
+                        return null;
+                    }
+                    long expectedReturnMillis = rentalMillis > 0 ? now + rentalMillis
+                        : claimed != null ? claimed.getEndMillis() : now + Rental.DEFAULT_RENTAL_MILLIS;
+                    int rentalId = getNextRentalId();
+                    recordOperation(j -> j.appendRentBike(rentalId, customer.getCustomerId(),
+                        bike.getBikeId(), now, expectedReturnMillis));
+                    Rental rental = new Rental(rentalId, customer, bike, now, expectedReturnMillis, false); // Marks the bike RENTED
+                    applyRentBike(rental);
+                    if (claimed != null) {
+                        releaseClaimedReservation(claimed);
+                    }
+                    events.publish(RentalEvent.Type.RENTED, bike.getBikeId(), customer.getCustomerId(), rental.getRentalId(), 0, 0);
+                    return rental;
+                } finally {
+                    commitSnapshotChange();
+                }
+            }
+        });
 
-        updateBikeStatus(bikeId, BikeStatus.RENTED);
-        rentals.add(newRental);
+        if (newRental == null) {
+            metrics.recordFailure(operation, refusal[0], System.nanoTime() - start);
+            noticeSink.notice(refusal[0] == FailureReason.RESERVATION_NOT_FOUND
+                ? OperationNotice.idFailed(operation, refusal[0], pickup.getReservationId())
+                : OperationNotice.bikeFailed(operation, refusal[0], bikeId, bike != null ? bike.getStatus() : null));
+        } else {
+            metrics.recordSuccess(operation, System.nanoTime() - start);
+        }
         return newRental;
     }
+
+    // The rental already stands; if its release cannot be journaled, the booking stays in memory as it does on disk
+    private void releaseClaimedReservation(Reservation claimed) {
+        try {
+            recordOperation(j -> j.appendReleaseReservation(claimed.getReservationId()));
+            reservations.remove(claimed.getReservationId());
+        } catch (ReadOnlyException e) {
+            // Reported once by journalFailed; later changes are refused until data is saved
+        }
+    }
+
+    private void applyRentBike(Rental rental) {
+        // The bike is already RENTED, either by rentBike or by the Rental constructor
+        registerActiveRental(rental);
+        FleetSnapshot.RentalState state = FleetSnapshot.RentalState.of(rental);
+        stageSnapshotChange(snapshot -> snapshot.withRental(state));
+        advancePast(nextRentalId, rental.getRentalId());
+    }
+    
+    /**
+     * Returns a read-only live view of the rentals that are still active, in rental ID order.
+     */
+    public Collection<Rental> getCurrentlyRentedBikes() {
+        return activeRentalsView;
+    }
     
-    public List<Rental> getCurrentlyRentedBikes() {
-        return rentals.stream()
-                      .filter(r -> !r.isReturned())
-                      .collect(Collectors.toList());
+    /**
+     * Returns one page of active rentals, sorted by rental ID or start time.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or from another sort order
+     */
+    public Page<Rental> queryActiveRentals(RentalQuery query, String cursor) {
+        if (query.getSort() == RentalQuery.Sort.START_TIME) {
+            return Page.read(activeRentalsByStart, "start", cursor, rental -> true, query.getPageSize(),
+                SortKey::toText, SortKey::parse);
+        }
+        return Page.read(activeRentalsById, "id", cursor, rental -> true, query.getPageSize(),
+            String::valueOf, Integer::valueOf);
     }
     
     public Optional<Rental> findActiveRentalByBikeId(String bikeId) {
-        return getCurrentlyRentedBikes().stream()
-                .filter(r -> r.getBike().getBikeId().equalsIgnoreCase(bikeId))
-                .findFirst();
+        if (bikeId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(activeRentalsByBikeId.get(normalizeKey(bikeId)));
     }
 
     public Optional<Rental> findActiveRentalById(int rentalId) {
-        return getCurrentlyRentedBikes().stream()
-                .filter(r -> r.getRentalId() == rentalId)
-                .findFirst();
+        return Optional.ofNullable(activeRentalsById.get(rentalId));
     }
     
-    public boolean checkoutAndReturnBike(String bikeId, int durationHours) {
-        if (durationHours <= 0) {
-             System.out.println("  ❌ ERROR: Rental duration must be greater than zero hours.");
-             return false;
+    /**
+     * Returns the bike's active rental and hands its receipt to the notice sink.
+     * Returns the receipt, or null if the bike is not actively rented.
+     */
+    public Receipt checkoutAndReturnBike(String bikeId, int durationHours) {
+        long start = System.nanoTime();
+        Rental rental = bikeId == null ? null : activeRentalsByBikeId.get(normalizeKey(bikeId));
+        PricingEngine engine = pricing;
+        long chargePaise = quoteReturn(engine, rental, durationHours);
+        if (chargePaise < 0) {
+            metrics.recordFailure(RentalMetrics.Operation.RETURN, FailureReason.BAD_DURATION, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.bikeFailed(RentalMetrics.Operation.RETURN, FailureReason.BAD_DURATION, bikeId, null));
+            return null;
         }
         
-        Optional<Rental> rentalOpt = findActiveRentalByBikeId(bikeId);
+        Receipt receipt = rental == null ? null
+            : mutate(() -> finalizeReturn(rental, durationHours, chargePaise, engine.ratePaise(rental.getBike())));
         
-        if (rentalOpt.isEmpty()) {
-            System.out.println("  ❌ ERROR: Bike ID " + bikeId + " is either not found or is not actively rented.");
-            return false;
+        if (receipt == null) {
+            metrics.recordFailure(RentalMetrics.Operation.RETURN, FailureReason.RENTAL_NOT_ACTIVE, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.bikeFailed(RentalMetrics.Operation.RETURN, FailureReason.RENTAL_NOT_ACTIVE, bikeId, null));
+            return null;
         }
-        
-        Rental rental = rentalOpt.get();
+        metrics.recordSuccess(RentalMetrics.Operation.RETURN, System.nanoTime() - start);
+        noticeSink.receipt(receipt);
+        return receipt;
+    }
 
-        // Finalize in-memory object and print receipt
-        rental.returnBike(durationHours);
+    public Receipt checkoutAndReturnBike(int rentalId, int durationHours) {
+        long start = System.nanoTime();
+        Rental rental = activeRentalsById.get(rentalId);
+        PricingEngine engine = pricing;
+        long chargePaise = quoteReturn(engine, rental, durationHours);
+        if (chargePaise < 0) {
+            metrics.recordFailure(RentalMetrics.Operation.RETURN, FailureReason.BAD_DURATION, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.idFailed(RentalMetrics.Operation.RETURN, FailureReason.BAD_DURATION, rentalId));
+            return null;
+        }
 
-        // Update bike status in memory
-        updateBikeStatus(bikeId, BikeStatus.AVAILABLE);
+        Receipt receipt = rental == null ? null
+            : mutate(() -> finalizeReturn(rental, durationHours, chargePaise, engine.ratePaise(rental.getBike())));
 
-        return true;
+        if (receipt == null) {
+            metrics.recordFailure(RentalMetrics.Operation.RETURN, FailureReason.RENTAL_NOT_ACTIVE, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.idFailed(RentalMetrics.Operation.RETURN, FailureReason.RENTAL_NOT_ACTIVE, rentalId));
+            return null;
+        }
+        metrics.recordSuccess(RentalMetrics.Operation.RETURN, System.nanoTime() - start);
+        noticeSink.receipt(receipt);
+        return receipt;
     }
 
-    public boolean checkoutAndReturnBike(int rentalId, int durationHours) {
-        if (durationHours <= 0) {
-            System.out.println("  ❌ ERROR: Rental duration must be greater than zero hours.");
-            return false;
+    // Charge in paise for the hours, 0 without a rental, or -1 if the duration cannot be priced
+    private long quoteReturn(PricingEngine engine, Rental rental, int durationHours) {
+        if (!PricingEngine.isValidDuration(durationHours)) {
+            return -1;
         }
+        return rental == null ? 0 : quoteOrFail(engine, rental.getBike(), rental.getStartTimeMillis(), durationHours);
+    }
 
-        Optional<Rental> rentalOpt = findActiveRentalById(rentalId);
+    /**
+     * Finalizes a rental at a charge quoted by quoteReturn and frees the bike.
+     * The receipt shows ratePaise, the hourly rate the same engine priced it
+     * from. Returns null if another caller returned the same rental first.
+     */
+    private Receipt finalizeReturn(Rental rental, int durationHours, long chargePaise, long ratePaise) {
+        Bike bike = rental.getBike();
+        synchronized (bike) {
+            beginSnapshotChange();
+            try {
+                if (rental.isReturned()) {
+                    return null;
+                }
+                long returnTimeMillis = System.currentTimeMillis();
+                recordOperation(j -> j.appendReturnBike(rental.getRentalId(), durationHours, chargePaise, returnTimeMillis));
+                unregisterActiveRental(rental);
+                rental.markReturned(durationHours, chargePaise, returnTimeMillis);
+                archiveReturnedRental(rental);
+                events.publish(RentalEvent.Type.RETURNED, bike.getBikeId(), rental.getCustomer().getCustomerId(),
+                    rental.getRentalId(), durationHours, chargePaise);
+                // A bike that fell due for service while out goes straight to repair
+                if (repairWhenServiceDue && bikesDueForService.containsKey(normalizeKey(bike.getBikeId()))) {
+                    sendDueBikeToRepair(bike);
+                }
+                return rental.toReceipt(ratePaise);
+            } finally {
+                commitSnapshotChange();
+            }
+        }
+    }
 
-        if (rentalOpt.isEmpty()) {
-            System.out.println("  ❌ ERROR: Rental ID " + rentalId + " is either not found or not active.");
-            return false;
+    // --- Reservations ---
+
+    /**
+     * Books the bike for [startMillis, endMillis) unless another reservation
+     * overlaps that window. A window that has already begun also needs the
+     * bike to be available now. Returns null, with a notice, on failure.
+     */
+    public Reservation reserveBike(int customerId, String bikeId, long startMillis, long endMillis) {
+        long start = System.nanoTime();
+        Customer customer = customersById.get(customerId);
+        Bike bike = lookupBike(bikeId);
+        FailureReason rejection = customer == null ? FailureReason.CUSTOMER_NOT_FOUND
+            : bike == null ? FailureReason.BIKE_NOT_FOUND
+            : endMillis <= startMillis || endMillis <= System.currentTimeMillis() ? FailureReason.BAD_TIME_WINDOW
+            : null;
+
+        Reservation reservation = rejection != null ? null : mutate(() -> {
+            // Bookings, pickups and cancellations for one bike are serialized on its monitor
+            synchronized (bike) {
+                if (startMillis <= System.currentTimeMillis() && bike.getStatus() != BikeStatus.AVAILABLE) {
+                    return null;
+                }
+                if (!reservations.isFree(bike, startMillis, endMillis)) {
+                    return null;
+                }
+                Reservation booked = new Reservation(claimId(nextReservationId), customer, bike, startMillis, endMillis);
+                recordOperation(j -> j.appendReserveBike(booked.getReservationId(), customerId, bike.getBikeId(),
+                    startMillis, endMillis));
+                reservations.add(booked);
+                return booked;
+            }
+        });
+
+        if (reservation == null) {
+            FailureReason reason = rejection != null ? rejection
+                : reservations.isFree(bike, startMillis, endMillis) ? FailureReason.BIKE_NOT_AVAILABLE : FailureReason.BIKE_RESERVED;
+            metrics.recordFailure(RentalMetrics.Operation.RESERVE, reason, System.nanoTime() - start);
+            noticeSink.notice(reason == FailureReason.CUSTOMER_NOT_FOUND
+                ? OperationNotice.idFailed(RentalMetrics.Operation.RESERVE, reason, customerId)
+                : OperationNotice.bikeFailed(RentalMetrics.Operation.RESERVE, reason, bikeId, bike != null ? bike.getStatus() : null));
+        } else {
+            metrics.recordSuccess(RentalMetrics.Operation.RESERVE, System.nanoTime() - start);
+        }
+        return reservation;
+    }
+
+    /**
+     * Turns the reservation into a rental through rentBike. Returns null, with
+     * a notice, if it is no longer booked or the bike is not back yet.
+     */
+    public Rental pickUpReservation(int reservationId) {
+        long start = System.nanoTime();
+        Reservation reservation = reservations.get(reservationId);
+        if (reservation == null) {
+            metrics.recordFailure(RentalMetrics.Operation.PICK_UP, FailureReason.RESERVATION_NOT_FOUND, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.idFailed(RentalMetrics.Operation.PICK_UP, FailureReason.RESERVATION_NOT_FOUND, reservationId));
+            return null;
+        }
+        return rentBike(reservation.getCustomer().getCustomerId(), reservation.getBike().getBikeId(), reservation, 0L);
+    }
+
+    public boolean cancelReservation(int reservationId) {
+        long start = System.nanoTime();
+        Reservation reservation = reservations.get(reservationId);
+        boolean cancelled = reservation != null && mutate(() -> {
+            synchronized (reservation.getBike()) {
+                if (reservations.get(reservationId) == null) {
+                    return false;
+                }
+                recordOperation(j -> j.appendReleaseReservation(reservationId));
+                reservations.remove(reservationId);
+                return true;
+            }
+        });
+
+        if (cancelled) {
+            metrics.recordSuccess(RentalMetrics.Operation.CANCEL_RESERVATION, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.succeeded(RentalMetrics.Operation.CANCEL_RESERVATION, reservation.getBike().getBikeId()));
+        } else {
+            metrics.recordFailure(RentalMetrics.Operation.CANCEL_RESERVATION, FailureReason.RESERVATION_NOT_FOUND, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.idFailed(RentalMetrics.Operation.CANCEL_RESERVATION, FailureReason.RESERVATION_NOT_FOUND, reservationId));
         }
+        return cancelled;
+    }
 
-        Rental rental = rentalOpt.get();
-        String bikeId = rental.getBike().getBikeId();
+    public Optional<Reservation> findReservation(int reservationId) {
+        return Optional.ofNullable(reservations.get(reservationId));
+    }
 
-        // Finalize in-memory object and print receipt
-        rental.returnBike(durationHours);
+    /**
+     * Returns the bike's reservations in start order, or an empty list if the bike is unknown.
+     */
+    public List<Reservation> getReservationsForBike(String bikeId) {
+        Bike bike = lookupBike(bikeId);
+        return bike == null ? Collections.emptyList() : reservations.forBike(bike);
+    }
 
-        // Update bike status in memory
-        updateBikeStatus(bikeId, BikeStatus.AVAILABLE);
+    /**
+     * Returns every open reservation, soonest first.
+     */
+    public List<Reservation> getReservations() {
+        List<Reservation> all = new ArrayList<>(reservations.all());
+        all.sort(Comparator.comparingLong(Reservation::getStartMillis).thenComparingInt(Reservation::getReservationId));
+        return all;
+    }
 
+    /**
+     * Returns one page of bikes matching the query that are free for the whole
+     * of [fromMillis, toMillis). Candidates come from the same indexes as
+     * queryBikes (sort by rate to walk only the rate band), and each is checked
+     * with one lookup in its own reservation set. A window that has already
+     * begun also needs the bike to be available now.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or from another sort order
+     */
+    public Page<Bike> queryFreeBikes(BikeQuery query, long fromMillis, long toMillis, String cursor) {
+        boolean underway = fromMillis <= System.currentTimeMillis();
+        return queryBikes(query, cursor, bike -> query.matches(bike)
+            && (!underway || bike.getStatus() == BikeStatus.AVAILABLE)
+            && reservations.isFree(bike, fromMillis, toMillis));
+    }
+
+    // --- Deadlines ---
+
+    /**
+     * Fires every return and service deadline that has passed. Runs once a
+     * second on the deadline ticker; the work depends on how many deadlines
+     * expire, not on how many rentals or bikes there are.
+     */
+    public void checkDeadlines() {
+        long now = System.currentTimeMillis();
+        for (DeadlineWheel.Timer<Rental> timer : returnDeadlines.advance(now)) {
+            long start = System.nanoTime();
+            Rental rental = timer.getItem();
+            if (!returnTimers.remove(rental.getRentalId(), timer)
+                || overdueRentals.putIfAbsent(rental.getRentalId(), rental) != null) {
+                continue;
+            }
+            if (rental.isReturned()) {
+                overdueRentals.remove(rental.getRentalId(), rental); // Lost a race with the return
+                continue;
+            }
+            metrics.recordSuccess(RentalMetrics.Operation.OVERDUE, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.deadlinePassed(RentalMetrics.Operation.OVERDUE,
+                rental.getBike().getBikeId(), rental.getRentalId()));
+        }
+
+        for (DeadlineWheel.Timer<Bike> timer : serviceDeadlines.advance(now)) {
+            long start = System.nanoTime();
+            Bike bike = timer.getItem();
+            if (!serviceTimers.remove(bike, timer)
+                || bikesDueForService.putIfAbsent(normalizeKey(bike.getBikeId()), bike) != null) {
+                continue;
+            }
+            metrics.recordSuccess(RentalMetrics.Operation.SERVICE_DUE, System.nanoTime() - start);
+            noticeSink.notice(OperationNotice.deadlinePassed(RentalMetrics.Operation.SERVICE_DUE, bike.getBikeId(), 0));
+            // A bike that is out stays listed and goes to repair when it is returned
+            if (repairWhenServiceDue && !replica) {
+                try {
+                    mutate(() -> sendDueBikeToRepair(bike));
+                } catch (ReadOnlyException e) {
+                    // Changes are refused after a journal failure; an exception here would cancel the ticker
+                }
+            }
+        }
+    }
+
+    // Best effort: if the journal cannot be written the bike stays listed as due, and the caller's own change stands
+    private boolean sendDueBikeToRepair(Bike bike) {
+        try {
+            if (!applyRepairTransition(bike, BikeStatus.AVAILABLE, BikeStatus.IN_REPAIR)) {
+                return false;
+            }
+        } catch (ReadOnlyException e) {
+            return false; // Reported once by journalFailed
+        }
+        noticeSink.notice(OperationNotice.succeeded(RentalMetrics.Operation.SEND_TO_REPAIR, bike.getBikeId()));
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * Bikes fall due for service this long after their last maintenance. With
+     * repairWhenDue, a due bike is sent to repair as soon as it is available.
+     * Reschedules every bike, so call it at startup rather than per request.
+     */
+    public void setServicePolicy(long intervalMillis, boolean repairWhenDue) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Service interval must be positive");
+        }
+        serviceIntervalMillis = intervalMillis;
+        repairWhenServiceDue = repairWhenDue;
+        for (Bike bike : bikesInIdOrder.values()) {
+            synchronized (bike) {
+                scheduleService(bike);
+            }
+        }
+    }
+
+    public long getServiceIntervalMillis() {
+        return serviceIntervalMillis;
+    }
+
+    /**
+     * Returns a read-only live view of the active rentals past their expected return time, in rental ID order.
+     */
+    public Collection<Rental> getOverdueRentals() {
+        return Collections.unmodifiableCollection(overdueRentals.values());
+    }
+
+    /**
+     * Returns a read-only live view of the bikes due for service and not yet back from it, in ID order.
+     */
+    public Collection<Bike> getBikesDueForService() {
+        return Collections.unmodifiableCollection(bikesDueForService.values());
+    }
+
+    // --- Snapshots ---
+
+    /**
+     * Returns the bikes, customers and active rentals as of the latest
+     * committed change. Costs one volatile read: nothing is copied and no
+     * lock is taken, so a report can walk the result for as long as it likes
+     * while rentals carry on, and never sees their later changes. Each rental,
+     * return or batch appears in it completely or not at all.
+     */
+    public FleetSnapshot snapshot() {
+        return fleetSnapshot.get();
+    }
+
+    // Changes staged by one thread between begin and the matching commit
+    private static final class SnapshotChanges {
+        int depth;
+        final List<UnaryOperator<FleetSnapshot>> pending = new ArrayList<>();
+    }
+
+    /**
+     * Opens a scope whose staged changes are published together as one
+     * snapshot version by the outermost commitSnapshotChange. Per-bike scopes
+     * are opened under the bike's monitor, so versions of one bike are
+     * published in the order they happened.
+     */
+    private void beginSnapshotChange() {
+        snapshotChanges.get().depth++;
+    }
+
+    private void commitSnapshotChange() {
+        SnapshotChanges changes = snapshotChanges.get();
+        if (--changes.depth > 0 || changes.pending.isEmpty()) {
+            return;
+        }
+        try {
+            publishSnapshotChanges(changes.pending);
+        } finally {
+            changes.pending.clear();
+        }
+    }
+
+    // Publishes straight away when no scope is open
+    private void stageSnapshotChange(UnaryOperator<FleetSnapshot> change) {
+        if (indexesDeferred) {
+            return;
+        }
+        SnapshotChanges changes = snapshotChanges.get();
+        if (changes.depth > 0) {
+            changes.pending.add(change);
+        } else {
+            publishSnapshotChanges(Collections.singletonList(change));
+        }
+    }
+
+    // Called under the bike's monitor, so the captured state is one the bike really had
+    private void stageBike(Bike bike) {
+        FleetSnapshot.BikeState state = FleetSnapshot.BikeState.of(bike);
+        stageSnapshotChange(snapshot -> snapshot.withBike(state));
+    }
+
+    // Writers only ever race here, on one compare-and-set per committed change; readers never wait
+    private void publishSnapshotChanges(List<UnaryOperator<FleetSnapshot>> changes) {
+        fleetSnapshot.updateAndGet(current -> {
+            FleetSnapshot next = current.nextVersion();
+            for (UnaryOperator<FleetSnapshot> change : changes) {
+                next = change.apply(next);
+            }
+            return next;
+        });
+    }
+
+    // --- Replication ---
+
+    /**
+     * Writes a snapshot and attaches the tap to the journal while mutations are
+     * held off, so the tap receives exactly the records that follow it. Only
+     * the snapshot is read under the lock; the history segments it refers to
+     * are copied from the returned seed afterwards.
+     */
+    public ReplicaSeed attachReplica(RentalJournal.Tap tap) throws IOException {
+        byte[] snapshot;
+        Map<String, Long> segmentLengths;
+        Lock lock = persistenceLock.writeLock();
+        lock.lock();
+        try {
+            RentalJournal current = journal;
+            if (current == null || !writeSnapshot()) {
+                throw new IOException("Could not write a snapshot to replicate from");
+            }
+            snapshot = Files.readAllBytes(new File(dataDirectory, DATA_FILE).toPath());
+            segmentLengths = historyArchive.getCommittedLengths();
+            current.addTap(tap);
+        } finally {
+            lock.unlock();
+        }
+        return new ReplicaSeed(snapshot, segmentLengths, historyArchive);
+    }
+
+    /**
+     * The files a replica starts from, keyed by path relative to the data
+     * directory: the snapshot, then the committed part of each history segment
+     * it records. Segments are read from disk as they are copied; committed
+     * rows are never rewritten, so that needs no lock.
+     */
+    public static final class ReplicaSeed {
+        private final byte[] snapshot;
+        private final Map<String, String> monthsByFile = new LinkedHashMap<>();
+        private final Map<String, Long> fileLengths = new LinkedHashMap<>();
+        private final HistoryArchive archive;
+
+        ReplicaSeed(byte[] snapshot, Map<String, Long> segmentLengths, HistoryArchive archive) {
+            this.snapshot = snapshot;
+            this.archive = archive;
+            fileLengths.put(DATA_FILE, (long) snapshot.length);
+            segmentLengths.forEach((month, length) -> {
+                String file = HISTORY_DIRECTORY + "/" + HistoryArchive.segmentFileName(month);
+                monthsByFile.put(file, month);
+                fileLengths.put(file, length);
+            });
+        }
+
+        public Map<String, Long> getFileLengths() {
+            return Collections.unmodifiableMap(fileLengths);
+        }
+
+        public void copy(String file, OutputStream out) throws IOException {
+            if (file.equals(DATA_FILE)) {
+                out.write(snapshot);
+                return;
+            }
+            String month = monthsByFile.get(file);
+            if (month == null) {
+                throw new IOException("No replica file " + file);
+            }
+            archive.copySegment(month, fileLengths.get(file), out);
+        }
+    }
+
+    public void detachReplica(RentalJournal.Tap tap) {
+        RentalJournal current = journal;
+        if (current != null) {
+            current.removeTap(tap);
+        }
+    }
+
+    /**
+     * Opens a read-only replica from the files attachReplica returned on the
+     * primary, replacing whatever the directory held. Feed it the tapped
+     * records through applyReplicated. Each file is written under a temporary
+     * name and renamed into place, so an earlier replica still reading from
+     * the directory keeps its own copies until it is closed.
+     *
+     * @throws IOException if a file name would land outside dataDirectory;
+     *         nothing is written in that case
+     */
+    public static BikeRentalSystem openReplica(File dataDirectory, Map<String, byte[]> files) throws IOException {
+        // The names come off the network, so none may climb out of the directory
+        Path root = dataDirectory.toPath().toAbsolutePath().normalize();
+        Map<Path, byte[]> targets = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            Path target = root.resolve(file.getKey()).normalize();
+            if (!target.startsWith(root) || target.equals(root)) {
+                throw new IOException("Refusing replica file outside " + dataDirectory + ": " + file.getKey());
+            }
+            targets.put(target, file.getValue());
+        }
+
+        Files.createDirectories(root);
+        Files.deleteIfExists(root.resolve(JOURNAL_FILE));
+        Files.deleteIfExists(root.resolve(LEGACY_DATA_FILE));
+        for (Map.Entry<Path, byte[]> target : targets.entrySet()) {
+            Path file = target.getKey();
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.createDirectories(file.getParent());
+            Files.write(temp, target.getValue());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        BikeRentalSystem system;
+        try {
+            system = new BikeRentalSystem(dataDirectory);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        system.replica = true;
+        RentalJournal current = system.journal;
+        system.journal = null; // Until promotion the primary's journal is the record of these changes
+        if (current != null) {
+            current.close();
+        }
+        return system;
+    }
+
+    /**
+     * Applies records shipped from the primary, in the order they were written there.
+     */
+    public void applyReplicated(byte[] records) throws IOException {
+        if (!replica) {
+            throw new IllegalStateException("Only a replica applies shipped records");
+        }
+        Lock lock = persistenceLock.readLock();
+        lock.lock();
+        beginSnapshotChange();
+        try {
+            RentalJournal.readRecords(records, replicaHandler);
+        } finally {
+            commitSnapshotChange();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes a replica writable: snapshots everything applied so far and opens
+     * a fresh journal. Stop applying shipped records first. Returns false,
+     * leaving it a replica, if the snapshot could not be written.
+     */
+    public boolean promote() {
+        Lock lock = persistenceLock.writeLock();
+        lock.lock();
+        try {
+            if (!replica) {
+                return true;
+            }
+            if (!writeSnapshot()) {
+                return false;
+            }
+            try {
+                replayJournal(); // Discards the journal left from before the replica was seeded
+            } catch (IOException e) {
+                System.err.println("Error opening journal: " + e.getMessage());
+                return false;
+            }
+            replica = false;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isReadOnly() {
+        return replica;
+    }
+
+    // --- Batch Operations ---
+
+    /**
+     * Runs any sequence of the single-item operations as one batch: other
+     * mutations wait until it completes, its journal records are written in
+     * one flush and the fleet snapshot moves on once. For loaders that would
+     * otherwise pay those costs row by row.
+     */
+    public <T> T batch(Supplier<T> operations) {
+        return mutateBatch(operations);
+    }
+
+    /**
+     * A bike return within a checkoutAndReturnBikes batch.
+     */
+    public static class ReturnRequest {
+        private final String bikeId;
+        private final int durationHours;
+
+        public ReturnRequest(String bikeId, int durationHours) {
+            this.bikeId = bikeId;
+            this.durationHours = durationHours;
+        }
+
+        public String getBikeId() {
+            return bikeId;
+        }
+
+        public int getDurationHours() {
+            return durationHours;
+        }
+    }
+
+    /**
+     * Adds many bikes at once, e.g. a morning fleet intake. Missing and
+     * duplicate IDs are reported per item rather than aborting the batch.
+     */
+    public List<BatchResult> addBikes(Collection<Bike> bikes) {
+        return mutateItems(() -> {
+            List<BatchResult> results = new ArrayList<>(bikes.size());
+            for (Bike bike : bikes) {
+                if (bike == null || bike.getBikeId() == null) {
+                    results.add(BatchResult.failed(null, "missing bike ID"));
+                } else if (publishBike(bike)) {
+                    results.add(BatchResult.ok(bike.getBikeId(), "added"));
+                } else {
+                    results.add(BatchResult.failed(bike.getBikeId(), "bike ID already exists"));
+                }
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Sends many bikes to repair at once, e.g. a whole depot.
+     */
+    public List<BatchResult> sendBikesToRepair(Collection<String> bikeIds) {
+        return mutateItems(() -> {
+            List<BatchResult> results = new ArrayList<>(bikeIds.size());
+            for (String bikeId : bikeIds) {
+                Bike bike = lookupBike(bikeId);
+                if (bike == null) {
+                    results.add(BatchResult.failed(bikeId, "not found"));
+                } else if (applyRepairTransition(bike, BikeStatus.AVAILABLE, BikeStatus.IN_REPAIR)) {
+                    results.add(BatchResult.ok(bikeId, "sent to repair"));
+                } else {
+                    results.add(BatchResult.failed(bikeId, "cannot be sent to repair, status " + bike.getStatus()));
+                }
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Returns many rented bikes at once, e.g. end-of-day returns. No receipts
+     * are printed; each successful result carries the final charge.
+     */
+    public List<BatchResult> checkoutAndReturnBikes(Collection<ReturnRequest> requests) {
+        return mutateItems(() -> {
+            List<BatchResult> results = new ArrayList<>(requests.size());
+            PricingEngine engine = pricing;
+            for (ReturnRequest request : requests) {
+                String bikeId = request.getBikeId();
+                Rental rental = bikeId == null ? null : activeRentalsByBikeId.get(normalizeKey(bikeId));
+                long chargePaise = quoteReturn(engine, rental, request.getDurationHours());
+                if (chargePaise < 0) {
+                    results.add(BatchResult.failed(bikeId, "rental duration must be between 1 and "
+                        + PricingEngine.MAX_HOURS + " hours"));
+                    continue;
+                }
+                Receipt receipt = rental == null ? null
+                    : finalizeReturn(rental, request.getDurationHours(), chargePaise, engine.ratePaise(rental.getBike()));
+                if (receipt == null) {
+                    results.add(BatchResult.failed(bikeId, "not found or not actively rented"));
+                } else {
+                    results.add(BatchResult.ok(bikeId, "rental " + receipt.getRentalId() + " returned, charge "
+                        + PricingEngine.formatRupees(receipt.getTotalChargePaise()) + " rs"));
+                }
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Runs a batch of per-item operations. If its journal write fails the
+     * items are already applied in memory, so the results are still returned,
+     * each success marked as not journaled, and later changes are refused
+     * until data is saved.
+     */
+    private List<BatchResult> mutateItems(Supplier<List<BatchResult>> batch) {
+        IOException[] journalError = new IOException[1];
+        List<BatchResult> results = mutateBatch(batch, journalError);
+        if (journalError[0] == null) {
+            return results;
+        }
+        journalFailed(journalError[0]);
+        List<BatchResult> marked = new ArrayList<>(results.size());
+        for (BatchResult result : results) {
+            marked.add(result.isSuccess() ? result.notJournaled(journalError[0]) : result);
+        }
+        return marked;
+    }
+
+    private <T> T mutateBatch(Supplier<T> batch) {
+        IOException[] journalError = new IOException[1];
+        T result = mutateBatch(batch, journalError);
+        if (journalError[0] != null) {
+            // Already applied in memory; saving data is the only way to make it durable
+            throw journalFailed(journalError[0]);
+        }
+        return result;
+    }
+
+    /**
+     * Runs a batch with other mutations held off, so its journal records can be
+     * buffered and written in a single flush when the batch completes. A failed
+     * flush is left in journalError for the caller to report.
+     */
+    private <T> T mutateBatch(Supplier<T> batch, IOException[] journalError) {
+        checkWritable();
+        T result;
+        Lock lock = persistenceLock.writeLock();
+        lock.lock();
+        try {
+            RentalJournal current = journal;
+            if (current != null) {
+                current.beginBatch();
+            }
+            beginSnapshotChange();
+            try {
+                result = batch.get();
+            } finally {
+                commitSnapshotChange(); // The whole batch shows up in one snapshot version
+                if (current != null) {
+                    try {
+                        current.endBatch();
+                    } catch (IOException e) {
+                        journalError[0] = e;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (journalError[0] == null) {
+            compactIfNeeded();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,16 @@
+/**
+ * Prints receipts and notices to standard output as they arrive, which is what
+ * the interactive console menu expects.
+ */
+public class ConsoleNoticeSink implements NoticeSink {
+
+    @Override
+    public void receipt(Receipt receipt) {
+        System.out.print(receipt.render());
+    }
+
+    @Override
+    public void notice(OperationNotice notice) {
+        System.out.println(notice.render());
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * A customer found by name search, with the number of edits separating the
+ * query from the closest word prefix of the customer's name.
+ */
+public final class CustomerMatch {
+
+    private final Customer customer;
+    private final int distance;
+    private final boolean exactName;
+
+    public CustomerMatch(Customer customer, int distance, boolean exactName) {
+        this.customer = customer;
+        this.distance = distance;
+        this.exactName = exactName;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    /** 0 for exact and prefix matches, otherwise the edit distance. */
+    public int getDistance() {
+        return distance;
+    }
+
+    /** True when the whole name equals the query, ignoring case and spacing. */
+    public boolean isExactName() {
+        return exactName;
+    }
+}
@@ -0,0 +1,429 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Word-level index over customer names for prefix and typo-tolerant lookups.
+ *
+ * Names are split into words, and each distinct word is stored once with the
+ * ordinals of the customers using it. A trigram index over those words finds
+ * near misses: every word is padded with two leading spaces, so "ravi" yields
+ * "  r", " ra", "rav", "avi"; a query word of n letters has n such trigrams
+ * and each edit destroys at most four of them (three, or four for a swap of
+ * adjacent letters), so a word within k edits must contain one of any 4k+1.
+ * Merging the rarest lists and checking each word with a bounded edit
+ * distance gives the words each query word may stand for. A query word with
+ * 4k trigrams or fewer (four letters with one typo allowed, seven or eight
+ * with two) can lose all of them, so it is checked against every word
+ * instead: "arvi" shares no trigram with "ravi".
+ *
+ * Every query word must match the start of some word of the name, in any
+ * order, so "ravi", "kumar r" and "rvai kumr" all find "Ravi Kumar". The
+ * query word with the fewest customers drives the search, closest words
+ * first; the others are checked against each of its customers, and the scan
+ * stops once enough matches are in hand. Typos are only considered when the
+ * query as typed finds too few. Adds take the write lock; searches share the
+ * read lock.
+ */
+public class CustomerSearchIndex {
+
+    public static final int MAX_DISTANCE = 2;
+    private static final int MAX_WORD_EXPANSIONS = 256; // Closest, most common words a query word may stand for
+    private static final int CANDIDATES_PER_RESULT = 8; // Matches gathered per requested result before ranking
+    private static final int POSITION_BITS = 5;
+    private static final int MAX_POSITION = (1 << POSITION_BITS) - 1; // Later trigrams share the last slot
+
+    private static final class Postings {
+        int[] ordinals = new int[2];
+        int size;
+
+        void add(int ordinal) {
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                return; // Repeats within the same name
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+    }
+
+    private static final class Word {
+        final String text;
+        final Postings customers = new Postings();
+
+        Word(String text) {
+            this.text = text;
+        }
+    }
+
+    private static final class WordMatch {
+        final Word word;
+        final int distance;
+
+        WordMatch(Word word, int distance) {
+            this.word = word;
+            this.distance = distance;
+        }
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Word> vocabulary = new HashMap<>();
+    private final List<Word> words = new ArrayList<>();
+    private final Map<String, Postings> trigrams = new HashMap<>(); // Trigram -> entry(word ordinal, position)
+    private Customer[] customers = new Customer[1024];
+    private String[][] nameWords = new String[1024][];
+    private int size;
+
+    // --- Maintenance ---
+
+    public void add(Customer customer) {
+        String[] parts = split(customer.getName());
+        lock.writeLock().lock();
+        try {
+            if (size == customers.length) {
+                customers = Arrays.copyOf(customers, size * 2);
+                nameWords = Arrays.copyOf(nameWords, size * 2);
+            }
+            int ordinal = size++;
+            for (int i = 0; i < parts.length; i++) {
+                Word word = vocabulary.computeIfAbsent(parts[i], this::newWord);
+                word.customers.add(ordinal);
+                parts[i] = word.text; // Share one copy of each word
+            }
+            customers[ordinal] = customer;
+            nameWords[ordinal] = parts;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Word newWord(String text) {
+        Word word = new Word(text);
+        int wordOrdinal = words.size();
+        words.add(word);
+        List<String> grams = trigrams(text);
+        for (int position = 0; position < grams.size(); position++) {
+            trigrams.computeIfAbsent(grams.get(position), g -> new Postings()).add(entry(wordOrdinal, position));
+        }
+        return word;
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            vocabulary.clear();
+            words.clear();
+            trigrams.clear();
+            customers = new Customer[1024];
+            nameWords = new String[1024][];
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // --- Search ---
+
+    /**
+     * Returns up to limit customers whose name words start with the query
+     * words, or with something within a few edits of them. An exact name
+     * match ranks first, then by total edit distance, then shorter names.
+     */
+    public List<CustomerMatch> search(String query, int limit) {
+        String[] queryWords = split(query == null ? "" : query);
+        if (queryWords.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        int[] bounds = new int[queryWords.length];
+        int longest = 0;
+        for (int i = 0; i < queryWords.length; i++) {
+            bounds[i] = allowedDistance(queryWords[i]);
+            longest = Math.max(longest, queryWords[i].length());
+        }
+        EditDistance distance = new EditDistance(longest);
+
+        // Correctly spelt prefixes are cheap to find; typo tolerance is only paid for when they fall short
+        List<CustomerMatch> matches;
+        lock.readLock().lock();
+        try {
+            matches = collect(queryWords, new int[queryWords.length], distance, limit);
+            if (matches.size() < limit && Arrays.stream(bounds).anyMatch(bound -> bound > 0)) {
+                matches = collect(queryWords, bounds, distance, limit);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        matches.sort(Comparator.comparing((CustomerMatch m) -> !m.isExactName())
+            .thenComparingInt(CustomerMatch::getDistance)
+            .thenComparingInt(m -> m.getCustomer().getName().length())
+            .thenComparing(m -> m.getCustomer().getName(), String.CASE_INSENSITIVE_ORDER));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Gathers up to limit * CANDIDATES_PER_RESULT customers matching every
+     * query word within its bound. The query word standing for the fewest
+     * customers drives the scan, closest words first.
+     */
+    private List<CustomerMatch> collect(String[] queryWords, int[] bounds, EditDistance distance, int limit) {
+        List<WordMatch> driver = null;
+        long driverCustomers = Long.MAX_VALUE;
+        for (int i = 0; i < queryWords.length; i++) {
+            List<WordMatch> expansions = matchWords(queryWords[i], bounds[i], distance);
+            long total = 0;
+            for (WordMatch match : expansions) {
+                total += match.word.customers.size;
+            }
+            if (total < driverCustomers) {
+                driver = expansions;
+                driverCustomers = total;
+            }
+        }
+
+        List<CustomerMatch> matches = new ArrayList<>();
+        int wanted = limit * CANDIDATES_PER_RESULT;
+        Set<Integer> seen = new HashSet<>();
+        for (int tier = 0; tier <= MAX_DISTANCE && driverCustomers > 0 && matches.size() < wanted; tier++) {
+            collectTier(driver, tier, queryWords, bounds, distance, wanted, seen, matches);
+        }
+        return matches;
+    }
+
+    /**
+     * Scans the customers of the driver words at the given distance, most
+     * common word first, adding those whose whole name matches until wanted
+     * is reached.
+     */
+    private void collectTier(List<WordMatch> driver, int tier, String[] queryWords, int[] bounds,
+                             EditDistance distance, int wanted, Set<Integer> seen, List<CustomerMatch> matches) {
+        for (WordMatch match : driver) {
+            if (match.distance != tier) {
+                continue;
+            }
+            Postings list = match.word.customers;
+            for (int i = 0; i < list.size && matches.size() < wanted; i++) {
+                int ordinal = list.ordinals[i];
+                if (!seen.add(ordinal)) {
+                    continue;
+                }
+                int total = nameDistance(queryWords, bounds, nameWords[ordinal], distance);
+                if (total >= 0) {
+                    matches.add(new CustomerMatch(customers[ordinal], total, Arrays.equals(queryWords, nameWords[ordinal])));
+                }
+            }
+        }
+    }
+
+    // One typo from four letters on, two from seven, so short prefixes stay precise
+    private static int allowedDistance(String queryWord) {
+        return Math.min(MAX_DISTANCE, (queryWord.length() - 1) / 3);
+    }
+
+    /**
+     * Vocabulary words whose start is within maxDistance edits of the query
+     * word, closest and then most common first.
+     */
+    private List<WordMatch> matchWords(String queryWord, int maxDistance, EditDistance distance) {
+        List<String> grams = trigrams(queryWord);
+        Postings[] found = new Postings[grams.size()];
+        Integer[] order = new Integer[grams.size()];
+        for (int i = 0; i < order.length; i++) {
+            Postings list = trigrams.get(grams.get(i));
+            found[i] = list != null ? list : new Postings();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> found[i].size));
+        Postings[] lists = new Postings[order.length];
+        int[] positions = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            lists[i] = found[order[i]];
+            positions[i] = order[i];
+        }
+
+        List<WordMatch> matches = new ArrayList<>();
+        int required = lists.length - 4 * maxDistance;
+        if (required <= 0) {
+            // Every trigram may be gone, so no list is guaranteed to hold the word
+            for (Word word : words) {
+                addIfClose(queryWord, word, maxDistance, distance, matches);
+            }
+        } else {
+            // Candidates come from the rarest lists; a close word also has all but 4k of the
+            // query's trigrams, each within maxDistance places of where the query has it
+            int[] cursors = new int[4 * maxDistance + 1];
+            for (int wordOrdinal = nextWord(lists, cursors); wordOrdinal >= 0; wordOrdinal = nextWord(lists, cursors)) {
+                if (sharesAtLeast(lists, positions, maxDistance, wordOrdinal, required)) {
+                    addIfClose(queryWord, words.get(wordOrdinal), maxDistance, distance, matches);
+                }
+            }
+        }
+        matches.sort(Comparator.comparingInt((WordMatch m) -> m.distance)
+            .thenComparingInt(m -> -m.word.customers.size));
+        return matches.size() > MAX_WORD_EXPANSIONS ? matches.subList(0, MAX_WORD_EXPANSIONS) : matches;
+    }
+
+    private static void addIfClose(String queryWord, Word word, int maxDistance, EditDistance distance,
+                                   List<WordMatch> matches) {
+        int edits = distance.prefixDistance(queryWord, word.text, maxDistance);
+        if (edits <= maxDistance) {
+            matches.add(new WordMatch(word, edits));
+        }
+    }
+
+    // Smallest word ordinal not yet taken from the first cursors.length lists, or -1 when exhausted
+    private static int nextWord(Postings[] lists, int[] cursors) {
+        int smallest = Integer.MAX_VALUE;
+        for (int i = 0; i < cursors.length; i++) {
+            if (cursors[i] < lists[i].size) {
+                smallest = Math.min(smallest, lists[i].ordinals[cursors[i]] >>> POSITION_BITS);
+            }
+        }
+        if (smallest == Integer.MAX_VALUE) {
+            return -1;
+        }
+        for (int i = 0; i < cursors.length; i++) {
+            while (cursors[i] < lists[i].size && lists[i].ordinals[cursors[i]] >>> POSITION_BITS == smallest) {
+                cursors[i]++;
+            }
+        }
+        return smallest;
+    }
+
+    private static boolean sharesAtLeast(Postings[] lists, int[] positions, int maxDistance, int wordOrdinal, int required) {
+        int shared = 0;
+        for (int i = 0; i < lists.length; i++) {
+            int low = entry(wordOrdinal, Math.max(0, positions[i] - maxDistance));
+            int high = entry(wordOrdinal, positions[i] + maxDistance);
+            int index = Arrays.binarySearch(lists[i].ordinals, 0, lists[i].size, low);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            if (index < lists[i].size && lists[i].ordinals[index] <= high) {
+                if (++shared == required) {
+                    return true;
+                }
+            } else if (lists.length - i - 1 < required - shared) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static int entry(int wordOrdinal, int position) {
+        return wordOrdinal << POSITION_BITS | Math.min(position, MAX_POSITION);
+    }
+
+    /**
+     * Total edits for every query word to match the start of some name word,
+     * or -1 if one of them matches none within its bound.
+     */
+    private static int nameDistance(String[] queryWords, int[] bounds, String[] name, EditDistance distance) {
+        int total = 0;
+        for (int i = 0; i < queryWords.length; i++) {
+            int best = bounds[i] + 1;
+            for (int w = 0; w < name.length && best > 0; w++) {
+                best = Math.min(best, distance.prefixDistance(queryWords[i], name[w], best - 1));
+            }
+            if (best > bounds[i]) {
+                return -1;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    // --- Edit Distance ---
+
+    /**
+     * Optimal string alignment distance (Levenshtein plus adjacent swaps) from
+     * a query word to the closest prefix of a word, with reusable rows.
+     */
+    private static final class EditDistance {
+        private int[] beforePrevious;
+        private int[] previous;
+        private int[] current;
+
+        EditDistance(int maxQueryLength) {
+            beforePrevious = new int[maxQueryLength + 1];
+            previous = new int[maxQueryLength + 1];
+            current = new int[maxQueryLength + 1];
+        }
+
+        /**
+         * Walks the word one letter at a time, keeping a column of distances
+         * per query position, and stops once two columns exceed the bound.
+         * Returns bound + 1 when no prefix is close enough.
+         */
+        int prefixDistance(String query, String word, int bound) {
+            int queryLength = query.length();
+            if (bound < 0 || word.length() < queryLength - bound) {
+                return bound + 1;
+            }
+            for (int i = 0; i <= queryLength; i++) {
+                previous[i] = i;
+            }
+            int best = queryLength;
+            int previousMin = 0;
+            int end = Math.min(word.length(), queryLength + bound);
+            for (int j = 1; j <= end; j++) {
+                char c = word.charAt(j - 1);
+                current[0] = j;
+                int columnMin = j;
+                for (int i = 1; i <= queryLength; i++) {
+                    char q = query.charAt(i - 1);
+                    int cell = Math.min(previous[i - 1] + (q == c ? 0 : 1), Math.min(previous[i], current[i - 1]) + 1);
+                    if (i > 1 && j > 1 && q == word.charAt(j - 2) && query.charAt(i - 2) == c) {
+                        cell = Math.min(cell, beforePrevious[i - 2] + 1);
+                    }
+                    current[i] = cell;
+                    columnMin = Math.min(columnMin, cell);
+                }
+                best = Math.min(best, current[queryLength]);
+                if (columnMin > bound && previousMin > bound) {
+                    break;
+                }
+                previousMin = columnMin;
+                int[] recycled = beforePrevious;
+                beforePrevious = previous;
+                previous = current;
+                current = recycled;
+            }
+            return Math.min(best, bound + 1);
+        }
+    }
+
+    // --- Normalization ---
+
+    private static String[] split(String name) {
+        String normalized = name.trim().toLowerCase(Locale.ROOT);
+        return normalized.isEmpty() ? new String[0] : normalized.split("\\s+");
+    }
+
+    private static List<String> trigrams(String word) {
+        String padded = "  " + word;
+        List<String> grams = new ArrayList<>(word.length());
+        for (int g = 0; g + 3 <= padded.length(); g++) {
+            grams.add(padded.substring(g, g + 3));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,187 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel of deadlines. Six levels of 64 slots each: level 0
+ * spans 64 ticks one tick per slot, and every level above spans 64 times the
+ * one below. A deadline is filed at the level whose span covers its distance
+ * and moves down a level each time its slot comes round, so scheduling and
+ * cancelling are O(1) and each deadline is touched at most once per level
+ * before it fires, however many are pending.
+ *
+ * Slots are intrusive doubly linked lists of Timer nodes, so cancelling
+ * unlinks in place. All methods are serialized on the wheel; advance returns
+ * what expired so callers act on it outside the lock.
+ */
+public class DeadlineWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 6; // 64^6 ticks: about 2,000 years at one-second ticks
+
+    /**
+     * A scheduled deadline. Cancel it through the wheel that issued it.
+     */
+    public static final class Timer<T> {
+        private final T item;
+        private final long deadlineMillis;
+        private final long deadlineTick;
+        private Timer<T> previous;
+        private Timer<T> next;
+        private int level = -1; // -1 once fired or cancelled
+        private int slot;
+
+        private Timer(T item, long deadlineMillis, long deadlineTick) {
+            this.item = item;
+            this.deadlineMillis = deadlineMillis;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public long getDeadlineMillis() {
+            return deadlineMillis;
+        }
+    }
+
+    private final long tickMillis;
+    private final Timer<T>[][] heads;
+    private long currentTick; // Every tick up to and including this one has been processed
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"}) // Generic arrays cannot be created directly
+    public DeadlineWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.heads = new Timer[LEVELS][SLOTS];
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    // --- Scheduling ---
+
+    /**
+     * Schedules the item to expire at the given time. A deadline already in
+     * the past expires on the next advance.
+     */
+    public synchronized Timer<T> schedule(T item, long deadlineMillis) {
+        Timer<T> timer = new Timer<>(item, deadlineMillis, Math.floorDiv(deadlineMillis, tickMillis));
+        file(timer, 1);
+        size++;
+        return timer;
+    }
+
+    /**
+     * Returns false if the timer had already fired or been cancelled.
+     */
+    public synchronized boolean cancel(Timer<T> timer) {
+        if (timer.level < 0) {
+            return false;
+        }
+        unlink(timer);
+        size--;
+        return true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // --- Expiry ---
+
+    /**
+     * Processes every tick up to the given time and returns the timers that
+     * expired, earliest tick first.
+     */
+    public synchronized List<Timer<T>> advance(long nowMillis) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        List<Timer<T>> expired = new ArrayList<>();
+        if (size == 0) {
+            currentTick = Math.max(currentTick, targetTick); // Nothing to cascade, so skip idle stretches
+            return expired;
+        }
+
+        while (currentTick < targetTick) {
+            long tick = ++currentTick;
+            // Pull down every higher-level slot whose span starts at this tick
+            for (int level = 1; level < LEVELS; level++) {
+                int shift = level * SLOT_BITS;
+                if ((tick & ((1L << shift) - 1)) != 0) {
+                    break;
+                }
+                cascade(level, (int) ((tick >>> shift) & SLOT_MASK));
+            }
+
+            int slot = (int) (tick & SLOT_MASK);
+            Timer<T> timer = heads[0][slot];
+            heads[0][slot] = null;
+            while (timer != null) {
+                Timer<T> following = timer.next;
+                timer.previous = null;
+                timer.next = null;
+                timer.level = -1;
+                expired.add(timer);
+                size--;
+                timer = following;
+            }
+        }
+        return expired;
+    }
+
+    private void cascade(int level, int slot) {
+        Timer<T> timer = heads[level][slot];
+        heads[level][slot] = null;
+        while (timer != null) {
+            Timer<T> following = timer.next;
+            timer.previous = null;
+            timer.next = null;
+            file(timer, 0);
+            timer = following;
+        }
+    }
+
+    // --- Slot Lists ---
+
+    // Files the timer at the lowest level whose span reaches its deadline. Outside
+    // advance the current tick is already processed, so minDelta is then 1.
+    private void file(Timer<T> timer, long minDelta) {
+        long delta = Math.max(minDelta, timer.deadlineTick - currentTick);
+        long tick = currentTick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << ((level + 1) * SLOT_BITS)) {
+            level++;
+        }
+        if (delta >= 1L << (LEVELS * SLOT_BITS)) {
+            // Beyond the top level: park in the farthest slot and re-file when it comes round
+            tick = currentTick + ((long) SLOT_MASK << ((LEVELS - 1) * SLOT_BITS));
+        }
+
+        int slot = (int) ((tick >>> (level * SLOT_BITS)) & SLOT_MASK);
+        Timer<T> head = heads[level][slot];
+        timer.level = level;
+        timer.slot = slot;
+        timer.next = head;
+        if (head != null) {
+            head.previous = timer;
+        }
+        heads[level][slot] = timer;
+    }
+
+    private void unlink(Timer<T> timer) {
+        if (timer.previous != null) {
+            timer.previous.next = timer.next;
+        } else {
+            heads[timer.level][timer.slot] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+        }
+        timer.previous = null;
+        timer.next = null;
+        timer.level = -1;
+    }
+}
@@ -0,0 +1,63 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Event subscriber that appends one line per RentalEvent to a text file,
+ * flushing whenever the ring has no further event waiting. Runs on its
+ * subscription's thread, so file I/O never delays the operations.
+ *
+ * Meant for a DROP_OLDEST subscription: events skipped while the disk fell a
+ * full ring behind are recorded as a gap line, so the log never looks
+ * complete when it is not.
+ */
+public class EventLogWriter implements RentalEventRing.Handler, Closeable {
+
+    private final Path path;
+    private final BufferedWriter writer;
+
+    public EventLogWriter(Path path) throws IOException {
+        this.path = path;
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void onEvent(RentalEvent event, boolean endOfBatch) {
+        try {
+            writer.write(event.getTimeMillis() + " " + event);
+            writer.newLine();
+            if (endOfBatch) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void onDropped(long firstSequence, long count) {
+        try {
+            writer.write(System.currentTimeMillis() + " GAP " + count + " events dropped from #" + firstSequence);
+            writer.newLine();
+        } catch (IOException e) {
+            System.err.println("Error writing " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Close the subscription first, so no event arrives after this.
+     */
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Error closing " + path + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * Why a rental-system operation was rejected.
+ */
+public enum FailureReason {
+    BIKE_NOT_FOUND,
+    BIKE_NOT_AVAILABLE,
+    BIKE_NOT_IN_REPAIR,
+    CUSTOMER_NOT_FOUND,
+    RENTAL_NOT_ACTIVE,
+    BAD_DURATION,
+    BIKE_RESERVED,
+    BAD_TIME_WINDOW,
+    RESERVATION_NOT_FOUND,
+    IO_ERROR
+}
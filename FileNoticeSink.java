@@ -0,0 +1,59 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends receipts and notices to a text file through a buffered writer. Output
+ * reaches the file when the buffer fills or on flush/close.
+ */
+public class FileNoticeSink implements NoticeSink {
+
+    private final Path path;
+    private final BufferedWriter writer;
+
+    public FileNoticeSink(Path path) throws IOException {
+        this.path = path;
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void receipt(Receipt receipt) {
+        write(receipt.render());
+    }
+
+    @Override
+    public synchronized void notice(OperationNotice notice) {
+        write(notice.render());
+        write(System.lineSeparator());
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Error closing " + path + ": " + e.getMessage());
+        }
+    }
+
+    private void write(String text) {
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            System.err.println("Error writing " + path + ": " + e.getMessage());
+        }
+    }
+}
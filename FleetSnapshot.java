@@ -0,0 +1,264 @@
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Immutable point-in-time view of a BikeRentalSystem: its bikes, customers
+ * and active rentals exactly as they stood after one committed change, for
+ * reports that walk the whole fleet while rentals carry on.
+ *
+ * Every committed change produces a new snapshot that shares all unchanged
+ * entries with the previous one (see PersistentSortedMap), so taking a
+ * snapshot is reading one reference and holding one costs nothing until the
+ * fleet moves on. Entries are frozen value copies, never the live Bike and
+ * Rental objects, so nothing read here changes afterwards.
+ */
+public final class FleetSnapshot {
+
+    private static final BikeStatus[] STATUSES = BikeStatus.values();
+
+    static final FleetSnapshot EMPTY = new FleetSnapshot(0, PersistentSortedMap.empty(), PersistentSortedMap.empty(),
+        PersistentSortedMap.empty(), new int[STATUSES.length]);
+
+    /**
+     * A bike as it stood in the snapshot.
+     */
+    public static final class BikeState {
+        private final String bikeId;
+        private final String model;
+        private final double hourlyRate;
+        private final BikeStatus status;
+        private final long lastMaintenanceMillis;
+
+        private BikeState(Bike bike) {
+            this.bikeId = bike.getBikeId();
+            this.model = bike.getModel();
+            this.hourlyRate = bike.getHourlyRate();
+            this.status = bike.getStatus();
+            this.lastMaintenanceMillis = bike.getLastMaintenanceDate().getTime();
+        }
+
+        static BikeState of(Bike bike) {
+            return new BikeState(bike);
+        }
+
+        public String getBikeId() {
+            return bikeId;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public double getHourlyRate() {
+            return hourlyRate;
+        }
+
+        public BikeStatus getStatus() {
+            return status;
+        }
+
+        public long getLastMaintenanceMillis() {
+            return lastMaintenanceMillis;
+        }
+    }
+
+    /**
+     * An active rental as it stood in the snapshot.
+     */
+    public static final class RentalState {
+        private final int rentalId;
+        private final Customer customer;
+        private final String bikeId;
+        private final long startTimeMillis;
+        private final long expectedReturnMillis;
+
+        private RentalState(Rental rental) {
+            this.rentalId = rental.getRentalId();
+            this.customer = rental.getCustomer();
+            this.bikeId = rental.getBike().getBikeId();
+            this.startTimeMillis = rental.getStartTimeMillis();
+            this.expectedReturnMillis = rental.getExpectedReturnMillis();
+        }
+
+        static RentalState of(Rental rental) {
+            return new RentalState(rental);
+        }
+
+        public int getRentalId() {
+            return rentalId;
+        }
+
+        public Customer getCustomer() {
+            return customer;
+        }
+
+        public String getBikeId() {
+            return bikeId;
+        }
+
+        public long getStartTimeMillis() {
+            return startTimeMillis;
+        }
+
+        public long getExpectedReturnMillis() {
+            return expectedReturnMillis;
+        }
+
+        public boolean isOverdue(long nowMillis) {
+            return nowMillis >= expectedReturnMillis;
+        }
+    }
+
+    private final long version;
+    private final PersistentSortedMap<String, BikeState> bikes;         // By lowercase bike ID
+    private final PersistentSortedMap<Integer, Customer> customers;
+    private final PersistentSortedMap<Integer, RentalState> rentals;
+    private final int[] statusCounts;                                   // Never written once published
+
+    private FleetSnapshot(long version, PersistentSortedMap<String, BikeState> bikes,
+                          PersistentSortedMap<Integer, Customer> customers,
+                          PersistentSortedMap<Integer, RentalState> rentals, int[] statusCounts) {
+        this.version = version;
+        this.bikes = bikes;
+        this.customers = customers;
+        this.rentals = rentals;
+        this.statusCounts = statusCounts;
+    }
+
+    /**
+     * Increases by one with every committed change, so two snapshots with the
+     * same version hold the same data.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    // --- Bikes ---
+
+    /**
+     * Every bike, in ID order.
+     */
+    public Collection<BikeState> getBikes() {
+        return view(bikes);
+    }
+
+    public Optional<BikeState> findBike(String bikeId) {
+        return Optional.ofNullable(bikeId == null ? null : bikes.get(normalizeKey(bikeId)));
+    }
+
+    public int countBikes() {
+        return bikes.size();
+    }
+
+    public int countBikes(BikeStatus status) {
+        return statusCounts[status.ordinal()];
+    }
+
+    // --- Customers ---
+
+    /**
+     * Every customer, in ID order.
+     */
+    public Collection<Customer> getCustomers() {
+        return view(customers);
+    }
+
+    public Optional<Customer> findCustomer(int customerId) {
+        return Optional.ofNullable(customers.get(customerId));
+    }
+
+    // --- Rentals ---
+
+    /**
+     * Rentals not yet returned, in rental ID order.
+     */
+    public Collection<RentalState> getActiveRentals() {
+        return view(rentals);
+    }
+
+    public Optional<RentalState> findActiveRental(int rentalId) {
+        return Optional.ofNullable(rentals.get(rentalId));
+    }
+
+    public int countActiveRentals() {
+        return rentals.size();
+    }
+
+    /**
+     * Builds a snapshot of loaded data in one pass. Each collection must be
+     * in key order: bikes by lowercase ID, customers and rentals by ID.
+     */
+    static FleetSnapshot of(long version, Collection<Bike> bikesInIdOrder, Collection<Customer> customersInIdOrder,
+                            Collection<Rental> rentalsInIdOrder) {
+        List<BikeState> bikeStates = new ArrayList<>(bikesInIdOrder.size());
+        int[] counts = new int[STATUSES.length];
+        for (Bike bike : bikesInIdOrder) {
+            BikeState state = BikeState.of(bike);
+            bikeStates.add(state);
+            counts[state.getStatus().ordinal()]++;
+        }
+        List<RentalState> rentalStates = new ArrayList<>(rentalsInIdOrder.size());
+        for (Rental rental : rentalsInIdOrder) {
+            rentalStates.add(RentalState.of(rental));
+        }
+        return new FleetSnapshot(version, PersistentSortedMap.ofSorted(bikeStates, state -> normalizeKey(state.getBikeId())),
+            PersistentSortedMap.ofSorted(customersInIdOrder, Customer::getCustomerId),
+            PersistentSortedMap.ofSorted(rentalStates, RentalState::getRentalId), counts);
+    }
+
+    // --- Changes ---
+    // States are captured by the caller, so applying a change again after a lost race gives the same result
+
+    FleetSnapshot withBike(BikeState state) {
+        String key = normalizeKey(state.getBikeId());
+        BikeState previous = bikes.get(key);
+        int[] counts = statusCounts;
+        if (previous == null || previous.getStatus() != state.getStatus()) {
+            counts = statusCounts.clone();
+            if (previous != null) {
+                counts[previous.getStatus().ordinal()]--;
+            }
+            counts[state.getStatus().ordinal()]++;
+        }
+        return new FleetSnapshot(version, bikes.put(key, state), customers, rentals, counts);
+    }
+
+    FleetSnapshot withCustomer(Customer customer) {
+        return new FleetSnapshot(version, bikes, customers.put(customer.getCustomerId(), customer), rentals, statusCounts);
+    }
+
+    FleetSnapshot withRental(RentalState rental) {
+        return new FleetSnapshot(version, bikes, customers, rentals.put(rental.getRentalId(), rental), statusCounts);
+    }
+
+    FleetSnapshot withoutRental(int rentalId) {
+        return new FleetSnapshot(version, bikes, customers, rentals.remove(rentalId), statusCounts);
+    }
+
+    FleetSnapshot nextVersion() {
+        return new FleetSnapshot(version + 1, bikes, customers, rentals, statusCounts);
+    }
+
+    private static <V> Collection<V> view(PersistentSortedMap<?, V> map) {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return map.iterator();
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+        };
+    }
+
+    private static String normalizeKey(String key) {
+        return key.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,209 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Background writer that group-commits journal records. Appenders enqueue
+ * encoded records and return immediately; the writer thread collects records
+ * for up to maxLatency (or until maxBatchRecords are waiting), writes them with
+ * one gathering write and makes them durable with a single FileChannel.force.
+ *
+ * A failed write stops the writer for good: every later enqueue and
+ * awaitDurable throws the failure. The journal replaces a failed writer once
+ * a snapshot has covered the records it lost (see RentalJournal.reset).
+ */
+public class GroupCommitWriter {
+
+    private static final class Pending {
+        final byte[] bytes;
+        final long sequence;
+
+        Pending(byte[] bytes, long sequence) {
+            this.bytes = bytes;
+            this.sequence = sequence;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long maxLatencyNanos;
+    private final int maxBatchRecords;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition recordsQueued = lock.newCondition();
+    private final Condition recordsDurable = lock.newCondition();
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private long enqueuedSequence;
+    private long durableSequence;
+    private volatile IOException failure;
+    private boolean running = true;
+
+    private final Thread writerThread;
+
+    public GroupCommitWriter(FileChannel channel, long maxLatency, TimeUnit unit, int maxBatchRecords) {
+        this(channel, maxLatency, unit, maxBatchRecords, 0);
+    }
+
+    /**
+     * @param durableSequence the last sequence already made durable some other
+     *        way, e.g. by a snapshot; waiting on it or anything before returns at once
+     */
+    public GroupCommitWriter(FileChannel channel, long maxLatency, TimeUnit unit, int maxBatchRecords, long durableSequence) {
+        this.channel = channel;
+        this.maxLatencyNanos = unit.toNanos(maxLatency);
+        this.maxBatchRecords = maxBatchRecords;
+        this.enqueuedSequence = durableSequence;
+        this.durableSequence = durableSequence;
+        this.writerThread = new Thread(this::runWriter, "journal-group-commit");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues already-framed record bytes. Sequences must be increasing; the
+     * journal assigns them under its own lock so queue order is journal order.
+     */
+    public void enqueue(byte[] bytes, long sequence) throws IOException {
+        lock.lock();
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+            queue.add(new Pending(bytes, sequence));
+            enqueuedSequence = sequence;
+            recordsQueued.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every record up to the given sequence has been forced to disk.
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        lock.lock();
+        try {
+            while (durableSequence < sequence && failure == null) {
+                recordsDurable.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The write failure that stopped the writer, or null while it is healthy.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Blocks until everything queued so far is durable.
+     */
+    public void drain() throws IOException {
+        long target;
+        lock.lock();
+        try {
+            target = enqueuedSequence;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(target);
+    }
+
+    /**
+     * Flushes what is queued and stops the writer thread.
+     */
+    public void close() throws IOException {
+        drain();
+        lock.lock();
+        try {
+            running = false;
+            recordsQueued.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        List<Pending> group = new ArrayList<>(maxBatchRecords);
+        while (true) {
+            lock.lock();
+            try {
+                while (queue.isEmpty() && running) {
+                    recordsQueued.awaitUninterruptibly();
+                }
+                if (queue.isEmpty()) {
+                    return;
+                }
+
+                // Hold the group open for the latency window unless it fills up first
+                long remaining = maxLatencyNanos;
+                while (queue.size() < maxBatchRecords && remaining > 0 && running) {
+                    try {
+                        remaining = recordsQueued.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        remaining = 0;
+                    }
+                }
+                while (!queue.isEmpty() && group.size() < maxBatchRecords) {
+                    group.add(queue.poll());
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                writeGroup(group);
+            } catch (IOException e) {
+                System.err.println("Error writing journal: " + e);
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSequence = group.get(group.size() - 1).sequence;
+                }
+                recordsDurable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            group.clear();
+            if (error != null) {
+                return;
+            }
+        }
+    }
+
+    private void writeGroup(List<Pending> group) throws IOException {
+        ByteBuffer[] buffers = new ByteBuffer[group.size()];
+        long total = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(group.get(i).bytes);
+            total += buffers[i].remaining();
+        }
+        long written = 0;
+        while (written < total) {
+            written += channel.write(buffers);
+        }
+        channel.force(false);
+    }
+}
@@ -0,0 +1,285 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Returned rentals archived on disk, one append-only segment file per month of
+ * return (history/2024-05.seg). Only a small index of segments and their
+ * committed lengths is kept in memory; rows are read back lazily, one memory
+ * mapped segment at a time, and only for the months a query covers.
+ *
+ * Appends become visible in two steps: append writes rows past each segment's
+ * committed length and returns the new lengths, and commit publishes them once
+ * the snapshot recording those lengths is in place. After a crash in between,
+ * restore truncates each segment back to the length the surviving snapshot
+ * recorded, so journal replay never archives a row twice.
+ */
+public class HistoryArchive {
+
+    private static final int MAGIC = 0x424B4853; // "BKHS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int FIXED_RECORD_SIZE = 38; // rentalId, customerId, start, return, duration, charge, bikeId length
+    private static final String SUFFIX = ".seg";
+
+    private final File directory;
+    private final ZoneId zone;
+    private final Function<String, Bike> bikes;
+    private volatile NavigableMap<YearMonth, Long> committed = Collections.emptyNavigableMap();
+
+    /**
+     * @param bikes resolves archived bike IDs back to inventory bikes
+     */
+    public HistoryArchive(File directory, ZoneId zone, Function<String, Bike> bikes) {
+        this.directory = directory;
+        this.zone = zone;
+        this.bikes = bikes;
+    }
+
+    /**
+     * Committed segment lengths keyed by month, for storing in a snapshot.
+     */
+    public Map<String, Long> getCommittedLengths() {
+        Map<String, Long> lengths = new HashMap<>();
+        committed.forEach((month, length) -> lengths.put(month.toString(), length));
+        return lengths;
+    }
+
+    /**
+     * File name of the segment for a month returned by getCommittedLengths.
+     */
+    public static String segmentFileName(String month) {
+        return month + SUFFIX;
+    }
+
+    /**
+     * Copies the first length bytes of a month's segment, e.g. to seed a
+     * replica. Appends only ever write past a committed length, so a length
+     * taken from getCommittedLengths can be copied later without any lock.
+     */
+    public void copySegment(String month, long length, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(YearMonth.parse(month)), StandardOpenOption.READ)) {
+            if (channel.size() < length) {
+                throw new IOException("History segment " + month + SUFFIX + " is shorter than its committed length");
+            }
+            WritableByteChannel target = Channels.newChannel(out);
+            for (long position = 0; position < length; ) {
+                position += channel.transferTo(position, length - position, target);
+            }
+        }
+    }
+
+    // --- Recovery ---
+
+    /**
+     * Adopts the segment lengths recorded by the snapshot being loaded, cutting
+     * off rows appended after it and deleting segments it does not know about.
+     */
+    public void restore(Map<String, Long> lengths) throws IOException {
+        NavigableMap<YearMonth, Long> restored = new TreeMap<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String month = file.getName().substring(0, file.getName().length() - SUFFIX.length());
+                Long length = lengths.get(month);
+                if (length == null) {
+                    Files.delete(file.toPath());
+                    continue;
+                }
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    if (channel.size() < length) {
+                        throw new IOException("History segment " + file + " is shorter than its snapshot recorded");
+                    }
+                    channel.truncate(length);
+                }
+                restored.put(YearMonth.parse(month), length);
+            }
+        }
+        for (String month : lengths.keySet()) {
+            if (!restored.containsKey(YearMonth.parse(month))) {
+                throw new IOException("History segment " + month + SUFFIX + " is missing from " + directory);
+            }
+        }
+        committed = Collections.unmodifiableNavigableMap(restored);
+    }
+
+    // --- Appends ---
+
+    /**
+     * Writes the rows to their month's segment past its committed length and
+     * forces them to disk. Returns every segment's length including the new
+     * rows; they stay invisible to readers until commit.
+     */
+    public Map<String, Long> append(RentalHistory rows) throws IOException {
+        Map<YearMonth, List<Integer>> rowsByMonth = new TreeMap<>();
+        for (int row = 0; row < rows.size(); row++) {
+            rowsByMonth.computeIfAbsent(monthOf(rows.getReturnMillis(row)), month -> new ArrayList<>()).add(row);
+        }
+
+        Map<String, Long> lengths = getCommittedLengths();
+        if (!rowsByMonth.isEmpty() && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create history directory " + directory);
+        }
+        for (Map.Entry<YearMonth, List<Integer>> entry : rowsByMonth.entrySet()) {
+            YearMonth month = entry.getKey();
+            long length = committed.getOrDefault(month, 0L);
+            try (FileChannel channel = FileChannel.open(segmentPath(month), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // Anything past the committed length is left over from an append that was never committed
+                channel.truncate(length);
+                channel.position(length);
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+                if (length == 0) {
+                    buffer.putInt(MAGIC).putInt(VERSION);
+                } else {
+                    checkHeader(channel, month);
+                    channel.position(length);
+                }
+                for (int row : entry.getValue()) {
+                    byte[] bikeId = rows.getBike(row).getBikeId().getBytes(StandardCharsets.UTF_8);
+                    if (buffer.remaining() < FIXED_RECORD_SIZE + bikeId.length) {
+                        drain(channel, buffer);
+                    }
+                    buffer.putInt(rows.getRentalId(row));
+                    buffer.putInt(rows.getCustomerId(row));
+                    buffer.putLong(rows.getStartMillis(row));
+                    buffer.putLong(rows.getReturnMillis(row));
+                    buffer.putInt(rows.getDurationHours(row));
+                    buffer.putLong(rows.getChargePaise(row));
+                    buffer.putShort((short) bikeId.length);
+                    buffer.put(bikeId);
+                }
+                drain(channel, buffer);
+                channel.force(true);
+                lengths.put(month.toString(), channel.position());
+            }
+        }
+        return lengths;
+    }
+
+    private static void checkHeader(FileChannel channel, YearMonth month) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.position(0);
+        while (header.hasRemaining() && channel.read(header) >= 0) {
+            // Read the whole header
+        }
+        header.flip();
+        if (header.remaining() != HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("History segment " + month + SUFFIX + " has an unrecognized format");
+        }
+    }
+
+    /**
+     * Publishes lengths returned by append once they are durably recorded elsewhere.
+     */
+    public void commit(Map<String, Long> lengths) {
+        NavigableMap<YearMonth, Long> published = new TreeMap<>();
+        lengths.forEach((month, length) -> published.put(YearMonth.parse(month), length));
+        committed = Collections.unmodifiableNavigableMap(published);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // --- Reads ---
+
+    /**
+     * Streams archived rentals returned between the given instants (inclusive
+     * start, exclusive end), reading only the segments for those months.
+     * Segments are mapped as the stream reaches them; segments are independent,
+     * so a parallel stream reads several at once.
+     */
+    public Stream<HistoryRecord> records(long fromMillis, long toMillis) {
+        NavigableMap<YearMonth, Long> segments = committed;
+        if (fromMillis > Long.MIN_VALUE) {
+            segments = segments.tailMap(monthOf(fromMillis), true);
+        }
+        if (toMillis < Long.MAX_VALUE) {
+            segments = segments.headMap(monthOf(toMillis), true);
+        }
+        List<Map.Entry<YearMonth, Long>> selected = new ArrayList<>(segments.entrySet());
+        return selected.stream().flatMap(entry -> readSegment(entry.getKey(), entry.getValue()));
+    }
+
+    public Stream<HistoryRecord> records() {
+        return records(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private Stream<HistoryRecord> readSegment(YearMonth month, long length) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segmentPath(month), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } catch (IOException e) {
+            System.err.println("Error reading history segment " + month + ": " + e.getMessage());
+            return Stream.empty();
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            System.err.println("Error reading history segment " + month + ": unrecognized format");
+            return Stream.empty();
+        }
+
+        Iterator<HistoryRecord> rows = new Iterator<HistoryRecord>() {
+            @Override
+            public boolean hasNext() {
+                return buffer.hasRemaining();
+            }
+
+            @Override
+            public HistoryRecord next() {
+                if (!buffer.hasRemaining()) {
+                    throw new NoSuchElementException();
+                }
+                int rentalId = buffer.getInt();
+                int customerId = buffer.getInt();
+                long startMillis = buffer.getLong();
+                long returnMillis = buffer.getLong();
+                int durationHours = buffer.getInt();
+                long chargePaise = buffer.getLong();
+                byte[] bikeId = new byte[buffer.getShort()];
+                buffer.get(bikeId);
+                Bike bike = bikes.apply(new String(bikeId, StandardCharsets.UTF_8));
+                return new HistoryRecord(rentalId, customerId, bike, startMillis, returnMillis, durationHours, chargePaise);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private YearMonth monthOf(long returnMillis) {
+        return YearMonth.from(Instant.ofEpochMilli(returnMillis).atZone(zone));
+    }
+
+    private Path segmentPath(YearMonth month) {
+        return new File(directory, month + SUFFIX).toPath();
+    }
+}
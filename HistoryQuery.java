@@ -0,0 +1,46 @@
+import java.util.Locale;
+
+/**
+ * Filters for BikeRentalSystem.queryHistory. Unset filters match every rental;
+ * the return-time range also decides which monthly segments are read at all.
+ */
+public class HistoryQuery {
+
+    private Integer customerId;
+    private String bikeId;
+    private long fromMillis = Long.MIN_VALUE;
+    private long toMillis = Long.MAX_VALUE;
+
+    public HistoryQuery customer(int customerId) {
+        this.customerId = customerId;
+        return this;
+    }
+
+    public HistoryQuery bike(String bikeId) {
+        this.bikeId = bikeId == null ? null : bikeId.toLowerCase(Locale.ROOT);
+        return this;
+    }
+
+    /**
+     * Keeps rentals returned in [fromMillis, toMillis).
+     */
+    public HistoryQuery returnedBetween(long fromMillis, long toMillis) {
+        this.fromMillis = fromMillis;
+        this.toMillis = toMillis;
+        return this;
+    }
+
+    public long getFromMillis() {
+        return fromMillis;
+    }
+
+    public long getToMillis() {
+        return toMillis;
+    }
+
+    public boolean matches(HistoryRecord record) {
+        return (customerId == null || record.getCustomerId() == customerId)
+            && (bikeId == null || record.getBike().getBikeId().toLowerCase(Locale.ROOT).equals(bikeId))
+            && record.getReturnMillis() >= fromMillis && record.getReturnMillis() < toMillis;
+    }
+}
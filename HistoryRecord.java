@@ -0,0 +1,59 @@
+/**
+ * One returned rental as read back from the rental history.
+ */
+public final class HistoryRecord {
+
+    private final int rentalId;
+    private final int customerId;
+    private final Bike bike;
+    private final long startMillis;
+    private final long returnMillis;
+    private final int durationHours;
+    private final long chargePaise;
+
+    public HistoryRecord(int rentalId, int customerId, Bike bike, long startMillis, long returnMillis,
+                         int durationHours, long chargePaise) {
+        this.rentalId = rentalId;
+        this.customerId = customerId;
+        this.bike = bike;
+        this.startMillis = startMillis;
+        this.returnMillis = returnMillis;
+        this.durationHours = durationHours;
+        this.chargePaise = chargePaise;
+    }
+
+    public int getRentalId() {
+        return rentalId;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public Bike getBike() {
+        return bike;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Zero for rentals returned before return times were recorded.
+     */
+    public long getReturnMillis() {
+        return returnMillis;
+    }
+
+    public int getDurationHours() {
+        return durationHours;
+    }
+
+    public long getChargePaise() {
+        return chargePaise;
+    }
+
+    public double getCharge() {
+        return PricingEngine.toRupees(chargePaise);
+    }
+}
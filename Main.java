@@ -1,8 +1,25 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
 import java.util.InputMismatchException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
 import java.util.Optional;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Main class to run the interactive Bike Rental System application.
@@ -11,11 +28,64 @@ public class Main {
 
     private static final String ADMIN_USERNAME = "root";
     private static final String ADMIN_PASSWORD = "root";
+    private static final int DEFAULT_API_PORT = 8080;
+    private static final int PAGE_SIZE = 10;
+    private static final int REPORT_TOP_N = 5;
+    private static final int HISTORY_LIMIT = 50;
+    private static final int CUSTOMER_MATCHES = 5;
+    private static final DateTimeFormatter RESERVATION_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final String METRICS_MBEAN_NAME = "bikerental:type=RentalMetrics";
+    private static final long GROUP_COMMIT_LATENCY_MILLIS = 2;
+    private static final int GROUP_COMMIT_MAX_RECORDS = 1024;
+    private static final String DEFAULT_REPLICA_DIRECTORY = "replica";
     private static final Scanner scanner = new Scanner(System.in);
     private static BikeRentalSystem system;
 
     public static void main(String[] args) {
-        system = new BikeRentalSystem();
+        String primary = optionValue(args, "--follow");
+        if (primary != null) {
+            String port = optionValue(args, "--server");
+            runReplica(primary, port != null ? Integer.parseInt(port) : DEFAULT_API_PORT, optionValue(args, "--bind"),
+                Optional.ofNullable(optionValue(args, "--replica-dir")).orElse(DEFAULT_REPLICA_DIRECTORY));
+            return;
+        }
+
+        try {
+            system = new BikeRentalSystem();
+        } catch (UncheckedIOException e) {
+            // Starting empty would overwrite the existing data at the next save
+            System.err.println(e.getMessage());
+            System.err.println("Fix or move the data files, then start again.");
+            return;
+        }
+        system.getMetrics().registerMBean(METRICS_MBEAN_NAME);
+        String serviceDays = optionValue(args, "--service-days");
+        if (serviceDays != null || hasOption(args, "--auto-repair")) {
+            long interval = serviceDays != null ? TimeUnit.DAYS.toMillis(Long.parseLong(serviceDays)) : system.getServiceIntervalMillis();
+            system.setServicePolicy(interval, hasOption(args, "--auto-repair"));
+        }
+        String eventLog = optionValue(args, "--event-log");
+        if (eventLog != null) {
+            startEventLog(eventLog);
+        }
+        String pricingFile = optionValue(args, "--pricing");
+        if (pricingFile != null) {
+            loadPricing(pricingFile);
+        }
+
+        String importFile = optionValue(args, "--import");
+        if (importFile != null) {
+            runImport(importFile);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = args.length > 1 && !args[1].startsWith("--") ? Integer.parseInt(args[1]) : DEFAULT_API_PORT;
+            String replicationPort = optionValue(args, "--replicate");
+            runServer(port, optionValue(args, "--bind"), optionValue(args, "--receipts"),
+                replicationPort != null ? Integer.parseInt(replicationPort) : -1, optionValue(args, "--replicate-bind"));
+            return;
+        }
 
         System.out.println("=================================================");
         System.out.println("      BIKE RENTAL SYSTEM - Initialization        ");
@@ -35,6 +105,145 @@ public class Main {
         }
     }
     
+    // --- Server Mode ---
+
+    // The API and replication listen on loopback unless bind and replicationBind name other interfaces
+    private static void runServer(int port, String bind, String receiptsFile, int replicationPort, String replicationBind) {
+        if (system.isDataEmpty()) {
+            initializeData(system);
+        }
+        system.enableGroupCommit(GROUP_COMMIT_LATENCY_MILLIS, GROUP_COMMIT_MAX_RECORDS);
+        try {
+            // Render receipts on a background thread so request threads never wait on output
+            NoticeSink output = receiptsFile != null ? new FileNoticeSink(Paths.get(receiptsFile)) : new ConsoleNoticeSink();
+            NoticeSink notices = new AsyncNoticeSink(output);
+            system.setNoticeSink(notices);
+
+            ApiServer server = new ApiServer(system, bindAddress(bind), port);
+            ReplicationPrimary replication = replicationPort >= 0
+                ? new ReplicationPrimary(system, bindAddress(replicationBind), replicationPort) : null;
+            if (replication != null) {
+                server.addPrimaryEndpoints(replication);
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                if (replication != null) {
+                    replication.stop();
+                }
+                system.saveData();
+                notices.close();
+            }));
+            server.start();
+            if (replication != null) {
+                replication.start();
+            }
+        } catch (IOException e) {
+            System.err.println("Error starting API server: " + e.getMessage());
+        }
+    }
+
+    // Serves reads from a hot standby of the primary at host:port until promoted via POST /replication/promote
+    private static void runReplica(String primary, int port, String bind, String directory) {
+        int colon = primary.lastIndexOf(':');
+        if (colon < 0) {
+            System.err.println("--follow expects host:port");
+            return;
+        }
+        ReplicaFollower follower = new ReplicaFollower(new File(directory), primary.substring(0, colon),
+            Integer.parseInt(primary.substring(colon + 1)));
+        try {
+            system = follower.start();
+            system.getMetrics().registerMBean(METRICS_MBEAN_NAME);
+            NoticeSink notices = new AsyncNoticeSink(new ConsoleNoticeSink());
+            system.setNoticeSink(notices);
+
+            ApiServer server = new ApiServer(system, bindAddress(bind), port);
+            server.addReplicaEndpoints(follower);
+            follower.onReseed(reseeded -> {
+                reseeded.getMetrics().registerMBean(METRICS_MBEAN_NAME);
+                reseeded.setNoticeSink(notices);
+                system = reseeded;
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                if (!system.isReadOnly()) {
+                    system.saveData();
+                }
+                notices.close();
+            }));
+            server.start();
+        } catch (IOException e) {
+            System.err.println("Error starting replica: " + e.getMessage());
+        }
+    }
+
+    private static InetAddress bindAddress(String bind) throws IOException {
+        return bind != null ? InetAddress.getByName(bind) : InetAddress.getLoopbackAddress();
+    }
+
+    // --- Batch Mode ---
+
+    // Applies a command file ("-" for standard input) without the menu, then saves and exits
+    private static void runImport(String file) {
+        system.enableGroupCommit(GROUP_COMMIT_LATENCY_MILLIS, GROUP_COMMIT_MAX_RECORDS);
+        BatchImporter importer = new BatchImporter(system);
+        try {
+            String summary = file.equals("-")
+                ? importer.importBuffer("stdin", ByteBuffer.wrap(System.in.readAllBytes()))
+                : importer.importFile(Paths.get(file));
+            System.out.print(summary);
+            system.saveData();
+            System.out.println("✅ Import complete. Data saved.");
+        } catch (IOException e) {
+            System.err.println("Error importing " + file + ": " + e.getMessage());
+        } finally {
+            system.close();
+        }
+    }
+
+    // Without valid rules every bike keeps charging its own hourly rate
+    private static void loadPricing(String file) {
+        try {
+            system.setPricing(PricingEngine.load(new File(file), ZoneId.systemDefault()));
+            System.out.println("✅ Loaded pricing rules from " + file);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error loading pricing rules: " + e.getMessage());
+        }
+    }
+
+    // Mirrors every state change into a file through the event stream, losing none
+    private static void startEventLog(String file) {
+        try {
+            EventLogWriter writer = new EventLogWriter(Paths.get(file));
+            // Rentals publish while holding their locks, so a slow disk must lose events rather than stall them
+            RentalEventRing.Subscription subscription = system.subscribe("event-log", RentalEventRing.Backpressure.DROP_OLDEST, writer);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                subscription.close();
+                writer.close();
+            }));
+        } catch (IOException e) {
+            System.err.println("Error opening event log: " + e.getMessage());
+        }
+    }
+
+    private static boolean hasOption(String[] args, String name) {
+        for (String arg : args) {
+            if (arg.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String optionValue(String[] args, String name) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
     // --- Authentication ---
 
     private static boolean authenticateAdmin() {
@@ -64,7 +273,7 @@ public class Main {
                         break;
                     case 3:
                         System.out.println("\n--- Available Bikes ---");
-                        system.listAvailableBikes();
+                        browseBikes(new BikeQuery().status(BikeStatus.AVAILABLE).pageSize(PAGE_SIZE), false);
                         break;
                     case 4:
                         handleListActiveRentals();
@@ -84,17 +293,37 @@ public class Main {
                     case 9:
                         handleCostEstimation();
                         break;
+                    case 11:
+                        handleMetricsReport();
+                        break;
+                    case 12:
+                        handleRevenueReport();
+                        break;
+                    case 13:
+                        handleHistoryLookup();
+                        break;
+                    case 14:
+                        handleReserveBike();
+                        break;
+                    case 15:
+                        handleManageReservations();
+                        break;
+                    case 16:
+                        handleDeadlineReport();
+                        break;
                     case 10: // Exit / Logout
                         system.saveData(); // SAVE DATA ON EXIT
                         running = false;
                         System.out.println("Logged out. Thank you for using the Bike Rental System. Goodbye!");
                         break;
                     default:
-                        System.out.println("Invalid choice. Please enter a number from 1 to 10.");
+                        System.out.println("Invalid choice. Please enter a number from 1 to 16.");
                 }
             } catch (InputMismatchException e) {
                 System.out.println("❌ Invalid input. Please enter a number.");
                 scanner.nextLine(); // Consume invalid input
+            } catch (BikeRentalSystem.ReadOnlyException e) {
+                System.out.println("❌ " + e.getMessage());
             }
         }
     }
@@ -111,6 +340,12 @@ public class Main {
         System.out.println("8. View All Bikes (Status)");
         System.out.println("9. Cost Estimation");
         System.out.println("10. Exit / Logout");
+        System.out.println("11. Performance Metrics");
+        System.out.println("12. Revenue & Utilization Report");
+        System.out.println("13. Rental History Lookup");
+        System.out.println("14. Reserve a Bike");
+        System.out.println("15. Pick Up / Cancel Reservations");
+        System.out.println("16. Overdue Rentals & Service Due");
         System.out.print("Enter choice: ");
     }
     
@@ -122,31 +357,78 @@ public class Main {
         System.out.print("Enter Customer Name: ");
         String customerName = scanner.nextLine().trim();
 
-        // 1. Find or Create Customer
-        Optional<Customer> customerOpt = system.findCustomerByName(customerName);
-        Customer customerToRent;
-
-        if (customerOpt.isPresent()) {
-            customerToRent = customerOpt.get();
-        } else {
-            int newId = system.getNextCustomerId();
-            customerToRent = new Customer(newId, customerName);
-            system.addCustomer(customerToRent);
+        // 1. Find or Create Customer, offering close matches before adding a new one
+        Customer customerToRent = pickCustomer(customerName, true);
+        if (customerToRent == null) {
+            return;
         }
 
-        system.listAvailableBikes();
+        browseBikes(new BikeQuery().status(BikeStatus.AVAILABLE).pageSize(PAGE_SIZE), false);
         System.out.print("Enter Bike ID to rent: ");
         String bikeId = scanner.nextLine().trim();
 
-        Rental rental = system.rentBike(customerToRent.getCustomerId(), bikeId);
+        System.out.print("Expected rental hours (blank for " + TimeUnit.MILLISECONDS.toHours(Rental.DEFAULT_RENTAL_MILLIS) + "): ");
+        String hours = scanner.nextLine().trim();
+        Rental rental;
+        try {
+            rental = hours.isEmpty() ? system.rentBike(customerToRent.getCustomerId(), bikeId)
+                : system.rentBike(customerToRent.getCustomerId(), bikeId, Integer.parseInt(hours));
+        } catch (NumberFormatException e) {
+            System.out.println("❌ Invalid input. Please enter a whole number of hours.");
+            return;
+        }
         if (rental != null) {
             System.out.println("✅ Rental successful! Rental ID is: " + rental.getRentalId());
         }
     }
 
+    /**
+     * Resolves a typed name to a customer. An exact match is used as is;
+     * otherwise close matches are listed so an existing customer can be picked
+     * instead of a misspelt duplicate being created. Returns null if nothing
+     * was chosen.
+     */
+    private static Customer pickCustomer(String name, boolean allowNew) {
+        Optional<Customer> exact = system.findCustomerByName(name);
+        if (exact.isPresent()) {
+            return exact.get();
+        }
+        List<CustomerMatch> matches = system.searchCustomers(name, CUSTOMER_MATCHES);
+        if (matches.isEmpty()) {
+            if (allowNew) {
+                return system.findOrCreateCustomer(name);
+            }
+            System.out.println("❌ Customer " + name + " not found.");
+            return null;
+        }
+
+        System.out.println("Existing customers matching \"" + name + "\":");
+        for (int i = 0; i < matches.size(); i++) {
+            Customer customer = matches.get(i).getCustomer();
+            System.out.printf("  %d. %s (ID %d)\n", i + 1, customer.getName(), customer.getCustomerId());
+        }
+        System.out.print(allowNew
+            ? "Pick a number, or press Enter to add \"" + name + "\" as a new customer: "
+            : "Pick a number, or press Enter to cancel: ");
+        String choice = scanner.nextLine().trim();
+        if (choice.isEmpty()) {
+            return allowNew ? system.findOrCreateCustomer(name) : null;
+        }
+        try {
+            int index = Integer.parseInt(choice);
+            if (index >= 1 && index <= matches.size()) {
+                return matches.get(index - 1).getCustomer();
+            }
+        } catch (NumberFormatException e) {
+            // Falls through to the message below
+        }
+        System.out.println("❌ Invalid choice. Please pick a number from 1 to " + matches.size() + ".");
+        return null;
+    }
+
     private static void handleReturnBike() {
         System.out.println("\n--- End a Rental ---");
-        List<Rental> activeRentals = system.getCurrentlyRentedBikes();
+        Collection<Rental> activeRentals = system.getCurrentlyRentedBikes();
 
         if (activeRentals.isEmpty()) {
             System.out.println("  (No bikes are currently rented.)");
@@ -154,7 +436,12 @@ public class Main {
         }
 
         System.out.println("Currently Active Rentals:");
-        activeRentals.forEach(Rental::displayActiveRentalInfo);
+        String cursor = null;
+        do {
+            Page<Rental> page = system.queryActiveRentals(new RentalQuery().pageSize(PAGE_SIZE), cursor);
+            page.getItems().forEach(Rental::displayActiveRentalInfo);
+            cursor = promptPageMove(page);
+        } while (cursor != null);
         
         System.out.print("Enter Rental ID being returned: ");
         int rentalId = scanner.nextInt();
@@ -169,25 +456,37 @@ public class Main {
     
     private static void handleListActiveRentals() {
         System.out.println("\n--- Active Rentals ---");
-        List<Rental> activeRentals = system.getCurrentlyRentedBikes();
-
-        if (activeRentals.isEmpty()) {
+        if (system.getCurrentlyRentedBikes().isEmpty()) {
             System.out.println("  (No bikes are currently rented.)");
-        } else {
-            System.out.println("---------------------------------------------------------------------------------");
-            System.out.printf("| %-8s | %-20s | %-15s | %-25s |\n", "Rental ID", "Customer Name", "Bike ID", "Start Time");
-            System.out.println("---------------------------------------------------------------------------------");
-            for (Rental r : activeRentals) {
+            return;
+        }
+
+        System.out.print("Sort by [i]d or [s]tart time (default id): ");
+        RentalQuery query = new RentalQuery().pageSize(PAGE_SIZE);
+        if (scanner.nextLine().trim().equalsIgnoreCase("s")) {
+            query.sortBy(RentalQuery.Sort.START_TIME);
+        }
+
+        String cursor = null;
+        do {
+            Page<Rental> page = system.queryActiveRentals(query, cursor);
+            System.out.println("------------------------------------------------------------------------------------------------------------------------");
+            System.out.printf("| %-8s | %-20s | %-15s | %-28s | %-28s |\n", "Rental ID", "Customer Name", "Bike ID", "Start Time", "Due Back");
+            System.out.println("------------------------------------------------------------------------------------------------------------------------");
+            long now = System.currentTimeMillis();
+            for (Rental r : page.getItems()) {
                 // Formatting for display, using Date to show a readable time
-                System.out.printf("| %-9d| %-20s | %-15s | %-25s |\n",
+                System.out.printf("| %-9d| %-20s | %-15s | %-28s | %-28s |\n",
                     r.getRentalId(),
                     r.getCustomer().getName(),
                     r.getBike().getBikeId(),
-                    new Date(r.getStartTimeMillis())
+                    new Date(r.getStartTimeMillis()),
+                    r.isOverdue(now) ? "OVERDUE" : new Date(r.getExpectedReturnMillis())
                 );
             }
-            System.out.println("---------------------------------------------------------------------------------");
-        }
+            System.out.println("------------------------------------------------------------------------------------------------------------------------");
+            cursor = promptPageMove(page);
+        } while (cursor != null);
     }
     
     private static void handleSendToRepair() {
@@ -206,7 +505,74 @@ public class Main {
 
     private static void handleListAllBikes() {
         System.out.println("\n--- All Bikes (Inventory View) ---");
-        system.listAllBikes();
+        BikeQuery query = new BikeQuery().pageSize(PAGE_SIZE);
+
+        System.out.print("Filter by status (AVAILABLE, RENTED, IN_REPAIR; blank for all): ");
+        String status = scanner.nextLine().trim();
+        if (!status.isEmpty()) {
+            try {
+                query.status(BikeStatus.valueOf(status.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                System.out.println("❌ Unknown status " + status + ". Showing all bikes.");
+            }
+        }
+        System.out.print("Model contains (blank for any): ");
+        query.modelContains(scanner.nextLine().trim());
+        System.out.print("Sort by [i]d or [r]ate (default id): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("r")) {
+            query.sortBy(BikeQuery.Sort.RATE);
+        }
+
+        browseBikes(query, true);
+    }
+
+    // --- Paged Listings ---
+
+    private static void browseBikes(BikeQuery query, boolean withStatus) {
+        browseBikes(cursor -> system.queryBikes(query, cursor), withStatus);
+    }
+
+    private static void browseBikes(Function<String, Page<Bike>> pages, boolean withStatus) {
+        String cursor = null;
+        do {
+            Page<Bike> page = pages.apply(cursor);
+            if (page.isEmpty()) {
+                System.out.println("  (No matching bikes.)");
+                return;
+            }
+            String rule = withStatus ? "----------------------------------------------------------" : "----------------------------------------------";
+            System.out.println(rule);
+            if (withStatus) {
+                System.out.printf("| %-8s | %-25s | %-12s | %-10s |\n", "ID", "Bike Model", "Rent", "Status");
+            } else {
+                System.out.printf("| %-8s | %-25s | %-12s |\n", "ID", "Bike Model", "Rent");
+            }
+            System.out.println(rule);
+            for (Bike bike : page.getItems()) {
+                if (withStatus) {
+                    bike.displayInfoWithStatus();
+                } else {
+                    bike.displayInfo();
+                }
+            }
+            System.out.println(rule);
+            cursor = promptPageMove(page);
+        } while (cursor != null);
+    }
+
+    // Returns the cursor for the page the user picked, or null when they are done
+    private static String promptPageMove(Page<?> page) {
+        if (!page.hasNext() && !page.hasPrevious()) {
+            return null;
+        }
+        System.out.print((page.hasNext() ? "[n]ext " : "") + (page.hasPrevious() ? "[p]revious " : "") + "or Enter to continue: ");
+        String choice = scanner.nextLine().trim();
+        if (choice.equalsIgnoreCase("n")) {
+            return page.getNextCursor();
+        } else if (choice.equalsIgnoreCase("p")) {
+            return page.getPreviousCursor();
+        }
+        return null;
     }
     
     private static void handleCostEstimation() {
@@ -230,9 +596,9 @@ public class Main {
         if (costOpt.isPresent()) {
             System.out.printf("✅ Estimated Cost for Bike %s for %d hours: %.2f rs\n", 
                 bikeId, durationHours, costOpt.get());
-        } else {
+        } else if (system.findBike(bikeId).isEmpty()) {
             System.out.println("❌ Bike ID " + bikeId + " not found.");
-        }
+        } // Otherwise the duration was refused with a notice
     }
     
     private static void handleAddBike() {
@@ -259,10 +625,218 @@ public class Main {
             return;
         }
         
-        system.addBike(new Bike(id, model, rate));
+        if (!system.addBike(new Bike(id, model, rate))) {
+            System.out.println("❌ Error: Bike ID " + id + " already exists.");
+            return;
+        }
         System.out.println("✅ Successfully added new bike: " + id + " (" + model + ") at " + rate + " rs/hr.");
     }
 
+    private static void handleMetricsReport() {
+        System.out.println("\n--- Performance Metrics ---");
+        System.out.print(system.getMetrics().report());
+    }
+
+    private static void handleRevenueReport() {
+        RentalAggregates aggregates = system.getAggregates();
+        System.out.println("\n--- Revenue & Utilization Report ---");
+        System.out.println(aggregates.getTotal());
+
+        System.out.println("\nBy model:");
+        aggregates.getByModel().forEach(summary -> System.out.println("  " + summary));
+        System.out.println("\nBy day of return:");
+        aggregates.getByDay().forEach(summary -> System.out.println("  " + summary));
+        System.out.println("\nTop bikes:");
+        aggregates.getByBike().stream().limit(REPORT_TOP_N).forEach(summary -> System.out.println("  " + summary));
+        System.out.println("\nTop customers:");
+        aggregates.getByCustomer().stream().limit(REPORT_TOP_N).forEach(summary -> {
+            String name = system.findCustomer(Integer.parseInt(summary.getKey())).map(Customer::getName).orElse("?");
+            System.out.println("  " + name + ", customer " + summary);
+        });
+
+        List<String> mismatches = system.verifyAggregates();
+        if (mismatches.isEmpty()) {
+            System.out.println("\n✅ Running totals match a full recompute of the rental history.");
+        } else {
+            System.out.println("\n❌ Running totals disagree with the rental history:");
+            mismatches.forEach(mismatch -> System.out.println("  " + mismatch));
+        }
+    }
+
+    private static void handleHistoryLookup() {
+        System.out.println("\n--- Rental History Lookup ---");
+        HistoryQuery query = new HistoryQuery();
+
+        System.out.print("Customer name (blank for any): ");
+        String customerName = scanner.nextLine().trim();
+        if (!customerName.isEmpty()) {
+            Customer customer = pickCustomer(customerName, false);
+            if (customer == null) {
+                return;
+            }
+            query.customer(customer.getCustomerId());
+        }
+        System.out.print("Bike ID (blank for any): ");
+        String bikeId = scanner.nextLine().trim();
+        if (!bikeId.isEmpty()) {
+            query.bike(bikeId);
+        }
+        try {
+            System.out.print("Returned from date, yyyy-mm-dd (blank for any): ");
+            String from = scanner.nextLine().trim();
+            System.out.print("Returned to date, yyyy-mm-dd (blank for any): ");
+            String to = scanner.nextLine().trim();
+            ZoneId zone = ZoneId.systemDefault();
+            query.returnedBetween(
+                from.isEmpty() ? Long.MIN_VALUE : LocalDate.parse(from).atStartOfDay(zone).toInstant().toEpochMilli(),
+                to.isEmpty() ? Long.MAX_VALUE : LocalDate.parse(to).plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+        } catch (DateTimeParseException e) {
+            System.out.println("❌ Dates must look like 2024-05-31.");
+            return;
+        }
+
+        System.out.println("-------------------------------------------------------------------------------");
+        System.out.printf("| %-9s | %-11s | %-8s | %-25s | %-5s | %-10s |\n", "Rental ID", "Customer ID", "Bike ID", "Returned", "Hours", "Charge");
+        System.out.println("-------------------------------------------------------------------------------");
+        int shown = 0;
+        try (Stream<HistoryRecord> records = system.queryHistory(query)) {
+            Iterator<HistoryRecord> matches = records.limit(HISTORY_LIMIT).iterator();
+            while (matches.hasNext()) {
+                HistoryRecord record = matches.next();
+                System.out.printf("| %-9d | %-11d | %-8s | %-25s | %-5d | %-10s |\n",
+                    record.getRentalId(), record.getCustomerId(), record.getBike().getBikeId(),
+                    new Date(record.getReturnMillis()), record.getDurationHours(), PricingEngine.formatRupees(record.getChargePaise()));
+                shown++;
+            }
+        }
+        System.out.println("-------------------------------------------------------------------------------");
+        if (shown == 0) {
+            System.out.println("  (No returned rentals match.)");
+        } else if (shown == HISTORY_LIMIT) {
+            System.out.println("  (Showing the first " + HISTORY_LIMIT + " matches; narrow the search to see others.)");
+        }
+    }
+
+    // --- Reservations ---
+
+    private static void handleReserveBike() {
+        System.out.println("\n--- Reserve a Bike ---");
+        long from;
+        long to;
+        try {
+            System.out.print("From, yyyy-mm-dd hh:mm: ");
+            from = parseTime(scanner.nextLine().trim());
+            System.out.print("To, yyyy-mm-dd hh:mm: ");
+            to = parseTime(scanner.nextLine().trim());
+        } catch (DateTimeParseException e) {
+            System.out.println("❌ Times must look like 2024-05-31 14:00.");
+            return;
+        }
+        if (to <= from) {
+            System.out.println("❌ The reservation must end after it starts.");
+            return;
+        }
+
+        BikeQuery query = new BikeQuery().pageSize(PAGE_SIZE);
+        System.out.print("Model contains (blank for any): ");
+        query.modelContains(scanner.nextLine().trim());
+        System.out.println("Bikes free for the whole window:");
+        browseBikes(cursor -> system.queryFreeBikes(query, from, to, cursor), false);
+
+        System.out.print("Enter Bike ID to reserve: ");
+        String bikeId = scanner.nextLine().trim();
+        System.out.print("Enter Customer Name: ");
+        Customer customer = pickCustomer(scanner.nextLine().trim(), true);
+        if (customer == null) {
+            return;
+        }
+
+        Reservation reservation = system.reserveBike(customer.getCustomerId(), bikeId, from, to);
+        if (reservation != null) {
+            System.out.println("✅ Reservation confirmed! Reservation ID is: " + reservation.getReservationId());
+        }
+    }
+
+    private static void handleManageReservations() {
+        System.out.println("\n--- Reservations ---");
+        List<Reservation> reservations = system.getReservations();
+        if (reservations.isEmpty()) {
+            System.out.println("  (No open reservations.)");
+            return;
+        }
+
+        System.out.println("-------------------------------------------------------------------------------------------------------");
+        System.out.printf("| %-6s | %-20s | %-8s | %-28s | %-28s |\n", "ID", "Customer Name", "Bike ID", "From", "To");
+        System.out.println("-------------------------------------------------------------------------------------------------------");
+        for (Reservation r : reservations.subList(0, Math.min(reservations.size(), HISTORY_LIMIT))) {
+            System.out.printf("| %-6d | %-20s | %-8s | %-28s | %-28s |\n", r.getReservationId(), r.getCustomer().getName(),
+                r.getBike().getBikeId(), new Date(r.getStartMillis()), new Date(r.getEndMillis()));
+        }
+        System.out.println("-------------------------------------------------------------------------------------------------------");
+        if (reservations.size() > HISTORY_LIMIT) {
+            System.out.println("  (Showing the " + HISTORY_LIMIT + " soonest of " + reservations.size() + " reservations.)");
+        }
+
+        System.out.print("Enter Reservation ID (blank to go back): ");
+        String idText = scanner.nextLine().trim();
+        if (idText.isEmpty()) {
+            return;
+        }
+        int reservationId;
+        try {
+            reservationId = Integer.parseInt(idText);
+        } catch (NumberFormatException e) {
+            System.out.println("❌ Invalid input. Please enter a number.");
+            return;
+        }
+        System.out.print("[p]ick up or [c]ancel: ");
+        String action = scanner.nextLine().trim();
+        if (action.equalsIgnoreCase("p")) {
+            Rental rental = system.pickUpReservation(reservationId);
+            if (rental != null) {
+                System.out.println("✅ Rental successful! Rental ID is: " + rental.getRentalId());
+            }
+        } else if (action.equalsIgnoreCase("c")) {
+            system.cancelReservation(reservationId);
+        }
+    }
+
+    private static void handleDeadlineReport() {
+        System.out.println("\n--- Overdue Rentals ---");
+        Collection<Rental> overdue = system.getOverdueRentals();
+        if (overdue.isEmpty()) {
+            System.out.println("  (No rentals are overdue.)");
+        } else {
+            System.out.println("----------------------------------------------------------------------------------");
+            System.out.printf("| %-8s | %-20s | %-15s | %-28s |\n", "Rental ID", "Customer Name", "Bike ID", "Was Due Back");
+            System.out.println("----------------------------------------------------------------------------------");
+            for (Rental r : overdue) {
+                System.out.printf("| %-9d| %-20s | %-15s | %-28s |\n", r.getRentalId(), r.getCustomer().getName(),
+                    r.getBike().getBikeId(), new Date(r.getExpectedReturnMillis()));
+            }
+            System.out.println("----------------------------------------------------------------------------------");
+        }
+
+        System.out.println("\n--- Bikes Due for Service (every " + TimeUnit.MILLISECONDS.toDays(system.getServiceIntervalMillis()) + " days) ---");
+        Collection<Bike> due = system.getBikesDueForService();
+        if (due.isEmpty()) {
+            System.out.println("  (No bikes are due for service.)");
+        } else {
+            System.out.println("-------------------------------------------------------------------");
+            System.out.printf("| %-8s | %-25s | %-10s | %-28s |\n", "ID", "Bike Model", "Status", "Last Serviced");
+            System.out.println("-------------------------------------------------------------------");
+            for (Bike bike : due) {
+                System.out.printf("| %-8s | %-25s | %-10s | %-28s |\n", bike.getBikeId(), bike.getModel(),
+                    bike.getStatus(), bike.getLastMaintenanceDate());
+            }
+            System.out.println("-------------------------------------------------------------------");
+        }
+    }
+
+    private static long parseTime(String text) {
+        return LocalDateTime.parse(text, RESERVATION_TIME_FORMAT).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
     // --- Data Initialization ---
 
     private static void initializeData(BikeRentalSystem system) {
@@ -0,0 +1,31 @@
+/**
+ * Destination for receipts and operation notices produced by BikeRentalSystem,
+ * so the domain methods never format or print output themselves.
+ */
+public interface NoticeSink {
+
+    /**
+     * Discards everything, e.g. for benchmarks and headless batch runs.
+     */
+    NoticeSink NONE = new NoticeSink() {
+        @Override
+        public void receipt(Receipt receipt) {
+        }
+
+        @Override
+        public void notice(OperationNotice notice) {
+        }
+    };
+
+    void receipt(Receipt receipt);
+
+    void notice(OperationNotice notice);
+
+    // Pushes out anything buffered
+    default void flush() {
+    }
+
+    default void close() {
+        flush();
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Outcome of a single rental-system operation, reported to a NoticeSink.
+ * Holds only the values the message needs; the text is built by render().
+ */
+public final class OperationNotice {
+
+    private final RentalMetrics.Operation operation;
+    private final FailureReason reason;
+    private final String bikeId;
+    private final int id; // Rental, customer or reservation ID, when the operation targets one
+    private final BikeStatus status;
+
+    private OperationNotice(RentalMetrics.Operation operation, FailureReason reason, String bikeId, int id, BikeStatus status) {
+        this.operation = operation;
+        this.reason = reason;
+        this.bikeId = bikeId;
+        this.id = id;
+        this.status = status;
+    }
+
+    public static OperationNotice succeeded(RentalMetrics.Operation operation, String bikeId) {
+        return new OperationNotice(operation, null, bikeId, 0, null);
+    }
+
+    public static OperationNotice bikeFailed(RentalMetrics.Operation operation, FailureReason reason, String bikeId, BikeStatus status) {
+        return new OperationNotice(operation, reason, bikeId, 0, status);
+    }
+
+    /**
+     * A rental's expected return time (OVERDUE, with its rental ID) or a
+     * bike's service interval (SERVICE_DUE) has passed.
+     */
+    public static OperationNotice deadlinePassed(RentalMetrics.Operation operation, String bikeId, int id) {
+        return new OperationNotice(operation, null, bikeId, id, null);
+    }
+
+    public static OperationNotice idFailed(RentalMetrics.Operation operation, FailureReason reason, int id) {
+        return new OperationNotice(operation, reason, null, id, null);
+    }
+
+    public RentalMetrics.Operation getOperation() {
+        return operation;
+    }
+
+    public boolean isSuccess() {
+        return reason == null;
+    }
+
+    /**
+     * Why the operation failed, or null if it succeeded.
+     */
+    public FailureReason getReason() {
+        return reason;
+    }
+
+    public String getBikeId() {
+        return bikeId;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String render() {
+        if (reason == null) {
+            switch (operation) {
+                case SEND_TO_REPAIR: return "✅ Bike " + bikeId + " sent to repair.";
+                case RETURN_FROM_REPAIR: return "✅ Bike " + bikeId + " returned from repair.";
+                case CANCEL_RESERVATION: return "✅ Reservation for bike " + bikeId + " cancelled.";
+                case OVERDUE: return "⏰ Rental " + id + " of bike " + bikeId + " is overdue.";
+                case SERVICE_DUE: return "🔧 Bike " + bikeId + " is due for service.";
+                default: return "✅ " + operation + " " + bikeId + " succeeded.";
+            }
+        }
+        switch (reason) {
+            case CUSTOMER_NOT_FOUND:
+                return "  ❌ ERROR: Customer ID " + id + " not found. This should not happen if called correctly.";
+            case BAD_DURATION:
+                return "  ❌ ERROR: Rental duration must be between 1 and " + PricingEngine.MAX_HOURS + " hours.";
+            case RENTAL_NOT_ACTIVE:
+                return bikeId != null
+                    ? "  ❌ ERROR: Bike ID " + bikeId + " is either not found or is not actively rented."
+                    : "  ❌ ERROR: Rental ID " + id + " is either not found or not active.";
+            case BIKE_NOT_FOUND:
+                if (operation == RentalMetrics.Operation.RENT) {
+                    return "  ❌ ERROR: Bike ID " + bikeId + " is not available or does not exist.";
+                }
+                return "❌ Bike " + bikeId + " not found.";
+            case BIKE_NOT_AVAILABLE:
+                switch (operation) {
+                    case RENT: return "  ❌ ERROR: Bike ID " + bikeId + " is not available or does not exist.";
+                    case PICK_UP: return "  ❌ ERROR: Bike ID " + bikeId + " is not back yet. Status: " + status;
+                    case RESERVE: return "  ❌ ERROR: Bike ID " + bikeId + " cannot be reserved from now; it is not available. Status: " + status;
+                    case SEND_TO_REPAIR: return "❌ Bike " + bikeId + " cannot be sent to repair. Status: " + status;
+                    default: return "❌ Bike " + bikeId + " is not available. Status: " + status;
+                }
+            case BIKE_RESERVED:
+                if (operation == RentalMetrics.Operation.RENT) {
+                    return "  ❌ ERROR: Bike ID " + bikeId + " is being held for another customer's reservation.";
+                }
+                return "  ❌ ERROR: Bike ID " + bikeId + " is already reserved during that time.";
+            case BAD_TIME_WINDOW:
+                return "  ❌ ERROR: A reservation must end after it starts, and after the current time.";
+            case RESERVATION_NOT_FOUND:
+                return "  ❌ ERROR: Reservation ID " + id + " is either not found or already closed.";
+            case BIKE_NOT_IN_REPAIR:
+                return "❌ Bike " + bikeId + " is not in repair. Status: " + status;
+            default:
+                return "❌ " + operation + " failed: " + reason;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return render();
+    }
+}
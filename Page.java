@@ -0,0 +1,148 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * One page of a sorted listing, with opaque cursors for the pages either side.
+ * A cursor names the sort order, a direction and the index key of the row the
+ * page starts after (or ends before), so fetching a page seeks straight into
+ * the index instead of skipping earlier rows.
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+    private final String previousCursor;
+
+    private Page(List<T> items, String nextCursor, String previousCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * Cursor for the following page, or null if this is the last one.
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Cursor for the preceding page, or null if this is the first one.
+     */
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    public boolean hasPrevious() {
+        return previousCursor != null;
+    }
+
+    // --- Paging Over Sorted Indexes ---
+
+    /**
+     * Reads one page from a sorted index. Rows rejected by the filter are
+     * skipped, so only filters the index is not ordered by cost extra steps.
+     *
+     * @param index    the rows, in display order
+     * @param sortName tag stored in cursors so they cannot be replayed against another order
+     * @param cursor   cursor from a previous page, or null for the first page
+     * @param keyToText converts an index key to its cursor form
+     * @param textToKey  parses the cursor form back into an index key
+     */
+    static <K, V> Page<V> read(NavigableMap<K, V> index, String sortName, String cursor, Predicate<V> filter,
+                               int pageSize, Function<K, String> keyToText, Function<String, K> textToKey) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+        boolean forward = true;
+        K anchor = null;
+        if (cursor != null) {
+            String[] parts = decode(cursor);
+            if (!parts[0].equals(sortName)) {
+                throw new IllegalArgumentException("Cursor belongs to a different sort order");
+            }
+            forward = parts[1].equals(">");
+            anchor = textToKey.apply(parts[2]);
+        }
+
+        NavigableMap<K, V> view;
+        if (anchor == null) {
+            view = index;
+        } else if (forward) {
+            view = index.tailMap(anchor, false);
+        } else {
+            view = index.headMap(anchor, false).descendingMap();
+        }
+
+        // Collect one extra row to learn whether another page follows in this direction
+        List<K> keys = new ArrayList<>(pageSize + 1);
+        List<V> rows = new ArrayList<>(pageSize + 1);
+        for (Map.Entry<K, V> entry : view.entrySet()) {
+            if (filter.test(entry.getValue())) {
+                keys.add(entry.getKey());
+                rows.add(entry.getValue());
+                if (rows.size() > pageSize) {
+                    break;
+                }
+            }
+        }
+        boolean more = rows.size() > pageSize;
+        if (more) {
+            keys.remove(pageSize);
+            rows.remove(pageSize);
+        }
+        if (!forward) {
+            Collections.reverse(keys);
+            Collections.reverse(rows);
+        }
+        if (rows.isEmpty()) {
+            return new Page<>(rows, null, null);
+        }
+
+        String first = keyToText.apply(keys.get(0));
+        String last = keyToText.apply(keys.get(keys.size() - 1));
+        boolean hasNext = forward ? more : true;
+        boolean hasPrevious = forward ? anchor != null : more;
+        return new Page<>(Collections.unmodifiableList(rows),
+            hasNext ? encode(sortName, ">", last) : null,
+            hasPrevious ? encode(sortName, "<", first) : null);
+    }
+
+    private static String encode(String sortName, String direction, String key) {
+        String raw = sortName + ":" + direction + ":" + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String cursor) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        String[] parts = raw.split(":", 3);
+        if (parts.length != 3 || !(parts[1].equals(">") || parts[1].equals("<"))) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        return parts;
+    }
+}
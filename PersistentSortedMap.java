@@ -0,0 +1,251 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * Immutable sorted map. put and remove return a new map that shares every
+ * untouched subtree with the old one, copying only the O(log n) nodes on the
+ * path to the change, so any number of versions can be held at once for the
+ * cost of the nodes that differ between them.
+ *
+ * Implemented as a treap whose priorities are derived from the keys' hash
+ * codes, so the shape depends only on the set of keys and is balanced in
+ * expectation whatever the insertion order.
+ */
+public final class PersistentSortedMap<K extends Comparable<K>, V> implements Iterable<V> {
+
+    private static final PersistentSortedMap<?, ?> EMPTY = new PersistentSortedMap<>(null);
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        final int priority;
+        final Node<K, V> left;
+        final Node<K, V> right;
+        final int size;
+
+        Node(K key, V value, int priority, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+
+        Node<K, V> with(Node<K, V> newLeft, Node<K, V> newRight) {
+            return new Node<>(key, value, priority, newLeft, newRight);
+        }
+    }
+
+    private final Node<K, V> root;
+
+    private PersistentSortedMap(Node<K, V> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<K>, V> PersistentSortedMap<K, V> empty() {
+        return (PersistentSortedMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Builds a map from values whose keys are strictly increasing, in O(n)
+     * rather than the O(n log n) of repeated puts.
+     */
+    public static <K extends Comparable<K>, V> PersistentSortedMap<K, V> ofSorted(Collection<V> values, Function<V, K> keyOf) {
+        int n = values.size();
+        List<K> keys = new ArrayList<>(n);
+        List<V> ordered = new ArrayList<>(n);
+        for (V value : values) {
+            keys.add(keyOf.apply(value));
+            ordered.add(value);
+        }
+        n = ordered.size(); // A concurrent collection's size is only an estimate
+        if (n == 0) {
+            return empty();
+        }
+
+        // Cartesian tree over the priorities: the right spine lives on a stack of indices
+        int[] priorities = new int[n];
+        int[] lefts = new int[n];
+        int[] rights = new int[n];
+        int[] spine = new int[n];
+        int top = -1;
+        for (int i = 0; i < n; i++) {
+            priorities[i] = priorityOf(keys.get(i));
+            rights[i] = -1;
+            int last = -1;
+            while (top >= 0 && priorities[spine[top]] < priorities[i]) {
+                last = spine[top--];
+            }
+            lefts[i] = last;
+            if (top >= 0) {
+                rights[spine[top]] = i;
+            }
+            spine[++top] = i;
+        }
+        return new PersistentSortedMap<>(build(spine[0], keys, ordered, priorities, lefts, rights));
+    }
+
+    private static <K, V> Node<K, V> build(int index, List<K> keys, List<V> values, int[] priorities, int[] lefts, int[] rights) {
+        if (index < 0) {
+            return null;
+        }
+        return new Node<>(keys.get(index), values.get(index), priorities[index],
+            build(lefts[index], keys, values, priorities, lefts, rights),
+            build(rights[index], keys, values, priorities, lefts, rights));
+    }
+
+    public int size() {
+        return sizeOf(root);
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    public V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int order = key.compareTo(node.key);
+            if (order == 0) {
+                return node.value;
+            }
+            node = order < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    // --- Updates ---
+
+    public PersistentSortedMap<K, V> put(K key, V value) {
+        Node<K, V> updated = insert(root, key, value, priorityOf(key));
+        return updated == root ? this : new PersistentSortedMap<>(updated);
+    }
+
+    public PersistentSortedMap<K, V> remove(K key) {
+        Node<K, V> updated = delete(root, key);
+        return updated == root ? this : new PersistentSortedMap<>(updated);
+    }
+
+    /**
+     * Replaces the value under key with the function's result, removing the
+     * entry when it returns null. The function sees null for a missing key.
+     */
+    public PersistentSortedMap<K, V> compute(K key, Function<V, V> remap) {
+        V current = get(key);
+        V next = remap.apply(current);
+        if (next == current) {
+            return this;
+        }
+        return next == null ? remove(key) : put(key, next);
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> insert(Node<K, V> node, K key, V value, int priority) {
+        if (node == null) {
+            return new Node<>(key, value, priority, null, null);
+        }
+        int order = key.compareTo(node.key);
+        if (order == 0) {
+            return node.value == value ? node : new Node<>(key, value, node.priority, node.left, node.right);
+        }
+        if (order < 0) {
+            Node<K, V> left = insert(node.left, key, value, priority);
+            if (left.priority > node.priority) {
+                // Rotate right so the higher priority stays on top
+                return left.with(left.left, node.with(left.right, node.right));
+            }
+            return node.with(left, node.right);
+        }
+        Node<K, V> right = insert(node.right, key, value, priority);
+        if (right.priority > node.priority) {
+            return right.with(node.with(node.left, right.left), right.right);
+        }
+        return node.with(node.left, right);
+    }
+
+    private static <K extends Comparable<K>, V> Node<K, V> delete(Node<K, V> node, K key) {
+        if (node == null) {
+            return null;
+        }
+        int order = key.compareTo(node.key);
+        if (order == 0) {
+            return merge(node.left, node.right);
+        }
+        if (order < 0) {
+            Node<K, V> left = delete(node.left, key);
+            return left == node.left ? node : node.with(left, node.right);
+        }
+        Node<K, V> right = delete(node.right, key);
+        return right == node.right ? node : node.with(node.left, right);
+    }
+
+    // Joins two treaps where every key in low sorts before every key in high
+    private static <K, V> Node<K, V> merge(Node<K, V> low, Node<K, V> high) {
+        if (low == null) {
+            return high;
+        }
+        if (high == null) {
+            return low;
+        }
+        if (low.priority > high.priority) {
+            return low.with(low.left, merge(low.right, high));
+        }
+        return high.with(merge(low, high.left), high.right);
+    }
+
+    private static int sizeOf(Node<?, ?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    // Spreads the hash so keys with sequential hash codes still get unrelated priorities
+    private static int priorityOf(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    // --- Iteration ---
+
+    /**
+     * Values in key order.
+     */
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private final Deque<Node<K, V>> path = new ArrayDeque<>();
+
+            {
+                descendLeft(root);
+            }
+
+            private void descendLeft(Node<K, V> node) {
+                for (; node != null; node = node.left) {
+                    path.push(node);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public V next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node<K, V> node = path.pop();
+                descendLeft(node.right);
+                return node.value;
+            }
+        };
+    }
+}
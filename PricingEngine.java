@@ -0,0 +1,271 @@
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Prices rentals in exact paise from PricingRules compiled ahead of time.
+ *
+ * Each plan (the defaults, and each model with rules of its own) becomes two
+ * tables indexed by the start hour of the week and the duration in hours,
+ * holding the summed rate multipliers with the tiers, the daily cap and the
+ * peak and weekend hours already applied: one for a rental's first week and
+ * one for the weeks after, which bill at the last tier. A quote is then one
+ * or three table reads, a multiplication by the rate and a single rounding,
+ * whatever the rules and the duration.
+ *
+ * Each rental hour is priced by the local clock hour it starts in. Durations
+ * of zero or fewer hours cost nothing; callers refuse those outside
+ * isValidDuration before quoting. Immutable, so one engine can be shared
+ * by every thread and swapped in whole.
+ */
+public final class PricingEngine {
+
+    static final int HOURS_PER_WEEK = 7 * 24;
+
+    /** Longest rental that can be priced: ten years. */
+    public static final int MAX_HOURS = 10 * 365 * 24;
+
+    private static final int TABLE_WIDTH = HOURS_PER_WEEK + 1;
+    private static final int UNITS_PER_HOUR = 100 * 100; // Tier percent times time-of-week percent
+
+    // Compiled rules for the defaults or one model
+    private static final class Plan {
+        final long ratePaise;   // Negative: each bike's own hourly rate
+        final int[] firstWeek;  // [start hour of week * TABLE_WIDTH + hours] -> units
+        final int[] laterWeeks;
+
+        Plan(PricingRules rules) {
+            this.ratePaise = rules.getRatePaise();
+            this.firstWeek = compile(rules, true);
+            this.laterWeeks = compile(rules, false);
+        }
+    }
+
+    private final ZoneId zone;
+    private final Plan defaultPlan;
+    private final Map<String, Plan> plansByModel = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * Compiles the default rules and the rules for particular models (matched
+     * ignoring case). Peak and weekend hours are read in the given zone.
+     */
+    public PricingEngine(ZoneId zone, PricingRules defaults, Map<String, PricingRules> rulesByModel) {
+        this.zone = zone;
+        this.defaultPlan = new Plan(defaults);
+        rulesByModel.forEach((model, rules) -> plansByModel.put(model, new Plan(rules)));
+    }
+
+    /**
+     * Each bike's own hourly rate for every hour, the pricing before rules existed.
+     */
+    public static PricingEngine flat(ZoneId zone) {
+        return new PricingEngine(zone, new PricingRules(), Collections.emptyMap());
+    }
+
+    /**
+     * Reads rules from a properties file. Unprefixed keys set the defaults;
+     * keys prefixed with model.NAME. override them for that model:
+     *
+     *   rate=1500              paise per hour, instead of each bike's rate
+     *   tiers=3:80,9:60        from rental hour 3 at 80%, from hour 9 at 60%
+     *   dayCapHours=8          each started day costs at most 8 hours
+     *   peak=17-20:125         weekdays 17:00-20:00 at 125%
+     *   weekendPercent=150
+     *   model.Cargo.rate=2500
+     *
+     * @throws IllegalArgumentException if a rule is malformed
+     */
+    public static PricingEngine load(File file, ZoneId zone) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(file)) {
+            properties.load(reader);
+        }
+
+        PricingRules defaults = new PricingRules();
+        Map<String, Map<String, String>> modelKeys = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("model.")) {
+                int dot = key.lastIndexOf('.');
+                if (dot <= "model.".length()) {
+                    throw new IllegalArgumentException("Malformed pricing key " + key);
+                }
+                modelKeys.computeIfAbsent(key.substring("model.".length(), dot), model -> new TreeMap<>())
+                    .put(key.substring(dot + 1), properties.getProperty(key));
+            } else {
+                applyRule(defaults, key, properties.getProperty(key));
+            }
+        }
+
+        Map<String, PricingRules> rulesByModel = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        modelKeys.forEach((model, keys) -> {
+            PricingRules rules = new PricingRules(defaults);
+            keys.forEach((key, value) -> applyRule(rules, "model." + model + "." + key, value));
+            rulesByModel.put(model, rules);
+        });
+        return new PricingEngine(zone, defaults, rulesByModel);
+    }
+
+    private static void applyRule(PricingRules rules, String key, String value) {
+        String name = key.substring(key.lastIndexOf('.') + 1);
+        value = value.trim();
+        try {
+            switch (name) {
+                case "rate":
+                    rules.ratePaise(Long.parseLong(value));
+                    break;
+                case "tiers":
+                    for (String tier : value.split(",")) {
+                        String[] parts = tier.trim().split(":");
+                        rules.tier(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+                    }
+                    break;
+                case "dayCapHours":
+                    rules.dayCap(Integer.parseInt(value));
+                    break;
+                case "peak": {
+                    String[] parts = value.split("[-:]");
+                    rules.peak(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                        Integer.parseInt(parts[2].trim()));
+                    break;
+                }
+                case "weekendPercent":
+                    rules.weekend(Integer.parseInt(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown pricing key " + key);
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed pricing rule " + key + "=" + value);
+        }
+    }
+
+    // Cumulative units for every start hour and every duration up to a week
+    private static int[] compile(PricingRules rules, boolean firstWeek) {
+        int capUnits = rules.getDayCapHours() > 0 ? rules.getDayCapHours() * UNITS_PER_HOUR : Integer.MAX_VALUE;
+        int lastTierPercent = rules.tierPercent(HOURS_PER_WEEK);
+        int[] table = new int[HOURS_PER_WEEK * TABLE_WIDTH];
+        for (int start = 0; start < HOURS_PER_WEEK; start++) {
+            int row = start * TABLE_WIDTH;
+            int closedDays = 0;
+            int day = 0;
+            for (int hour = 0; hour < HOURS_PER_WEEK; hour++) {
+                if (hour % 24 == 0) {
+                    closedDays += Math.min(day, capUnits);
+                    day = 0;
+                }
+                int tierPercent = firstWeek ? rules.tierPercent(hour + 1) : lastTierPercent;
+                day += tierPercent * rules.timePercent((start + hour) % HOURS_PER_WEEK);
+                table[row + hour + 1] = closedDays + Math.min(day, capUnits);
+            }
+        }
+        return table;
+    }
+
+    // --- Quotes ---
+
+    /**
+     * Whether a rental of this many hours can be charged: from 1 to MAX_HOURS.
+     */
+    public static boolean isValidDuration(int hours) {
+        return hours > 0 && hours <= MAX_HOURS;
+    }
+
+    /**
+     * The charge in paise for renting the bike for the given hours from startMillis.
+     *
+     * @throws ArithmeticException if hours exceed MAX_HOURS or the charge does not fit in a long
+     */
+    public long quote(Bike bike, long startMillis, int hours) {
+        return quote(bike, hourOfWeek(startMillis), hours);
+    }
+
+    /**
+     * Prices count (bike, hours) pairs that all start at startMillis, writing
+     * the charge in paise for bikes[i] and hours[i] to chargesPaise[i]. The
+     * arrays belong to the caller and can be reused, so quoting allocates
+     * nothing however many pairs there are.
+     *
+     * @throws ArithmeticException if any hours exceed MAX_HOURS or a charge does not fit in a long
+     */
+    public void quote(long startMillis, Bike[] bikes, int[] hours, long[] chargesPaise, int count) {
+        if (count > bikes.length || count > hours.length || count > chargesPaise.length) {
+            throw new IllegalArgumentException("count exceeds the arrays");
+        }
+        int startHour = hourOfWeek(startMillis);
+        for (int i = 0; i < count; i++) {
+            chargesPaise[i] = quote(bikes[i], startHour, hours[i]);
+        }
+    }
+
+    private long quote(Bike bike, int startHour, int hours) {
+        if (hours <= 0) {
+            return 0;
+        }
+        if (hours > MAX_HOURS) {
+            throw new ArithmeticException("Rentals longer than " + MAX_HOURS + " hours cannot be priced");
+        }
+        Plan plan = planFor(bike);
+        long ratePaise = plan.ratePaise >= 0 ? plan.ratePaise : toPaise(bike.getHourlyRate());
+        int row = startHour * TABLE_WIDTH;
+        long units;
+        if (hours <= HOURS_PER_WEEK) {
+            units = plan.firstWeek[row + hours];
+        } else {
+            // Later weeks begin at the same hour of the week, so whole ones repeat
+            long weeks = hours / HOURS_PER_WEEK;
+            units = plan.firstWeek[row + HOURS_PER_WEEK]
+                + (weeks - 1) * plan.laterWeeks[row + HOURS_PER_WEEK]
+                + plan.laterWeeks[row + hours % HOURS_PER_WEEK];
+        }
+        return (Math.multiplyExact(ratePaise, units) + UNITS_PER_HOUR / 2) / UNITS_PER_HOUR;
+    }
+
+    /**
+     * The hourly rate in paise that quotes for this bike start from, before
+     * tiers, the daily cap and time-of-week percentages apply.
+     */
+    public long ratePaise(Bike bike) {
+        Plan plan = planFor(bike);
+        return plan.ratePaise >= 0 ? plan.ratePaise : toPaise(bike.getHourlyRate());
+    }
+
+    private Plan planFor(Bike bike) {
+        return plansByModel.isEmpty() ? defaultPlan : plansByModel.getOrDefault(bike.getModel(), defaultPlan);
+    }
+
+    /**
+     * Hours since the start of the week (Monday 00:00) in this engine's zone.
+     */
+    public int hourOfWeek(long millis) {
+        ZonedDateTime time = Instant.ofEpochMilli(millis).atZone(zone);
+        return (time.getDayOfWeek().getValue() - 1) * 24 + time.getHour();
+    }
+
+    // --- Money ---
+
+    public static long toPaise(double rupees) {
+        return Math.round(rupees * 100);
+    }
+
+    public static double toRupees(long paise) {
+        return paise / 100.0;
+    }
+
+    /**
+     * Exact rupees with two decimals, e.g. 1234.50, without going through a double.
+     */
+    public static String formatRupees(long paise) {
+        String sign = paise < 0 ? "-" : "";
+        long fraction = Math.abs(paise % 100);
+        // Padded by hand: String.format would follow the default locale's digits
+        return sign + Math.abs(paise / 100) + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
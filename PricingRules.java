@@ -0,0 +1,128 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tariff for one bike model, or the default for every model: the hourly rate,
+ * cheaper tiers for long rentals, a daily cap and time-of-week multipliers.
+ * Percentages are of the hourly rate; unset rules charge the full rate for
+ * every hour. Compiled into rate tables by PricingEngine.
+ */
+public class PricingRules {
+
+    public static final int MAX_PERCENT = 1000;
+
+    private long ratePaise = -1;                                   // Negative: each bike's own hourly rate
+    private final TreeMap<Integer, Integer> tiers = new TreeMap<>(); // First rental hour of tier -> percent
+    private int dayCapHours;                                       // 0: no cap
+    private int peakFromHour;
+    private int peakToHour;
+    private int peakPercent = 100;
+    private int weekendPercent = 100;
+
+    public PricingRules() {
+    }
+
+    // Copy for per-model rules that start from the defaults
+    PricingRules(PricingRules defaults) {
+        this.ratePaise = defaults.ratePaise;
+        this.tiers.putAll(defaults.tiers);
+        this.dayCapHours = defaults.dayCapHours;
+        this.peakFromHour = defaults.peakFromHour;
+        this.peakToHour = defaults.peakToHour;
+        this.peakPercent = defaults.peakPercent;
+        this.weekendPercent = defaults.weekendPercent;
+    }
+
+    /**
+     * Charges this rate in paise per hour instead of each bike's own rate.
+     */
+    public PricingRules ratePaise(long ratePaise) {
+        if (ratePaise < 0) {
+            throw new IllegalArgumentException("Rate must not be negative");
+        }
+        this.ratePaise = ratePaise;
+        return this;
+    }
+
+    /**
+     * Bills rental hours from fromHour (the first hour is 1) onwards at
+     * percent of the rate, until the next tier starts. Tiers start within
+     * the first week.
+     */
+    public PricingRules tier(int fromHour, int percent) {
+        if (fromHour < 1 || fromHour > PricingEngine.HOURS_PER_WEEK) {
+            throw new IllegalArgumentException("Tier must start between hour 1 and " + PricingEngine.HOURS_PER_WEEK);
+        }
+        tiers.put(fromHour, checkPercent(percent));
+        return this;
+    }
+
+    /**
+     * Caps each started 24 hours of a rental, counted from its start, at
+     * this many hours' worth of the rate.
+     */
+    public PricingRules dayCap(int hours) {
+        if (hours < 0 || hours > 24) {
+            throw new IllegalArgumentException("Day cap must be between 0 (none) and 24 hours");
+        }
+        this.dayCapHours = hours;
+        return this;
+    }
+
+    /**
+     * Bills weekday clock hours in [fromHour, toHour) at percent of the rate.
+     */
+    public PricingRules peak(int fromHour, int toHour, int percent) {
+        if (fromHour < 0 || toHour > 24 || fromHour >= toHour) {
+            throw new IllegalArgumentException("Peak hours must satisfy 0 <= from < to <= 24");
+        }
+        this.peakFromHour = fromHour;
+        this.peakToHour = toHour;
+        this.peakPercent = checkPercent(percent);
+        return this;
+    }
+
+    /**
+     * Bills Saturday and Sunday hours at percent of the rate.
+     */
+    public PricingRules weekend(int percent) {
+        this.weekendPercent = checkPercent(percent);
+        return this;
+    }
+
+    public long getRatePaise() {
+        return ratePaise;
+    }
+
+    public int getDayCapHours() {
+        return dayCapHours;
+    }
+
+    /**
+     * Percent of the rate billed for the given rental hour, the first being 1.
+     */
+    public int tierPercent(int rentalHour) {
+        Map.Entry<Integer, Integer> tier = tiers.floorEntry(rentalHour);
+        return tier == null ? 100 : tier.getValue();
+    }
+
+    /**
+     * Percent of the rate billed for an hour starting at the given hour of
+     * the week, 0 being Monday 00:00.
+     */
+    public int timePercent(int hourOfWeek) {
+        int day = hourOfWeek / 24;
+        int hour = hourOfWeek % 24;
+        if (day >= 5) {
+            return weekendPercent;
+        }
+        return hour >= peakFromHour && hour < peakToHour ? peakPercent : 100;
+    }
+
+    private static int checkPercent(int percent) {
+        if (percent < 0 || percent > MAX_PERCENT) {
+            throw new IllegalArgumentException("Percent must be between 0 and " + MAX_PERCENT);
+        }
+        return percent;
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Final charge for a returned rental. Captures plain values at return time so
+ * it can be rendered later, on another thread, without touching live state.
+ * Money is held in exact paise.
+ */
+public final class Receipt {
+
+    private final int rentalId;
+    private final String customerName;
+    private final String bikeId;
+    private final String bikeModel;
+    private final long hourlyRatePaise;
+    private final int durationHours;
+    private final long totalChargePaise;
+
+    /**
+     * @param hourlyRatePaise the rate the charge was priced from, which pricing
+     *        rules may have set instead of the bike's own rate
+     */
+    public Receipt(int rentalId, String customerName, String bikeId, String bikeModel,
+                   long hourlyRatePaise, int durationHours, long totalChargePaise) {
+        this.rentalId = rentalId;
+        this.customerName = customerName;
+        this.bikeId = bikeId;
+        this.bikeModel = bikeModel;
+        this.hourlyRatePaise = hourlyRatePaise;
+        this.durationHours = durationHours;
+        this.totalChargePaise = totalChargePaise;
+    }
+
+    public int getRentalId() {
+        return rentalId;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public String getBikeId() {
+        return bikeId;
+    }
+
+    public String getBikeModel() {
+        return bikeModel;
+    }
+
+    public long getHourlyRatePaise() {
+        return hourlyRatePaise;
+    }
+
+    public double getHourlyRate() {
+        return PricingEngine.toRupees(hourlyRatePaise);
+    }
+
+    public int getDurationHours() {
+        return durationHours;
+    }
+
+    public long getTotalChargePaise() {
+        return totalChargePaise;
+    }
+
+    public double getTotalCharge() {
+        return PricingEngine.toRupees(totalChargePaise);
+    }
+
+    // Formats the printed receipt, one line per field
+    public String render() {
+        // Tiers, caps and peak hours make the total differ from rate times hours; show what it averaged
+        boolean adjusted = durationHours > 0
+            && (totalChargePaise % durationHours != 0 || totalChargePaise / durationHours != hourlyRatePaise);
+        return "\n--- RENTAL RECEIPT (ID: " + rentalId + ") ---\n"
+            + "Customer Name: " + customerName + "\n"
+            + "Bike Returned: " + bikeModel + " (ID: " + bikeId + ")\n"
+            + "Hourly Rate: " + PricingEngine.formatRupees(hourlyRatePaise) + " rs / hr\n"
+            + (adjusted ? "Average Rate: " + PricingEngine.formatRupees(Math.round((double) totalChargePaise / durationHours))
+                + " rs / hr after tiers, caps and peak hours\n" : "")
+            + "Total Duration: " + durationHours + " hours\n"
+            + "FINAL CHARGE: " + PricingEngine.formatRupees(totalChargePaise) + " rs\n"
+            + "----------------------------------------\n";
+    }
+}
@@ -1,23 +1,44 @@
 import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a single bike rental transaction.
  */
 public class Rental implements Serializable {
     private static final long serialVersionUID = 1L; 
+
+    /**
+     * How long a rental may run when no expected return time was given.
+     */
+    public static final long DEFAULT_RENTAL_MILLIS = TimeUnit.HOURS.toMillis(24);
     
     private int rentalId;
     private Customer customer;
     private Bike bike;
     private long startTimeMillis; // Time when rental started
-    private boolean isReturned;
+    private long expectedReturnMillis; // Overdue after this; zero in rentals serialized before it existed
+    private volatile boolean isReturned;
+
+    // Settled on return; zero for rentals returned before charges were recorded
+    private int durationHours;
+    private long finalChargePaise;
+    private long returnTimeMillis;
 
     // Constructor for creation/loading
     public Rental(int rentalId, Customer customer, Bike bike, long startTimeMillis, boolean isReturned) {
+        this(rentalId, customer, bike, startTimeMillis, 0L, isReturned);
+    }
+
+    /**
+     * An expected return time at or before the start falls back to DEFAULT_RENTAL_MILLIS.
+     */
+    public Rental(int rentalId, Customer customer, Bike bike, long startTimeMillis, long expectedReturnMillis, boolean isReturned) {
         this.rentalId = rentalId;
         this.customer = customer;
         this.bike = bike;
         this.startTimeMillis = startTimeMillis;
+        this.expectedReturnMillis = expectedReturnMillis > startTimeMillis
+            ? expectedReturnMillis : startTimeMillis + DEFAULT_RENTAL_MILLIS;
         this.isReturned = isReturned;
         
         // When loaded/created, if not returned, the bike should be marked RENTED
@@ -47,29 +68,48 @@ public class Rental implements Serializable {
         return startTimeMillis;
     }
 
-    // Method to calculate cost and finalize the rental upon return
-    public void returnBike(int durationHours) {
-        if (isReturned) {
-            System.out.println("INFO: This rental has already been finalized.");
-            return;
-        }
+    public long getExpectedReturnMillis() {
+        return expectedReturnMillis != 0 ? expectedReturnMillis : startTimeMillis + DEFAULT_RENTAL_MILLIS;
+    }
 
-        double totalCost = bike.getHourlyRate() * durationHours;
-        
-        // Finalize state
-        this.isReturned = true;
-        bike.setStatus(BikeStatus.AVAILABLE); // Return bike to inventory
+    public boolean isOverdue(long nowMillis) {
+        return !isReturned && nowMillis >= getExpectedReturnMillis();
+    }
+
+    public int getDurationHours() {
+        return durationHours;
+    }
+
+    public long getFinalChargePaise() {
+        return finalChargePaise;
+    }
 
-        // Print the final receipt - Updated format
-        System.out.println("\n--- RENTAL RECEIPT (ID: " + rentalId + ") ---");
-        System.out.println("Customer Name: " + customer.getName());
-        System.out.println("Bike Returned: " + bike.getModel() + " (ID: " + bike.getBikeId() + ")");
-        System.out.println("Hourly Rate: " + String.format("%.2f", bike.getHourlyRate()) + " rs / hr");
-        System.out.println("Total Duration: " + durationHours + " hours");
-        System.out.println("FINAL CHARGE: " + String.format("%.2f", totalCost) + " rs");
-        System.out.println("----------------------------------------");
+    public double getFinalCharge() {
+        return PricingEngine.toRupees(finalChargePaise);
+    }
+
+    public long getReturnTimeMillis() {
+        return returnTimeMillis;
+    }
+
+    /**
+     * Captures the final charge for a returned rental, with the hourly rate
+     * the pricing rules charged it from.
+     */
+    public Receipt toReceipt(long hourlyRatePaise) {
+        return new Receipt(rentalId, customer.getName(), bike.getBikeId(), bike.getModel(),
+            hourlyRatePaise, durationHours, finalChargePaise);
     }
     
+    // Finalize state without printing a receipt (also used when replaying the journal)
+    void markReturned(int durationHours, long finalChargePaise, long returnTimeMillis) {
+        this.durationHours = durationHours;
+        this.finalChargePaise = finalChargePaise;
+        this.returnTimeMillis = returnTimeMillis;
+        this.isReturned = true;
+        bike.setStatus(BikeStatus.AVAILABLE); // Return bike to inventory
+    }
+
     // Display summary for active rentals
     public void displayActiveRentalInfo() {
          System.out.println("  ID: " + rentalId + " | Customer: " + customer.getName() + " (ID: " + customer.getCustomerId() + ") | Bike ID: " + bike.getBikeId() + " (" + bike.getModel() + ")");
@@ -0,0 +1,284 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Running revenue and rented-hours totals per bike, customer, model and
+ * calendar day of return. Each returned rental is folded in with a few adder
+ * increments, so reports never rescan the rental history. Revenue is summed
+ * in paise, so totals are exact whatever order the adders add in.
+ */
+public class RentalAggregates {
+
+    /**
+     * Mutable totals for one key; adders keep concurrent returns from contending.
+     */
+    private static final class Totals {
+        final LongAdder rentals = new LongAdder();
+        final LongAdder hours = new LongAdder();
+        final LongAdder revenuePaise = new LongAdder();
+
+        void add(int durationHours, long chargePaise) {
+            rentals.increment();
+            hours.add(durationHours);
+            revenuePaise.add(chargePaise);
+        }
+
+        void addAll(Totals other) {
+            rentals.add(other.rentals.sum());
+            hours.add(other.hours.sum());
+            revenuePaise.add(other.revenuePaise.sum());
+        }
+
+        RevenueSummary summarize(String key) {
+            return new RevenueSummary(key, rentals.sum(), hours.sum(), revenuePaise.sum());
+        }
+    }
+
+    private final ZoneId zone;
+    private final Totals overall = new Totals();
+    private final Map<String, Totals> byBike = new ConcurrentHashMap<>();
+    private final Map<Integer, Totals> byCustomer = new ConcurrentHashMap<>();
+    private final Map<String, Totals> byModel = new ConcurrentHashMap<>();
+    private final Map<LocalDate, Totals> byDay = new ConcurrentHashMap<>();
+
+    public RentalAggregates() {
+        this(ZoneId.systemDefault());
+    }
+
+    public RentalAggregates(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    // --- Maintenance ---
+
+    /**
+     * Folds a returned rental into every dimension. Call exactly once per return.
+     * Rentals returned before charges were recorded (no return time) are left out.
+     */
+    public void record(Bike bike, int customerId, int durationHours, long chargePaise, long returnMillis) {
+        if (returnMillis == 0) {
+            return;
+        }
+        overall.add(durationHours, chargePaise);
+        byBike.computeIfAbsent(bike.getBikeId(), key -> new Totals()).add(durationHours, chargePaise);
+        byCustomer.computeIfAbsent(customerId, key -> new Totals()).add(durationHours, chargePaise);
+        byModel.computeIfAbsent(bike.getModel(), key -> new Totals()).add(durationHours, chargePaise);
+        byDay.computeIfAbsent(dayOf(returnMillis), key -> new Totals()).add(durationHours, chargePaise);
+    }
+
+    /**
+     * Folds in every row of a history, e.g. after loading a snapshot.
+     */
+    public void recordAll(RentalHistory history) {
+        int size = history.size();
+        for (int row = 0; row < size; row++) {
+            record(history.getBike(row), history.getCustomerId(row), history.getDurationHours(row),
+                history.getChargePaise(row), history.getReturnMillis(row));
+        }
+    }
+
+    /**
+     * A detached copy of every total. Only exact while no returns are in flight.
+     */
+    public RentalAggregates copy() {
+        RentalAggregates copy = new RentalAggregates(zone);
+        copy.overall.addAll(overall);
+        byBike.forEach((key, totals) -> copy.byBike.computeIfAbsent(key, k -> new Totals()).addAll(totals));
+        byCustomer.forEach((key, totals) -> copy.byCustomer.computeIfAbsent(key, k -> new Totals()).addAll(totals));
+        byModel.forEach((key, totals) -> copy.byModel.computeIfAbsent(key, k -> new Totals()).addAll(totals));
+        byDay.forEach((key, totals) -> copy.byDay.computeIfAbsent(key, k -> new Totals()).addAll(totals));
+        return copy;
+    }
+
+    public void clear() {
+        overall.rentals.reset();
+        overall.hours.reset();
+        overall.revenuePaise.reset();
+        byBike.clear();
+        byCustomer.clear();
+        byModel.clear();
+        byDay.clear();
+    }
+
+    private LocalDate dayOf(long returnMillis) {
+        return Instant.ofEpochMilli(returnMillis).atZone(zone).toLocalDate();
+    }
+
+    // --- Queries ---
+
+    public RevenueSummary getTotal() {
+        return overall.summarize("All rentals");
+    }
+
+    public RevenueSummary getForBike(String bikeId) {
+        return summarizeOne(byBike, bikeId, bikeId);
+    }
+
+    public RevenueSummary getForCustomer(int customerId) {
+        return summarizeOne(byCustomer, customerId, String.valueOf(customerId));
+    }
+
+    public RevenueSummary getForModel(String model) {
+        return summarizeOne(byModel, model, model);
+    }
+
+    public RevenueSummary getForDay(LocalDate day) {
+        return summarizeOne(byDay, day, day.toString());
+    }
+
+    /**
+     * Every bike, highest revenue first.
+     */
+    public List<RevenueSummary> getByBike() {
+        return summarizeAll(byBike, byRevenue());
+    }
+
+    /**
+     * Every customer keyed by customer ID, highest revenue first.
+     */
+    public List<RevenueSummary> getByCustomer() {
+        return summarizeAll(byCustomer, byRevenue());
+    }
+
+    public List<RevenueSummary> getByModel() {
+        return summarizeAll(byModel, byRevenue());
+    }
+
+    /**
+     * Every day with returns, oldest first.
+     */
+    public List<RevenueSummary> getByDay() {
+        return summarizeAll(byDay, Comparator.comparing(RevenueSummary::getKey));
+    }
+
+    private static <K> RevenueSummary summarizeOne(Map<K, Totals> totals, K key, String label) {
+        Totals found = totals.get(key);
+        return found != null ? found.summarize(label) : new RevenueSummary(label, 0, 0, 0);
+    }
+
+    private static <K> List<RevenueSummary> summarizeAll(Map<K, Totals> totals, Comparator<RevenueSummary> order) {
+        List<RevenueSummary> summaries = new ArrayList<>(totals.size());
+        totals.forEach((key, value) -> summaries.add(value.summarize(String.valueOf(key))));
+        summaries.sort(order);
+        return summaries;
+    }
+
+    private static Comparator<RevenueSummary> byRevenue() {
+        return Comparator.comparingLong(RevenueSummary::getRevenuePaise).reversed();
+    }
+
+    // --- Persistence ---
+
+    /**
+     * Writes every total, so a snapshot can restore them without rescanning history.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        writeTotals(out, overall);
+        out.writeInt(byBike.size());
+        for (Map.Entry<String, Totals> entry : byBike.entrySet()) {
+            out.writeUTF(entry.getKey());
+            writeTotals(out, entry.getValue());
+        }
+        out.writeInt(byCustomer.size());
+        for (Map.Entry<Integer, Totals> entry : byCustomer.entrySet()) {
+            out.writeInt(entry.getKey());
+            writeTotals(out, entry.getValue());
+        }
+        out.writeInt(byModel.size());
+        for (Map.Entry<String, Totals> entry : byModel.entrySet()) {
+            out.writeUTF(entry.getKey());
+            writeTotals(out, entry.getValue());
+        }
+        out.writeInt(byDay.size());
+        for (Map.Entry<LocalDate, Totals> entry : byDay.entrySet()) {
+            out.writeLong(entry.getKey().toEpochDay());
+            writeTotals(out, entry.getValue());
+        }
+    }
+
+    /**
+     * Replaces the current totals with ones written by writeTo.
+     */
+    public void readFrom(DataInputStream in) throws IOException {
+        clear();
+        readTotals(in, overall);
+        for (int i = in.readInt(); i > 0; i--) {
+            readTotals(in, byBike.computeIfAbsent(in.readUTF(), key -> new Totals()));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            readTotals(in, byCustomer.computeIfAbsent(in.readInt(), key -> new Totals()));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            readTotals(in, byModel.computeIfAbsent(in.readUTF(), key -> new Totals()));
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            readTotals(in, byDay.computeIfAbsent(LocalDate.ofEpochDay(in.readLong()), key -> new Totals()));
+        }
+    }
+
+    private static void writeTotals(DataOutputStream out, Totals totals) throws IOException {
+        out.writeLong(totals.rentals.sum());
+        out.writeLong(totals.hours.sum());
+        out.writeLong(totals.revenuePaise.sum());
+    }
+
+    private static void readTotals(DataInputStream in, Totals totals) throws IOException {
+        totals.rentals.add(in.readLong());
+        totals.hours.add(in.readLong());
+        totals.revenuePaise.add(in.readLong());
+    }
+
+    // --- Consistency Check ---
+
+    /**
+     * Recomputes every dimension from raw rental history and compares the
+     * result with the running totals. A parallel stream spreads the recompute
+     * over the fork-join pool. Returns a description of each mismatch; empty
+     * means consistent. Only meaningful while no returns are in flight.
+     */
+    public List<String> verify(Stream<HistoryRecord> history) {
+        RentalAggregates recomputed = new RentalAggregates(zone);
+        history.parallel().forEach(record -> recomputed.record(record.getBike(), record.getCustomerId(),
+            record.getDurationHours(), record.getChargePaise(), record.getReturnMillis()));
+
+        List<String> mismatches = new ArrayList<>();
+        compare("total", Map.of("All rentals", overall), Map.of("All rentals", recomputed.overall), mismatches);
+        compare("bike", byBike, recomputed.byBike, mismatches);
+        compare("customer", byCustomer, recomputed.byCustomer, mismatches);
+        compare("model", byModel, recomputed.byModel, mismatches);
+        compare("day", byDay, recomputed.byDay, mismatches);
+        return mismatches;
+    }
+
+    private static <K> void compare(String dimension, Map<K, Totals> running, Map<K, Totals> recomputed,
+                                    List<String> mismatches) {
+        for (Map.Entry<K, Totals> entry : recomputed.entrySet()) {
+            Totals totals = running.get(entry.getKey());
+            Totals expected = entry.getValue();
+            if (totals == null) {
+                mismatches.add(dimension + " " + entry.getKey() + " is missing from the running totals");
+            } else if (totals.rentals.sum() != expected.rentals.sum()
+                    || totals.hours.sum() != expected.hours.sum()
+                    || totals.revenuePaise.sum() != expected.revenuePaise.sum()) {
+                mismatches.add(dimension + " " + entry.getKey() + " has " + totals.summarize("running")
+                    + " but history gives " + expected.summarize("recomputed"));
+            }
+        }
+        for (Map.Entry<K, Totals> entry : running.entrySet()) {
+            if (!recomputed.containsKey(entry.getKey()) && entry.getValue().rentals.sum() > 0) {
+                mismatches.add(dimension + " " + entry.getKey() + " has running totals but no returned rentals");
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * One state change published by BikeRentalSystem. Instances are slots of a
+ * RentalEventRing, filled in place by producers and copied into each
+ * subscriber's own instance, so publishing allocates nothing. A handler must
+ * not keep the instance it is given beyond the callback.
+ */
+public final class RentalEvent {
+
+    public enum Type {
+        BIKE_ADDED,
+        RENTED,
+        RETURNED,
+        SENT_TO_REPAIR,
+        BACK_FROM_REPAIR
+    }
+
+    private long sequence;
+    private long timeMillis;
+    private Type type;
+    private String bikeId;
+    private int customerId;     // RENTED and RETURNED only
+    private int rentalId;       // RENTED and RETURNED only
+    private int durationHours;  // RETURNED only
+    private long chargePaise;   // RETURNED only
+
+    void set(long sequence, long timeMillis, Type type, String bikeId, int customerId, int rentalId,
+             int durationHours, long chargePaise) {
+        this.sequence = sequence;
+        this.timeMillis = timeMillis;
+        this.type = type;
+        this.bikeId = bikeId;
+        this.customerId = customerId;
+        this.rentalId = rentalId;
+        this.durationHours = durationHours;
+        this.chargePaise = chargePaise;
+    }
+
+    void copyFrom(RentalEvent other) {
+        set(other.sequence, other.timeMillis, other.type, other.bikeId, other.customerId, other.rentalId,
+            other.durationHours, other.chargePaise);
+    }
+
+    /**
+     * Position in the stream, increasing by one per published event.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getBikeId() {
+        return bikeId;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public int getRentalId() {
+        return rentalId;
+    }
+
+    public int getDurationHours() {
+        return durationHours;
+    }
+
+    public long getChargePaise() {
+        return chargePaise;
+    }
+
+    public double getCharge() {
+        return PricingEngine.toRupees(chargePaise);
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case RENTED:
+                return "#" + sequence + " " + type + " bike " + bikeId + " rental " + rentalId + " customer " + customerId;
+            case RETURNED:
+                return String.format("#%d %s bike %s rental %d customer %d, %d h, %s rs",
+                    sequence, type, bikeId, rentalId, customerId, durationHours, PricingEngine.formatRupees(chargePaise));
+            default:
+                return "#" + sequence + " " + type + " bike " + bikeId;
+        }
+    }
+}
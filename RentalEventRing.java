@@ -0,0 +1,282 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded ring of preallocated RentalEvent slots, written by any number of
+ * producers and read by subscribers that each run on their own thread with
+ * their own cursor. Producers claim a sequence with one atomic increment,
+ * fill the slot in place and mark it published; no lock is taken, so
+ * publishing from inside a bike's monitor adds no contention.
+ *
+ * A producer may reuse a slot only once every subscriber has moved past the
+ * event it holds. Each subscriber chooses what happens when it falls a full
+ * ring behind: BLOCK holds producers back until it catches up, DROP_OLDEST
+ * moves its cursor forward over the events it missed and counts them.
+ * Producers wait for BLOCK subscribers inside whatever locks they hold, so
+ * BLOCK suits only subscribers that never wait on I/O. A
+ * subscriber commits each read by advancing its cursor with a CAS, so a
+ * copy overtaken by a drop is discarded rather than delivered torn.
+ */
+public class RentalEventRing {
+
+    public enum Backpressure {
+        BLOCK,
+        DROP_OLDEST
+    }
+
+    /**
+     * Receives events in sequence order on the subscription's thread.
+     */
+    public interface Handler {
+        /**
+         * The event is reused after this returns. endOfBatch is true when no
+         * further event is waiting yet, e.g. a good moment to flush output.
+         * A BLOCK subscriber's handler must not itself cause events, or it
+         * can end up waiting on its own cursor.
+         */
+        void onEvent(RentalEvent event, boolean endOfBatch);
+
+        /**
+         * Called before the next event a DROP_OLDEST subscriber receives
+         * after falling behind, with the first sequence it missed and how
+         * many. Ignores the gap unless overridden.
+         */
+        default void onDropped(long firstSequence, long count) {
+        }
+    }
+
+    private static final int SPIN_TRIES = 64;
+    private static final int YIELD_TRIES = 64;
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final RentalEvent[] slots;
+    private final int mask;
+    private final AtomicLongArray published; // Sequence most recently written to each slot
+    private final AtomicLong nextSequence = new AtomicLong();
+    private volatile Subscription[] subscriptions = new Subscription[0];
+
+    public RentalEventRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        slots = new RentalEvent[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new RentalEvent();
+            published.set(i, i - (long) capacity); // As if a lap before sequence 0 had been written
+        }
+        mask = capacity - 1;
+    }
+
+    // --- Publishing ---
+
+    /**
+     * Publishes one event. Skipped entirely while nobody is subscribed.
+     * Fields that do not apply to the type are passed as zero or null.
+     */
+    public void publish(RentalEvent.Type type, String bikeId, int customerId, int rentalId, int durationHours, long chargePaise) {
+        Subscription[] current = subscriptions;
+        if (current.length == 0) {
+            return;
+        }
+        long sequence = nextSequence.getAndIncrement();
+        current = subscriptions; // Re-read after claiming, so a subscriber added meanwhile is gated on too
+        int slot = (int) sequence & mask;
+        long previousLap = sequence - slots.length;
+
+        // The writer of the previous lap may still be filling this slot
+        for (int attempt = 0; published.get(slot) != previousLap; attempt++) {
+            backOff(attempt);
+        }
+        for (Subscription subscription : current) {
+            subscription.release(previousLap);
+        }
+
+        slots[slot].set(sequence, System.currentTimeMillis(), type, bikeId, customerId, rentalId, durationHours, chargePaise);
+        published.set(slot, sequence);
+    }
+
+    // --- Subscriptions ---
+
+    /**
+     * Starts delivering events published from now on to the handler, on a new
+     * daemon thread named after the subscription.
+     */
+    public synchronized Subscription subscribe(String name, Backpressure backpressure, Handler handler) {
+        Subscription subscription = new Subscription(name, backpressure, handler, nextSequence.get());
+        Subscription[] grown = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+        grown[grown.length - 1] = subscription;
+        subscriptions = grown;
+        subscription.thread.start();
+        return subscription;
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        List<Subscription> remaining = new ArrayList<>(Arrays.asList(subscriptions));
+        remaining.remove(subscription);
+        subscriptions = remaining.toArray(new Subscription[0]);
+    }
+
+    public List<Subscription> getSubscriptions() {
+        return Collections.unmodifiableList(Arrays.asList(subscriptions));
+    }
+
+    /**
+     * Closes every subscription after it has delivered what was already published.
+     */
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Number of events published so far, i.e. the next sequence to be claimed.
+     */
+    public long getPublishedCount() {
+        return nextSequence.get();
+    }
+
+    private static void backOff(int attempt) {
+        if (attempt < SPIN_TRIES) {
+            Thread.onSpinWait();
+        } else if (attempt < SPIN_TRIES + YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            int doublings = Math.min(attempt - SPIN_TRIES - YIELD_TRIES, 7);
+            LockSupport.parkNanos(Math.min(MIN_PARK_NANOS << doublings, MAX_PARK_NANOS));
+        }
+    }
+
+    /**
+     * One subscriber's cursor and delivery thread.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final String name;
+        private final Backpressure backpressure;
+        private final Handler handler;
+        private final AtomicLong cursor; // Next sequence this subscriber will read
+        private final AtomicLong dropped = new AtomicLong();
+        private final RentalEvent scratch = new RentalEvent();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private Subscription(String name, Backpressure backpressure, Handler handler, long start) {
+            this.name = name;
+            this.backpressure = backpressure;
+            this.handler = handler;
+            this.cursor = new AtomicLong(start);
+            this.thread = new Thread(this::deliver, "events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Backpressure getBackpressure() {
+            return backpressure;
+        }
+
+        /**
+         * Events published but not yet delivered to this subscriber.
+         */
+        public long getLag() {
+            return Math.max(0, nextSequence.get() - cursor.get());
+        }
+
+        /**
+         * Events skipped because this DROP_OLDEST subscriber fell a full ring behind.
+         */
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        /**
+         * Stops producers waiting on this subscriber, delivers what was already
+         * published and ends the thread. Does not wait when called from the handler.
+         */
+        @Override
+        public void close() {
+            running = false;
+            unsubscribe(this);
+            LockSupport.unpark(thread);
+            if (Thread.currentThread() != thread) {
+                try {
+                    thread.join(TimeUnit.SECONDS.toMillis(5));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        // Called by a producer that needs the slot holding sequence
+        private void release(long sequence) {
+            for (int attempt = 0; running; attempt++) {
+                long position = cursor.get();
+                if (position > sequence) {
+                    return;
+                }
+                if (backpressure == Backpressure.DROP_OLDEST) {
+                    if (cursor.compareAndSet(position, sequence + 1)) {
+                        dropped.addAndGet(sequence + 1 - position);
+                        return;
+                    }
+                } else {
+                    backOff(attempt);
+                }
+            }
+        }
+
+        private void deliver() {
+            int idle = 0;
+            long expected = cursor.get(); // Follows the last event delivered, to spot drops
+            while (true) {
+                long position = cursor.get();
+                int slot = (int) position & mask;
+                long written = published.get(slot);
+                if (written < position) {
+                    if (!running) {
+                        return; // Drained
+                    }
+                    backOff(idle++);
+                    continue;
+                }
+                idle = 0;
+                if (written > position) {
+                    // Overwritten before this subscriber ever saw it
+                    if (cursor.compareAndSet(position, position + 1)) {
+                        dropped.incrementAndGet();
+                    }
+                    continue;
+                }
+
+                scratch.copyFrom(slots[slot]);
+                if (!cursor.compareAndSet(position, position + 1)) {
+                    continue; // A producer dropped it while it was being copied
+                }
+                boolean endOfBatch = published.get((int) (position + 1) & mask) != position + 1;
+                try {
+                    if (position > expected) {
+                        handler.onDropped(expected, position - expected);
+                    }
+                    expected = position + 1;
+                    handler.onEvent(scratch, endOfBatch);
+                } catch (RuntimeException e) {
+                    System.err.println("Error in event subscriber " + name + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+}
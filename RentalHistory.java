@@ -0,0 +1,133 @@
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Append-only columnar store of returned rentals. Each column is a primitive
+ * array, allocated in fixed-size chunks so growth never copies existing rows.
+ * Bikes are stored as ordinals into a small table and customers by ID, so a
+ * finished rental pins no objects and report scans walk contiguous arrays.
+ *
+ * Appends are serialized; readers may scan concurrently and see every row
+ * below size().
+ */
+public class RentalHistory {
+
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // 4096 rows, about 160 KB per chunk
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final class Chunk {
+        final int[] rentalIds = new int[CHUNK_SIZE];
+        final int[] customerIds = new int[CHUNK_SIZE];
+        final int[] bikeOrdinals = new int[CHUNK_SIZE];
+        final int[] durationHours = new int[CHUNK_SIZE];
+        final long[] startMillis = new long[CHUNK_SIZE];
+        final long[] returnMillis = new long[CHUNK_SIZE];
+        final long[] chargesPaise = new long[CHUNK_SIZE];
+    }
+
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile Bike[] bikes = new Bike[0];
+    private final Map<Bike, Integer> bikeOrdinals = new IdentityHashMap<>();
+    private volatile int size; // Written last, so rows below it are fully visible
+
+    // --- Appends ---
+
+    public void append(Rental rental) {
+        append(rental.getRentalId(), rental.getCustomer().getCustomerId(), rental.getBike(),
+            rental.getStartTimeMillis(), rental.getDurationHours(), rental.getFinalChargePaise(), rental.getReturnTimeMillis());
+    }
+
+    public synchronized void append(int rentalId, int customerId, Bike bike, long startMillis,
+                                    int durationHours, long chargePaise, long returnMillis) {
+        int row = size;
+        int chunkIndex = row >>> CHUNK_SHIFT;
+        Chunk[] current = chunks;
+        if (chunkIndex == current.length) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[chunkIndex] = new Chunk();
+            chunks = current;
+        }
+
+        Chunk chunk = current[chunkIndex];
+        int slot = row & CHUNK_MASK;
+        chunk.rentalIds[slot] = rentalId;
+        chunk.customerIds[slot] = customerId;
+        chunk.bikeOrdinals[slot] = ordinalOf(bike);
+        chunk.durationHours[slot] = durationHours;
+        chunk.startMillis[slot] = startMillis;
+        chunk.returnMillis[slot] = returnMillis;
+        chunk.chargesPaise[slot] = chargePaise;
+        size = row + 1;
+    }
+
+    private int ordinalOf(Bike bike) {
+        Integer ordinal = bikeOrdinals.get(bike);
+        if (ordinal == null) {
+            ordinal = bikeOrdinals.size();
+            bikeOrdinals.put(bike, ordinal);
+            Bike[] current = bikes;
+            if (ordinal == current.length) {
+                current = Arrays.copyOf(current, Math.max(16, ordinal * 2)); // Doubling, or a fleet costs O(n^2) copies
+                bikes = current;
+            }
+            current[ordinal] = bike; // Published to readers by the write to size
+        }
+        return ordinal;
+    }
+
+    // --- Reads ---
+
+    public int size() {
+        return size;
+    }
+
+    public int getRentalId(int row) {
+        return chunk(row).rentalIds[row & CHUNK_MASK];
+    }
+
+    public int getCustomerId(int row) {
+        return chunk(row).customerIds[row & CHUNK_MASK];
+    }
+
+    public Bike getBike(int row) {
+        return bikes[chunk(row).bikeOrdinals[row & CHUNK_MASK]];
+    }
+
+    public int getDurationHours(int row) {
+        return chunk(row).durationHours[row & CHUNK_MASK];
+    }
+
+    public long getStartMillis(int row) {
+        return chunk(row).startMillis[row & CHUNK_MASK];
+    }
+
+    /**
+     * Zero for rentals returned before return times were recorded.
+     */
+    public long getReturnMillis(int row) {
+        return chunk(row).returnMillis[row & CHUNK_MASK];
+    }
+
+    public long getChargePaise(int row) {
+        return chunk(row).chargesPaise[row & CHUNK_MASK];
+    }
+
+    /**
+     * Streams the rows present when called, as records.
+     */
+    public Stream<HistoryRecord> records() {
+        return IntStream.range(0, size).mapToObj(row -> new HistoryRecord(getRentalId(row), getCustomerId(row),
+            getBike(row), getStartMillis(row), getReturnMillis(row), getDurationHours(row), getChargePaise(row)));
+    }
+
+    private Chunk chunk(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " outside history of " + size);
+        }
+        return chunks[row >>> CHUNK_SHIFT];
+    }
+}
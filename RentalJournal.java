@@ -0,0 +1,488 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the operations applied to a BikeRentalSystem since its
+ * last snapshot. Each record is framed as [length][crc32][op][payload] so a
+ * record torn by a crash is detected and dropped on replay. The header carries
+ * the generation of the snapshot the records apply to.
+ *
+ * Appends are serialized on this journal's monitor, which fixes the record
+ * order. Written inline, each append also performs its channel write under
+ * that monitor, so concurrent appenders queue behind one another's I/O; with
+ * group commit enabled they only encode and enqueue there.
+ */
+public class RentalJournal implements Closeable {
+
+    /**
+     * Receives journal records in the order they were written.
+     */
+    public interface Handler {
+        void onAddBike(String bikeId, String model, double hourlyRate);
+        void onAddCustomer(int customerId, String name);
+        void onRentBike(int rentalId, int customerId, String bikeId, long startTimeMillis, long expectedReturnMillis);
+        void onReturnBike(int rentalId, int durationHours, long finalChargePaise, long returnTimeMillis);
+        void onSendToRepair(String bikeId);
+        void onReturnFromRepair(String bikeId, long servicedMillis);
+        void onReserveBike(int reservationId, int customerId, String bikeId, long startMillis, long endMillis);
+        /**
+         * The reservation was picked up or cancelled.
+         */
+        void onReleaseReservation(int reservationId);
+    }
+
+    /**
+     * Sees every write in journal order, e.g. to ship it to a replica. Called
+     * under the journal's lock, so it must only hand the bytes off.
+     */
+    public interface Tap {
+        /**
+         * @param records one or more framed records, exactly as written to the file
+         * @param sequence increases by one per write, across resets
+         */
+        void onWrite(byte[] records, long sequence);
+    }
+
+    private static final int MAGIC = 0x424B4A4C; // "BKJL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16; // magic + version + generation
+    private static final int FRAME_SIZE = 8; // length + crc
+
+    private static final byte OP_ADD_BIKE = 1;
+    private static final byte OP_ADD_CUSTOMER = 2;
+    private static final byte OP_RENT_BIKE = 3;
+    private static final byte OP_RETURN_BIKE = 4;
+    private static final byte OP_SEND_TO_REPAIR = 5;
+    private static final byte OP_RETURN_FROM_REPAIR = 6;
+    private static final byte OP_RESERVE_BIKE = 7;
+    private static final byte OP_RELEASE_RESERVATION = 8;
+
+    private final Path path;
+    private FileChannel channel;
+    private long generation;
+    private long entryCount;
+
+    // Reused encode buffer; every append runs under this journal's lock
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(128);
+    private final DataOutputStream record = new DataOutputStream(recordBuffer);
+    private final CRC32 crc = new CRC32();
+
+    // Records held back while a batch is open, written with a single channel write
+    private final ByteArrayOutputStream batchBuffer = new ByteArrayOutputStream();
+    private boolean batching;
+
+    // Durability tracking: every record gets a sequence; each thread remembers its latest
+    private volatile GroupCommitWriter groupCommit; // Null means records are written inline by the appender
+    private long groupCommitLatencyNanos;
+    private int groupCommitBatchRecords;
+    private long appendedSequence;
+    private long forcedSequence;
+    private final ThreadLocal<long[]> lastSequenceOfThread = ThreadLocal.withInitial(() -> new long[1]);
+
+    private final List<Tap> taps = new CopyOnWriteArrayList<>();
+
+    public RentalJournal(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Number of records written or replayed since the journal was last reset.
+     */
+    public synchronized long getEntryCount() {
+        return entryCount;
+    }
+
+    // --- Replay ---
+
+    /**
+     * Replays every intact record into the handler, truncates any torn tail and
+     * leaves the journal open for appends. A journal from an older generation
+     * than the loaded snapshot is already covered by it and is discarded.
+     */
+    public synchronized void openAndReplay(long snapshotGeneration, Handler handler) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        entryCount = 0;
+
+        if (channel.size() < HEADER_SIZE) {
+            reset(snapshotGeneration);
+            return;
+        }
+
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unrecognized journal format in " + path);
+        }
+        long fileGeneration = in.readLong();
+        if (fileGeneration != snapshotGeneration) {
+            if (fileGeneration > snapshotGeneration) {
+                throw new IOException("Journal " + path + " is newer than the loaded snapshot");
+            }
+            reset(snapshotGeneration);
+            return;
+        }
+        generation = fileGeneration;
+
+        long validEnd = HEADER_SIZE;
+        byte[] payload = new byte[256];
+        while (true) {
+            int length;
+            long expectedCrc;
+            try {
+                length = in.readInt();
+                expectedCrc = in.readInt() & 0xFFFFFFFFL;
+                if (length <= 0 || validEnd + FRAME_SIZE + length > channel.size()) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[length];
+                }
+                in.readFully(payload, 0, length);
+            } catch (EOFException e) {
+                break;
+            }
+
+            crc.reset();
+            crc.update(payload, 0, length);
+            if (crc.getValue() != expectedCrc) {
+                break;
+            }
+
+            dispatch(new DataInputStream(new ByteArrayInputStream(payload, 0, length)), handler, path);
+            validEnd += FRAME_SIZE + length;
+            entryCount++;
+        }
+
+        // Drop a partially written record left behind by a crash
+        channel.truncate(validEnd);
+        channel.position(validEnd);
+    }
+
+    /**
+     * Dispatches every record in a run of framed records, such as one handed
+     * to a Tap. Unlike replay, a torn or corrupt record is an error here.
+     */
+    public static void readRecords(byte[] records, Handler handler) throws IOException {
+        ByteBuffer frames = ByteBuffer.wrap(records);
+        CRC32 check = new CRC32();
+        while (frames.hasRemaining()) {
+            if (frames.remaining() < FRAME_SIZE) {
+                throw new IOException("Truncated journal record frame");
+            }
+            int length = frames.getInt();
+            long expectedCrc = frames.getInt() & 0xFFFFFFFFL;
+            if (length <= 0 || length > frames.remaining()) {
+                throw new IOException("Truncated journal record");
+            }
+            check.reset();
+            check.update(records, frames.position(), length);
+            if (check.getValue() != expectedCrc) {
+                throw new IOException("Corrupt journal record");
+            }
+            dispatch(new DataInputStream(new ByteArrayInputStream(records, frames.position(), length)), handler, "shipped records");
+            frames.position(frames.position() + length);
+        }
+    }
+
+    private static void dispatch(DataInputStream in, Handler handler, Object source) throws IOException {
+        byte op = in.readByte();
+        switch (op) {
+            case OP_ADD_BIKE:
+                handler.onAddBike(in.readUTF(), in.readUTF(), in.readDouble());
+                break;
+            case OP_ADD_CUSTOMER:
+                handler.onAddCustomer(in.readInt(), in.readUTF());
+                break;
+            case OP_RENT_BIKE:
+                handler.onRentBike(in.readInt(), in.readInt(), in.readUTF(), in.readLong(), in.readLong());
+                break;
+            case OP_RETURN_BIKE:
+                handler.onReturnBike(in.readInt(), in.readInt(), in.readLong(), in.readLong());
+                break;
+            case OP_SEND_TO_REPAIR:
+                handler.onSendToRepair(in.readUTF());
+                break;
+            case OP_RETURN_FROM_REPAIR:
+                handler.onReturnFromRepair(in.readUTF(), in.readLong());
+                break;
+            case OP_RESERVE_BIKE:
+                handler.onReserveBike(in.readInt(), in.readInt(), in.readUTF(), in.readLong(), in.readLong());
+                break;
+            case OP_RELEASE_RESERVATION:
+                handler.onReleaseReservation(in.readInt());
+                break;
+            default:
+                throw new IOException("Unknown journal operation " + op + " in " + source);
+        }
+    }
+
+    // --- Appends ---
+
+    public synchronized void appendAddBike(String bikeId, String model, double hourlyRate) throws IOException {
+        beginRecord(OP_ADD_BIKE);
+        record.writeUTF(bikeId);
+        record.writeUTF(model);
+        record.writeDouble(hourlyRate);
+        commitRecord();
+    }
+
+    public synchronized void appendAddCustomer(int customerId, String name) throws IOException {
+        beginRecord(OP_ADD_CUSTOMER);
+        record.writeInt(customerId);
+        record.writeUTF(name);
+        commitRecord();
+    }
+
+    public synchronized void appendRentBike(int rentalId, int customerId, String bikeId, long startTimeMillis,
+                                            long expectedReturnMillis) throws IOException {
+        beginRecord(OP_RENT_BIKE);
+        record.writeInt(rentalId);
+        record.writeInt(customerId);
+        record.writeUTF(bikeId);
+        record.writeLong(startTimeMillis);
+        record.writeLong(expectedReturnMillis);
+        commitRecord();
+    }
+
+    public synchronized void appendReturnBike(int rentalId, int durationHours, long finalChargePaise, long returnTimeMillis) throws IOException {
+        beginRecord(OP_RETURN_BIKE);
+        record.writeInt(rentalId);
+        record.writeInt(durationHours);
+        record.writeLong(finalChargePaise);
+        record.writeLong(returnTimeMillis);
+        commitRecord();
+    }
+
+    public synchronized void appendSendToRepair(String bikeId) throws IOException {
+        beginRecord(OP_SEND_TO_REPAIR);
+        record.writeUTF(bikeId);
+        commitRecord();
+    }
+
+    public synchronized void appendReturnFromRepair(String bikeId, long servicedMillis) throws IOException {
+        beginRecord(OP_RETURN_FROM_REPAIR);
+        record.writeUTF(bikeId);
+        record.writeLong(servicedMillis);
+        commitRecord();
+    }
+
+    public synchronized void appendReserveBike(int reservationId, int customerId, String bikeId,
+                                               long startMillis, long endMillis) throws IOException {
+        beginRecord(OP_RESERVE_BIKE);
+        record.writeInt(reservationId);
+        record.writeInt(customerId);
+        record.writeUTF(bikeId);
+        record.writeLong(startMillis);
+        record.writeLong(endMillis);
+        commitRecord();
+    }
+
+    public synchronized void appendReleaseReservation(int reservationId) throws IOException {
+        beginRecord(OP_RELEASE_RESERVATION);
+        record.writeInt(reservationId);
+        commitRecord();
+    }
+
+    private void beginRecord(byte op) throws IOException {
+        if (channel == null) {
+            throw new IOException("Journal " + path + " is not open");
+        }
+        recordBuffer.reset();
+        record.writeInt(0); // length placeholder
+        record.writeInt(0); // crc placeholder
+        record.writeByte(op);
+    }
+
+    private void commitRecord() throws IOException {
+        byte[] bytes = recordBuffer.toByteArray();
+        int length = bytes.length - FRAME_SIZE;
+        crc.reset();
+        crc.update(bytes, FRAME_SIZE, length);
+
+        ByteBuffer frame = ByteBuffer.wrap(bytes);
+        frame.putInt(0, length);
+        frame.putInt(4, (int) crc.getValue());
+        if (batching) {
+            batchBuffer.write(bytes, 0, bytes.length);
+        } else {
+            write(bytes);
+        }
+        entryCount++;
+    }
+
+    // Assigns the next sequence and writes inline or hands the bytes to the group-commit writer
+    private void write(byte[] bytes) throws IOException {
+        long sequence = ++appendedSequence;
+        if (groupCommit != null) {
+            groupCommit.enqueue(bytes, sequence);
+        } else {
+            writeFully(ByteBuffer.wrap(bytes));
+        }
+        lastSequenceOfThread.get()[0] = sequence;
+        for (Tap tap : taps) {
+            tap.onWrite(bytes, sequence);
+        }
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    // --- Batches ---
+
+    /**
+     * Buffers subsequent appends in memory until endBatch. The caller must keep
+     * other writers out for the duration, since the records are not yet on disk.
+     */
+    public synchronized void beginBatch() {
+        batchBuffer.reset();
+        batching = true;
+    }
+
+    /**
+     * Writes every record appended since beginBatch in one write.
+     */
+    public synchronized void endBatch() throws IOException {
+        batching = false;
+        try {
+            if (batchBuffer.size() > 0) {
+                write(batchBuffer.toByteArray());
+            }
+        } finally {
+            batchBuffer.reset();
+        }
+    }
+
+    // --- Durability ---
+
+    /**
+     * Switches from inline writes to a background group-commit writer that
+     * batches records for up to maxLatency and forces each group to disk once.
+     */
+    public synchronized void enableGroupCommit(long maxLatency, TimeUnit unit, int maxBatchRecords) {
+        if (groupCommit == null) {
+            groupCommitLatencyNanos = unit.toNanos(maxLatency);
+            groupCommitBatchRecords = maxBatchRecords;
+            groupCommit = new GroupCommitWriter(channel, maxLatency, unit, maxBatchRecords, appendedSequence);
+        }
+    }
+
+    /**
+     * The failure that stopped the group-commit writer, or null. Appends
+     * fail with it until reset, so callers can stop taking changes early.
+     */
+    public IOException getWriteFailure() {
+        GroupCommitWriter writer = groupCommit;
+        return writer != null ? writer.getFailure() : null;
+    }
+
+    /**
+     * Blocks until every record appended by the calling thread is forced to
+     * disk. Appending without calling this is fire-and-forget.
+     */
+    public void awaitDurable() throws IOException {
+        long sequence = lastSequenceOfThread.get()[0];
+        GroupCommitWriter writer;
+        synchronized (this) {
+            writer = groupCommit;
+            if (writer == null) {
+                if (forcedSequence < sequence) {
+                    channel.force(false);
+                    forcedSequence = appendedSequence;
+                }
+                return;
+            }
+        }
+        // Wait outside the journal lock so other appenders are not held up
+        writer.awaitDurable(sequence);
+    }
+
+    // --- Taps ---
+
+    /**
+     * Attaches the tap from the next write on. Callers that pair this with a
+     * snapshot must keep writers out meanwhile so no record falls in between.
+     */
+    public synchronized void addTap(Tap tap) {
+        taps.add(tap);
+    }
+
+    public synchronized void removeTap(Tap tap) {
+        taps.remove(tap);
+    }
+
+    // --- Compaction ---
+
+    /**
+     * Discards all records and starts the given generation. Called once a
+     * snapshot covering them is safely on disk. Since the snapshot also
+     * covers records a failed write lost, this is where the journal recovers:
+     * a closed channel is reopened and a failed group-commit writer replaced.
+     */
+    public synchronized void reset(long newGeneration) throws IOException {
+        boolean writerFailed = false;
+        if (groupCommit != null) {
+            try {
+                groupCommit.drain();
+            } catch (IOException e) {
+                writerFailed = true; // Its thread has stopped; everything it held is in the snapshot
+            }
+        }
+        if (!channel.isOpen()) {
+            // E.g. closed by an interrupt during a write
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (groupCommit != null && !writerFailed) {
+                groupCommit.close(); // Idle, since appends wait for this lock; it still holds the old channel
+                writerFailed = true;
+            }
+        }
+        if (writerFailed) {
+            groupCommit = new GroupCommitWriter(channel, groupCommitLatencyNanos, TimeUnit.NANOSECONDS,
+                groupCommitBatchRecords, appendedSequence);
+        }
+        channel.truncate(0);
+        generation = newGeneration;
+        writeHeader();
+        entryCount = 0;
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(generation).flip();
+        channel.position(0);
+        writeFully(header);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (groupCommit != null) {
+            groupCommit.close();
+            groupCommit = null;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
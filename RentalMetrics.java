@@ -0,0 +1,229 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per-operation latency histograms, success/failure counters broken down by
+ * FailureReason, and inventory gauges for a BikeRentalSystem. Recording only
+ * touches preallocated atomic arrays, so it never allocates on the hot path.
+ */
+public class RentalMetrics implements RentalMetricsMBean {
+
+    public enum Operation {
+        RENT,
+        RETURN,
+        LOOKUP,
+        SEND_TO_REPAIR,
+        RETURN_FROM_REPAIR,
+        ESTIMATE,
+        SAVE,
+        LOAD,
+        RESERVE,
+        PICK_UP,
+        CANCEL_RESERVATION,
+        OVERDUE,
+        SERVICE_DUE
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final FailureReason[] REASONS = FailureReason.values();
+
+    private final BikeRentalSystem system;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS.length];
+    private final AtomicLongArray successes = new AtomicLongArray(OPERATIONS.length);
+    private final AtomicLongArray failures = new AtomicLongArray(OPERATIONS.length * REASONS.length);
+
+    public RentalMetrics(BikeRentalSystem system) {
+        this.system = system;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    // --- Recording ---
+
+    public void recordSuccess(Operation operation, long elapsedNanos) {
+        latencies[operation.ordinal()].record(elapsedNanos);
+        successes.incrementAndGet(operation.ordinal());
+    }
+
+    public void recordFailure(Operation operation, FailureReason reason, long elapsedNanos) {
+        latencies[operation.ordinal()].record(elapsedNanos);
+        failures.incrementAndGet(operation.ordinal() * REASONS.length + reason.ordinal());
+    }
+
+    // --- Queries ---
+
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    public long getSuccessCount(Operation operation) {
+        return successes.get(operation.ordinal());
+    }
+
+    public long getFailureCount(Operation operation, FailureReason reason) {
+        return failures.get(operation.ordinal() * REASONS.length + reason.ordinal());
+    }
+
+    public long getFailureCount(Operation operation) {
+        long total = 0;
+        for (FailureReason reason : REASONS) {
+            total += getFailureCount(operation, reason);
+        }
+        return total;
+    }
+
+    /**
+     * Registers this instance with the platform MBean server under the given name,
+     * e.g. "bikerental:type=RentalMetrics", replacing the metrics of a system
+     * registered there before (such as a replica since reseeded).
+     */
+    public void registerMBean(String objectName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(objectName);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+
+    // --- RentalMetricsMBean ---
+
+    @Override
+    public long getAvailableBikes() {
+        return system.countBikes(BikeStatus.AVAILABLE);
+    }
+
+    @Override
+    public long getRentedBikes() {
+        return system.countBikes(BikeStatus.RENTED);
+    }
+
+    @Override
+    public long getBikesInRepair() {
+        return system.countBikes(BikeStatus.IN_REPAIR);
+    }
+
+    @Override
+    public long getActiveRentals() {
+        return system.countActiveRentals();
+    }
+
+    @Override
+    public long getRentSuccesses() {
+        return getSuccessCount(Operation.RENT);
+    }
+
+    @Override
+    public long getRentFailures() {
+        return getFailureCount(Operation.RENT);
+    }
+
+    @Override
+    public long getReturnSuccesses() {
+        return getSuccessCount(Operation.RETURN);
+    }
+
+    @Override
+    public long getReturnFailures() {
+        return getFailureCount(Operation.RETURN);
+    }
+
+    @Override
+    public double getRentP99Micros() {
+        return micros(getLatency(Operation.RENT).getPercentileNanos(99));
+    }
+
+    @Override
+    public double getReturnP99Micros() {
+        return micros(getLatency(Operation.RETURN).getPercentileNanos(99));
+    }
+
+    @Override
+    public double getLookupP99Micros() {
+        return micros(getLatency(Operation.LOOKUP).getPercentileNanos(99));
+    }
+
+    @Override
+    public double getSaveP99Micros() {
+        return micros(getLatency(Operation.SAVE).getPercentileNanos(99));
+    }
+
+    @Override
+    public String[] getOperationSummaries() {
+        String[] lines = new String[OPERATIONS.length];
+        for (Operation operation : OPERATIONS) {
+            LatencyHistogram latency = getLatency(operation);
+            lines[operation.ordinal()] = String.format(Locale.ROOT,
+                "%-18s count=%d ok=%d failed=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus",
+                operation, latency.getCount(), getSuccessCount(operation), getFailureCount(operation),
+                latency.getMeanNanos() / 1000.0, micros(latency.getPercentileNanos(50)),
+                micros(latency.getPercentileNanos(99)), micros(latency.getMaxNanos()));
+        }
+        return lines;
+    }
+
+    @Override
+    public String[] getFailureSummaries() {
+        List<String> lines = new ArrayList<>();
+        for (Operation operation : OPERATIONS) {
+            for (FailureReason reason : REASONS) {
+                long count = getFailureCount(operation, reason);
+                if (count > 0) {
+                    lines.add(String.format(Locale.ROOT, "%-18s %-20s %d", operation, reason, count));
+                }
+            }
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    @Override
+    public String[] getEventSubscriberSummaries() {
+        List<String> lines = new ArrayList<>();
+        for (RentalEventRing.Subscription subscription : system.getEventRing().getSubscriptions()) {
+            lines.add(String.format(Locale.ROOT, "%-18s %-12s lag=%d dropped=%d", subscription.getName(),
+                subscription.getBackpressure(), subscription.getLag(), subscription.getDropped()));
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    @Override
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "Bikes: %d available, %d rented, %d in repair | Active rentals: %d%n",
+            getAvailableBikes(), getRentedBikes(), getBikesInRepair(), getActiveRentals()));
+        for (String line : getOperationSummaries()) {
+            report.append(line).append(System.lineSeparator());
+        }
+        String[] failureLines = getFailureSummaries();
+        if (failureLines.length > 0) {
+            report.append("Failures by reason:").append(System.lineSeparator());
+            for (String line : failureLines) {
+                report.append("  ").append(line).append(System.lineSeparator());
+            }
+        }
+        String[] subscriberLines = getEventSubscriberSummaries();
+        if (subscriberLines.length > 0) {
+            report.append("Event subscribers (").append(system.getEventRing().getPublishedCount()).append(" published):")
+                .append(System.lineSeparator());
+            for (String line : subscriberLines) {
+                report.append("  ").append(line).append(System.lineSeparator());
+            }
+        }
+        return report.toString();
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * JMX view of RentalMetrics. Latencies are in microseconds.
+ */
+public interface RentalMetricsMBean {
+
+    long getAvailableBikes();
+
+    long getRentedBikes();
+
+    long getBikesInRepair();
+
+    long getActiveRentals();
+
+    long getRentSuccesses();
+
+    long getRentFailures();
+
+    long getReturnSuccesses();
+
+    long getReturnFailures();
+
+    double getRentP99Micros();
+
+    double getReturnP99Micros();
+
+    double getLookupP99Micros();
+
+    double getSaveP99Micros();
+
+    /**
+     * One line per operation: count, successes, failures and latency percentiles.
+     */
+    String[] getOperationSummaries();
+
+    /**
+     * One line per (operation, failure reason) pair that has occurred.
+     */
+    String[] getFailureSummaries();
+
+    /**
+     * One line per event-stream subscriber: backpressure policy, lag and dropped events.
+     */
+    String[] getEventSubscriberSummaries();
+
+    String report();
+}
@@ -0,0 +1,31 @@
+/**
+ * Sort order and page size for BikeRentalSystem.queryActiveRentals.
+ */
+public class RentalQuery {
+
+    public enum Sort {
+        ID,
+        START_TIME
+    }
+
+    private Sort sort = Sort.ID;
+    private int pageSize = BikeQuery.DEFAULT_PAGE_SIZE;
+
+    public RentalQuery sortBy(Sort sort) {
+        this.sort = sort;
+        return this;
+    }
+
+    public RentalQuery pageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+}
@@ -0,0 +1,355 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned binary snapshot of a BikeRentalSystem.
+ *
+ * Layout: a fixed header, a string table holding every bike ID, model, note
+ * and customer name once, then fixed-width bike, customer and rental records
+ * that refer to strings by index and to bikes/customers by ordinal/ID instead
+ * of embedding object graphs. Files are read through a memory mapping.
+ *
+ * Only active rentals are written: returned ones live in the HistoryArchive,
+ * and a trailer records the archive's committed segment lengths, the running
+ * revenue aggregates and the open reservations.
+ */
+public final class RentalSnapshot {
+
+    private static final int MAGIC = 0x424B534E; // "BKSN"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 40;
+    private static final int BIKE_RECORD_SIZE = 32;     // idRef, modelRef, notesRef, status+pad, rate, maintenance
+    private static final int CUSTOMER_RECORD_SIZE = 8;  // customerId, nameRef
+    private static final int RENTAL_RECORD_SIZE = 32;   // rentalId, customerId, bikeOrdinal, pad, startTime, expectedReturnTime
+    private static final int RESERVATION_RECORD_SIZE = 32; // reservationId, customerId, bikeOrdinal, pad, start, end
+
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    private static final BikeStatus[] STATUSES = BikeStatus.values();
+
+    private RentalSnapshot() {
+    }
+
+    /**
+     * Everything restored from a snapshot file.
+     */
+    public static final class Contents {
+        public final long journalGeneration;
+        public final int nextCustomerId;
+        public final int nextRentalId;
+        public final List<Bike> inventory;
+        public final List<Customer> customers;
+        public final List<Rental> rentals; // Active rentals only
+        public final Map<String, Long> archivedSegments;
+        public final int nextReservationId;
+        public final List<Reservation> reservations;
+
+        Contents(long journalGeneration, int nextCustomerId, int nextRentalId,
+                 List<Bike> inventory, List<Customer> customers, List<Rental> rentals,
+                 Map<String, Long> archivedSegments, int nextReservationId, List<Reservation> reservations) {
+            this.journalGeneration = journalGeneration;
+            this.nextCustomerId = nextCustomerId;
+            this.nextRentalId = nextRentalId;
+            this.inventory = inventory;
+            this.customers = customers;
+            this.rentals = rentals;
+            this.archivedSegments = archivedSegments;
+            this.nextReservationId = nextReservationId;
+            this.reservations = reservations;
+        }
+    }
+
+    // --- Writing ---
+
+    public static void write(Path path, long journalGeneration, int nextCustomerId, int nextRentalId,
+                             Collection<Bike> inventory, Collection<Customer> customers, Collection<Rental> activeRentals,
+                             Map<String, Long> archivedSegments, RentalAggregates aggregates,
+                             int nextReservationId, Collection<Reservation> reservations) throws IOException {
+        // Build the string table and bike ordinals up front so every record is fixed width
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        Map<Bike, Integer> bikeOrdinals = new IdentityHashMap<>(inventory.size() * 2);
+        for (Bike bike : inventory) {
+            bikeOrdinals.put(bike, bikeOrdinals.size());
+            intern(bike.getBikeId(), stringIds, strings);
+            intern(bike.getModel(), stringIds, strings);
+            intern(bike.getNotes(), stringIds, strings);
+        }
+        for (Customer customer : customers) {
+            intern(customer.getName(), stringIds, strings);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putLong(journalGeneration);
+            buffer.putInt(nextCustomerId);
+            buffer.putInt(nextRentalId);
+            buffer.putInt(strings.size());
+            buffer.putInt(inventory.size());
+            buffer.putInt(customers.size());
+            // Sized by copying: skip-list views count by walking, and the count must match the records
+            List<Rental> rentals = new ArrayList<>(activeRentals);
+            buffer.putInt(rentals.size());
+
+            for (String value : strings) {
+                putBytes(channel, buffer, value.getBytes(StandardCharsets.UTF_8));
+            }
+
+            for (Bike bike : inventory) {
+                ensureRoom(channel, buffer, BIKE_RECORD_SIZE);
+                buffer.putInt(stringIds.get(bike.getBikeId()));
+                buffer.putInt(stringIds.get(bike.getModel()));
+                buffer.putInt(stringIds.get(nullToEmpty(bike.getNotes())));
+                buffer.putInt(bike.getStatus().ordinal());
+                buffer.putDouble(bike.getHourlyRate());
+                Date maintenance = bike.getLastMaintenanceDate();
+                buffer.putLong(maintenance != null ? maintenance.getTime() : 0L);
+            }
+
+            for (Customer customer : customers) {
+                ensureRoom(channel, buffer, CUSTOMER_RECORD_SIZE);
+                buffer.putInt(customer.getCustomerId());
+                buffer.putInt(stringIds.get(customer.getName()));
+            }
+
+            for (Rental rental : rentals) {
+                ensureRoom(channel, buffer, RENTAL_RECORD_SIZE);
+                buffer.putInt(rental.getRentalId());
+                buffer.putInt(rental.getCustomer().getCustomerId());
+                buffer.putInt(bikeOrdinal(bikeOrdinals, rental.getBike(), rental.getRentalId()));
+                buffer.putInt(0);
+                buffer.putLong(rental.getStartTimeMillis());
+                buffer.putLong(rental.getExpectedReturnMillis());
+            }
+
+            ensureRoom(channel, buffer, 4);
+            buffer.putInt(archivedSegments.size());
+            for (Map.Entry<String, Long> segment : archivedSegments.entrySet()) {
+                putBytes(channel, buffer, segment.getKey().getBytes(StandardCharsets.UTF_8));
+                ensureRoom(channel, buffer, 8);
+                buffer.putLong(segment.getValue());
+            }
+            ByteArrayOutputStream aggregateBytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(aggregateBytes)) {
+                aggregates.writeTo(out);
+            }
+            putBytes(channel, buffer, aggregateBytes.toByteArray());
+
+            List<Reservation> booked = new ArrayList<>(reservations);
+            ensureRoom(channel, buffer, 8);
+            buffer.putInt(nextReservationId);
+            buffer.putInt(booked.size());
+            for (Reservation reservation : booked) {
+                ensureRoom(channel, buffer, RESERVATION_RECORD_SIZE);
+                buffer.putInt(reservation.getReservationId());
+                buffer.putInt(reservation.getCustomer().getCustomerId());
+                buffer.putInt(bikeOrdinal(bikeOrdinals, reservation.getBike(), reservation.getReservationId()));
+                buffer.putInt(0);
+                buffer.putLong(reservation.getStartMillis());
+                buffer.putLong(reservation.getEndMillis());
+            }
+
+            drain(channel, buffer);
+            channel.force(true);
+        }
+    }
+
+    // Length-prefixed, split across buffer drains when larger than the room left
+    private static void putBytes(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+        ensureRoom(channel, buffer, 4);
+        buffer.putInt(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensureRoom(channel, buffer, 1);
+            int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    private static int bikeOrdinal(Map<Bike, Integer> bikeOrdinals, Bike bike, int recordId) throws IOException {
+        Integer ordinal = bikeOrdinals.get(bike);
+        if (ordinal == null) {
+            throw new IOException("Rental or reservation " + recordId + " refers to a bike outside the inventory");
+        }
+        return ordinal;
+    }
+
+    private static void intern(String value, Map<String, Integer> stringIds, List<String> strings) {
+        String key = nullToEmpty(value);
+        if (!stringIds.containsKey(key)) {
+            stringIds.put(key, strings.size());
+            strings.add(key);
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static void ensureRoom(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain(channel, buffer);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // --- Reading ---
+
+    private static byte[] getBytes(ByteBuffer buffer, Path path) throws IOException {
+        byte[] bytes = new byte[getCount(buffer, 1, path)];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    // Rejects counts the rest of the file could not hold, so a corrupt count never sizes a huge allocation
+    private static int getCount(ByteBuffer buffer, int minBytesEach, Path path) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / minBytesEach) {
+            throw new IOException("Corrupt snapshot " + path + ": count " + count + " at offset "
+                + (buffer.position() - Integer.BYTES) + " does not fit in the remaining " + buffer.remaining() + " bytes");
+        }
+        return count;
+    }
+
+    /**
+     * Reads a snapshot, loading its revenue totals into the given aggregates.
+     *
+     * @throws IOException if the file cannot be read, or is truncated or corrupt
+     */
+    public static Contents read(Path path, RentalAggregates aggregates) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + path + " is too large to map");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return read(buffer, path, aggregates);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("Snapshot " + path + " is truncated or corrupt", e);
+            }
+        }
+    }
+
+    private static Contents read(ByteBuffer buffer, Path path, RentalAggregates aggregates) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+            throw new IOException("Unrecognized snapshot format in " + path);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + " in " + path);
+        }
+
+        long journalGeneration = buffer.getLong();
+        int nextCustomerId = buffer.getInt();
+        int nextRentalId = buffer.getInt();
+        int stringCount = getCount(buffer, Integer.BYTES, path);
+        int bikeCount = getCount(buffer, Integer.BYTES, path);
+        int customerCount = getCount(buffer, Integer.BYTES, path);
+        int rentalCount = getCount(buffer, Integer.BYTES, path);
+
+        String[] strings = new String[stringCount];
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < stringCount; i++) {
+            int length = getCount(buffer, 1, path);
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            buffer.get(scratch, 0, length);
+            strings[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        List<Bike> inventory = new ArrayList<>(bikeCount);
+        for (int i = 0; i < bikeCount; i++) {
+            String bikeId = strings[buffer.getInt()];
+            String model = strings[buffer.getInt()];
+            String notes = strings[buffer.getInt()];
+            BikeStatus status = STATUSES[buffer.getInt()];
+            Bike bike = new Bike(bikeId, model, buffer.getDouble());
+            bike.setNotes(notes);
+            bike.setStatus(status);
+            bike.setLastMaintenanceDate(new Date(buffer.getLong()));
+            inventory.add(bike);
+        }
+
+        List<Customer> customers = new ArrayList<>(customerCount);
+        Map<Integer, Customer> customersById = new HashMap<>(customerCount * 2);
+        for (int i = 0; i < customerCount; i++) {
+            Customer customer = new Customer(buffer.getInt(), strings[buffer.getInt()]);
+            customers.add(customer);
+            customersById.putIfAbsent(customer.getCustomerId(), customer);
+        }
+
+        List<Rental> rentals = new ArrayList<>(rentalCount);
+        for (int i = 0; i < rentalCount; i++) {
+            int rentalId = buffer.getInt();
+            Customer customer = customersById.get(buffer.getInt());
+            Bike bike = inventory.get(buffer.getInt());
+            buffer.getInt();
+            long startTimeMillis = buffer.getLong();
+            long expectedReturnMillis = buffer.getLong();
+            if (customer == null) {
+                throw new IOException("Rental " + rentalId + " refers to an unknown customer in " + path);
+            }
+            rentals.add(new Rental(rentalId, customer, bike, startTimeMillis, expectedReturnMillis, false));
+        }
+
+        Map<String, Long> archivedSegments = new HashMap<>();
+        int segmentCount = getCount(buffer, Integer.BYTES + Long.BYTES, path);
+        for (int i = 0; i < segmentCount; i++) {
+            String month = new String(getBytes(buffer, path), StandardCharsets.UTF_8);
+            archivedSegments.put(month, buffer.getLong());
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(getBytes(buffer, path)))) {
+            aggregates.readFrom(in);
+        }
+
+        int nextReservationId = buffer.getInt();
+        int reservationCount = getCount(buffer, RESERVATION_RECORD_SIZE, path);
+        List<Reservation> reservations = new ArrayList<>(reservationCount);
+        for (int i = 0; i < reservationCount; i++) {
+            int reservationId = buffer.getInt();
+            Customer customer = customersById.get(buffer.getInt());
+            Bike bike = inventory.get(buffer.getInt());
+            buffer.getInt();
+            long startMillis = buffer.getLong();
+            long endMillis = buffer.getLong();
+            if (customer == null) {
+                throw new IOException("Reservation " + reservationId + " refers to an unknown customer in " + path);
+            }
+            reservations.add(new Reservation(reservationId, customer, bike, startMillis, endMillis));
+        }
+
+        return new Contents(journalGeneration, nextCustomerId, nextRentalId, inventory, customers, rentals,
+            archivedSegments, nextReservationId, reservations);
+    }
+}
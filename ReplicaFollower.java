@@ -0,0 +1,272 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Hot standby fed by a ReplicationPrimary. Connects, seeds a read-only
+ * BikeRentalSystem in its own data directory from the primary's snapshot,
+ * then applies every journal write the primary ships, in order, on a single
+ * receiver thread. Listings, lookups and estimates can be served from the
+ * replica meanwhile; mutations are refused until it is promoted.
+ *
+ * When the stream ends (the primary restarted, or dropped this follower for
+ * falling too far behind) or a shipped write cannot be applied, the receiver
+ * reconnects with growing pauses and seeds a fresh replica from a new
+ * snapshot, since writes missed meanwhile cannot be replayed. The fresh replica replaces the old one for getSystem
+ * and is handed to every onReseed listener; until then the old one keeps
+ * serving reads, increasingly stale, as getLagMillis shows.
+ *
+ * Lag is reported as the age of the newest primary state known to be fully
+ * applied, and as the number of primary writes seen but not yet applied.
+ * Promotion stops receiving and turns the replica into a normal writable
+ * system without reloading anything.
+ */
+public class ReplicaFollower {
+
+    private static final int CONNECT_TIMEOUT_MILLIS = (int) TimeUnit.SECONDS.toMillis(5);
+    private static final long MIN_RECONNECT_MILLIS = 500;
+    private static final long MAX_RECONNECT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long STOP_CHECK_MILLIS = 100;
+
+    private final File dataDirectory;
+    private final String host;
+    private final int port;
+    private final List<Consumer<BikeRentalSystem>> reseedListeners = new CopyOnWriteArrayList<>();
+    private volatile Socket socket;
+    private DataInputStream in;                 // Read only by the thread that connected it
+    private volatile BikeRentalSystem system;
+    private Thread receiver;
+    private volatile boolean connected;
+    private volatile boolean stopping;
+    private volatile boolean promoted;
+    private volatile long appliedSequence;      // Newest primary write applied here
+    private volatile long primarySequence;      // Newest primary write known of
+    private volatile long caughtUpMillis;       // Primary time at which this replica last matched it
+
+    public ReplicaFollower(File dataDirectory, String host, int port) {
+        this.dataDirectory = dataDirectory;
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Connects, seeds the replica from the primary's snapshot and starts
+     * applying shipped writes in the background. Returns the replica.
+     */
+    public synchronized BikeRentalSystem start() throws IOException {
+        system = connectAndSeed();
+        receiver = new Thread(this::follow, "replica-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+        System.out.println("✅ Replicating from " + host + ":" + port);
+        return system;
+    }
+
+    /**
+     * Runs the listener with each replica seeded after a reconnect, on the
+     * receiver thread, e.g. to point a server or metrics at it.
+     */
+    public void onReseed(Consumer<BikeRentalSystem> listener) {
+        reseedListeners.add(listener);
+    }
+
+    private BikeRentalSystem connectAndSeed() throws IOException {
+        Socket connection = new Socket();
+        try {
+            connection.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            connection.setTcpNoDelay(true);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            if (input.readInt() != ReplicationPrimary.MAGIC || input.readInt() != ReplicationPrimary.VERSION) {
+                throw new IOException("Not a compatible replication primary at " + host + ":" + port);
+            }
+
+            int fileCount = input.readInt();
+            Map<String, byte[]> files = new LinkedHashMap<>();
+            for (int i = 0; i < fileCount; i++) {
+                String name = input.readUTF();
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                files.put(name, bytes);
+            }
+            BikeRentalSystem seeded = BikeRentalSystem.openReplica(dataDirectory, files);
+            socket = connection;
+            in = input;
+            // A restarted primary numbers its writes afresh
+            appliedSequence = 0;
+            primarySequence = 0;
+            caughtUpMillis = System.currentTimeMillis();
+            connected = true;
+            return seeded;
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    // Receives until the stream ends, then reconnects and reseeds, until stopped
+    private void follow() {
+        while (true) {
+            receive();
+            BikeRentalSystem reseeded = reconnect();
+            if (reseeded == null) {
+                return;
+            }
+            BikeRentalSystem previous = system;
+            system = reseeded;
+            previous.close();
+            for (Consumer<BikeRentalSystem> listener : reseedListeners) {
+                listener.accept(reseeded);
+            }
+            System.out.println("✅ Reseeded replica from " + host + ":" + port);
+            if (stopping) {
+                closeConnection(); // Opened after promotion closed the last one
+                return; // Promotion waits for this thread, then promotes the fresh replica
+            }
+        }
+    }
+
+    // A freshly seeded replica, or null once stopping
+    private BikeRentalSystem reconnect() {
+        long pauseMillis = MIN_RECONNECT_MILLIS;
+        while (!stopping) {
+            for (long waited = 0; waited < pauseMillis && !stopping; waited += STOP_CHECK_MILLIS) {
+                try {
+                    Thread.sleep(STOP_CHECK_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            if (stopping) {
+                break;
+            }
+            try {
+                return connectAndSeed();
+            } catch (IOException e) {
+                System.err.println("Reconnecting to " + host + ":" + port + " failed: " + e.getMessage());
+                pauseMillis = Math.min(pauseMillis * 2, MAX_RECONNECT_MILLIS);
+            }
+        }
+        return null;
+    }
+
+    private void receive() {
+        try {
+            while (true) {
+                byte kind = in.readByte();
+                long sequence = in.readLong();
+                long primaryMillis = in.readLong();
+                if (kind == ReplicationPrimary.MESSAGE_RECORDS) {
+                    byte[] records = new byte[in.readInt()];
+                    in.readFully(records);
+                    primarySequence = Math.max(primarySequence, sequence);
+                    system.applyReplicated(records);
+                    appliedSequence = sequence;
+                } else if (kind == ReplicationPrimary.MESSAGE_HEARTBEAT) {
+                    primarySequence = Math.max(primarySequence, sequence);
+                } else {
+                    throw new IOException("Unknown replication message " + kind);
+                }
+                if (appliedSequence >= primarySequence) {
+                    caughtUpMillis = primaryMillis;
+                }
+            }
+        } catch (EOFException e) {
+            if (!stopping) {
+                System.err.println("Primary closed the replication stream; reconnecting");
+            }
+        } catch (IOException e) {
+            if (!stopping) {
+                System.err.println("Replication stopped: " + e.getMessage() + "; reconnecting");
+            }
+        } catch (RuntimeException e) {
+            // The replica may hold part of the write; only a fresh snapshot is known to be whole
+            System.err.println("Error applying shipped records: " + e + "; reseeding");
+        } finally {
+            connected = false;
+            closeConnection();
+        }
+    }
+
+    private void closeConnection() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing replication connection: " + e.getMessage());
+        }
+    }
+
+    // --- Status ---
+
+    /**
+     * The current replica; a different object after each reseed.
+     */
+    public BikeRentalSystem getSystem() {
+        return system;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public boolean isPromoted() {
+        return promoted;
+    }
+
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Primary writes this replica has heard of but not applied yet.
+     */
+    public long getLagWrites() {
+        return Math.max(0, primarySequence - appliedSequence);
+    }
+
+    /**
+     * How far behind the primary this replica may be: the age of the newest
+     * primary state it is known to have fully applied. Keeps growing while
+     * the connection is lost, until a reseed catches up.
+     */
+    public long getLagMillis() {
+        return Math.max(0, System.currentTimeMillis() - caughtUpMillis);
+    }
+
+    // --- Failover ---
+
+    /**
+     * Stops replicating and makes the replica writable, keeping everything
+     * applied so far. Any write still in flight from the primary is lost.
+     * Waits for a reseed already under way, then promotes its result.
+     * Returns null, still a replica, if its snapshot could not be written.
+     */
+    public synchronized BikeRentalSystem promote() {
+        if (promoted) {
+            return system;
+        }
+        stopping = true;
+        closeConnection();
+        try {
+            receiver.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!system.promote()) {
+            return null;
+        }
+        promoted = true;
+        System.out.println("✅ Promoted replica to primary after sequence " + appliedSequence);
+        return system;
+    }
+}
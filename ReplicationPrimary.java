@@ -0,0 +1,234 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ships a BikeRentalSystem's journal to follower processes over TCP, so they
+ * can serve reads and take over if this process dies (see ReplicaFollower).
+ *
+ * A follower that connects first receives a fresh snapshot and the history
+ * segments it refers to, then every journal write from that point on, in
+ * order and byte for byte as written locally. Writes reach a follower's queue
+ * under the journal lock and go out on that follower's own thread, so a slow
+ * follower never holds up rentals; one that falls MAX_QUEUED writes behind
+ * is disconnected and starts over with a new snapshot when it reconnects.
+ * Heartbeats carry the primary's latest sequence so idle followers can tell
+ * they are caught up.
+ *
+ * Protocol, all big-endian: [magic][version][file count] then per file
+ * [name][length][bytes], followed by messages [kind][sequence][primary time]
+ * with [length][records] for MESSAGE_RECORDS.
+ */
+public class ReplicationPrimary {
+
+    static final int MAGIC = 0x424B5250; // "BKRP"
+    static final int VERSION = 1;
+    static final byte MESSAGE_RECORDS = 1;
+    static final byte MESSAGE_HEARTBEAT = 2;
+    static final long HEARTBEAT_MILLIS = 500;
+
+    private static final int MAX_QUEUED = 65_536;
+
+    private final BikeRentalSystem system;
+    private final ServerSocket serverSocket;
+    private final List<Follower> followers = new CopyOnWriteArrayList<>();
+    private final Thread acceptor;
+    private volatile boolean running = true;
+
+    /**
+     * Listens on the loopback interface only, for followers on this host.
+     */
+    public ReplicationPrimary(BikeRentalSystem system, int port) throws IOException {
+        this(system, InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Listens on bindAddress. The stream carries every customer and rental
+     * unauthenticated and in the clear, so bind only to an interface that
+     * trusted followers alone can reach.
+     */
+    public ReplicationPrimary(BikeRentalSystem system, InetAddress bindAddress, int port) throws IOException {
+        this.system = system;
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        this.acceptor = new Thread(this::acceptFollowers, "replication-accept");
+        acceptor.setDaemon(true);
+    }
+
+    public void start() {
+        acceptor.start();
+        System.out.println("✅ Replication listening on port " + getPort());
+    }
+
+    /**
+     * Stops accepting followers and disconnects the current ones.
+     */
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing replication socket: " + e.getMessage());
+        }
+        followers.forEach(Follower::disconnect);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public List<Follower> getFollowers() {
+        return Collections.unmodifiableList(followers);
+    }
+
+    private void acceptFollowers() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Follower follower = new Follower(socket);
+                followers.add(follower);
+                follower.thread.start();
+            } catch (SocketException e) {
+                return; // Closed by stop
+            } catch (IOException e) {
+                System.err.println("Error accepting follower: " + e.getMessage());
+            }
+        }
+    }
+
+    // One journal write on its way to a follower
+    private static final class Shipment {
+        final byte[] records;
+        final long sequence;
+        final long timeMillis;
+
+        Shipment(byte[] records, long sequence, long timeMillis) {
+            this.records = records;
+            this.sequence = sequence;
+            this.timeMillis = timeMillis;
+        }
+    }
+
+    /**
+     * One connected follower: its queue of writes and the thread that sends them.
+     */
+    public final class Follower implements RentalJournal.Tap {
+        private final Socket socket;
+        private final BlockingQueue<Shipment> queue = new ArrayBlockingQueue<>(MAX_QUEUED);
+        private final Thread thread;
+        private final long connectedMillis = System.currentTimeMillis();
+        private volatile long latestSequence;  // Newest write handed to this follower
+        private volatile long shippedSequence; // Newest write sent to it
+        private volatile boolean connected = true;
+
+        private Follower(Socket socket) {
+            this.socket = socket;
+            this.thread = new Thread(this::ship, "replication-" + socket.getRemoteSocketAddress());
+            this.thread.setDaemon(true);
+        }
+
+        public String getAddress() {
+            return String.valueOf(socket.getRemoteSocketAddress());
+        }
+
+        public long getConnectedMillis() {
+            return connectedMillis;
+        }
+
+        public long getShippedSequence() {
+            return shippedSequence;
+        }
+
+        /**
+         * Journal writes made here but not yet sent to this follower.
+         */
+        public long getLag() {
+            return latestSequence - shippedSequence;
+        }
+
+        public boolean isConnected() {
+            return connected;
+        }
+
+        @Override
+        public void onWrite(byte[] records, long sequence) {
+            latestSequence = sequence;
+            if (connected && !queue.offer(new Shipment(records, sequence, System.currentTimeMillis()))) {
+                System.err.println("Follower " + getAddress() + " fell " + MAX_QUEUED + " writes behind; disconnecting");
+                disconnect();
+            }
+        }
+
+        private void disconnect() {
+            connected = false;
+            system.detachReplica(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                System.err.println("Error closing follower connection: " + e.getMessage());
+            }
+        }
+
+        private void ship() {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+                // Mutations are held off only while the seed is taken, not while it is sent
+                BikeRentalSystem.ReplicaSeed seed = system.attachReplica(this);
+                Map<String, Long> files = seed.getFileLengths();
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(files.size());
+                for (Map.Entry<String, Long> file : files.entrySet()) {
+                    out.writeUTF(file.getKey());
+                    out.writeInt(Math.toIntExact(file.getValue()));
+                    seed.copy(file.getKey(), out);
+                }
+                out.flush();
+                System.out.println("✅ Follower " + getAddress() + " attached");
+
+                while (connected) {
+                    Shipment shipment = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (shipment == null) {
+                        out.writeByte(MESSAGE_HEARTBEAT);
+                        out.writeLong(latestSequence);
+                        out.writeLong(System.currentTimeMillis());
+                        out.flush();
+                        continue;
+                    }
+                    // Send whatever has queued up meanwhile before flushing
+                    for (; shipment != null; shipment = queue.poll()) {
+                        out.writeByte(MESSAGE_RECORDS);
+                        out.writeLong(shipment.sequence);
+                        out.writeLong(shipment.timeMillis);
+                        out.writeInt(shipment.records.length);
+                        out.write(shipment.records);
+                        shippedSequence = shipment.sequence;
+                    }
+                    out.flush();
+                }
+            } catch (IOException e) {
+                if (connected) {
+                    System.err.println("Follower " + getAddress() + " disconnected: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                disconnect();
+                followers.remove(this);
+            }
+        }
+    }
+}
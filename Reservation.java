@@ -0,0 +1,51 @@
+import java.util.Date;
+
+/**
+ * A customer's booking of one bike for the half-open window [start, end).
+ */
+public final class Reservation {
+
+    private final int reservationId;
+    private final Customer customer;
+    private final Bike bike;
+    private final long startMillis;
+    private final long endMillis;
+
+    public Reservation(int reservationId, Customer customer, Bike bike, long startMillis, long endMillis) {
+        this.reservationId = reservationId;
+        this.customer = customer;
+        this.bike = bike;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
+    public int getReservationId() {
+        return reservationId;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public Bike getBike() {
+        return bike;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    public boolean covers(long timeMillis) {
+        return startMillis <= timeMillis && timeMillis < endMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Reservation " + reservationId + ": " + customer.getName() + " - bike " + bike.getBikeId()
+            + " from " + new Date(startMillis) + " to " + new Date(endMillis);
+    }
+}
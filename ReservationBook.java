@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reservations indexed per bike as a sorted set of non-overlapping windows,
+ * keyed by start time. Because a bike's windows never overlap, the only one
+ * that can clash with [start, end) is the last one starting before end, so
+ * booking, availability checks and "who holds this bike now" are each a
+ * single O(log n) floor lookup.
+ *
+ * Each bike's map is guarded by its own monitor, so bookings for different
+ * bikes never contend.
+ */
+public class ReservationBook {
+
+    private final Map<Bike, NavigableMap<Long, Reservation>> byBike = new ConcurrentHashMap<>();
+    private final Map<Integer, Reservation> byId = new ConcurrentHashMap<>();
+
+    // --- Booking ---
+
+    /**
+     * Adds the reservation unless its window overlaps another one for the same bike.
+     */
+    public boolean add(Reservation reservation) {
+        NavigableMap<Long, Reservation> windows = byBike.computeIfAbsent(reservation.getBike(), bike -> new TreeMap<>());
+        synchronized (windows) {
+            if (!isFree(windows, reservation.getStartMillis(), reservation.getEndMillis())
+                    || byId.putIfAbsent(reservation.getReservationId(), reservation) != null) {
+                return false;
+            }
+            windows.put(reservation.getStartMillis(), reservation);
+            return true;
+        }
+    }
+
+    /**
+     * Removes and returns the reservation, or null if it is not booked.
+     */
+    public Reservation remove(int reservationId) {
+        Reservation reservation = byId.get(reservationId);
+        if (reservation == null) {
+            return null;
+        }
+        NavigableMap<Long, Reservation> windows = byBike.get(reservation.getBike());
+        synchronized (windows) {
+            if (byId.remove(reservationId, reservation)) {
+                windows.remove(reservation.getStartMillis(), reservation);
+                return reservation;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Drops reservations that ended at or before the given time, returning how many.
+     */
+    public int removeEndedBy(long timeMillis) {
+        int removed = 0;
+        for (NavigableMap<Long, Reservation> windows : byBike.values()) {
+            synchronized (windows) {
+                Iterator<Reservation> ended = windows.headMap(timeMillis, false).values().iterator();
+                while (ended.hasNext()) {
+                    Reservation reservation = ended.next();
+                    if (reservation.getEndMillis() <= timeMillis) {
+                        byId.remove(reservation.getReservationId());
+                        ended.remove();
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    public void clear() {
+        byBike.clear();
+        byId.clear();
+    }
+
+    // --- Queries ---
+
+    public Reservation get(int reservationId) {
+        return byId.get(reservationId);
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    /**
+     * True if no reservation for the bike overlaps [start, end).
+     */
+    public boolean isFree(Bike bike, long startMillis, long endMillis) {
+        NavigableMap<Long, Reservation> windows = byBike.get(bike);
+        if (windows == null) {
+            return true;
+        }
+        synchronized (windows) {
+            return isFree(windows, startMillis, endMillis);
+        }
+    }
+
+    private static boolean isFree(NavigableMap<Long, Reservation> windows, long startMillis, long endMillis) {
+        // The latest window starting before end is the only candidate: earlier ones end before it starts
+        Map.Entry<Long, Reservation> latest = windows.lowerEntry(endMillis);
+        return latest == null || latest.getValue().getEndMillis() <= startMillis;
+    }
+
+    /**
+     * The reservation whose window covers the given time, or null.
+     */
+    public Reservation heldAt(Bike bike, long timeMillis) {
+        NavigableMap<Long, Reservation> windows = byBike.get(bike);
+        if (windows == null) {
+            return null;
+        }
+        synchronized (windows) {
+            Map.Entry<Long, Reservation> latest = windows.floorEntry(timeMillis);
+            return latest != null && latest.getValue().covers(timeMillis) ? latest.getValue() : null;
+        }
+    }
+
+    /**
+     * The bike's reservations in start order.
+     */
+    public List<Reservation> forBike(Bike bike) {
+        NavigableMap<Long, Reservation> windows = byBike.get(bike);
+        if (windows == null) {
+            return Collections.emptyList();
+        }
+        synchronized (windows) {
+            return new ArrayList<>(windows.values());
+        }
+    }
+
+    /**
+     * A read-only view of every booked reservation, in no particular order.
+     */
+    public Collection<Reservation> all() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+}
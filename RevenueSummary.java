@@ -0,0 +1,45 @@
+import java.util.Locale;
+
+/**
+ * Revenue and utilization totals for one bike, customer, model or day.
+ */
+public final class RevenueSummary {
+
+    private final String key;
+    private final long rentals;
+    private final long rentedHours;
+    private final long revenuePaise;
+
+    public RevenueSummary(String key, long rentals, long rentedHours, long revenuePaise) {
+        this.key = key;
+        this.rentals = rentals;
+        this.rentedHours = rentedHours;
+        this.revenuePaise = revenuePaise;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getRentals() {
+        return rentals;
+    }
+
+    public long getRentedHours() {
+        return rentedHours;
+    }
+
+    public long getRevenuePaise() {
+        return revenuePaise;
+    }
+
+    public double getRevenue() {
+        return PricingEngine.toRupees(revenuePaise);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s: %d rentals, %d hours, %s rs",
+            key, rentals, rentedHours, PricingEngine.formatRupees(revenuePaise));
+    }
+}
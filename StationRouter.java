@@ -0,0 +1,458 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Splits the business into stations (depots), each a BikeRentalSystem of its
+ * own with its own indexes, locks, snapshot and journal in a subdirectory of
+ * the root. A bike and its rentals, reservations and deadlines belong to the
+ * station the bike was added at, so operations at different stations never
+ * share a lock or a journal and scale with cores.
+ *
+ * The router sends every per-bike call to the owning station. Rental and
+ * reservation IDs are interleaved across stations, so an ID alone routes too.
+ * Customers live in a separate registry and are copied into a station the
+ * first time they rent or reserve there. Queries across the business fan out
+ * to all stations in parallel and merge the results. Nothing crosses a
+ * station other than these calls, so a station can later move behind a
+ * remote interface without changing callers.
+ *
+ * Station order is recorded in the root directory and must not change, since
+ * IDs encode a station's position; new stations are appended.
+ *
+ * Scope: a library for callers that embed it. Main has no --stations mode;
+ * its console menu, API server and importer each drive a single
+ * BikeRentalSystem. Running them over stations needs station-aware input
+ * (a station column for imported bikes, a station parameter for API and
+ * menu additions) and is a separate change. Callers open a router once,
+ * check getDuplicateBikes, and close it on shutdown.
+ */
+public class StationRouter {
+
+    public static final int MAX_STATIONS = 32; // ID stride: leaves each station about 67 million rental IDs
+
+    private static final String STATIONS_FILE = "stations.txt";
+    private static final String CUSTOMER_DIRECTORY = "customers";
+    private static final String STATION_DIRECTORY_PREFIX = "station-";
+
+    /**
+     * One shard: a named BikeRentalSystem and its position in the ID space.
+     */
+    public static final class Station {
+        private final String name;
+        private final int index;
+        private final BikeRentalSystem system;
+
+        private Station(String name, int index, BikeRentalSystem system) {
+            this.name = name;
+            this.index = index;
+            this.system = system;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public BikeRentalSystem getSystem() {
+            return system;
+        }
+    }
+
+    private final List<Station> stations;
+    private final Map<String, Station> stationsByName = new LinkedHashMap<>();
+    private final BikeRentalSystem customerRegistry;
+    private final Map<String, Station> bikeHomes = new ConcurrentHashMap<>(); // Lowercase bike ID to owning station
+    private final Map<String, List<String>> duplicateBikes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private volatile NoticeSink noticeSink = new ConsoleNoticeSink();
+
+    /**
+     * Opens (or creates) the stations under rootDirectory, loading them in
+     * parallel. Names not yet recorded there are added after the existing ones.
+     * A bike found at more than one station is routed to the first and
+     * reported by getDuplicateBikes.
+     *
+     * @throws IllegalArgumentException if this would exceed MAX_STATIONS
+     * @throws UncheckedIOException if the station list cannot be read or
+     *         recorded, or a station's data cannot be loaded; the stations
+     *         that did open are closed again first
+     */
+    public StationRouter(File rootDirectory, Collection<String> stationNames) {
+        List<String> names = readStationNames(rootDirectory, stationNames);
+        if (names.size() > MAX_STATIONS) {
+            throw new IllegalArgumentException("At most " + MAX_STATIONS + " stations are supported");
+        }
+
+        Station[] opened = new Station[names.size()];
+        RuntimeException[] failures = new RuntimeException[names.size()];
+        // Each open catches its own failure, so every open has finished before any cleanup below
+        IntStream.range(0, names.size()).parallel().forEach(i -> {
+            try {
+                opened[i] = new Station(names.get(i), i,
+                    new BikeRentalSystem(directory(rootDirectory, STATION_DIRECTORY_PREFIX + names.get(i)), i, MAX_STATIONS));
+            } catch (RuntimeException e) {
+                failures[i] = e;
+            }
+        });
+        try {
+            rethrowFirst(failures);
+            customerRegistry = new BikeRentalSystem(directory(rootDirectory, CUSTOMER_DIRECTORY));
+        } catch (RuntimeException e) {
+            // Release the journals and deadline tickers of the stations that did open
+            for (Station station : opened) {
+                if (station != null) {
+                    station.system.close();
+                }
+            }
+            throw e;
+        }
+        stations = List.of(opened);
+
+        for (Station station : stations) {
+            stationsByName.put(normalizeKey(station.name), station);
+            for (BikeStatus status : BikeStatus.values()) {
+                for (Bike bike : station.system.getBikesByStatus(status)) {
+                    Station previous = bikeHomes.putIfAbsent(normalizeKey(bike.getBikeId()), station);
+                    if (previous != null) {
+                        String routedId = previous.system.findBike(bike.getBikeId()).map(Bike::getBikeId).orElse(bike.getBikeId());
+                        duplicateBikes.computeIfAbsent(routedId, id -> new ArrayList<>(List.of(previous.name))).add(station.name);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void rethrowFirst(RuntimeException[] failures) {
+        RuntimeException first = null;
+        for (RuntimeException failure : failures) {
+            if (failure == null) {
+                continue;
+            }
+            if (first == null) {
+                first = failure;
+            } else {
+                first.addSuppressed(failure);
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    // Recorded names keep their positions; new ones are appended and the list rewritten
+    private static List<String> readStationNames(File rootDirectory, Collection<String> requested) {
+        Path file = new File(rootDirectory, STATIONS_FILE).toPath();
+        List<String> names = new ArrayList<>();
+        try {
+            if (Files.exists(file)) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    if (!line.isBlank()) {
+                        names.add(line.trim());
+                    }
+                }
+            }
+            int recorded = names.size();
+            for (String name : requested) {
+                if (names.stream().noneMatch(existing -> existing.equalsIgnoreCase(name.trim()))) {
+                    names.add(name.trim());
+                }
+            }
+            if (names.size() > recorded && names.size() <= MAX_STATIONS) {
+                Files.createDirectories(rootDirectory.toPath());
+                Files.write(file, names, StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            // Opening stations whose positions were not recorded would let a later run reassign their IDs
+            throw new UncheckedIOException("Cannot record stations in " + file + ": " + e.getMessage(), e);
+        }
+        return names;
+    }
+
+    private static File directory(File rootDirectory, String name) {
+        File directory = new File(rootDirectory, name);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println("Error creating data directory: " + directory);
+        }
+        return directory;
+    }
+
+    // --- Routing ---
+
+    public List<Station> getStations() {
+        return stations;
+    }
+
+    public Optional<Station> getStation(String name) {
+        return Optional.ofNullable(name == null ? null : stationsByName.get(normalizeKey(name)));
+    }
+
+    /**
+     * Bikes stocked at more than one station when the router was opened,
+     * each with the stations holding it in station order. Calls for such a
+     * bike go to the first; the copies elsewhere need moving or removing by
+     * hand. Empty for consistent data.
+     */
+    public Map<String, List<String>> getDuplicateBikes() {
+        return Collections.unmodifiableMap(duplicateBikes);
+    }
+
+    /**
+     * The station that owns the bike, if any station stocks it.
+     */
+    public Optional<Station> stationOf(String bikeId) {
+        return Optional.ofNullable(bikeId == null ? null : bikeHomes.get(normalizeKey(bikeId)));
+    }
+
+    // Rental and reservation IDs n were issued by the station at position (n - 1) % MAX_STATIONS
+    private Station stationOfId(int id) {
+        int index = Math.floorMod(id - 1, MAX_STATIONS);
+        return index < stations.size() ? stations.get(index) : null;
+    }
+
+    // --- Customers ---
+
+    public Customer findOrCreateCustomer(String name) {
+        return customerRegistry.findOrCreateCustomer(name);
+    }
+
+    public Optional<Customer> findCustomer(int customerId) {
+        return customerRegistry.findCustomer(customerId);
+    }
+
+    public Optional<Customer> findCustomerByName(String name) {
+        return customerRegistry.findCustomerByName(name);
+    }
+
+    public List<CustomerMatch> searchCustomers(String text, int limit) {
+        return customerRegistry.searchCustomers(text, limit);
+    }
+
+    /**
+     * Copies the registered customer into the station so its rentals there can
+     * refer to it. Returns false, with a notice, if the customer is not registered.
+     */
+    private boolean admitCustomer(Station station, int customerId, RentalMetrics.Operation operation) {
+        if (station.system.findCustomer(customerId).isPresent()) {
+            return true;
+        }
+        Optional<Customer> customer = customerRegistry.findCustomer(customerId);
+        if (customer.isEmpty()) {
+            noticeSink.notice(OperationNotice.idFailed(operation, FailureReason.CUSTOMER_NOT_FOUND, customerId));
+            return false;
+        }
+        station.system.addCustomer(new Customer(customerId, customer.get().getName()));
+        return true;
+    }
+
+    // --- Bikes ---
+
+    /**
+     * Stocks the bike at the named station unless a bike with the same ID
+     * (ignoring case) is already stocked at any station.
+     *
+     * @throws IllegalArgumentException if there is no such station
+     */
+    public boolean addBike(String stationName, Bike bike) {
+        Station station = getStation(stationName)
+            .orElseThrow(() -> new IllegalArgumentException("Unknown station: " + stationName));
+        String key = normalizeKey(bike.getBikeId());
+        if (bikeHomes.putIfAbsent(key, station) != null) {
+            return false;
+        }
+        if (!station.system.addBike(bike)) {
+            bikeHomes.remove(key, station);
+            return false;
+        }
+        return true;
+    }
+
+    public Optional<Bike> findBike(String bikeId) {
+        return stationOf(bikeId).flatMap(station -> station.system.findBike(bikeId));
+    }
+
+    public boolean sendBikeToRepair(String bikeId) {
+        Station station = owner(bikeId, RentalMetrics.Operation.SEND_TO_REPAIR);
+        return station != null && station.system.sendBikeToRepair(bikeId);
+    }
+
+    public boolean returnBikeFromRepair(String bikeId) {
+        Station station = owner(bikeId, RentalMetrics.Operation.RETURN_FROM_REPAIR);
+        return station != null && station.system.returnBikeFromRepair(bikeId);
+    }
+
+    // The bike's station, or null after a BIKE_NOT_FOUND notice
+    private Station owner(String bikeId, RentalMetrics.Operation operation) {
+        Station station = stationOf(bikeId).orElse(null);
+        if (station == null) {
+            noticeSink.notice(OperationNotice.bikeFailed(operation, FailureReason.BIKE_NOT_FOUND, bikeId, null));
+        }
+        return station;
+    }
+
+    // --- Rentals ---
+
+    public Rental rentBike(int customerId, String bikeId) {
+        Station station = owner(bikeId, RentalMetrics.Operation.RENT);
+        return station == null || !admitCustomer(station, customerId, RentalMetrics.Operation.RENT)
+            ? null : station.system.rentBike(customerId, bikeId);
+    }
+
+    public Rental rentBike(int customerId, String bikeId, int expectedHours) {
+        Station station = owner(bikeId, RentalMetrics.Operation.RENT);
+        return station == null || !admitCustomer(station, customerId, RentalMetrics.Operation.RENT)
+            ? null : station.system.rentBike(customerId, bikeId, expectedHours);
+    }
+
+    public Receipt checkoutAndReturnBike(String bikeId, int durationHours) {
+        Station station = owner(bikeId, RentalMetrics.Operation.RETURN);
+        return station == null ? null : station.system.checkoutAndReturnBike(bikeId, durationHours);
+    }
+
+    public Receipt checkoutAndReturnBike(int rentalId, int durationHours) {
+        Station station = stationOfId(rentalId);
+        if (station == null) {
+            noticeSink.notice(OperationNotice.idFailed(RentalMetrics.Operation.RETURN, FailureReason.RENTAL_NOT_ACTIVE, rentalId));
+            return null;
+        }
+        return station.system.checkoutAndReturnBike(rentalId, durationHours);
+    }
+
+    public Optional<Rental> findActiveRentalById(int rentalId) {
+        Station station = stationOfId(rentalId);
+        return station == null ? Optional.empty() : station.system.findActiveRentalById(rentalId);
+    }
+
+    public Optional<Rental> findActiveRentalByBikeId(String bikeId) {
+        return stationOf(bikeId).flatMap(station -> station.system.findActiveRentalByBikeId(bikeId));
+    }
+
+    // --- Reservations ---
+
+    public Reservation reserveBike(int customerId, String bikeId, long startMillis, long endMillis) {
+        Station station = owner(bikeId, RentalMetrics.Operation.RESERVE);
+        return station == null || !admitCustomer(station, customerId, RentalMetrics.Operation.RESERVE)
+            ? null : station.system.reserveBike(customerId, bikeId, startMillis, endMillis);
+    }
+
+    public Rental pickUpReservation(int reservationId) {
+        Station station = stationOfId(reservationId);
+        if (station == null) {
+            noticeSink.notice(OperationNotice.idFailed(RentalMetrics.Operation.PICK_UP, FailureReason.RESERVATION_NOT_FOUND, reservationId));
+            return null;
+        }
+        return station.system.pickUpReservation(reservationId);
+    }
+
+    public boolean cancelReservation(int reservationId) {
+        Station station = stationOfId(reservationId);
+        if (station == null) {
+            noticeSink.notice(OperationNotice.idFailed(RentalMetrics.Operation.CANCEL_RESERVATION, FailureReason.RESERVATION_NOT_FOUND, reservationId));
+            return false;
+        }
+        return station.system.cancelReservation(reservationId);
+    }
+
+    // --- Queries Across Stations ---
+
+    public int countBikes(BikeStatus status) {
+        return stations.parallelStream().mapToInt(station -> station.system.countBikes(status)).sum();
+    }
+
+    public int countActiveRentals() {
+        return stations.parallelStream().mapToInt(station -> station.system.countActiveRentals()).sum();
+    }
+
+    /**
+     * Bikes available at each station, in station order.
+     */
+    public Map<String, Integer> getAvailabilityByStation() {
+        List<Integer> counts = stations.parallelStream()
+            .map(station -> station.system.countBikes(BikeStatus.AVAILABLE))
+            .collect(Collectors.toList());
+        Map<String, Integer> availability = new LinkedHashMap<>();
+        for (int i = 0; i < stations.size(); i++) {
+            availability.put(stations.get(i).name, counts.get(i));
+        }
+        return availability;
+    }
+
+    /**
+     * The first bikes by ID that are available anywhere. Each station reads at
+     * most limit bikes from its own ID-sorted index, then the runs are merged.
+     */
+    public List<Bike> findAvailableBikes(int limit) {
+        return stations.parallelStream()
+            .flatMap(station -> station.system.getBikesByStatus(BikeStatus.AVAILABLE).stream().limit(limit))
+            .sorted(Comparator.comparing(bike -> normalizeKey(bike.getBikeId())))
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Overdue rentals at every station, in rental ID order.
+     */
+    public List<Rental> getOverdueRentals() {
+        return stations.parallelStream()
+            .flatMap(station -> station.system.getOverdueRentals().stream())
+            .sorted(Comparator.comparingInt(Rental::getRentalId))
+            .collect(Collectors.toList());
+    }
+
+    // --- Lifecycle ---
+
+    public BikeRentalSystem getCustomerRegistry() {
+        return customerRegistry;
+    }
+
+    public void setNoticeSink(NoticeSink noticeSink) {
+        this.noticeSink = noticeSink;
+        customerRegistry.setNoticeSink(noticeSink);
+        stations.forEach(station -> station.system.setNoticeSink(noticeSink));
+    }
+
+    public void setPricing(PricingEngine pricing) {
+        customerRegistry.setPricing(pricing);
+        stations.forEach(station -> station.system.setPricing(pricing));
+    }
+
+    public void enableGroupCommit(long maxLatencyMillis, int maxBatchRecords) {
+        customerRegistry.enableGroupCommit(maxLatencyMillis, maxBatchRecords);
+        stations.forEach(station -> station.system.enableGroupCommit(maxLatencyMillis, maxBatchRecords));
+    }
+
+    /**
+     * Writes every station's snapshot in parallel, then the customer registry.
+     */
+    public void saveData() {
+        stations.parallelStream().forEach(station -> station.system.saveData());
+        customerRegistry.saveData();
+    }
+
+    public void close() {
+        stations.parallelStream().forEach(station -> station.system.close());
+        customerRegistry.close();
+    }
+
+    private static String normalizeKey(String key) {
+        return key.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,85 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fleet for the JMH benchmarks, populated by RentalBenchmark's synthetic data
+ * generator so both measure the same data.
+ */
+public class JmhFleet implements benchmarks.Fleet {
+
+    private static final long SEED = 42;
+
+    private final File directory;
+    private final PrintStream console = System.out;
+    private final BikeRentalSystem system;
+    private final RentalBenchmark.SyntheticFleet fleet;
+    private final List<String> idleBikeIds;
+    private final int customerId;
+
+    public JmhFleet(int size, File directory) {
+        this.directory = directory;
+        // Load and save status lines would otherwise land in the JMH output
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        system = new BikeRentalSystem(directory);
+        system.setNoticeSink(NoticeSink.NONE);
+        fleet = RentalBenchmark.SyntheticFleet.populate(system, size, new Random(SEED));
+        idleBikeIds = fleet.idleBikeIds(system);
+        customerId = system.findCustomerByName(fleet.customerNames[0]).get().getCustomerId();
+    }
+
+    @Override
+    public boolean findBike(int index) {
+        return system.findBike(fleet.bikeIds[index % fleet.bikeIds.length]).isPresent();
+    }
+
+    @Override
+    public boolean findCustomerByName(int index) {
+        return system.findCustomerByName(fleet.customerNames[index % fleet.customerNames.length]).isPresent();
+    }
+
+    @Override
+    public int rentAndReturn(int index) {
+        Rental rental = system.rentBike(customerId, idleBikeIds.get(index % idleBikeIds.size()));
+        system.checkoutAndReturnBike(rental.getRentalId(), 1);
+        return rental.getRentalId();
+    }
+
+    @Override
+    public int scanCurrentlyRented() {
+        int result = 0;
+        for (Rental rental : system.getCurrentlyRentedBikes()) {
+            result = rental.getRentalId();
+            break;
+        }
+        return result + system.getCurrentlyRentedBikes().size();
+    }
+
+    @Override
+    public void saveData() {
+        system.saveData();
+    }
+
+    @Override
+    public int loadData() {
+        BikeRentalSystem loaded = new BikeRentalSystem(directory);
+        int rented = loaded.countActiveRentals();
+        loaded.close();
+        return rented;
+    }
+
+    @Override
+    public void close() {
+        system.close();
+        System.setOut(console);
+        try {
+            RentalBenchmark.deleteRecursively(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Self-contained benchmark suite for the hot paths of BikeRentalSystem.
+ *
+ * Each benchmark is warmed up, then measured over several timed iterations,
+ * and reports throughput, average time per operation and bytes allocated per
+ * operation (from the JVM's per-thread allocation counter).
+ *
+ * Usage: java -cp target/benchmarks.jar RentalBenchmark [fleetSizes, default 1000,100000,1000000]
+ *
+ * The JMH benchmarks next to it cover the main paths with forked JVMs and the
+ * GC profiler and are the ones to quote numbers from; this single-JVM run is
+ * a quick pass over more of them, and needs no JMH:
+ * javac -encoding UTF-8 -d out *.java src/jmh/java/RentalBenchmark.java
+ */
+public class RentalBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 500_000_000L;
+    private static final double ACTIVE_RENTAL_SHARE = 0.10;
+    private static final long SEED = 42;
+
+    private static final PrintStream report = System.out;
+    private static volatile long sink; // Keeps results observable so the JIT cannot drop them
+
+    @FunctionalInterface
+    private interface Operation {
+        void run(int iteration);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String sizes = args.length > 0 ? args[0] : "1000,100000,1000000";
+
+        // Load and save status lines would otherwise clutter the report
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            report.printf("%-28s %10s %16s %14s %14s %12s%n",
+                "Benchmark", "Fleet", "Throughput", "Avg time", "Alloc", "Alloc rate");
+            for (String size : sizes.split(",")) {
+                runFleet(Integer.parseInt(size.trim()));
+            }
+        } finally {
+            System.setOut(report);
+        }
+    }
+
+    private static void runFleet(int fleetSize) throws IOException {
+        File dataDirectory = Files.createTempDirectory("bikerental-bench").toFile();
+        try {
+            BikeRentalSystem system = new BikeRentalSystem(dataDirectory);
+            system.setNoticeSink(NoticeSink.NONE);
+            SyntheticFleet fleet = SyntheticFleet.populate(system, fleetSize, new Random(SEED));
+
+            Random random = new Random(SEED);
+            int[] picks = new int[4096];
+            for (int i = 0; i < picks.length; i++) {
+                picks[i] = random.nextInt(fleetSize);
+            }
+            int mask = picks.length - 1;
+
+            measure("findBike", fleetSize, i ->
+                sink += system.findBike(fleet.bikeIds[picks[i & mask]]).isPresent() ? 1 : 0);
+
+            measure("findCustomerByName", fleetSize, i ->
+                sink += system.findCustomerByName(fleet.customerNames[picks[i & mask]]).isPresent() ? 1 : 0);
+
+            measure("searchCustomers(typo)", fleetSize, i ->
+                sink += system.searchCustomers(misspell(fleet.customerNames[picks[i & mask]]), 5).size());
+
+            int customerId = system.findCustomerByName(fleet.customerNames[0]).get().getCustomerId();
+            List<String> idleBikes = fleet.idleBikeIds(system);
+            measure("rentBike+checkoutAndReturn", fleetSize, i -> {
+                String bikeId = idleBikes.get(i % idleBikes.size());
+                Rental rental = system.rentBike(customerId, bikeId);
+                sink += rental.getRentalId();
+                system.checkoutAndReturnBike(rental.getRentalId(), 1);
+            });
+
+            measure("getCurrentlyRentedBikes", fleetSize, i -> {
+                Collection<Rental> active = system.getCurrentlyRentedBikes();
+                sink += active.size();
+                for (Rental rental : active) {
+                    sink += rental.getRentalId();
+                    break;
+                }
+            });
+
+            // A fare comparison screen prices many bikes for many durations in one call
+            Bike[] quoteBikes = new Bike[1024];
+            int[] quoteHours = new int[quoteBikes.length];
+            long[] charges = new long[quoteBikes.length];
+            for (int i = 0; i < quoteBikes.length; i++) {
+                quoteBikes[i] = system.findBike(fleet.bikeIds[picks[i & mask]]).get();
+                quoteHours[i] = 1 + i % 72;
+            }
+            long quoteStart = System.currentTimeMillis();
+            measure("pricing quote x1024", fleetSize, i -> {
+                system.getPricing().quote(quoteStart, quoteBikes, quoteHours, charges, quoteBikes.length);
+                sink += charges[i & (charges.length - 1)];
+            });
+
+            // Reports read a point-in-time snapshot instead of the live indexes
+            measure("snapshot+findBike", fleetSize, i ->
+                sink += system.snapshot().findBike(fleet.bikeIds[picks[i & mask]]).isPresent() ? 1 : 0);
+
+            measureOnce("snapshot full scan", fleetSize, () -> {
+                for (FleetSnapshot.BikeState bike : system.snapshot().getBikes()) {
+                    sink += bike.getStatus().ordinal();
+                }
+            });
+
+            // Deadlines live in a timing wheel, so a tick costs the same at any fleet size
+            measure("checkDeadlines", fleetSize, i -> system.checkDeadlines());
+
+            measureOnce("saveData", fleetSize, system::saveData);
+            system.close();
+            measureOnce("loadData", fleetSize, () -> new BikeRentalSystem(dataDirectory).close());
+        } finally {
+            deleteRecursively(dataDirectory);
+        }
+    }
+
+    // --- Measurement ---
+
+    private static void measure(String name, int fleetSize, Operation operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runFor(operation, ITERATION_NANOS);
+        }
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            ops += runFor(operation, ITERATION_NANOS);
+            nanos += System.nanoTime() - start;
+            bytes += allocatedBytes() - allocatedBefore;
+        }
+        print(name, fleetSize, ops, nanos, bytes);
+    }
+
+    // For whole-database operations, where a single run already takes a while
+    private static void measureOnce(String name, int fleetSize, Runnable operation) {
+        operation.run(); // Warm-up
+        long ops = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            operation.run();
+            nanos += System.nanoTime() - start;
+            bytes += allocatedBytes() - allocatedBefore;
+            ops++;
+        }
+        print(name, fleetSize, ops, nanos, bytes);
+    }
+
+    private static long runFor(Operation operation, long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        long ops = 0;
+        // Check the clock every 64 operations to keep timer overhead out of fast paths
+        do {
+            for (int i = 0; i < 64; i++) {
+                operation.run((int) ops++);
+            }
+        } while (System.nanoTime() < deadline);
+        return ops;
+    }
+
+    // Drops the second letter, e.g. "Customer 7" becomes "Cstomer 7"
+    private static String misspell(String name) {
+        return name.charAt(0) + name.substring(2);
+    }
+
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static void print(String name, int fleetSize, long ops, long nanos, long bytes) {
+        double seconds = nanos / 1e9;
+        report.printf("%-28s %10d %12.0f op/s %11.1f ns %9.0f B/op %7.1f MB/s%n",
+            name, fleetSize, ops / seconds, (double) nanos / ops, (double) bytes / ops, bytes / seconds / 1e6);
+    }
+
+    static void deleteRecursively(File directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    // --- Synthetic Data ---
+
+    /**
+     * Deterministic fleet of bikes and customers, with a share of bikes rented out.
+     */
+    static final class SyntheticFleet {
+        private static final String[] MODELS = {
+            "Royal Enfield Classic 350", "Honda CBR 250R", "Pulsar 150", "KTM Duke 390", "TVS Apache RTR 160"
+        };
+
+        final String[] bikeIds;
+        final String[] customerNames;
+
+        private SyntheticFleet(String[] bikeIds, String[] customerNames) {
+            this.bikeIds = bikeIds;
+            this.customerNames = customerNames;
+        }
+
+        static SyntheticFleet populate(BikeRentalSystem system, int size, Random random) {
+            String[] bikeIds = new String[size];
+            String[] customerNames = new String[size];
+            List<Bike> bikes = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                bikeIds[i] = "BK" + i;
+                customerNames[i] = "Customer " + i;
+                bikes.add(new Bike(bikeIds[i], MODELS[random.nextInt(MODELS.length)], 300 + random.nextInt(800)));
+            }
+            system.addBikes(bikes);
+            for (String name : customerNames) {
+                system.findOrCreateCustomer(name);
+            }
+
+            int rented = (int) (size * ACTIVE_RENTAL_SHARE);
+            for (int i = 0; i < rented; i++) {
+                int customerId = system.findCustomerByName(customerNames[random.nextInt(size)]).get().getCustomerId();
+                system.rentBike(customerId, bikeIds[i]);
+            }
+            system.saveData();
+            return new SyntheticFleet(bikeIds, customerNames);
+        }
+
+        List<String> idleBikeIds(BikeRentalSystem system) {
+            List<String> idle = new ArrayList<>();
+            for (Bike bike : system.getBikesByStatus(BikeStatus.AVAILABLE)) {
+                idle.add(bike.getBikeId());
+                if (idle.size() == 1024) {
+                    break;
+                }
+            }
+            return idle;
+        }
+    }
+}
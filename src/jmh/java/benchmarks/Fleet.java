@@ -0,0 +1,46 @@
+package benchmarks;
+
+import java.io.File;
+
+/**
+ * The calls the benchmarks make, on a synthetic fleet persisted in its own
+ * directory. JMH rejects benchmarks in the default package and a named
+ * package cannot import from it, so the implementation, JmhFleet, sits next
+ * to BikeRentalSystem in the default package and is loaded by name.
+ */
+public interface Fleet {
+
+    boolean findBike(int index);
+
+    boolean findCustomerByName(int index);
+
+    /**
+     * Rents an idle bike and returns it after one hour; returns the rental ID.
+     */
+    int rentAndReturn(int index);
+
+    /**
+     * Reads the active rentals collection and the first rental in it.
+     */
+    int scanCurrentlyRented();
+
+    void saveData();
+
+    /**
+     * Loads the saved fleet into a fresh system and closes it again.
+     */
+    int loadData();
+
+    /**
+     * Closes the system and deletes its directory.
+     */
+    void close();
+
+    static Fleet open(int size, File directory) {
+        try {
+            return (Fleet) Class.forName("JmhFleet").getConstructor(int.class, File.class).newInstance(size, directory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("JmhFleet is missing from the benchmark build", e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * A synthetic fleet per trial at each fleet size, with a fixed sequence of
+ * random indexes so every run looks up the same keys.
+ */
+@State(Scope.Benchmark)
+public class FleetState {
+
+    private static final int PICKS = 4096; // Power of two, so next() can mask
+    private static final long SEED = 42;
+
+    @Param({"1000", "100000", "1000000"})
+    public int fleetSize;
+
+    Fleet fleet;
+    private int[] picks;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        fleet = Fleet.open(fleetSize, Files.createTempDirectory("bikerental-jmh").toFile());
+        Random random = new Random(SEED);
+        picks = new int[PICKS];
+        for (int i = 0; i < PICKS; i++) {
+            picks[i] = random.nextInt(fleetSize);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        fleet.close();
+    }
+
+    int next() {
+        return picks[cursor++ & (PICKS - 1)];
+    }
+}
@@ -0,0 +1,38 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Index lookups and the active-rentals view, which should cost the same at
+ * every fleet size.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    @Benchmark
+    public boolean findBike(FleetState state) {
+        return state.fleet.findBike(state.next());
+    }
+
+    @Benchmark
+    public boolean findCustomerByName(FleetState state) {
+        return state.fleet.findCustomerByName(state.next());
+    }
+
+    @Benchmark
+    public int getCurrentlyRentedBikes(FleetState state) {
+        return state.fleet.scanCurrentlyRented();
+    }
+}
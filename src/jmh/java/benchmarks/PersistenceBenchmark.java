@@ -0,0 +1,33 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole-fleet snapshot writes and loads. A call takes up to seconds at a
+ * million bikes, so iterations are longer and results are in milliseconds.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Benchmark
+    public void saveData(FleetState state) {
+        state.fleet.saveData();
+    }
+
+    @Benchmark
+    public int loadData(FleetState state) {
+        return state.fleet.loadData();
+    }
+}
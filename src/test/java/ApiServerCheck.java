@@ -0,0 +1,100 @@
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+
+/**
+ * Drives the HTTP API on an ephemeral loopback port and checks the status
+ * code of each kind of outcome: success, bad input, unknown resource,
+ * conflict, wrong method and unknown path.
+ */
+final class ApiServerCheck {
+
+    private ApiServerCheck() {
+    }
+
+    static void run() throws Exception {
+        File dataDirectory = Files.createTempDirectory("api-check").toFile();
+        BikeRentalSystem system = new BikeRentalSystem(dataDirectory);
+        system.setNoticeSink(NoticeSink.NONE);
+        ApiServer server = new ApiServer(system, 0);
+        server.start();
+        try {
+            check(new Client(server.getPort()));
+        } finally {
+            server.stop();
+            system.close();
+            Check.deleteRecursively(dataDirectory);
+        }
+    }
+
+    private static void check(Client api) throws Exception {
+        api.expect(201, "POST", "/bikes", "id=A1&model=City&rate=10");
+        api.expect(409, "POST", "/bikes", "id=a1&model=City&rate=12");
+        api.expect(400, "POST", "/bikes", "id=A2&model=City&rate=0");
+        api.expect(400, "POST", "/bikes", "id=A2&model=City&rate=NaN");
+        api.expect(400, "POST", "/bikes", "id=A2&model=City&rate=Infinity");
+        api.expect(400, "POST", "/bikes", "id=A2&model=City&rate=ten");
+        api.expect(400, "POST", "/bikes", "model=City&rate=10");
+        api.expect(405, "GET", "/bikes", null);
+        api.expect(404, "GET", "/bikes/nothing-here", null);
+        api.expect(404, "GET", "/no-such-endpoint", null);
+
+        api.expect(200, "GET", "/bikes/available", null);
+        api.expect(200, "GET", "/bikes/search?status=available&limit=10", null);
+        api.expect(400, "GET", "/bikes/search?status=lost", null);
+        api.expect(400, "GET", "/bikes/search?cursor=not-a-cursor", null);
+        api.expect(400, "GET", "/bikes/search?limit=0", null);
+        api.expect(200, "GET", "/estimate?bikeId=A1&hours=3", null);
+        api.expect(400, "GET", "/estimate?bikeId=A1&hours=three", null);
+        api.expect(400, "GET", "/estimate?bikeId=A1&hours=0", null);
+        api.expect(404, "GET", "/estimate?bikeId=ZZ&hours=3", null);
+
+        api.expect(404, "POST", "/rentals", "bikeId=ZZ&customerName=Asha");
+        api.expect(404, "POST", "/rentals", "bikeId=A1&customerId=999");
+        api.expect(400, "POST", "/rentals", "bikeId=A1&customerName=Asha&hours=0");
+        api.expect(201, "POST", "/rentals", "bikeId=A1&customerName=Asha");
+        api.expect(409, "POST", "/rentals", "bikeId=A1&customerName=Ravi");
+        api.expect(409, "POST", "/bikes/repair", "bikeId=A1");
+        api.expect(400, "POST", "/rentals/return", "bikeId=A1&hours=-1");
+        api.expect(200, "POST", "/rentals/return", "bikeId=A1&hours=3");
+        api.expect(404, "POST", "/rentals/return", "bikeId=A1&hours=3");
+
+        api.expect(200, "POST", "/bikes/repair", "bikeId=A1");
+        api.expect(409, "POST", "/bikes/repair", "bikeId=A1");
+        api.expect(404, "POST", "/bikes/repair", "bikeId=ZZ");
+        api.expect(200, "POST", "/bikes/repair/return", "bikeId=A1");
+
+        long start = System.currentTimeMillis() + 3_600_000L;
+        api.expect(201, "POST", "/reservations", "bikeId=A1&customerName=Asha&start=" + start + "&end=" + (start + 3_600_000L));
+        api.expect(409, "POST", "/reservations", "bikeId=A1&customerName=Ravi&start=" + start + "&end=" + (start + 60_000L));
+        api.expect(400, "POST", "/reservations", "bikeId=A1&customerName=Ravi&start=" + start + "&end=" + start);
+        api.expect(200, "GET", "/reservations?bikeId=A1", null);
+        api.expect(404, "POST", "/reservations/cancel", "reservationId=999");
+    }
+
+    private static final class Client {
+        private final HttpClient http = HttpClient.newHttpClient();
+        private final int port;
+
+        Client(int port) {
+            this.port = port;
+        }
+
+        void expect(int status, String method, String path, String form) throws IOException, InterruptedException {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path));
+            if ("POST".equals(method)) {
+                request.header("Content-Type", "application/x-www-form-urlencoded")
+                    .POST(HttpRequest.BodyPublishers.ofString(form));
+            } else {
+                request.GET();
+            }
+            HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            Check.equal(status, response.statusCode(), method + " " + path + (form != null ? " with " + form : "")
+                + " (body " + response.body() + ")");
+        }
+    }
+}
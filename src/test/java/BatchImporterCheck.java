@@ -0,0 +1,112 @@
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Imports a file large enough to be parsed in several chunks, with quoted
+ * fields, CRLF line ends, comments, a header and malformed rows spread
+ * through it, and checks that every row is applied once, every malformed
+ * row is reported at its own line number wherever the chunk boundaries
+ * fell, and that non-finite or non-positive rates are refused.
+ */
+final class BatchImporterCheck {
+
+    private static final int FILLER_BIKES = 150_000; // About 3 MB, several parse chunks
+
+    private BatchImporterCheck() {
+    }
+
+    static void run() throws Exception {
+        File dataDirectory = Files.createTempDirectory("import-check").toFile();
+        try {
+            check(dataDirectory);
+        } finally {
+            Check.deleteRecursively(dataDirectory);
+        }
+    }
+
+    private static void check(File dataDirectory) {
+        List<String> lines = new ArrayList<>();
+        List<Integer> malformedLines = new ArrayList<>();
+        lines.add("command,id,model,rate");
+        lines.add("# Morning intake");
+        lines.add("");
+        lines.add("bike,Q1,\"Hero \"\"Sprint\"\", 21-speed\",12.5\r");
+        lines.add("customer,\"Kumar, Ravi\"\r");
+        String[] malformed = {
+            "bike,X1,City,NaN", "bike,X2,City,Infinity", "command,not a header here", "bike,X3,City,1e400",
+            "rent,F000001", "bike,X4,City,0", "bike,X5,City,-5", "bike,X6,City,ten"
+        };
+        for (int i = 0; i < FILLER_BIKES; i++) {
+            if (i % (FILLER_BIKES / malformed.length) == FILLER_BIKES / malformed.length / 2
+                    && malformedLines.size() < malformed.length) {
+                lines.add(malformed[malformedLines.size()]);
+                malformedLines.add(lines.size());
+            }
+            lines.add(String.format(Locale.ROOT, "bike,F%06d,City,10", i));
+        }
+        lines.add("rent,F000001,\"Kumar, Ravi\",3");
+        lines.add("return,F000001,2\r");
+        lines.add("repair,F000002");
+        lines.add("repaired,F000002");
+        lines.add("rent,F000003,Asha");
+        lines.add("repair,F000004"); // No newline after the last row
+        byte[] input = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+
+        BikeRentalSystem system = new BikeRentalSystem(dataDirectory);
+        system.setNoticeSink(NoticeSink.NONE);
+        try {
+            String summary = new BatchImporter(system).importBuffer("check", ByteBuffer.wrap(input));
+            Matcher totals = Pattern.compile("Lines: ([\\d,]+) in (\\d+) chunks.*\\(([\\d,]+) rows, ([\\d,]+) malformed\\)")
+                .matcher(summary);
+            Check.that(totals.find(), "totals in the summary:\n" + summary);
+            Check.equal((long) lines.size(), number(totals.group(1)), "lines counted");
+            Check.that(number(totals.group(2)) > 1, "input parsed in several chunks:\n" + summary);
+            Check.equal((long) malformed.length, number(totals.group(4)), "malformed rows");
+            Check.equal((long) (FILLER_BIKES + 8), number(totals.group(3)), "rows parsed");
+
+            List<String> reported = new ArrayList<>();
+            Matcher errors = Pattern.compile("malformed line (\\d+): (.*)").matcher(summary);
+            while (errors.find()) {
+                reported.add(errors.group(1) + " " + lines.get(Integer.parseInt(errors.group(1)) - 1));
+            }
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                expected.add(malformedLines.get(i) + " " + malformed[i]);
+            }
+            Check.equal(expected, reported, "malformed rows reported at their lines");
+
+            Check.that(summary.contains("hourly rate must be a number greater than zero"), "rate error:\n" + summary);
+            for (String bikeId : new String[] {"X1", "X2", "X3", "X4", "X5", "X6"}) {
+                Check.that(system.findBike(bikeId).isEmpty(), bikeId + " refused");
+            }
+            Bike quoted = system.findBike("Q1").orElseThrow(() -> new AssertionError("Q1 imported"));
+            Check.equal("Hero \"Sprint\", 21-speed", quoted.getModel(), "quoted model");
+            Check.equal(12.5, quoted.getHourlyRate(), "rate before a CRLF line end");
+            int bikes = 0;
+            for (BikeStatus status : BikeStatus.values()) {
+                bikes += system.countBikes(status);
+            }
+            Check.equal(FILLER_BIKES + 1, bikes, "bikes imported");
+            Check.that(system.findCustomerByName("Kumar, Ravi").isPresent(), "quoted customer name");
+
+            Check.equal(BikeStatus.AVAILABLE, system.findBike("F000001").get().getStatus(), "F000001 rented and returned");
+            Check.equal(1L, system.queryHistory(new HistoryQuery()).count(), "returns in history");
+            Check.equal(BikeStatus.AVAILABLE, system.findBike("F000002").get().getStatus(), "F000002 repaired");
+            Check.equal(BikeStatus.RENTED, system.findBike("F000003").get().getStatus(), "F000003 rented");
+            Check.equal(BikeStatus.IN_REPAIR, system.findBike("F000004").get().getStatus(), "last row without a newline");
+        } finally {
+            system.close();
+        }
+    }
+
+    private static long number(String text) {
+        return Long.parseLong(text.replace(",", ""));
+    }
+}
@@ -0,0 +1,106 @@
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Feeds each batch operation a mix of good and bad items and checks that the
+ * bad ones are reported per item while the rest are applied, including when
+ * the batch's journal write fails after the items were applied.
+ */
+final class BatchOperationsCheck {
+
+    private BatchOperationsCheck() {
+    }
+
+    static void run() throws Exception {
+        File dataDirectory = Files.createTempDirectory("batch-check").toFile();
+        try {
+            check(dataDirectory);
+        } finally {
+            Check.deleteRecursively(dataDirectory);
+        }
+    }
+
+    private static void check(File dataDirectory) throws Exception {
+        BikeRentalSystem system = open(dataDirectory);
+        system.addBike(new Bike("B1", "City", 10));
+
+        List<BatchResult> added = system.addBikes(Arrays.asList(
+            new Bike("B2", "City", 10), null, new Bike("b1", "Cargo", 20), new Bike(null, "City", 10),
+            new Bike("B3", "Cargo", 20)));
+        Check.equal(List.of("OK B2", "FAILED null", "FAILED b1", "FAILED null", "OK B3"), outcomes(added),
+            "addBikes outcomes");
+        Check.that(system.findBike("B3").isPresent(), "bike after the bad items added");
+
+        int customerId = system.findOrCreateCustomer("Asha").getCustomerId();
+        Check.that(system.rentBike(customerId, "B2") != null, "B2 rented");
+        List<BatchResult> repaired = system.sendBikesToRepair(Arrays.asList("B1", "NOPE", null, "B2", "B3"));
+        Check.equal(List.of("OK B1", "FAILED NOPE", "FAILED null", "FAILED B2", "OK B3"), outcomes(repaired),
+            "sendBikesToRepair outcomes");
+        Check.equal(BikeStatus.IN_REPAIR, system.findBike("B3").get().getStatus(), "B3 status");
+        Check.equal(BikeStatus.RENTED, system.findBike("B2").get().getStatus(), "B2 status");
+
+        system.returnBikeFromRepair("B1");
+        Check.that(system.rentBike(customerId, "B1") != null, "B1 rented");
+        List<BatchResult> returned = system.checkoutAndReturnBikes(Arrays.asList(
+            new BikeRentalSystem.ReturnRequest("B1", 0),
+            new BikeRentalSystem.ReturnRequest("B2", 3),
+            new BikeRentalSystem.ReturnRequest("B3", 2),
+            new BikeRentalSystem.ReturnRequest(null, 2),
+            new BikeRentalSystem.ReturnRequest("B1", PricingEngine.MAX_HOURS + 1),
+            new BikeRentalSystem.ReturnRequest("B1", 1)));
+        Check.equal(List.of("FAILED B1", "OK B2", "FAILED B3", "FAILED null", "FAILED B1", "OK B1"), outcomes(returned),
+            "checkoutAndReturnBikes outcomes");
+        Check.that(returned.stream().allMatch(BatchResult::isDurable), "results of a journaled batch are durable");
+        Check.equal(0, system.countActiveRentals(), "active rentals after the batch");
+
+        // A failed journal write leaves the batch applied; the results say so instead of being thrown away
+        closeJournalChannel(system);
+        List<BatchResult> unjournaled = system.addBikes(Arrays.asList(new Bike("B4", "City", 10), new Bike("B1", "City", 10)));
+        Check.equal(List.of("OK B4", "FAILED B1"), outcomes(unjournaled), "outcomes of a batch whose journal write failed");
+        Check.that(!unjournaled.get(0).isDurable(), "applied item marked as not journaled");
+        Check.that(unjournaled.get(0).getJournalFailure() != null, "journal failure attached");
+        Check.that(unjournaled.get(1).isDurable(), "refused item has nothing to lose");
+        Check.that(system.findBike("B4").isPresent(), "bike applied in memory");
+        Check.fails(BikeRentalSystem.ReadOnlyException.class, () -> system.addBikes(List.of(new Bike("B5", "City", 10))),
+            "batch after a journal failure");
+
+        system.saveData();
+        Check.equal(List.of("OK B5"), outcomes(system.addBikes(List.of(new Bike("B5", "City", 10)))),
+            "batch after data was saved");
+        system.close();
+
+        BikeRentalSystem reopened = open(dataDirectory);
+        try {
+            Check.that(reopened.findBike("B4").isPresent(), "saved bike after restart");
+            Check.that(reopened.findBike("B5").isPresent(), "journaled bike after restart");
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static List<String> outcomes(List<BatchResult> results) {
+        return results.stream()
+            .map(r -> (r.isSuccess() ? "OK " : "FAILED ") + r.getKey())
+            .collect(Collectors.toList());
+    }
+
+    private static void closeJournalChannel(BikeRentalSystem system) throws Exception {
+        Field journalField = BikeRentalSystem.class.getDeclaredField("journal");
+        journalField.setAccessible(true);
+        Object journal = journalField.get(system);
+        Field channelField = RentalJournal.class.getDeclaredField("channel");
+        channelField.setAccessible(true);
+        ((FileChannel) channelField.get(journal)).close();
+    }
+
+    private static BikeRentalSystem open(File dataDirectory) {
+        BikeRentalSystem system = new BikeRentalSystem(dataDirectory);
+        system.setNoticeSink(NoticeSink.NONE);
+        return system;
+    }
+}
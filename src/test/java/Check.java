@@ -0,0 +1,55 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Assertions for the plain-java checks run by RunChecks. A failed check
+ * throws AssertionError with what was expected, so it works without -ea.
+ */
+final class Check {
+
+    @FunctionalInterface
+    interface Action {
+        void run() throws Exception;
+    }
+
+    private Check() {
+    }
+
+    static void that(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    static void equal(Object expected, Object actual, String what) {
+        if (!Objects.equals(expected, actual)) {
+            throw new AssertionError(what + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    static <T extends Throwable> T fails(Class<T> type, Action action, String what) {
+        try {
+            action.run();
+        } catch (Throwable e) {
+            if (type.isInstance(e)) {
+                return type.cast(e);
+            }
+            throw new AssertionError(what + ": expected " + type.getSimpleName() + " but got " + e, e);
+        }
+        throw new AssertionError(what + ": expected " + type.getSimpleName() + " but nothing was thrown");
+    }
+
+    // Removes a check's scratch data directory
+    static void deleteRecursively(File directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Many threads rent and return a handful of bikes at once. A bike is never
+ * held by two rentals, every rental ID is issued once, racing returns of one
+ * rental settle it once, and the journal replays to the same totals.
+ */
+final class ConcurrentRentalCheck {
+
+    private static final int THREADS = 8;
+    private static final int BIKES = 4;
+    private static final int ROUNDS = 1_500;
+
+    private ConcurrentRentalCheck() {
+    }
+
+    static void run() throws Exception {
+        File dataDirectory = Files.createTempDirectory("concurrency-check").toFile();
+        try {
+            check(dataDirectory);
+        } finally {
+            Check.deleteRecursively(dataDirectory);
+        }
+    }
+
+    private static void check(File dataDirectory) throws Exception {
+        BikeRentalSystem system = open(dataDirectory);
+        for (int i = 0; i < BIKES; i++) {
+            system.addBike(new Bike("C" + i, "City", 10));
+        }
+        int[] customerIds = new int[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            customerIds[i] = system.findOrCreateCustomer("Rider " + i).getCustomerId();
+        }
+
+        AtomicInteger[] holders = new AtomicInteger[BIKES];
+        for (int i = 0; i < BIKES; i++) {
+            holders[i] = new AtomicInteger();
+        }
+        Set<Integer> rentalIds = ConcurrentHashMap.newKeySet();
+        AtomicInteger rents = new AtomicInteger();
+        List<String> errors = new ArrayList<>();
+        runAll(THREADS, worker -> {
+            Random random = new Random(worker);
+            for (int round = 0; round < ROUNDS; round++) {
+                int bike = random.nextInt(BIKES);
+                Rental rental = system.rentBike(customerIds[worker], "C" + bike);
+                if (rental == null) {
+                    continue;
+                }
+                rents.incrementAndGet();
+                if (holders[bike].incrementAndGet() != 1) {
+                    record(errors, "bike C" + bike + " rented twice at once");
+                }
+                if (!rentalIds.add(rental.getRentalId())) {
+                    record(errors, "rental ID " + rental.getRentalId() + " issued twice");
+                }
+                // The bike stays RENTED until the return below completes, so nobody else can take it meanwhile
+                holders[bike].decrementAndGet();
+                if (system.checkoutAndReturnBike(rental.getRentalId(), 1 + random.nextInt(5)) == null) {
+                    record(errors, "return of own rental " + rental.getRentalId() + " refused");
+                }
+            }
+        });
+        Check.equal(List.of(), errors, "errors while renting and returning");
+        Check.that(rents.get() > ROUNDS, "bikes were rented");
+
+        // Every thread races to return the same rentals; each is settled exactly once
+        List<Rental> contested = new ArrayList<>();
+        for (int i = 0; i < BIKES; i++) {
+            contested.add(system.rentBike(customerIds[i], "C" + i));
+        }
+        rents.addAndGet(BIKES);
+        AtomicInteger receipts = new AtomicInteger();
+        runAll(THREADS, worker -> {
+            for (Rental rental : contested) {
+                if (system.checkoutAndReturnBike(rental.getRentalId(), 2) != null) {
+                    receipts.incrementAndGet();
+                }
+            }
+        });
+        Check.equal(BIKES, receipts.get(), "receipts for racing returns");
+
+        Check.equal(0, system.countActiveRentals(), "active rentals left");
+        Check.equal(BIKES, system.countBikes(BikeStatus.AVAILABLE), "bikes available again");
+        Check.equal((long) rents.get(), system.queryHistory(new HistoryQuery()).count(), "returned rentals in history");
+        Check.equal((long) rents.get(), system.getAggregates().getTotal().getRentals(), "rentals in the running totals");
+        Check.equal(List.of(), system.verifyAggregates(), "aggregates against history");
+        String totals = system.getAggregates().getTotal().toString();
+        system.close();
+
+        BikeRentalSystem reopened = open(dataDirectory);
+        try {
+            Check.equal(totals, reopened.getAggregates().getTotal().toString(), "totals replayed from the journal");
+            Check.equal(BIKES, reopened.countBikes(BikeStatus.AVAILABLE), "bikes available after replay");
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private interface Worker {
+        void run(int worker) throws Exception;
+    }
+
+    // Starts the workers together and waits for all of them
+    private static void runAll(int threads, Worker task) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> started = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int worker = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run(worker);
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "worker-" + i);
+            thread.start();
+            started.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : started) {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+            Check.that(!thread.isAlive(), thread.getName() + " did not finish");
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError("worker failed: " + failures.get(0), failures.get(0));
+        }
+    }
+
+    private static void record(List<String> errors, String error) {
+        synchronized (errors) {
+            errors.add(error);
+        }
+    }
+
+    private static BikeRentalSystem open(File dataDirectory) {
+        BikeRentalSystem system = new BikeRentalSystem(dataDirectory);
+        system.setNoticeSink(NoticeSink.NONE);
+        return system;
+    }
+}
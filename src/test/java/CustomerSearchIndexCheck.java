@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Searches a random population of names with misspelt and reordered queries
+ * and checks the customers found against a brute-force scan with the same
+ * rules: every query word within its allowed edits of the start of some name
+ * word. Short words with a transposed first letter, which share no trigram
+ * with the name, are included on purpose.
+ */
+final class CustomerSearchIndexCheck {
+
+    private static final String[] WORDS = {
+        "ravi", "kumar", "asha", "anand", "priya", "rao", "li", "wei", "sita", "ramesh", "suresh", "lakshmi",
+        "krishnan", "venkatesh", "ananya", "iyer", "nair", "menon", "das", "sen", "gupta", "sharma", "verma",
+        "singh", "kaur", "patel", "shah", "mehta", "joshi", "kulkarni", "deshpande", "banerjee", "chatterjee",
+        "mukherjee", "bose", "ghosh", "pillai", "reddy", "naidu", "yadav", "mishra", "pandey", "tiwari", "dubey",
+        "arvind", "aravind", "ravindra", "ravina", "kumari", "kumaran", "subramanian", "raghavendra"
+    };
+    private static final int CUSTOMERS = 400;
+    private static final int QUERIES = 1_500;
+
+    private CustomerSearchIndexCheck() {
+    }
+
+    static void run() {
+        CustomerSearchIndex index = new CustomerSearchIndex();
+        Customer ravi = new Customer(1, "Ravi Kumar");
+        index.add(ravi);
+        index.add(new Customer(2, "Ravi Kumari"));
+        index.add(new Customer(3, "Asha Rao"));
+
+        // "arvi" keeps none of the trigrams of "ravi", yet is one swap away
+        for (String query : new String[] {"arvi", "arvi kumar", "kumar arvi", "rvai kumr", "ravi kumar", "kumar r"}) {
+            Check.that(ids(index.search(query, 5)).contains(1), "\"" + query + "\" finds Ravi Kumar");
+        }
+        List<CustomerMatch> exact = index.search("ravi kumar", 5);
+        Check.equal(ravi, exact.get(0).getCustomer(), "exact name ranks first");
+        Check.that(exact.get(0).isExactName() && exact.get(0).getDistance() == 0, "exact match flagged");
+        Check.equal(Set.of(), ids(index.search("zzzz", 5)), "unrelated query");
+        Check.equal(Set.of(), ids(index.search("   ", 5)), "blank query");
+
+        Random random = new Random(17);
+        List<String[]> names = new ArrayList<>();
+        CustomerSearchIndex population = new CustomerSearchIndex();
+        for (int id = 1; id <= CUSTOMERS; id++) {
+            String[] name = new String[1 + random.nextInt(3)];
+            for (int w = 0; w < name.length; w++) {
+                name[w] = WORDS[random.nextInt(WORDS.length)];
+            }
+            names.add(name);
+            population.add(new Customer(id, String.join(" ", name)));
+        }
+        for (int q = 0; q < QUERIES; q++) {
+            String[] name = names.get(random.nextInt(names.size()));
+            String[] query = new String[1 + random.nextInt(Math.min(2, name.length))];
+            for (int w = 0; w < query.length; w++) {
+                String word = name[random.nextInt(name.length)];
+                word = word.substring(0, 1 + random.nextInt(word.length())); // Any prefix
+                query[w] = misspell(word, random.nextInt(3), random);
+            }
+            String text = String.join(" ", query).toUpperCase(Locale.ROOT); // The index ignores case
+            Check.equal(expected(names, query), ids(population.search(text, CUSTOMERS)), "customers found by \"" + text + "\"");
+        }
+    }
+
+    private static Set<Integer> ids(List<CustomerMatch> matches) {
+        Set<Integer> ids = new TreeSet<>();
+        for (CustomerMatch match : matches) {
+            ids.add(match.getCustomer().getCustomerId());
+        }
+        return ids;
+    }
+
+    // Brute force over every customer and every word, without the index's shortcuts
+    private static Set<Integer> expected(List<String[]> names, String[] query) {
+        Set<Integer> ids = new TreeSet<>();
+        for (int id = 1; id <= names.size(); id++) {
+            boolean all = true;
+            for (String queryWord : query) {
+                int allowed = Math.min(CustomerSearchIndex.MAX_DISTANCE, (queryWord.length() - 1) / 3);
+                boolean any = false;
+                for (String word : names.get(id - 1)) {
+                    any |= prefixDistance(queryWord, word) <= allowed;
+                }
+                all &= any;
+            }
+            if (all) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    // Optimal string alignment distance from the query to the closest prefix of the word
+    private static int prefixDistance(String query, String word) {
+        int[][] d = new int[query.length() + 1][word.length() + 1];
+        for (int i = 0; i <= query.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= word.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= query.length(); i++) {
+            for (int j = 1; j <= word.length(); j++) {
+                int cost = query.charAt(i - 1) == word.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+                if (i > 1 && j > 1 && query.charAt(i - 1) == word.charAt(j - 2) && query.charAt(i - 2) == word.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        int best = Integer.MAX_VALUE;
+        for (int j = 0; j <= word.length(); j++) {
+            best = Math.min(best, d[query.length()][j]);
+        }
+        return best;
+    }
+
+    // Applies random swaps, substitutions, insertions and deletions
+    private static String misspell(String word, int edits, Random random) {
+        StringBuilder text = new StringBuilder(word);
+        for (int e = 0; e < edits && text.length() > 1; e++) {
+            int at = random.nextInt(text.length() - 1);
+            char letter = (char) ('a' + random.nextInt(26));
+            switch (random.nextInt(4)) {
+                case 0:
+                    char swapped = text.charAt(at);
+                    text.setCharAt(at, text.charAt(at + 1));
+                    text.setCharAt(at + 1, swapped);
+                    break;
+                case 1:
+                    text.setCharAt(at, letter);
+                    break;
+                case 2:
+                    text.insert(at, letter);
+                    break;
+                default:
+                    text.deleteCharAt(at);
+                    break;
+            }
+        }
+        return text.toString();
+    }
+}
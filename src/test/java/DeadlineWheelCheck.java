@@ -0,0 +1,77 @@
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Schedules deadlines on every level of the wheel, including distances on
+ * either side of each level's span, and advances in random steps. Each timer
+ * must fire on the first advance that reaches its tick and not before, and
+ * cancelled timers never fire.
+ */
+final class DeadlineWheelCheck {
+
+    private static final long[] EDGE_DISTANCES = {
+        0, 1, 2, 63, 64, 65, 127, 128, 4095, 4096, 4097, 262_143, 262_144, 262_145,
+        16_777_215, 16_777_216, 16_777_217
+    };
+    private static final long HORIZON = 20_000_000; // Past level 3, so timers cascade down from level 4
+
+    private DeadlineWheelCheck() {
+    }
+
+    static void run() {
+        Random random = new Random(42);
+        long start = 1_000 + random.nextInt(1_000_000); // Not slot aligned, so cascades start mid-span
+        DeadlineWheel<Long> wheel = new DeadlineWheel<>(1, start);
+
+        List<DeadlineWheel.Timer<Long>> timers = new ArrayList<>();
+        for (long distance : EDGE_DISTANCES) {
+            timers.add(wheel.schedule(start + distance, start + distance));
+        }
+        for (int i = 0; i < 5_000; i++) {
+            long distance = random.nextInt(4) == 0 ? random.nextInt(5_000) : (long) (random.nextDouble() * HORIZON);
+            timers.add(wheel.schedule(start + distance, start + distance));
+        }
+        timers.add(wheel.schedule(start - 10, start - 10)); // Already due
+
+        Set<DeadlineWheel.Timer<Long>> cancelled = new HashSet<>();
+        for (int i = 0; i < 500; i++) {
+            DeadlineWheel.Timer<Long> timer = timers.get(random.nextInt(timers.size()));
+            Check.equal(cancelled.add(timer), wheel.cancel(timer), "cancel reports whether the timer was pending");
+        }
+        Check.equal(timers.size() - cancelled.size(), wheel.size(), "pending timers");
+
+        Set<DeadlineWheel.Timer<Long>> fired = new HashSet<>();
+        long now = start;
+        while (now < start + HORIZON + 1) {
+            long previous = now;
+            now += random.nextInt(3) == 0 ? 1 + random.nextInt(64) : 1 + random.nextInt(200_000);
+            long lastDeadline = Long.MIN_VALUE;
+            for (DeadlineWheel.Timer<Long> timer : wheel.advance(now)) {
+                long deadline = timer.getItem();
+                Check.that(!cancelled.contains(timer), "cancelled timer for " + deadline + " fired");
+                Check.that(fired.add(timer), "timer for " + deadline + " fired twice");
+                Check.that(deadline <= now, "timer for " + deadline + " fired early, at " + now);
+                Check.that(deadline > previous || deadline <= start,
+                    "timer for " + deadline + " fired late, at " + now + " instead of by " + previous);
+                Check.that(deadline >= lastDeadline || deadline <= start, "timers fired out of order");
+                lastDeadline = Math.max(lastDeadline, deadline);
+            }
+            if (random.nextInt(50) == 0) {
+                // Schedule from mid-run too, where the current tick is rarely slot aligned
+                long distance = 1 + (long) (random.nextDouble() * (start + HORIZON - now));
+                timers.add(wheel.schedule(now + distance, now + distance));
+            }
+        }
+        Check.equal(timers.size() - cancelled.size(), fired.size(), "timers fired");
+        Check.equal(0, wheel.size(), "timers left pending");
+        Check.that(!wheel.cancel(timers.get(0)), "cancelling a fired timer reports false");
+
+        // Scheduling in the past expires on the next tick, never the current one
+        DeadlineWheel.Timer<Long> late = wheel.schedule(now - 5, now - 5);
+        Check.equal(0, wheel.advance(now).size(), "advance without a new tick");
+        Check.equal(List.of(late), wheel.advance(now + 1), "past deadline on the next tick");
+    }
+}
@@ -0,0 +1,219 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Checks PersistentSortedMap against a TreeMap over random updates, keeping
+ * old versions and checking none of them changes afterwards; then checks
+ * that fleet snapshots stay frozen while the system moves on, advance one
+ * version per committed change, and are consistent when read during
+ * concurrent rents and returns.
+ */
+final class FleetSnapshotCheck {
+
+    private static final int OPERATIONS = 20_000;
+    private static final int KEYS = 500;
+    private static final int BIKES = 16;
+
+    private FleetSnapshotCheck() {
+    }
+
+    static void run() throws Exception {
+        persistentMap();
+        File dataDirectory = Files.createTempDirectory("fleet-snapshot-check").toFile();
+        try {
+            snapshots(dataDirectory);
+        } finally {
+            Check.deleteRecursively(dataDirectory);
+        }
+    }
+
+    private static void persistentMap() {
+        Random random = new Random(11);
+        PersistentSortedMap<Integer, String> map = PersistentSortedMap.empty();
+        TreeMap<Integer, String> reference = new TreeMap<>();
+        List<PersistentSortedMap<Integer, String>> versions = new ArrayList<>();
+        List<TreeMap<Integer, String>> expected = new ArrayList<>();
+        for (int op = 0; op < OPERATIONS; op++) {
+            int key = random.nextInt(KEYS);
+            switch (random.nextInt(4)) {
+                case 0:
+                    PersistentSortedMap<Integer, String> before = map;
+                    map = map.remove(key);
+                    Check.that(reference.remove(key) != null || map == before, "removing a missing key keeps the map");
+                    break;
+                case 1:
+                    String value = random.nextBoolean() ? null : "c" + op;
+                    map = map.compute(key, current -> value);
+                    if (value == null) {
+                        reference.remove(key);
+                    } else {
+                        reference.put(key, value);
+                    }
+                    break;
+                default:
+                    map = map.put(key, "v" + op);
+                    reference.put(key, "v" + op);
+                    break;
+            }
+            Check.equal(reference.get(key), map.get(key), "value under " + key + " after operation " + op);
+            if (op % 97 == 0) {
+                versions.add(map);
+                expected.add(new TreeMap<>(reference));
+            }
+        }
+        for (int i = 0; i < versions.size(); i++) {
+            check(expected.get(i), versions.get(i), "version " + i);
+        }
+        check(reference, map, "latest version");
+
+        List<String> sortedValues = new ArrayList<>(reference.values());
+        List<Integer> sortedKeys = new ArrayList<>(reference.keySet());
+        PersistentSortedMap<Integer, String> built = PersistentSortedMap.ofSorted(sortedValues,
+            value -> sortedKeys.get(sortedValues.indexOf(value)));
+        check(reference, built, "map built from sorted values");
+        check(new TreeMap<>(), PersistentSortedMap.<Integer, String>ofSorted(List.of(), value -> 0), "empty map");
+    }
+
+    private static void check(TreeMap<Integer, String> expected, PersistentSortedMap<Integer, String> map, String what) {
+        Check.equal(expected.size(), map.size(), what + ": size");
+        Check.equal(expected.isEmpty(), map.isEmpty(), what + ": empty");
+        List<String> values = new ArrayList<>();
+        map.forEach(values::add);
+        Check.equal(new ArrayList<>(expected.values()), values, what + ": values in key order");
+        for (int key = -1; key <= KEYS; key += 7) {
+            Check.equal(expected.get(key), map.get(key), what + ": value under " + key);
+        }
+    }
+
+    private static void snapshots(File dataDirectory) throws Exception {
+        BikeRentalSystem system = new BikeRentalSystem(dataDirectory);
+        system.setNoticeSink(NoticeSink.NONE);
+        try {
+            for (int i = 0; i < BIKES; i++) {
+                system.addBike(new Bike("S" + i, i % 2 == 0 ? "City" : "Cargo", 10 + i));
+            }
+            int asha = system.findOrCreateCustomer("Asha").getCustomerId();
+            Rental rental = system.rentBike(asha, "S0");
+
+            FleetSnapshot before = system.snapshot();
+            String frozen = describe(before);
+            long version = before.getVersion();
+
+            system.sendBikeToRepair("S1");
+            Check.equal(version + 1, system.snapshot().getVersion(), "one version per change");
+            system.checkoutAndReturnBike(rental.getRentalId(), 2);
+            system.findOrCreateCustomer("Ravi");
+            system.addBike(new Bike("S" + BIKES, "City", 10));
+            long beforeBatch = system.snapshot().getVersion();
+            system.addBikes(List.of(new Bike("B1", "City", 10), new Bike("B2", "City", 10), new Bike("B3", "City", 10)));
+            Check.equal(beforeBatch + 1, system.snapshot().getVersion(), "one version per batch");
+
+            Check.equal(frozen, describe(before), "earlier snapshot after later changes");
+            Check.equal(BikeStatus.RENTED, before.findBike("S0").get().getStatus(), "bike state in the earlier snapshot");
+            Check.that(before.findBike("B1").isEmpty(), "bike added later absent from the earlier snapshot");
+            Check.that(before.findActiveRental(rental.getRentalId()).isPresent(), "rental in the earlier snapshot");
+
+            FleetSnapshot after = system.snapshot();
+            Check.equal(BikeStatus.AVAILABLE, after.findBike("s0").get().getStatus(), "returned bike, found ignoring case");
+            Check.equal(BikeStatus.IN_REPAIR, after.findBike("S1").get().getStatus(), "bike in repair");
+            Check.that(after.findActiveRental(rental.getRentalId()).isEmpty(), "returned rental gone");
+            Check.equal(BIKES + 4, after.countBikes(), "bikes in the latest snapshot");
+            Check.equal(2, after.getCustomers().size(), "customers in the latest snapshot");
+            Check.equal(system.countBikes(BikeStatus.IN_REPAIR), after.countBikes(BikeStatus.IN_REPAIR), "bikes in repair");
+            consistent(after);
+
+            concurrentReaders(system, asha);
+        } finally {
+            system.close();
+        }
+    }
+
+    // Readers never see a rental without its rented bike, or counts that disagree with the bikes
+    private static void concurrentReaders(BikeRentalSystem system, int customerId) throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            threads.add(new Thread(() -> {
+                long lastVersion = -1;
+                try {
+                    while (!done.get()) {
+                        FleetSnapshot snapshot = system.snapshot();
+                        Check.that(snapshot.getVersion() >= lastVersion, "versions never go back");
+                        lastVersion = snapshot.getVersion();
+                        consistent(snapshot);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "snapshot-reader-" + r));
+        }
+        for (int w = 0; w < 2; w++) {
+            int worker = w;
+            threads.add(new Thread(() -> {
+                try {
+                    Random random = new Random(worker);
+                    for (int i = 0; i < 2_000; i++) {
+                        Rental rental = system.rentBike(customerId, "S" + (2 + random.nextInt(BIKES - 2)));
+                        if (rental != null) {
+                            system.checkoutAndReturnBike(rental.getRentalId(), 1);
+                        }
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "snapshot-writer-" + w));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads.subList(2, threads.size())) {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+        }
+        done.set(true);
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+            Check.that(!thread.isAlive(), thread.getName() + " did not finish");
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError("snapshot check failed: " + failures.get(0), failures.get(0));
+        }
+    }
+
+    private static void consistent(FleetSnapshot snapshot) {
+        Map<BikeStatus, Integer> counts = new EnumMap<>(BikeStatus.class);
+        for (FleetSnapshot.BikeState bike : snapshot.getBikes()) {
+            counts.merge(bike.getStatus(), 1, Integer::sum);
+        }
+        for (BikeStatus status : BikeStatus.values()) {
+            Check.equal(counts.getOrDefault(status, 0), snapshot.countBikes(status),
+                "count of " + status + " bikes in version " + snapshot.getVersion());
+        }
+        for (FleetSnapshot.RentalState rental : snapshot.getActiveRentals()) {
+            Check.equal(BikeStatus.RENTED, snapshot.findBike(rental.getBikeId()).get().getStatus(),
+                "bike of rental " + rental.getRentalId() + " in version " + snapshot.getVersion());
+        }
+        Check.equal(counts.getOrDefault(BikeStatus.RENTED, 0), snapshot.countActiveRentals(),
+            "rented bikes against active rentals in version " + snapshot.getVersion());
+    }
+
+    private static String describe(FleetSnapshot snapshot) {
+        return snapshot.getVersion() + " "
+            + snapshot.getBikes().stream().map(b -> b.getBikeId() + ":" + b.getStatus() + ":" + b.getHourlyRate())
+                .collect(Collectors.toList())
+            + " " + snapshot.getCustomers().stream().map(Customer::getName).collect(Collectors.toList())
+            + " " + snapshot.getActiveRentals().stream().map(r -> r.getRentalId() + ":" + r.getBikeId())
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,182 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group-commits records from several threads and checks they land whole and
+ * in sequence order; then fails a write and checks that waiters are released
+ * with the failure, later appends are refused, and a system using the writer
+ * refuses changes until a snapshot replaces it.
+ */
+final class GroupCommitWriterCheck {
+
+    private static final int THREADS = 4;
+    private static final int RECORDS_PER_THREAD = 2_000;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private GroupCommitWriterCheck() {
+    }
+
+    static void run() throws Exception {
+        File directory = Files.createTempDirectory("group-commit-check").toFile();
+        try {
+            groupsInOrder(directory.toPath().resolve("ordered.log"));
+            failureReleasesWaiters(directory.toPath().resolve("failed.log"));
+            systemRecoversOnSave(new File(directory, "system"));
+        } finally {
+            Check.deleteRecursively(directory);
+        }
+    }
+
+    private static void groupsInOrder(Path path) throws Exception {
+        Object sequenceLock = new Object();
+        long[] nextSequence = {0};
+        try (FileChannel channel = open(path)) {
+            GroupCommitWriter writer = new GroupCommitWriter(channel, 1, TimeUnit.MILLISECONDS, 64);
+            List<Thread> threads = new ArrayList<>();
+            List<Throwable> failures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                threads.add(start("appender-" + t, () -> {
+                    try {
+                        long last = 0;
+                        for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                            // The journal assigns sequences under its lock, so queue order is sequence order
+                            synchronized (sequenceLock) {
+                                last = ++nextSequence[0];
+                                writer.enqueue(ByteBuffer.allocate(8).putInt(thread).putInt(i).array(), last);
+                            }
+                        }
+                        writer.awaitDurable(last);
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                join(thread, "appender");
+            }
+            Check.equal(List.of(), failures, "append failures");
+            writer.close();
+            Check.equal(null, writer.getFailure(), "failure of a healthy writer");
+        }
+
+        ByteBuffer written = ByteBuffer.wrap(Files.readAllBytes(path));
+        Check.equal(THREADS * RECORDS_PER_THREAD * 8, written.remaining(), "bytes written");
+        int[] next = new int[THREADS];
+        while (written.hasRemaining()) {
+            int thread = written.getInt();
+            int record = written.getInt();
+            Check.equal(next[thread]++, record, "next record of appender " + thread);
+        }
+    }
+
+    private static void failureReleasesWaiters(Path path) throws Exception {
+        FileChannel channel = open(path);
+        GroupCommitWriter writer = new GroupCommitWriter(channel, 1, TimeUnit.MILLISECONDS, 64);
+        writer.enqueue(new byte[] {1, 2, 3, 4}, 1);
+        writer.awaitDurable(1);
+        channel.close();
+
+        // Waiters on a record that can no longer be written get the failure rather than hanging
+        writer.enqueue(new byte[] {5, 6, 7, 8}, 2);
+        CountDownLatch waiting = new CountDownLatch(THREADS);
+        List<Throwable> outcomes = new ArrayList<>();
+        List<Thread> waiters = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            waiters.add(start("waiter-" + t, () -> {
+                waiting.countDown();
+                Throwable outcome = null;
+                try {
+                    writer.awaitDurable(2);
+                } catch (Throwable e) {
+                    outcome = e;
+                }
+                synchronized (outcomes) {
+                    outcomes.add(outcome);
+                }
+            }));
+        }
+        Check.that(waiting.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "waiters started");
+        for (Thread waiter : waiters) {
+            join(waiter, "waiter on a failed write");
+        }
+        IOException failure = writer.getFailure();
+        Check.that(failure != null, "write failure recorded");
+        for (Throwable outcome : outcomes) {
+            Check.that(outcome == failure, "waiter released with the write failure, got " + outcome);
+        }
+
+        Check.that(Check.fails(IOException.class, () -> writer.enqueue(new byte[4], 3), "append after a failed write")
+            == failure, "later append refused with the same failure");
+        Check.that(Check.fails(IOException.class, writer::drain, "drain after a failed write") == failure,
+            "drain refused with the same failure");
+        Check.equal(4L, Files.size(path), "bytes before the failure kept");
+    }
+
+    private static void systemRecoversOnSave(File dataDirectory) throws Exception {
+        BikeRentalSystem system = new BikeRentalSystem(dataDirectory);
+        system.setNoticeSink(NoticeSink.NONE);
+        system.enableGroupCommit(1, 64);
+        system.addBike(new Bike("G1", "City", 10));
+        system.addBike(new Bike("G2", "City", 10));
+        Check.that(system.awaitDurable(), "durable before the failure");
+
+        closeJournalChannel(system);
+        // The record is queued, so the change is accepted; durability is what fails
+        Check.that(system.addBike(new Bike("G3", "City", 10)), "change queued before the writer fails");
+        Check.that(!system.awaitDurable(), "awaitDurable reports the failed write");
+        Check.fails(BikeRentalSystem.ReadOnlyException.class, () -> system.addBike(new Bike("G4", "City", 10)),
+            "change after the writer failed");
+
+        system.saveData();
+        Check.that(system.addBike(new Bike("G4", "City", 10)), "change after data was saved");
+        Check.that(system.awaitDurable(), "durable on the replacement writer");
+        system.close();
+
+        BikeRentalSystem reopened = new BikeRentalSystem(dataDirectory);
+        try {
+            for (String bikeId : List.of("G1", "G2", "G3", "G4")) {
+                Check.that(reopened.findBike(bikeId).isPresent(), bikeId + " after restart");
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void closeJournalChannel(BikeRentalSystem system) throws Exception {
+        Field journalField = BikeRentalSystem.class.getDeclaredField("journal");
+        journalField.setAccessible(true);
+        Object journal = journalField.get(system);
+        Field channelField = RentalJournal.class.getDeclaredField("channel");
+        channelField.setAccessible(true);
+        ((FileChannel) channelField.get(journal)).close();
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void join(Thread thread, String what) throws InterruptedException {
+        thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        Check.that(!thread.isAlive(), what + " did not finish within " + TIMEOUT_SECONDS + " s");
+    }
+}
@@ -0,0 +1,138 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Appends history rows that are never committed, as when the process dies
+ * before the snapshot recording them is in place, and checks that restore
+ * cuts every segment back to the snapshot's lengths so nothing is archived
+ * twice. Also restarts a system over a segment with rows past its snapshot.
+ */
+final class HistoryArchiveCheck {
+
+    private static final ZoneId ZONE = ZoneId.of("UTC");
+
+    private HistoryArchiveCheck() {
+    }
+
+    static void run() throws IOException {
+        File directory = Files.createTempDirectory("history-check").toFile();
+        try {
+            truncatesUncommittedRows(new File(directory, "archive"));
+            systemRestartDropsUncommittedRows(new File(directory, "system"));
+        } finally {
+            Check.deleteRecursively(directory);
+        }
+    }
+
+    private static void truncatesUncommittedRows(File directory) throws IOException {
+        Bike city = new Bike("H1", "City", 10);
+        Bike cargo = new Bike("H2 ü", "Cargo", 20);
+        Map<String, Bike> bikes = new HashMap<>();
+        bikes.put(city.getBikeId(), city);
+        bikes.put(cargo.getBikeId(), cargo);
+
+        HistoryArchive archive = new HistoryArchive(directory, ZONE, bikes::get);
+        RentalHistory committedRows = new RentalHistory();
+        committedRows.append(1, 1, city, at(2023, 10, 30), 2, 2_000, at(2023, 10, 30) + hours(2));
+        committedRows.append(2, 2, cargo, at(2023, 11, 1), 3, 6_000, at(2023, 11, 1) + hours(3));
+        Map<String, Long> committed = archive.append(committedRows);
+        archive.commit(committed);
+        List<String> expected = describe(committedRows.records().collect(Collectors.toList()));
+        Check.equal(expected, describe(archive.records().collect(Collectors.toList())), "committed rows");
+
+        // Appended and forced to disk, but the snapshot naming these lengths is never written
+        RentalHistory lost = new RentalHistory();
+        lost.append(3, 1, city, at(2023, 11, 20), 1, 1_000, at(2023, 11, 20) + hours(1));
+        lost.append(4, 2, cargo, at(2023, 12, 2), 1, 2_000, at(2023, 12, 2) + hours(1));
+        Map<String, Long> uncommitted = archive.append(lost);
+        Check.that(uncommitted.get("2023-11") > committed.get("2023-11"), "November segment grew");
+        Check.equal(expected, describe(archive.records().collect(Collectors.toList())), "uncommitted rows hidden");
+
+        HistoryArchive restarted = new HistoryArchive(directory, ZONE, bikes::get);
+        restarted.restore(committed);
+        Check.equal(committed.get("2023-11"), Files.size(segment(directory, "2023-11")), "November segment truncated");
+        Check.that(!Files.exists(segment(directory, "2023-12")), "segment unknown to the snapshot deleted");
+        Check.equal(committed, restarted.getCommittedLengths(), "lengths adopted from the snapshot");
+        Check.equal(expected, describe(restarted.records().collect(Collectors.toList())), "rows after restore");
+
+        // Journal replay archives the lost rows again; each must appear once
+        Map<String, Long> replayed = restarted.append(lost);
+        restarted.commit(replayed);
+        Check.equal(uncommitted, replayed, "segment lengths after archiving the rows again");
+        List<String> all = describe(committedRows.records().collect(Collectors.toList()));
+        all.addAll(describe(lost.records().collect(Collectors.toList())));
+        Check.equal(all, describe(restarted.records().collect(Collectors.toList())), "rows archived once each");
+
+        Map<String, Long> tooLong = new HashMap<>(replayed);
+        tooLong.put("2023-11", replayed.get("2023-11") + 1);
+        Check.fails(IOException.class, () -> new HistoryArchive(directory, ZONE, bikes::get).restore(tooLong),
+            "restore to a length past the end of a segment");
+        Map<String, Long> missing = new HashMap<>(replayed);
+        missing.put("2024-01", 8L);
+        Check.fails(IOException.class, () -> new HistoryArchive(directory, ZONE, bikes::get).restore(missing),
+            "restore naming a missing segment");
+    }
+
+    private static void systemRestartDropsUncommittedRows(File dataDirectory) throws IOException {
+        BikeRentalSystem system = open(dataDirectory);
+        system.addBike(new Bike("H1", "City", 10));
+        int customerId = system.findOrCreateCustomer("Asha").getCustomerId();
+        for (int i = 0; i < 3; i++) {
+            Rental rental = system.rentBike(customerId, "H1");
+            Check.that(system.checkoutAndReturnBike(rental.getRentalId(), 1 + i) != null, "return " + i);
+        }
+        system.saveData();
+        List<String> before = describe(system.queryHistory(new HistoryQuery()).collect(Collectors.toList()));
+        system.close();
+
+        // Bytes past the recorded length, as left by an append whose snapshot never landed
+        File[] segments = new File(dataDirectory, "history").listFiles((dir, name) -> name.endsWith(".seg"));
+        Check.that(segments != null && segments.length == 1, "one history segment written");
+        Path segment = segments[0].toPath();
+        long length = Files.size(segment);
+        Files.write(segment, new byte[] {0, 0, 0, 9, 0, 0, 0, 1, 0, 0}, StandardOpenOption.APPEND);
+
+        BikeRentalSystem reopened = open(dataDirectory);
+        try {
+            Check.equal(length, Files.size(segment), "segment truncated on load");
+            Check.equal(before, describe(reopened.queryHistory(new HistoryQuery()).collect(Collectors.toList())),
+                "history after restart");
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static List<String> describe(List<HistoryRecord> records) {
+        return records.stream()
+            .map(r -> r.getRentalId() + " " + r.getCustomerId() + " " + r.getBike().getBikeId() + " "
+                + r.getStartMillis() + " " + r.getReturnMillis() + " " + r.getDurationHours() + " " + r.getChargePaise())
+            .collect(Collectors.toList());
+    }
+
+    private static Path segment(File directory, String month) {
+        return directory.toPath().resolve(HistoryArchive.segmentFileName(month));
+    }
+
+    private static long at(int year, int month, int day) {
+        return LocalDateTime.of(year, month, day, 9, 0).atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    private static long hours(int hours) {
+        return hours * 3_600_000L;
+    }
+
+    private static BikeRentalSystem open(File dataDirectory) {
+        BikeRentalSystem system = new BikeRentalSystem(dataDirectory);
+        system.setNoticeSink(NoticeSink.NONE);
+        return system;
+    }
+}
@@ -0,0 +1,157 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Pages through bikes and active rentals in every sort order, forward to the
+ * last page and back to the first, and checks each walk against the listing
+ * sorted in memory. Then checks that a cursor survives rows being added and
+ * removed around it and that a cursor is refused by another sort order.
+ */
+final class PageCursorCheck {
+
+    private static final int BIKES = 23;
+
+    private PageCursorCheck() {
+    }
+
+    static void run() throws Exception {
+        File dataDirectory = Files.createTempDirectory("page-check").toFile();
+        try {
+            check(dataDirectory);
+        } finally {
+            Check.deleteRecursively(dataDirectory);
+        }
+    }
+
+    private static void check(File dataDirectory) {
+        BikeRentalSystem system = new BikeRentalSystem(dataDirectory);
+        system.setNoticeSink(NoticeSink.NONE);
+        try {
+            List<Bike> bikes = new ArrayList<>();
+            for (int i = 0; i < BIKES; i++) {
+                // Rates repeat, so rate order has ties broken by ID
+                Bike bike = new Bike(String.format(Locale.ROOT, "P%02d", (i * 7) % BIKES), i % 2 == 0 ? "City" : "Cargo",
+                    10 + i % 5);
+                bikes.add(bike);
+                system.addBike(bike);
+            }
+            for (int i = 0; i < BIKES; i += 3) {
+                system.sendBikeToRepair(bikes.get(i).getBikeId());
+            }
+            Comparator<Bike> byId = Comparator.comparing(Bike::getBikeId);
+            Comparator<Bike> byRate = Comparator.comparingDouble(Bike::getHourlyRate).thenComparing(byId);
+
+            for (int pageSize : new int[] {1, 4, 5, BIKES, BIKES + 1}) {
+                BikeQuery all = new BikeQuery().pageSize(pageSize);
+                walk("bikes by ID, page size " + pageSize, sorted(bikes, byId), cursor -> system.queryBikes(all, cursor));
+                BikeQuery byRateQuery = new BikeQuery().sortBy(BikeQuery.Sort.RATE).pageSize(pageSize);
+                walk("bikes by rate, page size " + pageSize, sorted(bikes, byRate),
+                    cursor -> system.queryBikes(byRateQuery, cursor));
+            }
+            BikeQuery available = new BikeQuery().status(BikeStatus.AVAILABLE).pageSize(4);
+            walk("available bikes", sorted(filter(bikes, available), byId), cursor -> system.queryBikes(available, cursor));
+            BikeQuery cargo = new BikeQuery().modelContains("cargo").pageSize(3);
+            walk("cargo bikes", sorted(filter(bikes, cargo), byId), cursor -> system.queryBikes(cargo, cursor));
+            BikeQuery midRange = new BikeQuery().rateBetween(11, 13).sortBy(BikeQuery.Sort.RATE).pageSize(4);
+            walk("bikes rated 11 to 13", sorted(filter(bikes, midRange), byRate),
+                cursor -> system.queryBikes(midRange, cursor));
+            BikeQuery none = new BikeQuery().modelContains("tandem");
+            Page<Bike> empty = system.queryBikes(none, null);
+            Check.that(empty.isEmpty() && !empty.hasNext() && !empty.hasPrevious(), "empty listing has one empty page");
+
+            // A cursor names a position, not a row, so changes around it neither skip nor repeat rows
+            BikeQuery fives = new BikeQuery().status(BikeStatus.AVAILABLE).pageSize(5);
+            Page<Bike> first = system.queryBikes(fives, null);
+            Bike anchor = last(first.getItems());
+            Check.that(system.sendBikeToRepair(anchor.getBikeId()), "anchor row leaves the listing");
+            system.addBike(new Bike(anchor.getBikeId() + "A", "City", 10));
+            Page<Bike> second = system.queryBikes(fives, first.getNextCursor());
+            Check.equal(anchor.getBikeId() + "A", second.getItems().get(0).getBikeId(), "row added just after the cursor");
+            Page<Bike> back = system.queryBikes(fives, second.getPreviousCursor());
+            Check.equal(ids(first.getItems().subList(0, 4)), ids(back.getItems()), "rows before the removed anchor");
+            Check.that(!back.hasPrevious(), "paged back to the start");
+
+            Check.fails(IllegalArgumentException.class,
+                () -> system.queryBikes(new BikeQuery().sortBy(BikeQuery.Sort.RATE), first.getNextCursor()),
+                "ID cursor on the rate order");
+            Check.fails(IllegalArgumentException.class, () -> system.queryBikes(new BikeQuery(), "not a cursor!"),
+                "malformed cursor");
+            Check.fails(IllegalArgumentException.class, () -> system.queryBikes(new BikeQuery().pageSize(0), null),
+                "page size zero");
+
+            int customerId = system.findOrCreateCustomer("Asha").getCustomerId();
+            List<Rental> rentals = new ArrayList<>();
+            for (Bike bike : system.getBikesByStatus(BikeStatus.AVAILABLE)) {
+                rentals.add(system.rentBike(customerId, bike.getBikeId()));
+            }
+            Check.that(rentals.size() > 6, "rentals to page through");
+            Comparator<Rental> byRentalId = Comparator.comparingInt(Rental::getRentalId);
+            Comparator<Rental> byStart = Comparator.comparingLong(Rental::getStartTimeMillis)
+                .thenComparing(r -> Integer.toString(r.getRentalId()));
+            for (int pageSize : new int[] {1, 3, rentals.size()}) {
+                RentalQuery ids = new RentalQuery().pageSize(pageSize);
+                walk("rentals by ID, page size " + pageSize, sorted(rentals, byRentalId),
+                    cursor -> system.queryActiveRentals(ids, cursor));
+                RentalQuery starts = new RentalQuery().sortBy(RentalQuery.Sort.START_TIME).pageSize(pageSize);
+                walk("rentals by start, page size " + pageSize, sorted(rentals, byStart),
+                    cursor -> system.queryActiveRentals(starts, cursor));
+            }
+        } finally {
+            system.close();
+        }
+    }
+
+    /**
+     * Follows next cursors to the last page, then previous cursors back to the
+     * first, checking every page against the expected listing.
+     */
+    private static <T> void walk(String what, List<T> expected, Function<String, Page<T>> fetch) {
+        List<Page<T>> pages = new ArrayList<>();
+        Page<T> page = fetch.apply(null);
+        Check.that(!page.hasPrevious(), what + ": first page has no previous page");
+        pages.add(page);
+        while (page.hasNext()) {
+            page = fetch.apply(page.getNextCursor());
+            Check.that(!page.isEmpty(), what + ": a next cursor leads to rows");
+            pages.add(page);
+        }
+        List<T> forward = new ArrayList<>();
+        for (Page<T> p : pages) {
+            forward.addAll(p.getItems());
+        }
+        Check.equal(expected, forward, what + ": rows paged forward");
+
+        for (int i = pages.size() - 1; i > 0; i--) {
+            Check.that(pages.get(i).hasPrevious(), what + ": page " + i + " has a previous page");
+            Page<T> previous = fetch.apply(pages.get(i).getPreviousCursor());
+            Check.equal(pages.get(i - 1).getItems(), previous.getItems(), what + ": page " + (i - 1) + " paged back");
+            Check.equal(i > 1, previous.hasPrevious(), what + ": page " + (i - 1) + " has a previous page");
+            Check.that(previous.hasNext(), what + ": page " + (i - 1) + " paged back has a next page");
+        }
+    }
+
+    private static List<Bike> filter(List<Bike> bikes, BikeQuery query) {
+        return bikes.stream().filter(query::matches).collect(Collectors.toList());
+    }
+
+    private static <T> List<T> sorted(List<T> rows, Comparator<T> order) {
+        List<T> copy = new ArrayList<>(rows);
+        Collections.sort(copy, order);
+        return copy;
+    }
+
+    private static List<String> ids(List<Bike> bikes) {
+        return bikes.stream().map(Bike::getBikeId).collect(Collectors.toList());
+    }
+
+    private static <T> T last(List<T> rows) {
+        return rows.get(rows.size() - 1);
+    }
+}
@@ -0,0 +1,172 @@
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Random rules and quotes priced by PricingEngine's compiled tables and by a
+ * brute-force pricer that walks the rental hour by hour. Both must agree to
+ * the paisa.
+ */
+final class PricingEngineCheck {
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Kolkata"); // No daylight saving, so clock hours are evenly spaced
+    private static final int RULE_SETS = 200;
+    private static final int QUOTES_PER_SET = 200;
+    private static final int UNITS_PER_HOUR = 100 * 100;
+
+    private PricingEngineCheck() {
+    }
+
+    // The rules as plain values, so the brute-force side shares no code with the engine
+    private static final class Rules {
+        long ratePaise = -1;
+        final int[] tierStarts;
+        final int[] tierPercents;
+        int dayCapHours;
+        int peakFrom;
+        int peakTo;
+        int peakPercent = 100;
+        int weekendPercent = 100;
+
+        Rules(int tiers) {
+            tierStarts = new int[tiers];
+            tierPercents = new int[tiers];
+        }
+
+        PricingRules toPricingRules() {
+            PricingRules rules = new PricingRules();
+            if (ratePaise >= 0) {
+                rules.ratePaise(ratePaise);
+            }
+            for (int i = 0; i < tierStarts.length; i++) {
+                rules.tier(tierStarts[i], tierPercents[i]);
+            }
+            rules.dayCap(dayCapHours);
+            if (peakPercent != 100) {
+                rules.peak(peakFrom, peakTo, peakPercent);
+            }
+            rules.weekend(weekendPercent);
+            return rules;
+        }
+    }
+
+    static void run() {
+        Random random = new Random(20240501);
+        for (int set = 0; set < RULE_SETS; set++) {
+            Rules defaults = randomRules(random);
+            Rules cargo = randomRules(random);
+            PricingEngine engine = new PricingEngine(ZONE, defaults.toPricingRules(),
+                Map.of("Cargo", cargo.toPricingRules()));
+
+            for (int i = 0; i < QUOTES_PER_SET; i++) {
+                boolean isCargo = random.nextInt(4) == 0;
+                Bike bike = new Bike("B" + i, isCargo ? "cargo" : "City", random.nextInt(100_000) / 100.0);
+                long startMillis = 1_700_000_000_000L + (long) random.nextInt(60 * 24 * 14) * 60_000L;
+                int hours = randomHours(random);
+
+                long expected = bruteForce(isCargo ? cargo : defaults, bike, startMillis, hours);
+                long actual = engine.quote(bike, startMillis, hours);
+                Check.equal(expected, actual, "quote for " + hours + " h from " + Instant.ofEpochMilli(startMillis)
+                    + " (rule set " + set + ", cargo " + isCargo + ")");
+
+                long[] charges = new long[1];
+                engine.quote(startMillis, new Bike[] {bike}, new int[] {hours}, charges, 1);
+                Check.equal(expected, charges[0], "batch quote for " + hours + " h");
+            }
+        }
+
+        Bike bike = new Bike("B", "City", 10);
+        PricingEngine flat = PricingEngine.flat(ZONE);
+        Check.equal(0L, flat.quote(bike, 0, 0), "zero hours");
+        Check.equal(1000L * PricingEngine.MAX_HOURS, flat.quote(bike, 0, PricingEngine.MAX_HOURS), "longest rental");
+        Check.fails(ArithmeticException.class, () -> flat.quote(bike, 0, PricingEngine.MAX_HOURS + 1), "past MAX_HOURS");
+
+        Locale locale = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.forLanguageTag("ar-EG")); // Formats digits as Arabic-Indic
+            Check.equal("1234.50", PricingEngine.formatRupees(123_450), "rupees");
+            Check.equal("0.05", PricingEngine.formatRupees(5), "paise below ten");
+            Check.equal("0.00", PricingEngine.formatRupees(0), "zero");
+            Check.equal("-12.07", PricingEngine.formatRupees(-1_207), "negative amount");
+            Check.equal("-0.99", PricingEngine.formatRupees(-99), "negative amount under a rupee");
+            Check.equal("-92233720368547758.08", PricingEngine.formatRupees(Long.MIN_VALUE), "smallest amount");
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    private static Rules randomRules(Random random) {
+        Rules rules = new Rules(random.nextInt(4));
+        if (random.nextBoolean()) {
+            rules.ratePaise = random.nextInt(500_000);
+        }
+        int from = 1;
+        for (int i = 0; i < rules.tierStarts.length; i++) {
+            from += 1 + random.nextInt(60);
+            rules.tierStarts[i] = Math.min(from, PricingEngine.HOURS_PER_WEEK);
+            rules.tierPercents[i] = random.nextInt(150);
+        }
+        if (random.nextBoolean()) {
+            rules.dayCapHours = 1 + random.nextInt(24);
+        }
+        if (random.nextBoolean()) {
+            rules.peakFrom = random.nextInt(23);
+            rules.peakTo = rules.peakFrom + 1 + random.nextInt(24 - rules.peakFrom);
+            rules.peakPercent = random.nextInt(PricingRules.MAX_PERCENT + 1);
+        }
+        if (random.nextBoolean()) {
+            rules.weekendPercent = random.nextInt(300);
+        }
+        return rules;
+    }
+
+    // Mostly within a couple of weeks, where tiers and caps change; some up to a year
+    private static int randomHours(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return 1 + random.nextInt(24);
+            case 1:
+            case 2:
+                return 1 + random.nextInt(3 * PricingEngine.HOURS_PER_WEEK);
+            default:
+                return 1 + random.nextInt(365 * 24);
+        }
+    }
+
+    // Walks every rental hour: tier by rental hour, percentage by local clock hour, cap per started day
+    private static long bruteForce(Rules rules, Bike bike, long startMillis, int hours) {
+        long ratePaise = rules.ratePaise >= 0 ? rules.ratePaise : Math.round(bike.getHourlyRate() * 100);
+        ZonedDateTime start = Instant.ofEpochMilli(startMillis).atZone(ZONE).withMinute(0).withSecond(0).withNano(0);
+        long capUnits = rules.dayCapHours > 0 ? (long) rules.dayCapHours * UNITS_PER_HOUR : Long.MAX_VALUE;
+
+        long units = 0;
+        long day = 0;
+        for (int hour = 0; hour < hours; hour++) {
+            if (hour % 24 == 0) {
+                units += Math.min(day, capUnits);
+                day = 0;
+            }
+            int rentalHour = Math.min(hour + 1, PricingEngine.HOURS_PER_WEEK); // Past the first week, the last tier
+            int tierPercent = 100;
+            for (int i = 0; i < rules.tierStarts.length; i++) {
+                if (rules.tierStarts[i] <= rentalHour) { // Starts never decrease; a repeated start overrides
+                    tierPercent = rules.tierPercents[i];
+                }
+            }
+            day += (long) tierPercent * timePercent(rules, start.plusHours(hour));
+        }
+        units += Math.min(day, capUnits);
+        return (ratePaise * units + UNITS_PER_HOUR / 2) / UNITS_PER_HOUR;
+    }
+
+    private static int timePercent(Rules rules, ZonedDateTime hour) {
+        if (hour.getDayOfWeek() == DayOfWeek.SATURDAY || hour.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            return rules.weekendPercent;
+        }
+        return hour.getHour() >= rules.peakFrom && hour.getHour() < rules.peakTo ? rules.peakPercent : 100;
+    }
+}
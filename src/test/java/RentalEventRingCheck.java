@@ -0,0 +1,161 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs many laps of a small ring with several producers, then holds a
+ * subscriber's handler to check that BLOCK stops producers exactly one ring
+ * ahead and DROP_OLDEST never stops them but accounts for every event.
+ */
+final class RentalEventRingCheck {
+
+    private static final int CAPACITY = 8;
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private RentalEventRingCheck() {
+    }
+
+    static void run() throws InterruptedException {
+        wraparound();
+        blockHoldsProducers();
+        dropOldestNeverBlocks();
+    }
+
+    // Every event arrives once, in sequence order, and each producer's events in the order it published them
+    private static void wraparound() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 25_000;
+        RentalEventRing ring = new RentalEventRing(CAPACITY);
+        AtomicLong nextSequence = new AtomicLong();
+        int[] lastPublished = new int[producers];
+        List<String> errors = new ArrayList<>();
+        RentalEventRing.Subscription subscription = ring.subscribe("wraparound", RentalEventRing.Backpressure.BLOCK,
+            (event, endOfBatch) -> {
+                int producer = event.getCustomerId();
+                if (event.getSequence() != nextSequence.getAndIncrement() || event.getRentalId() != lastPublished[producer] + 1) {
+                    errors.add("event " + event.getSequence() + " from producer " + producer + " out of order");
+                }
+                lastPublished[producer] = event.getRentalId();
+            });
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(start("producer-" + p, () -> {
+                for (int i = 1; i <= perProducer; i++) {
+                    ring.publish(RentalEvent.Type.RENTED, "W1", producer, i, 0, 0);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            join(thread, "producer");
+        }
+        subscription.close();
+
+        Check.equal(List.of(), errors, "delivery errors");
+        Check.equal((long) producers * perProducer, nextSequence.get(), "events delivered");
+        Check.equal(0L, subscription.getDropped(), "events dropped by a BLOCK subscriber");
+    }
+
+    private static void blockHoldsProducers() throws InterruptedException {
+        RentalEventRing ring = new RentalEventRing(CAPACITY);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicLong delivered = new AtomicLong();
+        RentalEventRing.Subscription subscription = ring.subscribe("blocked", RentalEventRing.Backpressure.BLOCK,
+            (event, endOfBatch) -> {
+                entered.countDown();
+                await(release);
+                delivered.incrementAndGet();
+            });
+
+        ring.publish(RentalEvent.Type.RENTED, "B1", 1, 0, 0, 0);
+        Check.that(entered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "handler received the first event");
+
+        // The handler holds event 0, so its slot is free again and CAPACITY more fit before the producer waits
+        int total = 3 * CAPACITY;
+        AtomicInteger published = new AtomicInteger(1);
+        Thread producer = start("blocked-producer", () -> {
+            for (int i = 1; i < total; i++) {
+                ring.publish(RentalEvent.Type.RENTED, "B1", 1, i, 0, 0);
+                published.incrementAndGet();
+            }
+        });
+        producer.join(300);
+        Check.that(producer.isAlive(), "producer waits for the BLOCK subscriber");
+        Check.equal(CAPACITY + 1, published.get(), "events published before the producer waited");
+
+        release.countDown();
+        join(producer, "producer");
+        subscription.close();
+        Check.equal((long) total, delivered.get(), "events delivered after the subscriber caught up");
+    }
+
+    private static void dropOldestNeverBlocks() throws InterruptedException {
+        RentalEventRing ring = new RentalEventRing(CAPACITY);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> sequences = new ArrayList<>();
+        AtomicLong reportedDrops = new AtomicLong();
+        RentalEventRing.Subscription subscription = ring.subscribe("dropping", RentalEventRing.Backpressure.DROP_OLDEST,
+            new RentalEventRing.Handler() {
+                @Override
+                public void onEvent(RentalEvent event, boolean endOfBatch) {
+                    entered.countDown();
+                    await(release);
+                    sequences.add(event.getSequence());
+                }
+
+                @Override
+                public void onDropped(long firstSequence, long count) {
+                    long expected = sequences.isEmpty() ? 0 : sequences.get(sequences.size() - 1) + 1;
+                    if (firstSequence == expected) {
+                        reportedDrops.addAndGet(count);
+                    }
+                }
+            });
+
+        ring.publish(RentalEvent.Type.RENTED, "D1", 1, 0, 0, 0);
+        Check.that(entered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS), "handler received the first event");
+        int total = 100 * CAPACITY;
+        Thread producer = start("dropping-producer", () -> {
+            for (int i = 1; i < total; i++) {
+                ring.publish(RentalEvent.Type.RENTED, "D1", 1, i, 0, 0);
+            }
+        });
+        join(producer, "producer held back by a DROP_OLDEST subscriber");
+
+        release.countDown();
+        subscription.close();
+        Check.that(subscription.getDropped() > 0, "events dropped while the handler was held");
+        Check.equal((long) total, sequences.size() + subscription.getDropped(), "events delivered plus dropped");
+        Check.equal(subscription.getDropped(), reportedDrops.get(), "drops reported to onDropped");
+        for (int i = 1; i < sequences.size(); i++) {
+            Check.that(sequences.get(i) > sequences.get(i - 1), "sequences delivered in order");
+        }
+        Check.equal((long) total - 1, sequences.get(sequences.size() - 1), "newest event delivered");
+    }
+
+    private static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void join(Thread thread, String what) throws InterruptedException {
+        thread.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+        Check.that(!thread.isAlive(), what + " did not finish within " + TIMEOUT_SECONDS + " s");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Mutates a system, closes it without a snapshot and reopens it from the
+ * journal alone; then tears the journal's last record and checks that replay
+ * keeps every intact record before it.
+ */
+final class RentalJournalCheck {
+
+    private static final String JOURNAL_FILE = "bikerental_data.journal";
+
+    private RentalJournalCheck() {
+    }
+
+    static void run() throws IOException {
+        File dataDirectory = Files.createTempDirectory("journal-check").toFile();
+        try {
+            check(dataDirectory);
+        } finally {
+            Check.deleteRecursively(dataDirectory);
+        }
+    }
+
+    private static void check(File dataDirectory) throws IOException {
+        long hour = TimeUnit.HOURS.toMillis(1);
+        long now = System.currentTimeMillis();
+
+        BikeRentalSystem system = open(dataDirectory);
+        for (int i = 1; i <= 6; i++) {
+            Check.that(system.addBike(new Bike("J" + i, i % 2 == 0 ? "Cargo" : "City", 12.5 * i)), "add bike J" + i);
+        }
+        Customer asha = system.findOrCreateCustomer("Asha");
+        Customer ravi = system.findOrCreateCustomer("Ravi");
+
+        Rental first = system.rentBike(asha.getCustomerId(), "J1");
+        Rental second = system.rentBike(ravi.getCustomerId(), "J2");
+        system.rentBike(asha.getCustomerId(), "J3");
+        Check.that(first != null && second != null, "rentals start");
+        Check.that(system.checkoutAndReturnBike(first.getRentalId(), 5) != null, "return J1");
+        Check.that(system.checkoutAndReturnBike("J2", 30) != null, "return J2");
+        Check.that(system.sendBikeToRepair("J4"), "send J4 to repair");
+        Check.that(system.sendBikeToRepair("J5"), "send J5 to repair");
+        Check.that(system.returnBikeFromRepair("J5"), "return J5 from repair");
+        Reservation kept = system.reserveBike(ravi.getCustomerId(), "J6", now + 24 * hour, now + 26 * hour);
+        Reservation cancelled = system.reserveBike(asha.getCustomerId(), "J6", now + 48 * hour, now + 50 * hour);
+        Check.that(kept != null && cancelled != null, "reservations booked");
+        Check.that(system.cancelReservation(cancelled.getReservationId()), "cancel reservation");
+        String beforeClose = describe(system);
+        system.close();
+
+        system = open(dataDirectory);
+        Check.equal(beforeClose, describe(system), "state replayed from the journal");
+        Check.equal(List.of(), system.verifyAggregates(), "aggregates after replay");
+
+        // One more operation whose record is then torn, as by a crash mid-write
+        File journal = new File(dataDirectory, JOURNAL_FILE);
+        long intactLength = journal.length();
+        Check.that(system.rentBike(ravi.getCustomerId(), "J5") != null, "rent J5");
+        system.close();
+        Check.that(journal.length() > intactLength, "rent appended to the journal");
+        try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        system = open(dataDirectory);
+        try {
+            Check.equal(beforeClose, describe(system), "state replayed up to the torn record");
+            Check.equal(intactLength, journal.length(), "journal truncated to its last intact record");
+            Check.that(system.rentBike(ravi.getCustomerId(), "J5") != null, "rent J5 again after recovery");
+        } finally {
+            system.close();
+        }
+
+        system = open(dataDirectory);
+        try {
+            Check.that(system.findActiveRentalByBikeId("J5").isPresent(), "record appended after recovery replays");
+        } finally {
+            system.close();
+        }
+    }
+
+    private static BikeRentalSystem open(File dataDirectory) {
+        BikeRentalSystem system = new BikeRentalSystem(dataDirectory);
+        system.setNoticeSink(NoticeSink.NONE);
+        return system;
+    }
+
+    // Everything the journal restores, in a stable order
+    private static String describe(BikeRentalSystem system) {
+        StringBuilder state = new StringBuilder();
+        system.getCustomers().stream()
+            .sorted(Comparator.comparingInt(Customer::getCustomerId))
+            .forEach(c -> state.append("customer ").append(c.getCustomerId()).append(' ').append(c.getName()).append('\n'));
+        for (BikeStatus status : BikeStatus.values()) {
+            state.append(status).append(' ').append(system.getBikesByStatus(status).stream()
+                .map(Bike::getBikeId).sorted().collect(Collectors.toList())).append('\n');
+        }
+        system.getCurrentlyRentedBikes().stream()
+            .sorted(Comparator.comparingInt(Rental::getRentalId))
+            .forEach(r -> state.append("rental ").append(r.getRentalId()).append(' ').append(r.getCustomer().getCustomerId())
+                .append(' ').append(r.getBike().getBikeId()).append(' ').append(r.getStartTimeMillis())
+                .append(' ').append(r.getExpectedReturnMillis()).append('\n'));
+        system.getReservations().stream()
+            .sorted(Comparator.comparingInt(Reservation::getReservationId))
+            .forEach(r -> state.append("reservation ").append(r.getReservationId()).append(' ')
+                .append(r.getCustomer().getCustomerId()).append(' ').append(r.getBike().getBikeId())
+                .append(' ').append(r.getStartMillis()).append(' ').append(r.getEndMillis()).append('\n'));
+        system.queryHistory(new HistoryQuery())
+            .sorted(Comparator.comparingInt(HistoryRecord::getRentalId))
+            .forEach(r -> state.append("returned ").append(r.getRentalId()).append(' ').append(r.getDurationHours())
+                .append(' ').append(r.getChargePaise()).append('\n'));
+        state.append("total ").append(system.getAggregates().getTotal()).append('\n');
+        state.append("next ").append(system.getNextCustomerId()).append(' ').append(system.getNextRentalId()).append('\n');
+        return state.toString();
+    }
+}
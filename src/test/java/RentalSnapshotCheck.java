@@ -0,0 +1,121 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a snapshot of every kind of record, reads it back field by field,
+ * and checks that each truncated copy of the file is rejected with an
+ * IOException rather than read as a smaller fleet.
+ */
+final class RentalSnapshotCheck {
+
+    private static final int CURRENT_VERSION = 1;
+    private static final ZoneId ZONE = ZoneId.of("UTC");
+
+    private RentalSnapshotCheck() {
+    }
+
+    static void run() throws IOException {
+        File directory = Files.createTempDirectory("snapshot-check").toFile();
+        try {
+            check(directory.toPath());
+        } finally {
+            Check.deleteRecursively(directory);
+        }
+    }
+
+    private static void check(Path directory) throws IOException {
+        long now = 1_700_000_000_000L;
+        long hour = 3_600_000L;
+
+        Bike city = new Bike("S1", "City", 12.5);
+        city.setNotes("Squeaky brake");
+        city.setLastMaintenanceDate(new Date(now - 48 * hour));
+        Bike cargo = new Bike("S2", "Cargo", 30);
+        cargo.setLastMaintenanceDate(new Date(now - 24 * hour));
+        Bike repair = new Bike("S3 ünïcode", "City", 0.05);
+        repair.setStatus(BikeStatus.IN_REPAIR);
+        List<Bike> inventory = List.of(city, cargo, repair);
+
+        Customer asha = new Customer(1, "Asha");
+        Customer ravi = new Customer(2, "Ravi Kumar");
+        List<Customer> customers = List.of(asha, ravi);
+
+        List<Rental> rentals = List.of(new Rental(41, asha, city, now - 3 * hour, now + 21 * hour, false));
+        List<Reservation> reservations = List.of(
+            new Reservation(7, ravi, cargo, now + 24 * hour, now + 30 * hour),
+            new Reservation(8, asha, cargo, now + 48 * hour, now + 50 * hour));
+
+        Map<String, Long> segments = new LinkedHashMap<>();
+        segments.put("2023-10", 4096L);
+        segments.put("2023-11", 123L);
+
+        RentalAggregates aggregates = new RentalAggregates(ZONE);
+        aggregates.record(city, 1, 5, 6250, now - 72 * hour);
+        aggregates.record(cargo, 2, 30, 90_001, now - 30 * hour);
+        aggregates.record(city, 2, 1, 1, now - 2 * hour);
+
+        Path path = directory.resolve("check.snap");
+        RentalSnapshot.write(path, 9, 3, 42, inventory, customers, rentals, segments, aggregates, 9, reservations);
+        byte[] bytes = Files.readAllBytes(path);
+        Check.equal(CURRENT_VERSION, ByteBuffer.wrap(bytes, 4, 4).getInt(), "header version");
+
+        RentalAggregates restored = new RentalAggregates(ZONE);
+        RentalSnapshot.Contents contents = RentalSnapshot.read(path, restored);
+        Check.equal(9L, contents.journalGeneration, "journal generation");
+        Check.equal(3, contents.nextCustomerId, "next customer ID");
+        Check.equal(42, contents.nextRentalId, "next rental ID");
+        Check.equal(9, contents.nextReservationId, "next reservation ID");
+        Check.equal(describeBikes(inventory), describeBikes(contents.inventory), "bikes");
+        Check.equal(customers.stream().map(c -> c.getCustomerId() + " " + c.getName()).collect(Collectors.toList()),
+            contents.customers.stream().map(c -> c.getCustomerId() + " " + c.getName()).collect(Collectors.toList()),
+            "customers");
+        Check.equal(describeRentals(rentals), describeRentals(contents.rentals), "active rentals");
+        Check.equal(describeReservations(reservations), describeReservations(contents.reservations), "reservations");
+        Check.equal(segments, contents.archivedSegments, "archived segments");
+        Check.equal(describeAggregates(aggregates), describeAggregates(restored), "aggregates");
+
+        Path truncated = directory.resolve("truncated.snap");
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            Check.fails(IOException.class,
+                () -> RentalSnapshot.read(truncated, new RentalAggregates(ZONE)),
+                "snapshot truncated to " + length + " of " + bytes.length + " bytes");
+        }
+    }
+
+    private static List<String> describeBikes(List<Bike> bikes) {
+        return bikes.stream()
+            .map(b -> b.getBikeId() + " " + b.getModel() + " " + b.getHourlyRate() + " " + b.getStatus()
+                + " " + b.getNotes() + " " + b.getLastMaintenanceDate().getTime())
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> describeRentals(List<Rental> rentals) {
+        return rentals.stream()
+            .map(r -> r.getRentalId() + " " + r.getCustomer().getCustomerId() + " " + r.getBike().getBikeId()
+                + " " + r.getStartTimeMillis() + " " + r.getExpectedReturnMillis() + " " + r.isReturned())
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> describeReservations(List<Reservation> reservations) {
+        return reservations.stream()
+            .map(r -> r.getReservationId() + " " + r.getCustomer().getCustomerId() + " " + r.getBike().getBikeId()
+                + " " + r.getStartMillis() + " " + r.getEndMillis())
+            .collect(Collectors.toList());
+    }
+
+    private static String describeAggregates(RentalAggregates aggregates) {
+        return aggregates.getTotal() + "\n" + aggregates.getByBike() + "\n" + aggregates.getByCustomer()
+            + "\n" + aggregates.getByModel() + "\n" + aggregates.getByDay();
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Seeds a follower from a live primary, changes the primary and waits for
+ * the replica to match it; then makes applying a shipped write fail on the
+ * replica and checks the follower reseeds instead of stopping. Finally
+ * promotes the replica and checks it takes writes and keeps them.
+ */
+final class ReplicaFollowerCheck {
+
+    private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private ReplicaFollowerCheck() {
+    }
+
+    static void run() throws Exception {
+        File directory = Files.createTempDirectory("replica-check").toFile();
+        try {
+            check(new File(directory, "primary"), new File(directory, "replica"));
+        } finally {
+            Check.deleteRecursively(directory);
+        }
+    }
+
+    private static void check(File primaryDirectory, File replicaDirectory) throws Exception {
+        BikeRentalSystem primary = open(primaryDirectory);
+        for (int i = 1; i <= 6; i++) {
+            primary.addBike(new Bike("F" + i, "City", 10 * i));
+        }
+        int asha = primary.findOrCreateCustomer("Asha").getCustomerId();
+        Rental seededRental = primary.rentBike(asha, "F1");
+        primary.saveData();
+        primary.rentBike(asha, "F2"); // Only in the primary's journal when the follower connects
+
+        ReplicationPrimary replication = new ReplicationPrimary(primary, 0);
+        replication.start();
+        ReplicaFollower follower = new ReplicaFollower(replicaDirectory, "127.0.0.1", replication.getPort());
+        List<BikeRentalSystem> reseeded = new CopyOnWriteArrayList<>();
+        follower.onReseed(reseeded::add);
+        try {
+            BikeRentalSystem replica = follower.start();
+            replica.setNoticeSink(NoticeSink.NONE);
+            Check.that(replica.isReadOnly(), "replica is read-only");
+            Check.equal(describe(primary), describe(replica), "replica seeded from the snapshot and journal");
+            Check.fails(BikeRentalSystem.ReadOnlyException.class, () -> replica.addBike(new Bike("R1", "City", 10)),
+                "change on a replica");
+
+            // Shipped writes are applied in order
+            int ravi = primary.findOrCreateCustomer("Ravi").getCustomerId();
+            Check.that(primary.checkoutAndReturnBike(seededRental.getRentalId(), 3) != null, "return F1");
+            primary.rentBike(ravi, "F3");
+            primary.sendBikeToRepair("F4");
+            long now = System.currentTimeMillis();
+            primary.reserveBike(ravi, "F5", now + 3_600_000, now + 7_200_000);
+            primary.addBike(new Bike("F7", "Cargo", 25));
+            awaitMatch(primary, follower, "replica after shipped writes");
+            Check.equal(0L, follower.getLagWrites(), "writes not yet applied");
+
+            // A write the replica cannot apply sends the follower back for a fresh snapshot
+            setReplica(follower.getSystem(), false);
+            primary.rentBike(asha, "F6");
+            await(() -> !reseeded.isEmpty(), "reseed after a failed apply");
+            BikeRentalSystem fresh = reseeded.get(0);
+            Check.that(fresh != replica && follower.getSystem() == fresh, "fresh replica replaces the old one");
+            Check.that(fresh.isReadOnly(), "fresh replica is read-only");
+            fresh.setNoticeSink(NoticeSink.NONE);
+            await(follower::isConnected, "connected again");
+            primary.returnBikeFromRepair("F4");
+            awaitMatch(primary, follower, "fresh replica after more shipped writes");
+
+            // Failover: the replica keeps everything applied and takes writes of its own
+            String atPromotion = describe(primary);
+            BikeRentalSystem promoted = follower.promote();
+            Check.that(promoted == fresh && follower.isPromoted() && !promoted.isReadOnly(), "replica promoted");
+            Check.equal(atPromotion, describe(promoted), "state at promotion");
+            Check.that(promoted.addBike(new Bike("P1", "City", 10)), "change after promotion");
+            Check.that(promoted.rentBike(ravi, "F4") != null, "rent after promotion");
+            String afterPromotion = describe(promoted);
+            promoted.close();
+
+            BikeRentalSystem reopened = open(replicaDirectory);
+            try {
+                Check.equal(afterPromotion, describe(reopened), "promoted replica after restart");
+            } finally {
+                reopened.close();
+            }
+        } finally {
+            replication.stop();
+            primary.close();
+        }
+    }
+
+    private static void awaitMatch(BikeRentalSystem primary, ReplicaFollower follower, String what) throws Exception {
+        String expected = describe(primary);
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!expected.equals(describe(follower.getSystem())) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Check.equal(expected, describe(follower.getSystem()), what);
+    }
+
+    private static void await(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            Check.that(System.currentTimeMillis() < deadline, what + " within " + TIMEOUT_MILLIS + " ms");
+            Thread.sleep(10);
+        }
+    }
+
+    // Lets applyReplicated refuse the next shipment, as a bug in applying it would
+    private static void setReplica(BikeRentalSystem system, boolean replica) throws Exception {
+        Field field = BikeRentalSystem.class.getDeclaredField("replica");
+        field.setAccessible(true);
+        field.setBoolean(system, replica);
+    }
+
+    private static String describe(BikeRentalSystem system) {
+        List<String> lines = new ArrayList<>();
+        for (BikeStatus status : BikeStatus.values()) {
+            lines.add(status + " " + system.getBikesByStatus(status).stream().map(Bike::getBikeId).collect(Collectors.toList()));
+        }
+        lines.add("rentals " + system.getCurrentlyRentedBikes().stream()
+            .map(r -> r.getRentalId() + ":" + r.getBike().getBikeId() + ":" + r.getCustomer().getName())
+            .sorted().collect(Collectors.toList()));
+        lines.add("reservations " + system.getReservations().stream()
+            .map(r -> r.getReservationId() + ":" + r.getBike().getBikeId()).sorted().collect(Collectors.toList()));
+        lines.add("totals " + system.getAggregates().getTotal());
+        return String.join("\n", lines);
+    }
+
+    private static BikeRentalSystem open(File dataDirectory) {
+        BikeRentalSystem system = new BikeRentalSystem(dataDirectory);
+        system.setNoticeSink(NoticeSink.NONE);
+        return system;
+    }
+}
@@ -0,0 +1,183 @@
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Books, cancels and expires random windows on a few bikes and checks every
+ * answer of the book against a brute-force overlap scan of the windows it
+ * accepted; then races bookings for one bike from several threads. Also
+ * checks the notices for reservations refused because the bike is out.
+ */
+final class ReservationBookCheck {
+
+    private static final int BIKES = 3;
+    private static final int OPERATIONS = 5_000;
+    private static final int HORIZON = 200;
+
+    private ReservationBookCheck() {
+    }
+
+    static void run() throws Exception {
+        edges();
+        againstBruteForce();
+        racingBookings();
+        refusalNotices();
+    }
+
+    private static void edges() {
+        ReservationBook book = new ReservationBook();
+        Bike bike = new Bike("R1", "City", 10);
+        Customer customer = new Customer(1, "Asha");
+        Check.that(book.add(new Reservation(1, customer, bike, 10, 20)), "first window");
+        Check.that(book.add(new Reservation(2, customer, bike, 20, 30)), "window starting as another ends");
+        Check.that(book.add(new Reservation(3, customer, bike, 0, 10)), "window ending as another starts");
+        Check.that(!book.add(new Reservation(4, customer, bike, 19, 21)), "window across a boundary");
+        Check.that(!book.add(new Reservation(5, customer, bike, 12, 15)), "window inside another");
+        Check.that(!book.add(new Reservation(6, customer, bike, 5, 35)), "window around others");
+        Check.that(!book.add(new Reservation(1, customer, new Bike("R2", "City", 10), 10, 20)), "reused reservation ID");
+        Check.equal(3, book.size(), "reservations booked");
+        Check.equal(2, book.heldAt(bike, 20).getReservationId(), "holder at a boundary");
+        Check.equal(null, book.heldAt(bike, 30), "holder at the end of the last window");
+    }
+
+    private static void againstBruteForce() {
+        ReservationBook book = new ReservationBook();
+        Customer customer = new Customer(1, "Asha");
+        Bike[] bikes = new Bike[BIKES];
+        List<List<Reservation>> booked = new ArrayList<>();
+        for (int b = 0; b < BIKES; b++) {
+            bikes[b] = new Bike("R" + b, "City", 10);
+            booked.add(new ArrayList<>());
+        }
+        Random random = new Random(5);
+        int nextId = 1;
+        for (int op = 0; op < OPERATIONS; op++) {
+            int b = random.nextInt(BIKES);
+            Bike bike = bikes[b];
+            List<Reservation> windows = booked.get(b);
+            long start = random.nextInt(HORIZON);
+            long end = start + 1 + random.nextInt(20);
+            String window = "[" + start + ", " + end + ") on " + bike.getBikeId();
+            switch (random.nextInt(10)) {
+                case 0:
+                    if (!windows.isEmpty()) {
+                        Reservation cancelled = windows.remove(random.nextInt(windows.size()));
+                        Check.equal(cancelled, book.remove(cancelled.getReservationId()), "cancel");
+                        Check.equal(null, book.remove(cancelled.getReservationId()), "cancel twice");
+                    }
+                    break;
+                case 1:
+                    long now = random.nextInt(HORIZON / 4);
+                    int ended = 0;
+                    for (List<Reservation> list : booked) {
+                        ended += list.size();
+                        list.removeIf(r -> r.getEndMillis() <= now);
+                        ended -= list.size();
+                    }
+                    Check.equal(ended, book.removeEndedBy(now), "reservations ended by " + now);
+                    break;
+                default:
+                    boolean free = windows.stream().noneMatch(r -> r.getStartMillis() < end && start < r.getEndMillis());
+                    Check.equal(free, book.isFree(bike, start, end), "free " + window);
+                    Reservation reservation = new Reservation(nextId++, customer, bike, start, end);
+                    Check.equal(free, book.add(reservation), "booking " + window);
+                    if (free) {
+                        windows.add(reservation);
+                    }
+                    break;
+            }
+            Reservation holder = windows.stream().filter(r -> r.covers(start)).findFirst().orElse(null);
+            Check.equal(holder, book.heldAt(bike, start), "holder of " + bike.getBikeId() + " at " + start);
+        }
+        int total = 0;
+        for (int b = 0; b < BIKES; b++) {
+            List<Reservation> expected = booked.get(b).stream()
+                .sorted(Comparator.comparingLong(Reservation::getStartMillis)).collect(Collectors.toList());
+            Check.equal(expected, book.forBike(bikes[b]), "windows of " + bikes[b].getBikeId());
+            total += expected.size();
+        }
+        Check.equal(total, book.size(), "reservations left");
+    }
+
+    // Every thread tries every slot; each slot goes to exactly one of them
+    private static void racingBookings() throws Exception {
+        ReservationBook book = new ReservationBook();
+        Bike bike = new Bike("R1", "City", 10);
+        Customer customer = new Customer(1, "Asha");
+        int threads = 6;
+        int slots = 2_000;
+        AtomicInteger nextId = new AtomicInteger();
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> started = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                for (int slot = 0; slot < slots; slot++) {
+                    // Windows of two slots, shifted per thread, so neighbours overlap
+                    long start = slot * 10L + offset % 2 * 5;
+                    if (book.add(new Reservation(nextId.incrementAndGet(), customer, bike, start, start + 10))) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            }, "booker-" + t);
+            thread.start();
+            started.add(thread);
+        }
+        for (Thread thread : started) {
+            thread.join(TimeUnit.MINUTES.toMillis(1));
+            Check.that(!thread.isAlive(), thread.getName() + " did not finish");
+        }
+        List<Reservation> windows = book.forBike(bike);
+        Check.equal(accepted.get(), windows.size(), "accepted bookings");
+        for (int i = 1; i < windows.size(); i++) {
+            Check.that(windows.get(i - 1).getEndMillis() <= windows.get(i).getStartMillis(),
+                "windows " + windows.get(i - 1).getReservationId() + " and " + windows.get(i).getReservationId()
+                    + " overlap");
+        }
+    }
+
+    private static void refusalNotices() throws Exception {
+        File dataDirectory = Files.createTempDirectory("reservation-check").toFile();
+        List<OperationNotice> notices = new ArrayList<>();
+        BikeRentalSystem system = new BikeRentalSystem(dataDirectory);
+        try {
+            system.setNoticeSink(new NoticeSink() {
+                @Override
+                public void receipt(Receipt receipt) {
+                }
+
+                @Override
+                public void notice(OperationNotice notice) {
+                    notices.add(notice);
+                }
+            });
+            system.addBike(new Bike("R1", "City", 10));
+            int customerId = system.findOrCreateCustomer("Asha").getCustomerId();
+            Check.that(system.rentBike(customerId, "R1") != null, "R1 rented");
+            long now = System.currentTimeMillis();
+
+            Check.equal(null, system.reserveBike(customerId, "R1", now - 1_000, now + 3_600_000), "reserve a rented bike now");
+            OperationNotice refused = notices.get(notices.size() - 1);
+            Check.equal(FailureReason.BIKE_NOT_AVAILABLE, refused.getReason(), "reason for reserving a rented bike");
+            Check.that(refused.render().contains("cannot be reserved") && refused.render().contains("RENTED"),
+                "reservation notice: " + refused.render());
+
+            Check.that(!system.sendBikeToRepair("R1"), "rented bike sent to repair");
+            String repair = notices.get(notices.size() - 1).render();
+            Check.that(repair.contains("cannot be sent to repair"), "repair notice: " + repair);
+
+            String other = OperationNotice.bikeFailed(RentalMetrics.Operation.RETURN_FROM_REPAIR,
+                FailureReason.BIKE_NOT_AVAILABLE, "R1", BikeStatus.RENTED).render();
+            Check.that(!other.contains("repair") && other.contains("not available"), "neutral notice: " + other);
+        } finally {
+            system.close();
+            Check.deleteRecursively(dataDirectory);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs every check and fails if any did. Bound to mvn test; without Maven:
+ *
+ *   javac -encoding UTF-8 -d out *.java src/test/java/*.java && java -cp out RunChecks
+ */
+public class RunChecks {
+
+    public static void main(String[] args) {
+        Map<String, Check.Action> checks = new LinkedHashMap<>();
+        checks.put("journal replay after restart", RentalJournalCheck::run);
+        checks.put("snapshot round trip and truncation", RentalSnapshotCheck::run);
+        checks.put("concurrent rents and returns", ConcurrentRentalCheck::run);
+        checks.put("API status codes", ApiServerCheck::run);
+        checks.put("partial failures in batch operations", BatchOperationsCheck::run);
+        checks.put("group commit ordering and write failures", GroupCommitWriterCheck::run);
+        checks.put("page cursors forward and back", PageCursorCheck::run);
+        checks.put("history truncation on restore", HistoryArchiveCheck::run);
+        checks.put("customer search against a brute-force scan", CustomerSearchIndexCheck::run);
+        checks.put("reservation overlaps against a brute-force scan", ReservationBookCheck::run);
+        checks.put("import parsing across chunk boundaries", BatchImporterCheck::run);
+        checks.put("station ID interleaving and routing", StationRouterCheck::run);
+        checks.put("replica seed, apply, reseed and promote", ReplicaFollowerCheck::run);
+        checks.put("fleet snapshot copy-on-write and isolation", FleetSnapshotCheck::run);
+        checks.put("deadline wheel cascade", DeadlineWheelCheck::run);
+        checks.put("event ring wraparound and backpressure", RentalEventRingCheck::run);
+        checks.put("pricing engine against a per-hour pricer", PricingEngineCheck::run);
+
+        int failed = 0;
+        for (Map.Entry<String, Check.Action> check : checks.entrySet()) {
+            try {
+                check.getValue().run();
+                System.out.println("PASS " + check.getKey());
+            } catch (Throwable e) {
+                failed++;
+                System.out.println("FAIL " + check.getKey() + ": " + e);
+                e.printStackTrace(System.out);
+            }
+        }
+        System.out.println((checks.size() - failed) + " of " + checks.size() + " checks passed");
+        if (failed > 0) {
+            throw new AssertionError(failed + " checks failed"); // Fails the build without exiting Maven's JVM
+        }
+    }
+}
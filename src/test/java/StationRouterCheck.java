@@ -0,0 +1,155 @@
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Rents and reserves bikes at several stations and checks that every ID
+ * carries its station's position, that an ID alone routes back to that
+ * station, and that positions and the ID sequence survive reopening with
+ * the stations named in another order. Also checks duplicate bikes and a
+ * station list that cannot be read or written.
+ */
+final class StationRouterCheck {
+
+    private static final List<String> STATIONS = List.of("North", "South", "East");
+    private static final int BIKES_PER_STATION = 5;
+
+    private StationRouterCheck() {
+    }
+
+    static void run() throws Exception {
+        File root = Files.createTempDirectory("station-check").toFile();
+        try {
+            routing(new File(root, "stations"));
+            unrecordableStations(root);
+        } finally {
+            Check.deleteRecursively(root);
+        }
+    }
+
+    private static void routing(File root) {
+        StationRouter router = open(root, STATIONS);
+        Set<Integer> issued = new HashSet<>(); // Rental IDs
+        Set<Integer> booked = new HashSet<>(); // Reservation IDs, a separate sequence
+        List<Integer> active = new ArrayList<>();
+        try {
+            for (StationRouter.Station station : router.getStations()) {
+                Check.equal(STATIONS.indexOf(station.getName()), station.getIndex(), "position of " + station.getName());
+                for (int i = 0; i < BIKES_PER_STATION; i++) {
+                    Check.that(router.addBike(station.getName(), new Bike(bikeId(station, i), "City", 10)),
+                        "add " + bikeId(station, i));
+                }
+            }
+            Check.that(!router.addBike("South", new Bike("north-0", "City", 10)), "bike ID taken at another station");
+            Check.fails(IllegalArgumentException.class, () -> router.addBike("Nowhere", new Bike("Z1", "City", 10)),
+                "unknown station");
+            Check.equal(3 * BIKES_PER_STATION, router.countBikes(BikeStatus.AVAILABLE), "bikes across stations");
+
+            int asha = router.findOrCreateCustomer("Asha").getCustomerId();
+            int ravi = router.findOrCreateCustomer("Ravi").getCustomerId();
+            for (int round = 0; round < 2; round++) {
+                for (StationRouter.Station station : router.getStations()) {
+                    Rental rental = router.rentBike(round == 0 ? asha : ravi, bikeId(station, round));
+                    Check.that(rental != null, "rent " + bikeId(station, round));
+                    checkId(station, rental.getRentalId(), issued, "rental");
+                    Check.equal(round == 0 ? asha : ravi, rental.getCustomer().getCustomerId(), "customer copied to the station");
+                    active.add(rental.getRentalId());
+                }
+            }
+            for (int rentalId : active) {
+                Rental rental = router.findActiveRentalById(rentalId).orElseThrow(() -> new AssertionError("rental " + rentalId));
+                Check.equal(router.stationOf(rental.getBike().getBikeId()).get().getIndex(),
+                    Math.floorMod(rentalId - 1, StationRouter.MAX_STATIONS), "station of rental " + rentalId);
+            }
+            int returned = active.remove(0);
+            Check.that(router.checkoutAndReturnBike(returned, 2) != null, "return by rental ID");
+            Check.equal(null, router.checkoutAndReturnBike(returned, 2), "second return of rental " + returned);
+            Check.equal(null, router.checkoutAndReturnBike(StationRouter.MAX_STATIONS, 2), "rental ID of no station");
+
+            long now = System.currentTimeMillis();
+            List<Reservation> reservations = new ArrayList<>();
+            for (StationRouter.Station station : router.getStations()) {
+                Reservation reservation = router.reserveBike(ravi, bikeId(station, 4), now - 1_000, now + 3_600_000);
+                Check.that(reservation != null, "reserve " + bikeId(station, 4));
+                checkId(station, reservation.getReservationId(), booked, "reservation");
+                reservations.add(reservation);
+            }
+            Rental pickedUp = router.pickUpReservation(reservations.get(1).getReservationId());
+            Check.that(pickedUp != null && pickedUp.getBike().getBikeId().equals(bikeId(router.getStations().get(1), 4)),
+                "pick up routed by reservation ID");
+            checkId(router.getStations().get(1), pickedUp.getRentalId(), issued, "rental");
+            active.add(pickedUp.getRentalId());
+            Check.that(router.cancelReservation(reservations.get(2).getReservationId()), "cancel routed by reservation ID");
+            Check.that(!router.cancelReservation(StationRouter.MAX_STATIONS - 1), "reservation ID of no station");
+
+            Check.equal(active.size(), router.countActiveRentals(), "active rentals across stations");
+            Map<String, Integer> availability = router.getAvailabilityByStation();
+            Check.equal(STATIONS, new ArrayList<>(availability.keySet()), "stations in order");
+            List<String> firstAvailable = router.findAvailableBikes(4).stream().map(Bike::getBikeId).collect(Collectors.toList());
+            Check.equal(List.of("east-2", "east-3", "east-4", "north-0"), firstAvailable, "first available bikes by ID");
+        } finally {
+            router.close();
+        }
+
+        // A bike stocked behind the router's back at a second station
+        StationRouter direct = open(root, STATIONS);
+        direct.getStation("East").get().getSystem().addBike(new Bike("NORTH-3", "City", 10));
+        direct.close();
+
+        // Known names keep their positions whatever order they are given in; new ones are appended
+        StationRouter reopened = open(root, List.of("East", "West", "north"));
+        try {
+            Check.equal(List.of("North", "South", "East", "West"),
+                reopened.getStations().stream().map(StationRouter.Station::getName).collect(Collectors.toList()),
+                "stations after reopening");
+            Check.equal(Map.of("north-3", List.of("North", "East")), reopened.getDuplicateBikes(), "duplicate bikes");
+            Check.equal("North", reopened.stationOf("north-3").get().getName(), "duplicate routed to the first station");
+            for (int rentalId : active) {
+                Check.that(reopened.findActiveRentalById(rentalId).isPresent(), "rental " + rentalId + " after reopening");
+            }
+            int customer = reopened.findOrCreateCustomer("Asha").getCustomerId();
+            Check.that(reopened.addBike("West", new Bike("west-0", "City", 10)), "add a bike at the new station");
+            for (StationRouter.Station station : reopened.getStations()) {
+                String bikeId = station.getName().equals("West") ? "west-0" : bikeId(station, 2);
+                Rental rental = reopened.rentBike(customer, bikeId);
+                Check.that(rental != null, "rent " + bikeId + " after reopening");
+                checkId(station, rental.getRentalId(), issued, "rental after reopening");
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private static void unrecordableStations(File root) throws Exception {
+        File unreadable = new File(root, "unreadable");
+        Files.createDirectories(new File(unreadable, "stations.txt").toPath()); // A directory where the list belongs
+        Check.fails(UncheckedIOException.class, () -> open(unreadable, STATIONS), "station list that cannot be read");
+
+        File notADirectory = new File(root, "file");
+        Files.write(notADirectory.toPath(), new byte[0]);
+        Check.fails(UncheckedIOException.class, () -> open(notADirectory, STATIONS), "station list that cannot be written");
+    }
+
+    private static void checkId(StationRouter.Station station, int id, Set<Integer> issued, String what) {
+        Check.equal(station.getIndex(), Math.floorMod(id - 1, StationRouter.MAX_STATIONS),
+            what + " " + id + " of station " + station.getName());
+        Check.that(issued.add(id), what + " ID " + id + " issued twice");
+    }
+
+    private static String bikeId(StationRouter.Station station, int i) {
+        return station.getName().toLowerCase(Locale.ROOT) + "-" + i;
+    }
+
+    private static StationRouter open(File root, List<String> names) {
+        StationRouter router = new StationRouter(root, names);
+        router.setNoticeSink(NoticeSink.NONE);
+        return router;
+    }
+}